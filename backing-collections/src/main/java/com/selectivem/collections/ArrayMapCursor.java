@@ -0,0 +1,74 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Base class for cursors over maps which store their entries in array slots, some of which may be empty. The cursor
+ * itself just maintains the current slot; thus, advancing it does not allocate any objects.
+ */
+abstract class ArrayMapCursor<K, V> implements MapCursor<K, V> {
+    private final int length;
+    private int current = -1;
+
+    /**
+     * @param length the number of slots. The slots are numbered from 0 to length - 1.
+     */
+    ArrayMapCursor(int length) {
+        this.length = length;
+    }
+
+    /**
+     * Returns true if the slot with the given number contains an entry.
+     */
+    abstract boolean isOccupied(int slot);
+
+    abstract K keyAt(int slot);
+
+    abstract V valueAt(int slot);
+
+    @Override
+    public boolean advance() {
+        for (int i = current + 1; i < length; i++) {
+            if (isOccupied(i)) {
+                current = i;
+                return true;
+            }
+        }
+
+        current = length;
+        return false;
+    }
+
+    @Override
+    public K key() {
+        return keyAt(currentSlot());
+    }
+
+    @Override
+    public V value() {
+        return valueAt(currentSlot());
+    }
+
+    private int currentSlot() {
+        if (current < 0 || current >= length) {
+            throw new NoSuchElementException();
+        }
+
+        return current;
+    }
+}
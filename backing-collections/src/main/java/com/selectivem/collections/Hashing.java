@@ -18,6 +18,14 @@ package com.selectivem.collections;
 abstract class Hashing {
 
     static final int NO_SPACE = Integer.MAX_VALUE;
+    static final int MAX_TABLE_SIZE = 0x40000000;
+
+    /**
+     * The maximum factor by which nextLargeSize(int, int) lets tables grow beyond the table size appropriate for their
+     * element count.
+     */
+    static final int MAX_OVERSIZE_FACTOR = 8;
+
     static final int B4 = 0b0000_00001111; // 0x0f
     static final int B5 = 0b0000_00011111; // 0x1f
     static final int B6 = 0b0000_00111111; // 0x3f
@@ -32,20 +40,88 @@ abstract class Hashing {
     static final int B15 = 0b1111111_11111111; // 0x7fff
     static final int B16 = 0b11111111_11111111; // 0xffff
 
+    /**
+     * Selects the default hash function of hashPositionForHash().
+     */
+    static final int DEFAULT_HASH_SEED = 0;
+
+    /**
+     * The seed used by builders if the default hash function leads to too much probing overhead. See
+     * hashPositionForHash(int, int, int).
+     */
+    static final int ALTERNATIVE_HASH_SEED = 0x7f4a7c15;
+
     static int hashPosition(int tableSize, Object e) {
+        return hashPositionForHash(tableSize, hash(e));
+    }
+
+    static int hash(Object e) {
         if (e == null) {
             throw new IllegalArgumentException("null values are not supported");
         }
 
-        int hash = e.hashCode();
+        return e.hashCode();
+    }
 
+    /**
+     * Like hash(Object), but uses the given HashingStrategy instead of hashCode() if it is not null.
+     */
+    @SuppressWarnings("unchecked")
+    static <E> int hash(Object e, HashingStrategy<E> hashingStrategy) {
+        if (hashingStrategy == null) {
+            return hash(e);
+        } else if (e == null) {
+            throw new IllegalArgumentException("null values are not supported");
+        }
+
+        return hashingStrategy.computeHashCode((E) e);
+    }
+
+    /**
+     * Compares an element of a table with the given object using the given HashingStrategy. An object of an
+     * incompatible type causes a ClassCastException, like it does for java.util.TreeSet.
+     */
+    @SuppressWarnings("unchecked")
+    static <E> boolean isEqual(HashingStrategy<E> hashingStrategy, Object candidate, Object e) {
+        return hashingStrategy.equals((E) candidate, (E) e);
+    }
+
+    /**
+     * Calculates the hash position for an object with the given hashCode().
+     */
+    static int hashPositionForHash(int tableSize, int hash) {
+        return hashPositionForScrambledHash(tableSize, scrambleForTableSize(tableSize, hash));
+    }
+
+    /**
+     * Applies the part of hashPositionForHash(int, int) which does not depend on the exact table size, except for
+     * the distinction between small and big tables. The result can be passed to hashPositionForScrambledHash().
+     */
+    static int scrambleForTableSize(int tableSize, int hash) {
+        if (isSmallTableSize(tableSize)) {
+            return scramble(hash);
+        } else {
+            return scramble2(scramble(hash));
+        }
+    }
+
+    /**
+     * Returns true for the table sizes for which hashPositionForHash(int, int) only applies scramble(). All other
+     * table sizes use scramble2(scramble()).
+     */
+    static boolean isSmallTableSize(int tableSize) {
+        return tableSize == 0x10 || tableSize == 0x40 || tableSize == 0x100;
+    }
+
+    /**
+     * Calculates the hash position from a hash that has been already processed by scrambleForTableSize().
+     */
+    static int hashPositionForScrambledHash(int tableSize, int hash) {
         switch (tableSize) {
             case 0x10: // 16
-                hash = scramble(hash);
                 int h8 = hashTo8bit(hash);
                 return (h8 & B4) ^ (h8 >> 4 & B4);
             case 0x40: // 64
-                hash = scramble(hash);
                 return (hash & B6)
                         ^ (hash >> 6 & B6)
                         ^ (hash >> 12 & B6)
@@ -53,39 +129,53 @@ abstract class Hashing {
                         ^ (hash >> 24 & B4)
                         ^ (hash >> 28 & B4);
             case 0x100: // 256
-                hash = scramble(hash);
                 return hashTo8bit(hash);
             case 0x200: // 512
-                hash = scramble2(scramble(hash));
                 return (hash & B9) ^ (hash >> 9 & B7) ^ (hash >> 16 & B9) ^ (hash >> 25 & B7);
             case 0x400: // 1024
-                hash = scramble2(scramble(hash));
                 return (hash & B10) ^ (hash >> 10 & B6) ^ (hash >> 16 & B10) ^ (hash >> 26 & B6);
             case 0x800: // 2048
-                hash = scramble2(scramble(hash));
                 return (hash & B11) ^ (hash >> 11 & B10) ^ (hash >> 21 & B11);
             case 0x1000: // 4096
-                hash = scramble2(scramble(hash));
                 return (hash & B12) ^ (hash >> 12 & B8) ^ (hash >> 20 & B12);
             case 0x2000: // 8k
-                hash = scramble2(scramble(hash));
                 return (hash & B13) ^ (hash >> 13 & B6) ^ (hash >> 19 & B13);
             case 0x4000: // 16k
-                hash = scramble2(scramble(hash));
                 return (hash & B14) ^ (hash >> 14 & B4) ^ (hash >> 18 & B14);
             case 0x8000: // 32k
-                hash = scramble2(scramble(hash));
                 return (hash & B15) ^ (hash >> 15 & B8) ^ (hash >> 23 & B9);
             case 0x10000: // 64k
-                hash = scramble2(scramble(hash));
                 return (hash & B16) ^ (hash >> 16 & B16);
             default:
-                hash = scramble2(scramble(hash));
                 assert (tableSize & (tableSize - 1)) == 0 : "tableSize must be a power of two";
                 return hash & (tableSize - 1);
         }
     }
 
+    /**
+     * Like hashPositionForHash(int, int), but supports alternative hash functions. A hashSeed of DEFAULT_HASH_SEED
+     * selects the default hash function. Any other value selects a seeded variant of the murmur3 finalizer, in which
+     * every bit of the hash influences every bit of the result. This is more expensive, but copes better with hash
+     * codes that differ only in few bits, as produced by strings with long common prefixes or by sequential numbers.
+     */
+    static int hashPositionForHash(int tableSize, int hash, int hashSeed) {
+        if (hashSeed == DEFAULT_HASH_SEED) {
+            return hashPositionForHash(tableSize, hash);
+        }
+
+        int h = (hash ^ hashSeed) * 0x9e3779b9;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h & (tableSize - 1);
+    }
+
+    static int hashPosition(int tableSize, Object e, int hashSeed) {
+        return hashPositionForHash(tableSize, hash(e), hashSeed);
+    }
+
     static int hashTo8bit(int hash) {
         return (hash & B8) ^ (hash >> 8 & B8) ^ (hash >> 16 & B8) ^ (hash >> 24 & B8);
     }
@@ -144,6 +234,29 @@ abstract class Hashing {
         }
     }
 
+    /**
+     * Like hashTableSize(), but also supports element counts above 180,000. The table sizes for these are
+     * arbitrary powers of two; the load factor stays at the one used for the 0x40000 table size.
+     * <p>
+     * Returns -1 if the element count exceeds the maximum table size. The returned table sizes for big element counts
+     * are only suitable for data structures that are not limited to 16 bit indices.
+     */
+    static int largeHashTableSize(int elementCount) {
+        int tableSize = hashTableSize(elementCount);
+
+        if (tableSize != -1) {
+            return tableSize;
+        }
+
+        long minTableSize = (long) elementCount * 16 / 11 + 1;
+
+        if (minTableSize > MAX_TABLE_SIZE) {
+            return -1;
+        }
+
+        return Integer.highestOneBit((int) minTableSize - 1) << 1;
+    }
+
     static int nextSize(int tableSize) {
         switch (tableSize) {
             case 0x10:
@@ -163,6 +276,45 @@ abstract class Hashing {
         }
     }
 
+    /**
+     * Like nextSize(), but continues to grow beyond 0x40000 up to MAX_TABLE_SIZE.
+     */
+    static int nextLargeSize(int tableSize) {
+        int nextSize = nextSize(tableSize);
+
+        if (nextSize != -1) {
+            return nextSize;
+        } else if (tableSize < MAX_TABLE_SIZE) {
+            return tableSize * 2;
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * Like nextLargeSize(int), but returns -1 if the next table size would exceed the table size appropriate for the
+     * given element count, as returned by largeHashTableSize(), by more than MAX_OVERSIZE_FACTOR. Growing a table does
+     * not help against elements with identical hash codes; without this limit, such elements would make builders grow
+     * their tables up to MAX_TABLE_SIZE. Table sizes returned by nextSize() are always permitted.
+     */
+    static int nextLargeSize(int tableSize, int elementCount) {
+        int nextSize = nextSize(tableSize);
+
+        if (nextSize != -1) {
+            return nextSize;
+        }
+
+        int appropriateTableSize = largeHashTableSize(elementCount);
+
+        if (appropriateTableSize == -1
+                || tableSize >= MAX_TABLE_SIZE
+                || (long) tableSize * 2 > (long) appropriateTableSize * MAX_OVERSIZE_FACTOR) {
+            return -1;
+        } else {
+            return tableSize * 2;
+        }
+    }
+
     static short maxProbingDistance(int tableSize) {
         if (tableSize <= 0x10) {
             return 8;
@@ -202,4 +354,151 @@ abstract class Hashing {
 
         return NO_SPACE;
     }
+
+    /**
+     * Like checkTable(), but uses a table of cached hashCode() values of the elements in the table. This way, equals()
+     * only needs to be called for elements with matching hash codes.
+     */
+    static <E> int checkTable(E[] table, int[] hashes, Object e, int hash, int hashPosition, short maxProbingDistance) {
+        return checkTable(table, hashes, null, e, hash, hashPosition, maxProbingDistance);
+    }
+
+    /**
+     * Like checkTable() with cached hashCode() values, but compares the elements using the given HashingStrategy if it
+     * is not null. In this case, the hashes array must hold the hash codes computed by the HashingStrategy.
+     */
+    static <E> int checkTable(
+            E[] table,
+            int[] hashes,
+            HashingStrategy<? super E> hashingStrategy,
+            Object e,
+            int hash,
+            int hashPosition,
+            short maxProbingDistance) {
+        int max = hashPosition + maxProbingDistance;
+
+        for (int i = hashPosition; i <= max; i++) {
+            E candidate = table[i];
+
+            if (candidate == null) {
+                return i;
+            } else if (hashes[i] == hash
+                    && (hashingStrategy == null ? candidate.equals(e) : isEqual(hashingStrategy, candidate, e))) {
+                return -1 - i;
+            }
+        }
+
+        return NO_SPACE;
+    }
+
+    /**
+     * Robin Hood variant of checkTable(): The elements of a cluster are kept ordered by their hash positions. This
+     * keeps the maximum distance between the hash position of an element and its actual position low. For each
+     * slot, the displacements array holds this distance.
+     * <p>
+     * Returns NO_SPACE if the element cannot be inserted. If it returns a value < 0, the element is contained at
+     * the position -returnValue - 1. If it returns a value >= 0, the element is not contained and must be inserted at
+     * the given position. If that position is occupied, robinHoodShift() must be called before to make room. This
+     * method makes sure that such a shift does not move any element beyond its maxProbingDistance.
+     * <p>
+     * The hashes array is optional. If present, it is used to avoid equals() calls.
+     */
+    static <E> int checkTableRobinHood(
+            E[] table,
+            short[] displacements,
+            int[] hashes,
+            Object e,
+            int hash,
+            int hashPosition,
+            short maxProbingDistance) {
+        return checkTableRobinHood(table, displacements, hashes, null, e, hash, hashPosition, maxProbingDistance);
+    }
+
+    /**
+     * Like checkTableRobinHood(), but compares the elements using the given HashingStrategy if it is not null. In this
+     * case, the hashes array is mandatory.
+     */
+    static <E> int checkTableRobinHood(
+            E[] table,
+            short[] displacements,
+            int[] hashes,
+            HashingStrategy<? super E> hashingStrategy,
+            Object e,
+            int hash,
+            int hashPosition,
+            short maxProbingDistance) {
+        int max = hashPosition + maxProbingDistance;
+
+        for (int i = hashPosition; i <= max; i++) {
+            E candidate = table[i];
+
+            if (candidate == null) {
+                return i;
+            }
+
+            int displacement = i - hashPosition;
+
+            if (displacements[i] < displacement) {
+                // The candidate has a bigger hash position than e. As the cluster is ordered, e is not contained.
+                return canShift(table, displacements, i, maxProbingDistance) ? i : NO_SPACE;
+            } else if (displacements[i] == displacement
+                    && (hashes == null || hashes[i] == hash)
+                    && (hashingStrategy == null ? candidate.equals(e) : isEqual(hashingStrategy, candidate, e))) {
+                return -1 - i;
+            }
+        }
+
+        return NO_SPACE;
+    }
+
+    /**
+     * Moves the elements from the given position up to the next free slot one slot to the right and increments
+     * their displacements. Returns the position of the formerly free slot. Parallel arrays, such as values or indices,
+     * must be moved by the caller; use System.arraycopy(array, position, array, position + 1, result - position).
+     */
+    static int robinHoodShift(Object[] table, short[] displacements, int position) {
+        int free = position;
+
+        while (table[free] != null) {
+            free++;
+        }
+
+        if (free != position) {
+            System.arraycopy(table, position, table, position + 1, free - position);
+
+            for (int i = free; i > position; i--) {
+                displacements[i] = (short) (displacements[i - 1] + 1);
+            }
+        }
+
+        return free;
+    }
+
+    /**
+     * Returns the biggest value in the given displacements array. Hash tables can use this as a tight bound for
+     * probing, which lets unsuccessful lookups terminate early.
+     */
+    static short maxDisplacement(short[] displacements) {
+        short result = 0;
+
+        for (int i = 0; i < displacements.length; i++) {
+            if (displacements[i] > result) {
+                result = displacements[i];
+            }
+        }
+
+        return result;
+    }
+
+    private static boolean canShift(Object[] table, short[] displacements, int position, short maxProbingDistance) {
+        for (int i = position; i < table.length; i++) {
+            if (table[i] == null) {
+                return true;
+            } else if (displacements[i] >= maxProbingDistance) {
+                return false;
+            }
+        }
+
+        return false;
+    }
 }
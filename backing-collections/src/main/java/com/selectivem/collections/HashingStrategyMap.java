@@ -0,0 +1,167 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A HashMap which compares its keys using a HashingStrategy. Internally, each key is wrapped into a Key object whose
+ * hashCode() and equals() methods delegate to the strategy.
+ * <p>
+ * This is used by the fallback implementations ImmutableMapImpl.MapBackedMap and IndexedImmutableSetImpl.SetBackedSet,
+ * which are used instead of hash arrays for very big collections and for keys with many identical hash codes. Like
+ * the collections built with a HashingStrategy, equals() and hashCode() of this map follow the contract of
+ * java.util.Map and are thus based on the equals() and hashCode() methods of the keys.
+ */
+final class HashingStrategyMap<K, V> extends AbstractMap<K, V> {
+    private final HashMap<Key<K>, V> delegate;
+    private final HashingStrategy<? super K> hashingStrategy;
+    private Set<Entry<K, V>> entrySet;
+
+    HashingStrategyMap(int expectedCapacity, HashingStrategy<? super K> hashingStrategy) {
+        this.delegate = new HashMap<>(expectedCapacity);
+        this.hashingStrategy = hashingStrategy;
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key != null && delegate.containsKey(key(key));
+    }
+
+    @Override
+    public V get(Object key) {
+        return key != null ? delegate.get(key(key)) : null;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return delegate.put(key(key), value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key != null ? delegate.remove(key(key)) : null;
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        Set<Entry<K, V>> result = this.entrySet;
+
+        if (result == null) {
+            this.entrySet = result = new AbstractSet<Entry<K, V>>() {
+                @Override
+                public int size() {
+                    return delegate.size();
+                }
+
+                @Override
+                public boolean contains(Object o) {
+                    if (!(o instanceof Entry)) {
+                        return false;
+                    }
+
+                    Entry<?, ?> entry = (Entry<?, ?>) o;
+
+                    if (entry.getKey() == null) {
+                        return false;
+                    }
+
+                    Key<K> key = key(entry.getKey());
+                    V value = delegate.get(key);
+                    return Objects.equals(value, entry.getValue()) && (value != null || delegate.containsKey(key));
+                }
+
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    Iterator<Entry<Key<K>, V>> delegateIterator =
+                            delegate.entrySet().iterator();
+
+                    return new Iterator<Entry<K, V>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return delegateIterator.hasNext();
+                        }
+
+                        @Override
+                        public Entry<K, V> next() {
+                            Entry<Key<K>, V> entry = delegateIterator.next();
+                            return new AbstractMap.SimpleImmutableEntry<>(entry.getKey().element, entry.getValue());
+                        }
+
+                        @Override
+                        public void remove() {
+                            delegateIterator.remove();
+                        }
+                    };
+                }
+            };
+        }
+
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Key<K> key(Object key) {
+        return new Key<>((K) key, Hashing.hash(key, hashingStrategy), hashingStrategy);
+    }
+
+    private static final class Key<K> {
+        private final K element;
+        private final int hash;
+        private final HashingStrategy<? super K> hashingStrategy;
+
+        Key(K element, int hash, HashingStrategy<? super K> hashingStrategy) {
+            this.element = element;
+            this.hash = hash;
+            this.hashingStrategy = hashingStrategy;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key<?> other = (Key<?>) o;
+            return this.hash == other.hash && Hashing.isEqual(hashingStrategy, this.element, other.element);
+        }
+    }
+}
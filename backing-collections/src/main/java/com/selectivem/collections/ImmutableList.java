@@ -0,0 +1,138 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.Collection;
+
+/**
+ * An immutable list implementation which stores its elements in an array of exactly the required size. Lists with up
+ * to two elements are represented by dedicated classes without any array. Sub-lists are views which share the array
+ * of the list they were created from; no elements are copied.
+ * <p>
+ * In contrast to java.util.List.of(), ImmutableList instances can contain null elements.
+ *
+ * @author Nils Bandener
+ */
+public interface ImmutableList<E> extends UnmodifiableList<E> {
+
+    /**
+     * Returns an empty ImmutableList instance.
+     */
+    static <E> ImmutableList<E> empty() {
+        return ImmutableListImpl.empty();
+    }
+
+    /**
+     * Creates an ImmutableList with the given element.
+     */
+    static <E> ImmutableList<E> of(E e1) {
+        return ImmutableListImpl.of(e1);
+    }
+
+    /**
+     * Creates an ImmutableList with the given elements.
+     */
+    static <E> ImmutableList<E> of(E e1, E e2) {
+        return ImmutableListImpl.of(e1, e2);
+    }
+
+    /**
+     * Creates an ImmutableList with the elements from the given collection, in its iteration order. If the given
+     * collection is already an immutable list created by this library, it will be returned as is.
+     */
+    static <E> ImmutableList<E> copyOf(Collection<? extends E> elements) {
+        return ImmutableListImpl.copyOf(elements);
+    }
+
+    /**
+     * Returns a builder for an ImmutableList.
+     */
+    static <E> Builder<E> builder() {
+        return new Builder<>(0);
+    }
+
+    /**
+     * Returns a builder for an ImmutableList. The expected size is used to pre-size the internal array; the builder
+     * will grow beyond it if necessary. The built list will be trimmed to the actual size in any case.
+     */
+    static <E> Builder<E> builder(int expectedSize) {
+        return new Builder<>(expectedSize);
+    }
+
+    /**
+     * Returns a view of the portion of this list between fromIndex, inclusive, and toIndex, exclusive. The view shares
+     * the elements with this list.
+     */
+    @Override
+    ImmutableList<E> subList(int fromIndex, int toIndex);
+
+    /**
+     * A builder for ImmutableList instances. A builder instance can only be used to build one list.
+     */
+    final class Builder<E> {
+        private ImmutableListImpl.InternalBuilder<E> internalBuilder;
+
+        Builder(int expectedSize) {
+            this.internalBuilder = new ImmutableListImpl.InternalBuilder<>(expectedSize);
+        }
+
+        /**
+         * Appends the given element to the list to be built.
+         *
+         * @throws IllegalStateException if build() was already called.
+         */
+        public Builder<E> add(E e) {
+            checkState().with(e);
+            return this;
+        }
+
+        /**
+         * Appends all elements of the given collection to the list to be built.
+         *
+         * @throws IllegalStateException if build() was already called.
+         */
+        public Builder<E> addAll(Collection<? extends E> elements) {
+            checkState().with(elements);
+            return this;
+        }
+
+        /**
+         * Returns the number of elements added so far.
+         */
+        public int size() {
+            return checkState().size();
+        }
+
+        /**
+         * Builds the list. Afterwards, this builder cannot be used any more.
+         *
+         * @throws IllegalStateException if build() was already called.
+         */
+        public ImmutableList<E> build() {
+            ImmutableListImpl.InternalBuilder<E> internalBuilder = checkState();
+            this.internalBuilder = null;
+            return internalBuilder.build();
+        }
+
+        private ImmutableListImpl.InternalBuilder<E> checkState() {
+            if (this.internalBuilder == null) {
+                throw new IllegalStateException("The list was already built");
+            }
+
+            return this.internalBuilder;
+        }
+    }
+}
@@ -0,0 +1,516 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+abstract class ImmutableListImpl<E> extends UnmodifiableListImpl<E> implements ImmutableList<E> {
+
+    @SuppressWarnings("unchecked")
+    static <E> ImmutableListImpl<E> empty() {
+        return (ImmutableListImpl<E>) EMPTY;
+    }
+
+    static <E> ImmutableListImpl<E> of(E e1) {
+        return new OneElementList<>(e1);
+    }
+
+    static <E> ImmutableListImpl<E> of(E e1, E e2) {
+        return new TwoElementList<>(e1, e2);
+    }
+
+    /**
+     * Creates an ImmutableListImpl with the elements of the given collection. Lists with up to two elements are
+     * represented by dedicated classes; bigger lists use an exactly sized ArrayBackedList.
+     */
+    @SuppressWarnings("unchecked")
+    static <E> ImmutableListImpl<E> copyOf(Collection<? extends E> elements) {
+        if (elements instanceof ImmutableListImpl) {
+            return (ImmutableListImpl<E>) elements;
+        }
+
+        return ofArray(elements.toArray(), elements.size());
+    }
+
+    /**
+     * Creates an ImmutableListImpl with the first size elements of the given array. The array is used without copying
+     * if it has exactly the given size; the caller must not modify it afterwards.
+     */
+    @SuppressWarnings("unchecked")
+    static <E> ImmutableListImpl<E> ofArray(Object[] elements, int size) {
+        if (size == 0) {
+            return empty();
+        } else if (size == 1) {
+            return new OneElementList<>((E) elements[0]);
+        } else if (size == 2) {
+            return new TwoElementList<>((E) elements[0], (E) elements[1]);
+        } else if (elements.length == size) {
+            return new ArrayBackedList<>(elements, 0, size);
+        } else {
+            return new ArrayBackedList<>(Arrays.copyOf(elements, size), 0, size);
+        }
+    }
+
+    @Override
+    public abstract ImmutableListImpl<E> subList(int fromIndex, int toIndex);
+
+    static void checkSubListRange(int fromIndex, int toIndex, int size) {
+        if (fromIndex < 0) {
+            throw new IndexOutOfBoundsException("fromIndex = " + fromIndex);
+        } else if (toIndex > size) {
+            throw new IndexOutOfBoundsException("toIndex = " + toIndex);
+        } else if (fromIndex > toIndex) {
+            throw new IllegalArgumentException("fromIndex(" + fromIndex + ") > toIndex(" + toIndex + ")");
+        }
+    }
+
+    static IndexOutOfBoundsException indexOutOfBounds(int index, int size) {
+        return new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    static class OneElementList<E> extends ImmutableListImpl<E> {
+        private final E element;
+
+        OneElementList(E element) {
+            this.element = element;
+        }
+
+        @Override
+        public E get(int index) {
+            if (index == 0) {
+                return element;
+            } else {
+                throw indexOutOfBounds(index, 1);
+            }
+        }
+
+        @Override
+        public int size() {
+            return 1;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return Objects.equals(element, o);
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            return Objects.equals(element, o) ? 0 : -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            return indexOf(o);
+        }
+
+        @Override
+        public ImmutableListImpl<E> subList(int fromIndex, int toIndex) {
+            checkSubListRange(fromIndex, toIndex, 1);
+            return fromIndex == toIndex ? empty() : this;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new Iterator<E>() {
+                private int i = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return i < 1;
+                }
+
+                @Override
+                public E next() {
+                    if (i == 0) {
+                        i++;
+                        return element;
+                    } else {
+                        throw new NoSuchElementException();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void forEach(Consumer<? super E> action) {
+            action.accept(element);
+        }
+
+        @Override
+        public Object[] toArray() {
+            return new Object[] {element};
+        }
+    }
+
+    static class TwoElementList<E> extends ImmutableListImpl<E> {
+        private final E e1;
+        private final E e2;
+
+        TwoElementList(E e1, E e2) {
+            this.e1 = e1;
+            this.e2 = e2;
+        }
+
+        @Override
+        public E get(int index) {
+            if (index == 0) {
+                return e1;
+            } else if (index == 1) {
+                return e2;
+            } else {
+                throw indexOutOfBounds(index, 2);
+            }
+        }
+
+        @Override
+        public int size() {
+            return 2;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return Objects.equals(e1, o) || Objects.equals(e2, o);
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            if (Objects.equals(e1, o)) {
+                return 0;
+            } else if (Objects.equals(e2, o)) {
+                return 1;
+            } else {
+                return -1;
+            }
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            if (Objects.equals(e2, o)) {
+                return 1;
+            } else if (Objects.equals(e1, o)) {
+                return 0;
+            } else {
+                return -1;
+            }
+        }
+
+        @Override
+        public ImmutableListImpl<E> subList(int fromIndex, int toIndex) {
+            checkSubListRange(fromIndex, toIndex, 2);
+
+            switch (toIndex - fromIndex) {
+                case 0:
+                    return empty();
+                case 1:
+                    return new OneElementList<>(fromIndex == 0 ? e1 : e2);
+                default:
+                    return this;
+            }
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new Iterator<E>() {
+                private int i = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return i < 2;
+                }
+
+                @Override
+                public E next() {
+                    if (i == 0) {
+                        i++;
+                        return e1;
+                    } else if (i == 1) {
+                        i++;
+                        return e2;
+                    } else {
+                        throw new NoSuchElementException();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void forEach(Consumer<? super E> action) {
+            action.accept(e1);
+            action.accept(e2);
+        }
+
+        @Override
+        public Object[] toArray() {
+            return new Object[] {e1, e2};
+        }
+    }
+
+    /**
+     * A list backed by a range of an array. Sub-lists share the array with the list they were created from.
+     */
+    static class ArrayBackedList<E> extends ImmutableListImpl<E> {
+        private final Object[] elements;
+        private final int offset;
+        private final int size;
+
+        ArrayBackedList(Object[] elements, int offset, int size) {
+            this.elements = elements;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public E get(int index) {
+            if (index < 0 || index >= size) {
+                throw indexOutOfBounds(index, size);
+            }
+
+            return (E) elements[offset + index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return indexOf(o) != -1;
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            for (int i = 0; i < size; i++) {
+                if (Objects.equals(elements[offset + i], o)) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (Objects.equals(elements[offset + i], o)) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        @Override
+        public ImmutableListImpl<E> subList(int fromIndex, int toIndex) {
+            checkSubListRange(fromIndex, toIndex, size);
+
+            if (fromIndex == toIndex) {
+                return empty();
+            } else if (fromIndex == 0 && toIndex == size) {
+                return this;
+            } else {
+                return new ArrayBackedList<>(elements, offset + fromIndex, toIndex - fromIndex);
+            }
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new Iterator<E>() {
+                private int i = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return i < size;
+                }
+
+                @SuppressWarnings("unchecked")
+                @Override
+                public E next() {
+                    if (i >= size) {
+                        throw new NoSuchElementException();
+                    }
+
+                    return (E) elements[offset + i++];
+                }
+            };
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void forEach(Consumer<? super E> action) {
+            for (int i = offset; i < offset + size; i++) {
+                action.accept((E) elements[i]);
+            }
+        }
+
+        @Override
+        public Spliterator<E> spliterator() {
+            return Spliterators.spliterator(
+                    elements, offset, offset + size, Spliterator.ORDERED | Spliterator.IMMUTABLE);
+        }
+
+        @Override
+        public Object[] toArray() {
+            return Arrays.copyOfRange(elements, offset, offset + size);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T> T[] toArray(T[] a) {
+            if (a.length < size) {
+                a = (T[]) Array.newInstance(a.getClass().getComponentType(), size);
+            }
+
+            System.arraycopy(elements, offset, a, 0, size);
+
+            if (a.length > size) {
+                a[size] = null;
+            }
+
+            return a;
+        }
+    }
+
+    /**
+     * Collects elements into an array which is trimmed to the exact size on build().
+     */
+    static final class InternalBuilder<E> {
+        private Object[] elements;
+        private int size;
+
+        InternalBuilder(int expectedSize) {
+            this.elements = new Object[Math.max(expectedSize, 4)];
+        }
+
+        InternalBuilder<E> with(E e) {
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, newCapacity(size + 1));
+            }
+
+            elements[size++] = e;
+            return this;
+        }
+
+        InternalBuilder<E> with(Collection<? extends E> collection) {
+            int collectionSize = collection.size();
+
+            if (size + collectionSize > elements.length) {
+                elements = Arrays.copyOf(elements, newCapacity(size + collectionSize));
+            }
+
+            for (E e : collection) {
+                with(e);
+            }
+
+            return this;
+        }
+
+        int size() {
+            return size;
+        }
+
+        ImmutableListImpl<E> build() {
+            return ofArray(elements, size);
+        }
+
+        private int newCapacity(int minCapacity) {
+            int newCapacity = elements.length + (elements.length >> 1);
+
+            if (newCapacity < minCapacity || newCapacity < 0) {
+                newCapacity = minCapacity;
+            }
+
+            return newCapacity;
+        }
+    }
+
+    private static final ImmutableListImpl<Object> EMPTY = new ImmutableListImpl<Object>() {
+        @Override
+        public Object get(int index) {
+            throw indexOutOfBounds(index, 0);
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return true;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return false;
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            return -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            return -1;
+        }
+
+        @Override
+        public ImmutableListImpl<Object> subList(int fromIndex, int toIndex) {
+            checkSubListRange(fromIndex, toIndex, 0);
+            return this;
+        }
+
+        @Override
+        public Iterator<Object> iterator() {
+            return Collections.emptyIterator();
+        }
+
+        @Override
+        public void forEach(Consumer<? super Object> action) {}
+
+        @Override
+        public Object[] toArray() {
+            return new Object[0];
+        }
+    };
+}
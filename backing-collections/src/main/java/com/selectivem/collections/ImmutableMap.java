@@ -0,0 +1,236 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * An immutable map implementation which stores its keys and values in open addressing hash tables. In contrast to
+ * HashMap, there are no node objects per entry. Maps with one or two entries are represented by dedicated classes
+ * without any hash table.
+ * <p>
+ * Approximate heap footprint, not counting keys and values, on a 64 bit JVM with compressed references:
+ * <pre>
+ * entries | ImmutableMap | HashMap   | Map.copyOf (Java 10+)
+ *       1 |     32 bytes | 112 bytes |  24 bytes
+ *      10 |    288 bytes | 448 bytes | 200 bytes
+ *      45 |    704 bytes |  1.7 kB   | 760 bytes
+ *    1000 |     16.6 kB  |  40.3 kB  |  16.0 kB
+ * </pre>
+ * Thus, an ImmutableMap takes between 40% and 60% of the heap of a HashMap with the same content. This is on par
+ * with the immutable maps of Java 10 and newer, which are not available on Java 8.
+ * <p>
+ * ImmutableMap instances cannot contain null keys. Null values are supported.
+ *
+ * @author Nils Bandener
+ */
+public interface ImmutableMap<K, V> extends UnmodifiableMap<K, V> {
+
+    /**
+     * Returns an empty ImmutableMap instance.
+     */
+    static <K, V> ImmutableMap<K, V> empty() {
+        return ImmutableMapImpl.empty();
+    }
+
+    /**
+     * Creates an ImmutableMap with the given entry.
+     *
+     * @throws IllegalArgumentException if the key is null.
+     */
+    static <K, V> ImmutableMap<K, V> of(K k1, V v1) {
+        if (k1 == null) {
+            throw new IllegalArgumentException("Null keys are not supported");
+        }
+
+        return ImmutableMapImpl.of(k1, v1);
+    }
+
+    /**
+     * Creates an ImmutableMap with the given entries.
+     *
+     * @throws IllegalArgumentException if a key is null or if the keys are equal.
+     */
+    static <K, V> ImmutableMap<K, V> of(K k1, V v1, K k2, V v2) {
+        if (k1 == null || k2 == null) {
+            throw new IllegalArgumentException("Null keys are not supported");
+        }
+
+        if (k1.equals(k2)) {
+            throw new IllegalArgumentException("Duplicate key: " + k1);
+        }
+
+        return ImmutableMapImpl.of(k1, v1, k2, v2);
+    }
+
+    /**
+     * Creates an ImmutableMap with the entries from the given map. If the given map is already an immutable map created
+     * by this library, it will be returned as is.
+     *
+     * @throws IllegalArgumentException if the given map contains a null key.
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> ImmutableMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        if (map instanceof ImmutableMapImpl) {
+            return (ImmutableMap<K, V>) map;
+        }
+
+        int size = map.size();
+
+        if (size <= 2) {
+            // The hash table builders check for null keys by themselves; the small implementations do not
+            for (K key : map.keySet()) {
+                if (key == null) {
+                    throw new IllegalArgumentException("Null keys are not supported");
+                }
+            }
+        }
+
+        return ImmutableMapImpl.of((Map<K, V>) map);
+    }
+
+    /**
+     * Returns a builder for an ImmutableMap.
+     */
+    static <K, V> Builder<K, V> builder() {
+        return new Builder<>(0, null);
+    }
+
+    /**
+     * Returns a builder for an ImmutableMap. The expected size is used to pre-size the hash table; the builder
+     * will grow beyond it if necessary.
+     */
+    static <K, V> Builder<K, V> builder(int expectedSize) {
+        return new Builder<>(expectedSize, null);
+    }
+
+    /**
+     * Returns a builder for an ImmutableMap which uses the given HashingStrategy instead of the hashCode() and equals()
+     * methods of the keys. The built map uses the strategy for all lookups; the hash codes computed by the strategy are
+     * stored alongside the keys. See HashingStrategy for the effects on equals() and hashCode() of the map.
+     */
+    static <K, V> Builder<K, V> builder(HashingStrategy<? super K> hashingStrategy) {
+        if (hashingStrategy == null) {
+            throw new IllegalArgumentException("hashingStrategy must not be null");
+        }
+
+        return new Builder<>(0, hashingStrategy);
+    }
+
+    /**
+     * Returns the value for the key of the given LookupKey, or null if the key is not contained. This is equivalent to
+     * get(lookupKey.key()), but re-uses the hash precomputed by the LookupKey.
+     */
+    default V get(LookupKey<?> lookupKey) {
+        return get(lookupKey.key());
+    }
+
+    /**
+     * Returns true if the key of the given LookupKey is contained in this map. This is equivalent to
+     * containsKey(lookupKey.key()), but re-uses the hash precomputed by the LookupKey.
+     */
+    default boolean containsKey(LookupKey<?> lookupKey) {
+        return containsKey(lookupKey.key());
+    }
+
+    /**
+     * A builder for ImmutableMap instances. Putting a key which is already contained replaces the value. A builder
+     * instance can only be used to build one map.
+     */
+    final class Builder<K, V> {
+        private ImmutableMapImpl.InternalBuilder<K, V> internalBuilder;
+        private final boolean hasHashingStrategy;
+
+        Builder(int expectedSize, HashingStrategy<? super K> hashingStrategy) {
+            this.internalBuilder =
+                    ImmutableMapImpl.InternalBuilder.<K, V>create(expectedSize).hashingStrategy(hashingStrategy);
+            this.hasHashingStrategy = hashingStrategy != null;
+        }
+
+        /**
+         * Adds the given entry to the map to be built.
+         *
+         * @throws IllegalArgumentException if the key is null.
+         * @throws IllegalStateException if build() was already called.
+         */
+        public Builder<K, V> put(K key, V value) {
+            if (key == null) {
+                throw new IllegalArgumentException("Null keys are not supported");
+            }
+
+            this.internalBuilder = checkState().with(key, value);
+            return this;
+        }
+
+        /**
+         * Adds all entries of the given map to the map to be built.
+         *
+         * @throws IllegalArgumentException if the given map contains a null key.
+         * @throws IllegalStateException if build() was already called.
+         */
+        public Builder<K, V> putAll(Map<? extends K, ? extends V> map) {
+            for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+                put(entry.getKey(), entry.getValue());
+            }
+
+            return this;
+        }
+
+        /**
+         * Returns the number of entries added so far.
+         */
+        public int size() {
+            return checkState().size();
+        }
+
+        /**
+         * Builds the map. Afterwards, this builder cannot be used any more.
+         *
+         * @throws IllegalStateException if build() was already called.
+         */
+        public ImmutableMap<K, V> build() {
+            ImmutableMapImpl.InternalBuilder<K, V> internalBuilder = checkState();
+            this.internalBuilder = null;
+
+            int size = internalBuilder.size();
+
+            if (size == 0) {
+                return ImmutableMapImpl.empty();
+            } else if (size <= 2 && !this.hasHashingStrategy) {
+                Iterator<K> iter = internalBuilder.keySet().iterator();
+                K k1 = iter.next();
+
+                if (size == 1) {
+                    return ImmutableMapImpl.of(k1, internalBuilder.get(k1));
+                } else {
+                    K k2 = iter.next();
+                    return ImmutableMapImpl.of(k1, internalBuilder.get(k1), k2, internalBuilder.get(k2));
+                }
+            } else {
+                return internalBuilder.build();
+            }
+        }
+
+        private ImmutableMapImpl.InternalBuilder<K, V> checkState() {
+            if (this.internalBuilder == null) {
+                throw new IllegalStateException("The map was already built");
+            }
+
+            return this.internalBuilder;
+        }
+    }
+}
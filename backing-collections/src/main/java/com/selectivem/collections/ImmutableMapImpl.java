@@ -17,8 +17,6 @@
 package com.selectivem.collections;
 
 import java.util.AbstractMap;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -31,7 +29,7 @@ import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 
-abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
+abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> implements ImmutableMap<K, V> {
 
     @SuppressWarnings("unchecked")
     static <K, V> ImmutableMapImpl<K, V> empty() {
@@ -47,9 +45,17 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
     }
 
     static <K, V> ImmutableMapImpl<K, V> of(Map<K, V> map) {
+        return of(map, false);
+    }
+
+    /**
+     * Creates an ImmutableMapImpl for the given map. If cacheHashCodes is true, hash table based implementations will
+     * store the hashCode() of each key alongside the key. See InternalBuilder.cacheHashCodes().
+     */
+    static <K, V> ImmutableMapImpl<K, V> of(Map<K, V> map, boolean cacheHashCodes) {
         int size = map.size();
 
-        if (map instanceof ImmutableMapImpl) {
+        if (map instanceof ImmutableMapImpl && !cacheHashCodes) {
             return (ImmutableMapImpl<K, V>) map;
         } else if (size == 0) {
             return empty();
@@ -62,10 +68,12 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
             Map.Entry<K, V> entry2 = iter.next();
             return new TwoElementMap<>(entry1.getKey(), entry1.getValue(), entry2.getKey(), entry2.getValue());
         } else {
-            int tableSize = Hashing.hashTableSize(size);
+            int tableSize = Hashing.largeHashTableSize(size);
 
             if (tableSize != -1) {
-                return new HashArrayBackedMap.Builder<K, V>(tableSize).with(map).build();
+                HashArrayBackedMap.Builder<K, V> builder = new HashArrayBackedMap.Builder<K, V>(tableSize);
+                builder.cacheHashCodes(cacheHashCodes);
+                return builder.with(map).build();
             } else {
                 return new MapBackedMap<K, V>(new HashMap<K, V>(map));
             }
@@ -74,6 +82,14 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
 
     abstract int getEstimatedByteSize();
 
+    /**
+     * Returns the hash code of this map if it was already computed and cached, or 0 otherwise. equals() uses this to
+     * reject unequal maps early without computing any hash codes.
+     */
+    int cachedHashCode() {
+        return 0;
+    }
+
     static class SingleElementMap<K, V> extends ImmutableMapImpl<K, V> {
         private final K key;
         private final V value;
@@ -127,7 +143,7 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
         @Override
         public Collection<V> values() {
             if (values == null) {
-                values = ImmutableSetImpl.of(this.value);
+                values = ImmutableListImpl.of(this.value);
             }
 
             return values;
@@ -158,6 +174,26 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
             return Objects.equals(key, entry.getKey()) && Objects.equals(value, entry.getValue());
         }
 
+        @Override
+        public MapCursor<K, V> cursor() {
+            return new ArrayMapCursor<K, V>(1) {
+                @Override
+                boolean isOccupied(int slot) {
+                    return true;
+                }
+
+                @Override
+                K keyAt(int slot) {
+                    return key;
+                }
+
+                @Override
+                V valueAt(int slot) {
+                    return value;
+                }
+            };
+        }
+
         @Override
         int getEstimatedByteSize() {
             return 48;
@@ -223,7 +259,7 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
         @Override
         public Collection<V> values() {
             if (values == null) {
-                values = Collections.unmodifiableList(Arrays.asList(this.value1, this.value2));
+                values = ImmutableListImpl.of(this.value1, this.value2);
             }
 
             return values;
@@ -253,6 +289,26 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
             return Objects.equals(value1, otherMap.get(key1)) && Objects.equals(value2, otherMap.get(key2));
         }
 
+        @Override
+        public MapCursor<K, V> cursor() {
+            return new ArrayMapCursor<K, V>(2) {
+                @Override
+                boolean isOccupied(int slot) {
+                    return true;
+                }
+
+                @Override
+                K keyAt(int slot) {
+                    return slot == 0 ? key1 : key2;
+                }
+
+                @Override
+                V valueAt(int slot) {
+                    return slot == 0 ? value1 : value2;
+                }
+            };
+        }
+
         @Override
         int getEstimatedByteSize() {
             return 64;
@@ -263,20 +319,61 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
 
         final int tableSize;
         final int size;
+
+        /**
+         * The maximum distance between the hash position of a key and its actual position in the table. As the
+         * builder uses Robin Hood insertion, this is usually much lower than Hashing.maxProbingDistance().
+         */
         final short maxProbingDistance;
 
         private final K[] keyTable;
         private final V[] valueTable;
 
+        /**
+         * Optional: The hashCode() values of the keys in keyTable. If this is non-null, equals() will be only
+         * called for keys with matching hash codes.
+         */
+        private final int[] hashes;
+
+        /**
+         * Selects the hash function; see Hashing.hashPositionForHash(int, int, int).
+         */
+        private final int hashSeed;
+
+        /**
+         * Optional: Replaces hashCode() and equals() of the keys. If this is non-null, hashes is also non-null and holds
+         * the hash codes computed by the strategy.
+         */
+        private final HashingStrategy<? super K> hashingStrategy;
+
         private List<V> valuesCollection;
+        private Set<K> keySet;
+        private Set<Entry<K, V>> entrySet;
 
-        HashArrayBackedMap(int tableSize, int size, short maxProbingDistance, K[] keyTable, V[] valueTable) {
+        /**
+         * Lazily computed result of hashCode(); 0 if not yet computed.
+         */
+        private int hashCode;
+
+        HashArrayBackedMap(
+                int tableSize,
+                int size,
+                short maxProbingDistance,
+                K[] keyTable,
+                V[] valueTable,
+                int[] hashes,
+                int hashSeed,
+                HashingStrategy<? super K> hashingStrategy) {
             this.tableSize = tableSize;
             this.size = size;
             this.maxProbingDistance = maxProbingDistance;
             this.keyTable = keyTable;
             this.valueTable = valueTable;
+            this.hashes = hashes;
+            this.hashSeed = hashSeed;
+            this.hashingStrategy = hashingStrategy;
             assert size != 0;
+            assert hashingStrategy == null || hashes != null;
         }
 
         @Override
@@ -291,16 +388,12 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
 
         @Override
         public boolean containsKey(Object key) {
-            return containsKey(key, hashPosition(key));
-        }
-
-        boolean containsKey(Object key, int position) {
-            return checkTable(key, position) < 0;
+            return checkTable(key) < 0;
         }
 
         @Override
         public V get(Object key) {
-            int check = checkTable(key, hashPosition(key));
+            int check = checkTable(key);
 
             if (check < 0) {
                 int actualPosition = -check - 1;
@@ -311,46 +404,39 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
         }
 
         @Override
-        public Set<K> keySet() {
-            return new UnmodifiableSetImpl<K>() {
-                @Override
-                public int size() {
-                    return HashArrayBackedMap.this.size;
-                }
-
-                @Override
-                public boolean isEmpty() {
-                    return false;
-                }
+        public boolean containsKey(LookupKey<?> lookupKey) {
+            return checkTable(lookupKey) < 0;
+        }
 
-                @Override
-                public boolean contains(Object o) {
-                    return HashArrayBackedMap.this.containsKey(o);
-                }
+        @Override
+        public V get(LookupKey<?> lookupKey) {
+            int check = checkTable(lookupKey);
 
-                @Override
-                public Iterator<K> iterator() {
-                    return new Iterator<K>() {
-                        int current = findNextKey(0);
+            if (check < 0) {
+                int actualPosition = -check - 1;
+                return this.valueTable[actualPosition];
+            } else {
+                return null;
+            }
+        }
 
-                        @Override
-                        public boolean hasNext() {
-                            return current != -1;
-                        }
+        @Override
+        public Set<K> keySet() {
+            Set<K> result = this.keySet;
 
-                        @Override
-                        public K next() {
-                            if (current == -1) {
-                                throw new NoSuchElementException();
-                            }
+            if (result == null) {
+                // Shares the key table with this map
+                this.keySet = result = new ImmutableSetImpl.HashArrayBackedSet<>(
+                        this.tableSize,
+                        this.size,
+                        this.maxProbingDistance,
+                        this.keyTable,
+                        this.hashes,
+                        this.hashSeed,
+                        this.hashingStrategy);
+            }
 
-                            K key = HashArrayBackedMap.this.keyTable[current];
-                            current = findNextKey(current + 1);
-                            return key;
-                        }
-                    };
-                }
-            };
+            return result;
         }
 
         @Override
@@ -358,15 +444,16 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
             List<V> result = this.valuesCollection;
 
             if (result == null) {
-                ArrayList<V> list = new ArrayList<>(this.size);
+                Object[] values = new Object[this.size];
+                int k = 0;
 
                 for (int i = 0; i < this.keyTable.length; i++) {
                     if (this.keyTable[i] != null) {
-                        list.add(this.valueTable[i]);
+                        values[k++] = this.valueTable[i];
                     }
                 }
 
-                this.valuesCollection = result = Collections.unmodifiableList(list);
+                this.valuesCollection = result = ImmutableListImpl.ofArray(values, k);
             }
 
             return result;
@@ -374,6 +461,36 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
 
         @Override
         public Set<Entry<K, V>> entrySet() {
+            Set<Entry<K, V>> result = this.entrySet;
+
+            if (result == null) {
+                this.entrySet = result = createEntrySet();
+            }
+
+            return result;
+        }
+
+        @Override
+        public MapCursor<K, V> cursor() {
+            return new ArrayMapCursor<K, V>(keyTable.length) {
+                @Override
+                boolean isOccupied(int slot) {
+                    return keyTable[slot] != null;
+                }
+
+                @Override
+                K keyAt(int slot) {
+                    return keyTable[slot];
+                }
+
+                @Override
+                V valueAt(int slot) {
+                    return valueTable[slot];
+                }
+            };
+        }
+
+        private Set<Entry<K, V>> createEntrySet() {
             return new UnmodifiableSetImpl<Entry<K, V>>() {
                 @Override
                 public int size() {
@@ -389,12 +506,10 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
                 public boolean contains(Object o) {
                     if (o instanceof Entry) {
                         Entry<?, ?> entry = (Entry<?, ?>) o;
-                        V presentValue = HashArrayBackedMap.this.get(entry.getKey());
-                        if (presentValue != null && presentValue.equals(entry.getValue())) {
-                            return true;
-                        } else {
-                            return false;
-                        }
+                        int check = checkTable(entry.getKey());
+
+                        // Values might be null; thus, the key must be checked separately
+                        return check < 0 && Objects.equals(valueTable[-check - 1], entry.getValue());
                     } else {
                         return false;
                     }
@@ -439,21 +554,108 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
             }
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+
+            if (o instanceof ImmutableMapImpl) {
+                ImmutableMapImpl<?, ?> other = (ImmutableMapImpl<?, ?>) o;
+
+                if (other.size() != this.size) {
+                    return false;
+                }
+
+                int otherHashCode = other.cachedHashCode();
+
+                if (otherHashCode != 0 && this.hashCode != 0 && otherHashCode != this.hashCode) {
+                    return false;
+                }
+            }
+
+            return super.equals(o);
+        }
+
+        @Override
+        int cachedHashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = this.hashCode;
+
+            if (result == 0) {
+                for (int i = 0; i < this.keyTable.length; i++) {
+                    K key = this.keyTable[i];
+
+                    if (key != null) {
+                        int keyHash =
+                                this.hashes != null && this.hashingStrategy == null ? this.hashes[i] : key.hashCode();
+                        result += keyHash ^ Objects.hashCode(this.valueTable[i]);
+                    }
+                }
+
+                this.hashCode = result;
+            }
+
+            return result;
+        }
+
         @Override
         int getEstimatedByteSize() {
-            return 32 + this.keyTable.length * 8 * 2;
+            return 32 + this.keyTable.length * 8 * 2 + (this.hashes != null ? this.hashes.length * 4 : 0);
         }
 
         static int getEstimatedByteSize(int size) {
             return 32 + size * 8 * 2 * 2;
         }
 
-        private int hashPosition(Object key) {
-            return Hashing.hashPosition(this.tableSize, key);
+        /**
+         * Returns the seed of the hash function picked by the builder. Hashing.DEFAULT_HASH_SEED indicates the default
+         * hash function.
+         */
+        int hashSeed() {
+            return this.hashSeed;
+        }
+
+        /**
+         * Returns the HashingStrategy the map was built with; null if it uses hashCode() and equals() of the keys.
+         */
+        HashingStrategy<? super K> hashingStrategy() {
+            return this.hashingStrategy;
+        }
+
+        private int checkTable(Object key) {
+            int hash = Hashing.hash(key, this.hashingStrategy);
+            int hashPosition = Hashing.hashPositionForHash(this.tableSize, hash, this.hashSeed);
+            return checkTable(key, hash, hashPosition);
         }
 
-        private int checkTable(Object key, int hashPosition) {
-            return Hashing.checkTable(this.keyTable, key, hashPosition, this.maxProbingDistance);
+        private int checkTable(LookupKey<?> lookupKey) {
+            if (this.hashingStrategy != null) {
+                // The precomputed hash is based on hashCode(), which is replaced by the strategy
+                return checkTable(lookupKey.key());
+            }
+
+            int hash = lookupKey.hash();
+            return checkTable(lookupKey.key(), hash, lookupKey.hashPosition(this.tableSize, this.hashSeed));
+        }
+
+        private int checkTable(Object key, int hash, int hashPosition) {
+            if (this.hashes != null) {
+                return Hashing.checkTable(
+                        this.keyTable,
+                        this.hashes,
+                        this.hashingStrategy,
+                        key,
+                        hash,
+                        hashPosition,
+                        this.maxProbingDistance);
+            } else {
+                return Hashing.checkTable(this.keyTable, key, hashPosition, this.maxProbingDistance);
+            }
         }
 
         private int findNextKey(int start) {
@@ -469,6 +671,16 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
         static class Builder<K, V> extends InternalBuilder<K, V> {
             private K[] keyTable;
             private V[] valueTable;
+            private int[] hashes;
+            private boolean cacheHashCodes;
+            private int hashSeed = Hashing.DEFAULT_HASH_SEED;
+            private HashingStrategy<? super K> hashingStrategy;
+
+            /**
+             * For each occupied slot, the distance to the hash position of the key. Needed for the Robin Hood
+             * insertion; see Hashing.checkTableRobinHood().
+             */
+            private short[] displacements;
 
             private int size = 0;
             private final int tableSize;
@@ -487,10 +699,12 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
                     throw new IllegalArgumentException("Null keys are not supported");
                 }
 
-                return with(key, value, hashPosition(key));
+                int hash = hashingStrategy == null ? key.hashCode() : hashingStrategy.computeHashCode(key);
+
+                return with(key, value, hash, Hashing.hashPositionForHash(tableSize, hash, hashSeed));
             }
 
-            private InternalBuilder<K, V> with(K key, V value, int pos) {
+            private InternalBuilder<K, V> with(K key, V value, int hash, int pos) {
                 if (!valid) {
                     throw new IllegalStateException("Builder instance is not active any more");
                 }
@@ -498,6 +712,12 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
                 if (keyTable == null) {
                     keyTable = GenericArrays.create(tableSize + maxProbingDistance);
                     valueTable = GenericArrays.create(tableSize + maxProbingDistance);
+                    displacements = new short[tableSize + maxProbingDistance];
+
+                    if (cacheHashCodes || hashingStrategy != null) {
+                        hashes = new int[tableSize + maxProbingDistance];
+                        hashes[pos] = hash;
+                    }
 
                     keyTable[pos] = key;
                     valueTable[pos] = value;
@@ -507,16 +727,18 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
                     if (keyTable[pos] == null) {
                         keyTable[pos] = key;
                         valueTable[pos] = value;
+                        setHash(pos, hash);
                         size++;
                         return this;
-                    } else if (keyTable[pos].equals(key)) {
+                    } else if ((hashes == null || hashes[pos] == hash) && keyEquals(keyTable[pos], key)) {
                         // already contained
                         valueTable[pos] = value;
                         return this;
                     } else {
                         // collision
 
-                        int check = Hashing.checkTable(keyTable, key, pos, maxProbingDistance);
+                        int check = Hashing.checkTableRobinHood(
+                                keyTable, displacements, hashes, hashingStrategy, key, hash, pos, maxProbingDistance);
 
                         if (check < 0) {
                             // contained
@@ -525,14 +747,24 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
                             return this;
                         } else if (check == Hashing.NO_SPACE) {
                             try {
-                                int newTableSize = Hashing.nextSize(tableSize);
+                                if (hashSeed == Hashing.DEFAULT_HASH_SEED) {
+                                    // Before growing the table, try whether an alternative hash function avoids the
+                                    // cluster
+                                    return withAlternativeHashFunction().with(key, value);
+                                }
+
+                                int newTableSize = Hashing.nextLargeSize(tableSize, size);
                                 if (newTableSize != -1) {
                                     return new Builder<K, V>(newTableSize)
                                             .probingOverheadFactor(probingOverheadFactor)
+                                            .cacheHashCodes(cacheHashCodes)
+                                            .hashSeed(hashSeed)
+                                            .hashingStrategy(hashingStrategy)
                                             .withNonNull(keyTable, valueTable)
                                             .with(key, value);
                                 } else {
                                     return new ImmutableMapImpl.MapBackedMap.Builder<K, V>(this.size)
+                                            .hashingStrategy(hashingStrategy)
                                             .withNonNull(keyTable, valueTable)
                                             .with(key, value);
                                 }
@@ -540,22 +772,43 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
                                 this.valid = false;
                             }
                         } else {
+                            int free = Hashing.robinHoodShift(keyTable, displacements, check);
+
+                            if (free != check) {
+                                System.arraycopy(valueTable, check, valueTable, check + 1, free - check);
+
+                                if (hashes != null) {
+                                    System.arraycopy(hashes, check, hashes, check + 1, free - check);
+                                }
+                            }
+
                             keyTable[check] = key;
                             valueTable[check] = value;
+                            displacements[check] = (short) (check - pos);
+                            setHash(check, hash);
                             size++;
 
-                            this.probingOverhead += check - pos;
+                            // The shift moved each entry between check and free by one slot
+                            this.probingOverhead += free - pos;
 
                             if (this.size >= 12 && this.probingOverhead > this.size * this.probingOverheadFactor) {
                                 // probing overhead exceeds threshold
                                 try {
-                                    int newTableSize = Hashing.nextSize(tableSize);
+                                    if (this.hashSeed == Hashing.DEFAULT_HASH_SEED) {
+                                        return withAlternativeHashFunction();
+                                    }
+
+                                    int newTableSize = Hashing.nextLargeSize(tableSize, size);
                                     if (newTableSize != -1) {
                                         return new ImmutableMapImpl.HashArrayBackedMap.Builder<K, V>(newTableSize)
                                                 .probingOverheadFactor(this.probingOverheadFactor)
+                                                .cacheHashCodes(this.cacheHashCodes)
+                                                .hashSeed(this.hashSeed)
+                                                .hashingStrategy(this.hashingStrategy)
                                                 .withNonNull(keyTable, valueTable);
                                     } else {
                                         return new ImmutableMapImpl.MapBackedMap.Builder<K, V>(this.size)
+                                                .hashingStrategy(this.hashingStrategy)
                                                 .withNonNull(keyTable, valueTable);
                                     }
                                 } finally {
@@ -586,7 +839,12 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
 
             @Override
             boolean containsKey(Object key) {
-                return get(key) != null;
+                if (keyTable == null) {
+                    return false;
+                }
+
+                int hash = Hashing.hash(key, hashingStrategy);
+                return checkTable(key, hash, Hashing.hashPositionForHash(tableSize, hash, hashSeed)) < 0;
             }
 
             @Override
@@ -595,7 +853,8 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
                     return null;
                 }
 
-                int check = Hashing.checkTable(keyTable, key, hashPosition(key), maxProbingDistance);
+                int hash = Hashing.hash(key, hashingStrategy);
+                int check = checkTable(key, hash, Hashing.hashPositionForHash(tableSize, hash, hashSeed));
 
                 if (check < 0) {
                     int actualPos = -check - 1;
@@ -608,7 +867,7 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
             @Override
             int getEstimatedByteSize() {
                 if (this.keyTable != null) {
-                    return 32 + this.keyTable.length * 8 * 2;
+                    return 32 + this.keyTable.length * 8 * 2 + (this.hashes != null ? this.hashes.length * 4 : 0);
                 } else {
                     return 32;
                 }
@@ -656,6 +915,17 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
             ImmutableMapImpl<K, V> build() {
                 if (size == 0) {
                     return ImmutableMapImpl.empty();
+                } else if (hashingStrategy != null) {
+                    this.valid = false;
+                    return new HashArrayBackedMap<>(
+                            tableSize,
+                            size,
+                            Hashing.maxDisplacement(displacements),
+                            keyTable,
+                            valueTable,
+                            hashes,
+                            hashSeed,
+                            hashingStrategy);
                 } else if (size == 1) {
                     int i = GenericArrays.indexOfNextNonNull(this.keyTable, 0);
                     return new SingleElementMap<>(this.keyTable[i], this.valueTable[i]);
@@ -670,7 +940,15 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
                     return new TwoElementMap<>(key1, value1, key2, value2);
                 } else {
                     this.valid = false;
-                    return new HashArrayBackedMap<>(tableSize, size, maxProbingDistance, keyTable, valueTable);
+                    return new HashArrayBackedMap<>(
+                            tableSize,
+                            size,
+                            Hashing.maxDisplacement(displacements),
+                            keyTable,
+                            valueTable,
+                            hashes,
+                            hashSeed,
+                            null);
                 }
             }
 
@@ -678,6 +956,17 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
             <V2> ImmutableMapImpl<K, V2> build(Function<V, V2> valueMappingFunction) {
                 if (size == 0) {
                     return ImmutableMapImpl.empty();
+                } else if (hashingStrategy != null) {
+                    this.valid = false;
+                    return new HashArrayBackedMap<>(
+                            tableSize,
+                            size,
+                            Hashing.maxDisplacement(displacements),
+                            keyTable,
+                            GenericArrays.mapInPlace(valueTable, valueMappingFunction),
+                            hashes,
+                            hashSeed,
+                            hashingStrategy);
                 } else if (size == 1) {
                     int i = GenericArrays.indexOfNextNonNull(this.keyTable, 0);
                     return new SingleElementMap<>(this.keyTable[i], valueMappingFunction.apply(this.valueTable[i]));
@@ -695,14 +984,77 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
                     return new HashArrayBackedMap<>(
                             tableSize,
                             size,
-                            maxProbingDistance,
+                            Hashing.maxDisplacement(displacements),
                             keyTable,
-                            GenericArrays.mapInPlace(valueTable, valueMappingFunction));
+                            GenericArrays.mapInPlace(valueTable, valueMappingFunction),
+                            hashes,
+                            hashSeed,
+                            null);
+                }
+            }
+
+            @Override
+            InternalBuilder<K, V> cacheHashCodes(boolean cacheHashCodes) {
+                if (keyTable != null && cacheHashCodes != this.cacheHashCodes) {
+                    throw new IllegalStateException("cacheHashCodes() must be called before adding entries");
+                }
+
+                this.cacheHashCodes = cacheHashCodes;
+                return this;
+            }
+
+            @Override
+            InternalBuilder<K, V> hashSeed(int hashSeed) {
+                if (keyTable != null && hashSeed != this.hashSeed) {
+                    throw new IllegalStateException("hashSeed() must be called before adding entries");
+                }
+
+                this.hashSeed = hashSeed;
+                return this;
+            }
+
+            @Override
+            InternalBuilder<K, V> hashingStrategy(HashingStrategy<? super K> hashingStrategy) {
+                if (keyTable != null && hashingStrategy != this.hashingStrategy) {
+                    throw new IllegalStateException("hashingStrategy() must be called before adding entries");
                 }
+
+                this.hashingStrategy = hashingStrategy;
+                return this;
             }
 
-            private int hashPosition(Object e) {
-                return Hashing.hashPosition(tableSize, e);
+            /**
+             * Returns a new builder with the same table size and entries, but with the alternative hash function.
+             * High probing overhead is often caused by poorly distributed hashCode() values rather than by a too small
+             * table; in this case, the alternative hash function avoids growing the table. The caller must invalidate
+             * this builder.
+             */
+            private InternalBuilder<K, V> withAlternativeHashFunction() {
+                return new Builder<K, V>(tableSize)
+                        .probingOverheadFactor(probingOverheadFactor)
+                        .cacheHashCodes(cacheHashCodes)
+                        .hashSeed(Hashing.ALTERNATIVE_HASH_SEED)
+                        .hashingStrategy(hashingStrategy)
+                        .withNonNull(keyTable, valueTable);
+            }
+
+            private boolean keyEquals(K key1, K key2) {
+                return hashingStrategy == null ? key1.equals(key2) : hashingStrategy.equals(key1, key2);
+            }
+
+            private int checkTable(Object key, int hash, int hashPosition) {
+                if (hashes != null) {
+                    return Hashing.checkTable(
+                            keyTable, hashes, hashingStrategy, key, hash, hashPosition, maxProbingDistance);
+                } else {
+                    return Hashing.checkTable(keyTable, key, hashPosition, maxProbingDistance);
+                }
+            }
+
+            private void setHash(int position, int hash) {
+                if (hashes != null) {
+                    hashes[position] = hash;
+                }
             }
 
             private int findNextKey(int start) {
@@ -721,9 +1073,19 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
         }
     }
 
+    /**
+     * Fallback for maps which are too big for HashArrayBackedMap, i.e., which would need a table bigger than
+     * Hashing.MAX_TABLE_SIZE. This is also used for maps with many keys with identical hash codes; see
+     * Hashing.nextLargeSize(int, int). For maps built with a HashingStrategy, the delegate is a HashingStrategyMap.
+     */
     static class MapBackedMap<K, V> extends ImmutableMapImpl<K, V> {
         private final Map<K, V> delegate;
 
+        /**
+         * Lazily computed result of hashCode(); 0 if not yet computed.
+         */
+        private int hashCode;
+
         MapBackedMap(Map<K, V> delegate) {
             this.delegate = delegate;
         }
@@ -770,12 +1132,41 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
 
         @Override
         public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+
+            if (o instanceof ImmutableMapImpl) {
+                ImmutableMapImpl<?, ?> other = (ImmutableMapImpl<?, ?>) o;
+
+                if (other.size() != delegate.size()) {
+                    return false;
+                }
+
+                int otherHashCode = other.cachedHashCode();
+
+                if (otherHashCode != 0 && this.hashCode != 0 && otherHashCode != this.hashCode) {
+                    return false;
+                }
+            }
+
             return delegate.equals(o);
         }
 
+        @Override
+        int cachedHashCode() {
+            return this.hashCode;
+        }
+
         @Override
         public int hashCode() {
-            return delegate.hashCode();
+            int result = this.hashCode;
+
+            if (result == 0) {
+                this.hashCode = result = delegate.hashCode();
+            }
+
+            return result;
         }
 
         @Override
@@ -794,12 +1185,29 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
         }
 
         static class Builder<K, V> extends InternalBuilder<K, V> {
-            private final HashMap<K, V> delegate;
+            private final int expectedCapacity;
+            private Map<K, V> delegate;
+            private HashingStrategy<? super K> hashingStrategy;
 
             Builder(int expectedCapacity) {
+                this.expectedCapacity = expectedCapacity;
                 this.delegate = new HashMap<>(expectedCapacity);
             }
 
+            /**
+             * Makes the built map use a HashingStrategyMap, which compares the keys using the given strategy.
+             */
+            @Override
+            InternalBuilder<K, V> hashingStrategy(HashingStrategy<? super K> hashingStrategy) {
+                if (!this.delegate.isEmpty()) {
+                    throw new IllegalStateException("hashingStrategy() must be called before adding entries");
+                }
+
+                this.hashingStrategy = hashingStrategy;
+                this.delegate = createMap(expectedCapacity);
+                return this;
+            }
+
             Builder<K, V> with(K key, V value) {
                 this.delegate.put(key, value);
                 return this;
@@ -837,13 +1245,21 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
 
             @Override
             <V2> ImmutableMapImpl<K, V2> build(Function<V, V2> valueMappingFunction) {
-                HashMap<K, V2> result = new HashMap<>(delegate.size());
+                Map<K, V2> result = createMap(delegate.size());
 
                 for (Map.Entry<K, V> entry : this.delegate.entrySet()) {
                     result.put(entry.getKey(), valueMappingFunction.apply(entry.getValue()));
                 }
                 return new MapBackedMap<>(result);
             }
+
+            private <V2> Map<K, V2> createMap(int expectedCapacity) {
+                if (this.hashingStrategy != null) {
+                    return new HashingStrategyMap<>(expectedCapacity, this.hashingStrategy);
+                } else {
+                    return new HashMap<>(expectedCapacity);
+                }
+            }
         }
     }
 
@@ -885,7 +1301,7 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
 
         @Override
         public Collection<Object> values() {
-            return ImmutableSetImpl.empty();
+            return ImmutableListImpl.empty();
         }
 
         @Override
@@ -893,12 +1309,34 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
             return "[]";
         }
 
+        @Override
+        public MapCursor<Object, Object> cursor() {
+            return EMPTY_CURSOR;
+        }
+
         @Override
         int getEstimatedByteSize() {
             return 0;
         }
     };
 
+    private static final MapCursor<Object, Object> EMPTY_CURSOR = new ArrayMapCursor<Object, Object>(0) {
+        @Override
+        boolean isOccupied(int slot) {
+            return false;
+        }
+
+        @Override
+        Object keyAt(int slot) {
+            throw new NoSuchElementException();
+        }
+
+        @Override
+        Object valueAt(int slot) {
+            throw new NoSuchElementException();
+        }
+    };
+
     abstract static class InternalBuilder<K, V> {
         abstract InternalBuilder<K, V> with(K key, V value);
 
@@ -934,8 +1372,40 @@ abstract class ImmutableMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
             return this;
         }
 
+        /**
+         * If set to true, the built hash tables will additionally store the hashCode() of each key. Lookups will
+         * then only call equals() for keys with matching hash codes. This is useful for keys with expensive
+         * equals() implementations. Must be called before entries are added.
+         */
+        InternalBuilder<K, V> cacheHashCodes(boolean cacheHashCodes) {
+            return this;
+        }
+
+        /**
+         * Selects the hash function of the built hash tables; see Hashing.hashPositionForHash(int, int, int). Builders
+         * switch to Hashing.ALTERNATIVE_HASH_SEED by themselves if the default hash function causes too much probing
+         * overhead. Must be called before entries are added.
+         */
+        InternalBuilder<K, V> hashSeed(int hashSeed) {
+            return this;
+        }
+
+        /**
+         * Makes the built maps use the given HashingStrategy instead of hashCode() and equals() of the keys. The
+         * hash codes computed by the strategy are always cached; see cacheHashCodes(). Must be called before entries
+         * are added.
+         */
+        InternalBuilder<K, V> hashingStrategy(HashingStrategy<? super K> hashingStrategy) {
+            if (hashingStrategy != null) {
+                throw new UnsupportedOperationException(
+                        "HashingStrategy is not supported by " + getClass().getName());
+            }
+
+            return this;
+        }
+
         static <K, V> InternalBuilder<K, V> create(int size) {
-            int tableSize = Hashing.hashTableSize(size);
+            int tableSize = Hashing.largeHashTableSize(size);
 
             if (tableSize != -1) {
                 return new HashArrayBackedMap.Builder<>(tableSize);
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.Collection;
+
+/**
+ * An immutable set implementation which stores its elements in an open addressing hash table. In contrast to
+ * HashSet, there are no node objects per element and no backing map. Sets with one or two elements are represented by
+ * dedicated classes without any hash table.
+ * <p>
+ * ImmutableSet instances cannot contain null elements.
+ *
+ * @author Nils Bandener
+ */
+public interface ImmutableSet<E> extends UnmodifiableSet<E> {
+
+    /**
+     * Returns an empty ImmutableSet instance.
+     */
+    static <E> ImmutableSet<E> empty() {
+        return ImmutableSetImpl.empty();
+    }
+
+    /**
+     * Creates an ImmutableSet with the given element.
+     *
+     * @throws IllegalArgumentException if the element is null.
+     */
+    static <E> ImmutableSet<E> of(E e1) {
+        return ImmutableSetImpl.of(e1);
+    }
+
+    /**
+     * Creates an ImmutableSet with the given elements. If the elements are equal, the set will have only one element.
+     *
+     * @throws IllegalArgumentException if an element is null.
+     */
+    static <E> ImmutableSet<E> of(E e1, E e2) {
+        return ImmutableSetImpl.of(e1, e2);
+    }
+
+    /**
+     * Creates an ImmutableSet with the elements from the given collection. Duplicate elements are only contained once.
+     * If the given collection is already an immutable set created by this library, it will be returned as is.
+     *
+     * @throws IllegalArgumentException if the given collection contains null.
+     */
+    static <E> ImmutableSet<E> copyOf(Collection<? extends E> elements) {
+        return ImmutableSetImpl.copyOf(elements);
+    }
+
+    /**
+     * Returns a builder for an ImmutableSet.
+     */
+    static <E> Builder<E> builder() {
+        return new Builder<>(0);
+    }
+
+    /**
+     * Returns a builder for an ImmutableSet. The expected size is used to pre-size the hash table; the builder will
+     * grow beyond it if necessary.
+     */
+    static <E> Builder<E> builder(int expectedSize) {
+        return new Builder<>(expectedSize);
+    }
+
+    /**
+     * A builder for ImmutableSet instances. A builder instance can only be used to build one set.
+     */
+    final class Builder<E> {
+        private ImmutableSetImpl.InternalBuilder<E> internalBuilder;
+
+        Builder(int expectedSize) {
+            this.internalBuilder = ImmutableSetImpl.InternalBuilder.create(expectedSize);
+        }
+
+        /**
+         * Adds the given element to the set to be built.
+         *
+         * @throws IllegalArgumentException if the element is null.
+         * @throws IllegalStateException if build() was already called.
+         */
+        public Builder<E> add(E e) {
+            this.internalBuilder = checkState().with(e);
+            return this;
+        }
+
+        /**
+         * Adds all elements of the given collection to the set to be built.
+         *
+         * @throws IllegalArgumentException if the given collection contains null.
+         * @throws IllegalStateException if build() was already called.
+         */
+        public Builder<E> addAll(Collection<? extends E> elements) {
+            this.internalBuilder = checkState().with(elements);
+            return this;
+        }
+
+        /**
+         * Returns the number of distinct elements added so far.
+         */
+        public int size() {
+            return checkState().size();
+        }
+
+        /**
+         * Builds the set. Afterwards, this builder cannot be used any more.
+         *
+         * @throws IllegalStateException if build() was already called.
+         */
+        public ImmutableSet<E> build() {
+            ImmutableSetImpl.InternalBuilder<E> internalBuilder = checkState();
+            this.internalBuilder = null;
+            return internalBuilder.build();
+        }
+
+        private ImmutableSetImpl.InternalBuilder<E> checkState() {
+            if (this.internalBuilder == null) {
+                throw new IllegalStateException("The set was already built");
+            }
+
+            return this.internalBuilder;
+        }
+    }
+}
@@ -15,12 +15,15 @@
  */
 package com.selectivem.collections;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.function.Consumer;
 
-abstract class ImmutableSetImpl<E> extends UnmodifiableSetImpl<E> implements UnmodifiableSet<E> {
+abstract class ImmutableSetImpl<E> extends UnmodifiableSetImpl<E> implements ImmutableSet<E> {
     static <E> ImmutableSetImpl<E> of(E e1) {
         if (e1 == null) {
             throw new IllegalArgumentException("Does not support null elements");
@@ -41,12 +44,44 @@ abstract class ImmutableSetImpl<E> extends UnmodifiableSetImpl<E> implements Unm
         }
     }
 
+    /**
+     * Creates an ImmutableSetImpl with the elements of the given collection. Sets with up to two elements are
+     * represented by dedicated classes; bigger sets use HashArrayBackedSet.
+     */
+    @SuppressWarnings("unchecked")
+    static <E> ImmutableSetImpl<E> copyOf(Collection<? extends E> elements) {
+        if (elements instanceof ImmutableSetImpl) {
+            return (ImmutableSetImpl<E>) elements;
+        }
+
+        int size = elements.size();
+
+        if (size == 0) {
+            return empty();
+        } else if (size == 1) {
+            return of(elements.iterator().next());
+        } else if (size == 2) {
+            Iterator<? extends E> iter = elements.iterator();
+            return of(iter.next(), iter.next());
+        } else {
+            return InternalBuilder.<E>create(size).with(elements).build();
+        }
+    }
+
     static <E> ImmutableSetImpl<E> empty() {
         @SuppressWarnings("unchecked")
         ImmutableSetImpl<E> result = (ImmutableSetImpl<E>) EMPTY;
         return result;
     }
 
+    /**
+     * Returns the hash code of this set if it was already computed and cached, or 0 otherwise. equals() uses this to
+     * reject unequal sets early without computing any hash codes.
+     */
+    int cachedHashCode() {
+        return 0;
+    }
+
     static class OneElementSet<E> extends ImmutableSetImpl<E> {
 
         private final E element;
@@ -180,6 +215,519 @@ abstract class ImmutableSetImpl<E> extends UnmodifiableSetImpl<E> implements Unm
         }
     }
 
+    /**
+     * An immutable set which stores its elements in an open addressing hash table. In contrast to the hash sets in
+     * IndexedImmutableSetImpl, this does not maintain any index arrays; it only consists of the table itself.
+     * <p>
+     * Instances of this class are also used as keySet() views of ImmutableMapImpl.HashArrayBackedMap; these share the
+     * key table of the map.
+     */
+    static class HashArrayBackedSet<E> extends ImmutableSetImpl<E> {
+        final int tableSize;
+        final int size;
+
+        /**
+         * The maximum distance between the hash position of an element and its actual position in the table.
+         */
+        final short maxProbingDistance;
+
+        private final E[] table;
+
+        /**
+         * Optional: The hashCode() values of the elements in table. Only set for key sets of maps which cache hash
+         * codes.
+         */
+        private final int[] hashes;
+
+        /**
+         * Selects the hash function; see Hashing.hashPositionForHash(int, int, int).
+         */
+        private final int hashSeed;
+
+        /**
+         * Optional: Replaces hashCode() and equals() of the elements. Only set for key sets of maps which were built
+         * with a HashingStrategy; in this case, hashes is also set.
+         */
+        private final HashingStrategy<? super E> hashingStrategy;
+
+        /**
+         * Lazily computed result of hashCode(); 0 if not yet computed.
+         */
+        private int hashCode;
+
+        HashArrayBackedSet(int tableSize, int size, short maxProbingDistance, E[] table, int[] hashes, int hashSeed) {
+            this(tableSize, size, maxProbingDistance, table, hashes, hashSeed, null);
+        }
+
+        HashArrayBackedSet(
+                int tableSize,
+                int size,
+                short maxProbingDistance,
+                E[] table,
+                int[] hashes,
+                int hashSeed,
+                HashingStrategy<? super E> hashingStrategy) {
+            this.tableSize = tableSize;
+            this.size = size;
+            this.maxProbingDistance = maxProbingDistance;
+            this.table = table;
+            this.hashes = hashes;
+            this.hashSeed = hashSeed;
+            this.hashingStrategy = hashingStrategy;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (o == null) {
+                return false;
+            }
+
+            int hash = Hashing.hash(o, this.hashingStrategy);
+            int hashPosition = Hashing.hashPositionForHash(this.tableSize, hash, this.hashSeed);
+
+            if (this.hashes != null) {
+                return Hashing.checkTable(
+                                this.table,
+                                this.hashes,
+                                this.hashingStrategy,
+                                o,
+                                hash,
+                                hashPosition,
+                                this.maxProbingDistance)
+                        < 0;
+            } else {
+                return Hashing.checkTable(this.table, o, hashPosition, this.maxProbingDistance) < 0;
+            }
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new Iterator<E>() {
+                int current = GenericArrays.indexOfNextNonNull(table, 0);
+
+                @Override
+                public boolean hasNext() {
+                    return current != -1;
+                }
+
+                @Override
+                public E next() {
+                    if (current == -1) {
+                        throw new NoSuchElementException();
+                    }
+
+                    E element = table[current];
+                    current = GenericArrays.indexOfNextNonNull(table, current + 1);
+                    return element;
+                }
+            };
+        }
+
+        @Override
+        public void forEach(Consumer<? super E> action) {
+            for (int i = 0; i < table.length; i++) {
+                E element = table[i];
+
+                if (element != null) {
+                    action.accept(element);
+                }
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+
+            if (o instanceof ImmutableSetImpl) {
+                ImmutableSetImpl<?> other = (ImmutableSetImpl<?>) o;
+
+                if (other.size() != this.size) {
+                    return false;
+                }
+
+                int otherHashCode = other.cachedHashCode();
+
+                if (otherHashCode != 0 && this.hashCode != 0 && otherHashCode != this.hashCode) {
+                    return false;
+                }
+            }
+
+            return super.equals(o);
+        }
+
+        @Override
+        int cachedHashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = this.hashCode;
+
+            if (result == 0) {
+                for (int i = 0; i < this.table.length; i++) {
+                    E element = this.table[i];
+
+                    if (element != null) {
+                        result += this.hashes != null && this.hashingStrategy == null
+                                ? this.hashes[i]
+                                : element.hashCode();
+                    }
+                }
+
+                this.hashCode = result;
+            }
+
+            return result;
+        }
+
+        /**
+         * Returns the seed of the hash function picked by the builder. Hashing.DEFAULT_HASH_SEED indicates the default
+         * hash function.
+         */
+        int hashSeed() {
+            return this.hashSeed;
+        }
+
+        static class Builder<E> extends InternalBuilder<E> {
+            private E[] table;
+
+            /**
+             * For each occupied slot, the distance to the hash position of the element. Needed for the Robin Hood
+             * insertion; see Hashing.checkTableRobinHood().
+             */
+            private short[] displacements;
+
+            private int size = 0;
+            private final int tableSize;
+            private int probingOverhead;
+            private short probingOverheadFactor = 3;
+            private final short maxProbingDistance;
+            private int hashSeed = Hashing.DEFAULT_HASH_SEED;
+            private boolean valid = true;
+
+            Builder(int tableSize) {
+                this.tableSize = tableSize;
+                this.maxProbingDistance = Hashing.maxProbingDistance(tableSize);
+            }
+
+            @Override
+            InternalBuilder<E> with(E e) {
+                if (e == null) {
+                    throw new IllegalArgumentException("Does not support null elements");
+                }
+
+                if (!valid) {
+                    throw new IllegalStateException("Builder instance is not active any more");
+                }
+
+                int hash = e.hashCode();
+                int pos = Hashing.hashPositionForHash(tableSize, hash, hashSeed);
+
+                if (table == null) {
+                    table = GenericArrays.create(tableSize + maxProbingDistance);
+                    displacements = new short[tableSize + maxProbingDistance];
+                    table[pos] = e;
+                    size++;
+                    return this;
+                } else if (table[pos] == null) {
+                    table[pos] = e;
+                    size++;
+                    return this;
+                }
+
+                int check = Hashing.checkTableRobinHood(table, displacements, null, e, hash, pos, maxProbingDistance);
+
+                if (check < 0) {
+                    // already contained
+                    return this;
+                } else if (check == Hashing.NO_SPACE) {
+                    try {
+                        return grow().with(e);
+                    } finally {
+                        this.valid = false;
+                    }
+                } else {
+                    int free = Hashing.robinHoodShift(table, displacements, check);
+                    table[check] = e;
+                    displacements[check] = (short) (check - pos);
+                    size++;
+
+                    // The shift moved each element between check and free by one slot
+                    this.probingOverhead += free - pos;
+
+                    if (this.size >= 12 && this.probingOverhead > this.size * this.probingOverheadFactor) {
+                        // probing overhead exceeds threshold
+                        try {
+                            return grow();
+                        } finally {
+                            this.valid = false;
+                        }
+                    }
+
+                    return this;
+                }
+            }
+
+            @Override
+            boolean contains(Object e) {
+                if (table == null || e == null) {
+                    return false;
+                }
+
+                return Hashing.checkTable(table, e, Hashing.hashPosition(tableSize, e, hashSeed), maxProbingDistance)
+                        < 0;
+            }
+
+            @Override
+            int size() {
+                return size;
+            }
+
+            @Override
+            ImmutableSetImpl<E> build() {
+                if (size == 0) {
+                    return ImmutableSetImpl.empty();
+                } else if (size == 1) {
+                    return new OneElementSet<>(this.table[GenericArrays.indexOfNextNonNull(this.table, 0)]);
+                } else if (size == 2) {
+                    int i1 = GenericArrays.indexOfNextNonNull(this.table, 0);
+                    int i2 = GenericArrays.indexOfNextNonNull(this.table, i1 + 1);
+                    return new TwoElementSet<>(this.table[i1], this.table[i2]);
+                } else {
+                    this.valid = false;
+                    return new HashArrayBackedSet<>(
+                            tableSize, size, Hashing.maxDisplacement(displacements), table, null, hashSeed);
+                }
+            }
+
+            @Override
+            InternalBuilder<E> probingOverheadFactor(short probingOverheadFactor) {
+                this.probingOverheadFactor = probingOverheadFactor;
+                return this;
+            }
+
+            @Override
+            InternalBuilder<E> hashSeed(int hashSeed) {
+                if (table != null && hashSeed != this.hashSeed) {
+                    throw new IllegalStateException("hashSeed() must be called before adding elements");
+                }
+
+                this.hashSeed = hashSeed;
+                return this;
+            }
+
+            /**
+             * Returns a new builder containing the elements of this builder, which has more room for further
+             * elements. If the default hash function is in use, this first tries the alternative hash function with
+             * the same table size. The caller must invalidate this builder.
+             */
+            private InternalBuilder<E> grow() {
+                if (this.hashSeed == Hashing.DEFAULT_HASH_SEED) {
+                    return new Builder<E>(tableSize)
+                            .probingOverheadFactor(probingOverheadFactor)
+                            .hashSeed(Hashing.ALTERNATIVE_HASH_SEED)
+                            .withNonNull(table);
+                }
+
+                int newTableSize = Hashing.nextLargeSize(tableSize, size);
+
+                if (newTableSize != -1) {
+                    return new Builder<E>(newTableSize)
+                            .probingOverheadFactor(probingOverheadFactor)
+                            .hashSeed(hashSeed)
+                            .withNonNull(table);
+                } else {
+                    return new SetBackedSet.Builder<E>(size).withNonNull(table);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fallback for sets which are too big for HashArrayBackedSet, i.e., which would need a table bigger than
+     * Hashing.MAX_TABLE_SIZE. This is also used for sets with many elements with identical hash codes; see
+     * Hashing.nextLargeSize(int, int).
+     */
+    static class SetBackedSet<E> extends ImmutableSetImpl<E> {
+        private final Set<E> delegate;
+
+        /**
+         * Lazily computed result of hashCode(); 0 if not yet computed.
+         */
+        private int hashCode;
+
+        SetBackedSet(Set<E> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int size() {
+            return delegate.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return delegate.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return delegate.contains(o);
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return Collections.unmodifiableSet(delegate).iterator();
+        }
+
+        @Override
+        public void forEach(Consumer<? super E> action) {
+            delegate.forEach(action);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+
+            if (o instanceof ImmutableSetImpl) {
+                ImmutableSetImpl<?> other = (ImmutableSetImpl<?>) o;
+
+                if (other.size() != delegate.size()) {
+                    return false;
+                }
+
+                int otherHashCode = other.cachedHashCode();
+
+                if (otherHashCode != 0 && this.hashCode != 0 && otherHashCode != this.hashCode) {
+                    return false;
+                }
+            }
+
+            return delegate.equals(o);
+        }
+
+        @Override
+        int cachedHashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = this.hashCode;
+
+            if (result == 0) {
+                this.hashCode = result = delegate.hashCode();
+            }
+
+            return result;
+        }
+
+        static class Builder<E> extends InternalBuilder<E> {
+            private final HashSet<E> delegate;
+
+            Builder(int expectedCapacity) {
+                this.delegate = new HashSet<>(expectedCapacity);
+            }
+
+            @Override
+            InternalBuilder<E> with(E e) {
+                if (e == null) {
+                    throw new IllegalArgumentException("Does not support null elements");
+                }
+
+                this.delegate.add(e);
+                return this;
+            }
+
+            @Override
+            boolean contains(Object e) {
+                return delegate.contains(e);
+            }
+
+            @Override
+            int size() {
+                return delegate.size();
+            }
+
+            @Override
+            ImmutableSetImpl<E> build() {
+                return new SetBackedSet<>(delegate);
+            }
+        }
+    }
+
+    abstract static class InternalBuilder<E> {
+        abstract InternalBuilder<E> with(E e);
+
+        InternalBuilder<E> withNonNull(E[] table) {
+            InternalBuilder<E> builder = this;
+
+            for (int i = 0; i < table.length; i++) {
+                E e = table[i];
+
+                if (e != null) {
+                    builder = builder.with(e);
+                }
+            }
+
+            return builder;
+        }
+
+        InternalBuilder<E> with(Collection<? extends E> elements) {
+            InternalBuilder<E> builder = this;
+
+            for (E e : elements) {
+                builder = builder.with(e);
+            }
+
+            return builder;
+        }
+
+        abstract boolean contains(Object e);
+
+        abstract int size();
+
+        abstract ImmutableSetImpl<E> build();
+
+        InternalBuilder<E> probingOverheadFactor(short probingOverheadFactor) {
+            return this;
+        }
+
+        /**
+         * Selects the hash function of the built hash tables; see Hashing.hashPositionForHash(int, int, int). Builders
+         * switch to Hashing.ALTERNATIVE_HASH_SEED by themselves if the default hash function causes too much probing
+         * overhead. Must be called before elements are added.
+         */
+        InternalBuilder<E> hashSeed(int hashSeed) {
+            return this;
+        }
+
+        static <E> InternalBuilder<E> create(int size) {
+            int tableSize = Hashing.largeHashTableSize(size);
+
+            if (tableSize != -1) {
+                return new HashArrayBackedSet.Builder<>(tableSize);
+            } else {
+                return new SetBackedSet.Builder<>(size);
+            }
+        }
+    }
+
     private static final Set<Object> EMPTY = new ImmutableSetImpl<Object>() {
         @Override
         public Iterator<Object> iterator() {
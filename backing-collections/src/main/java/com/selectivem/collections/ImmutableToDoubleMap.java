@@ -0,0 +1,143 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.Map;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * An immutable map with primitive double values, which are stored without boxing. The keys are stored in an open
+ * addressing hash table, just like in ImmutableMap; the values are stored in a double[] array parallel to the key
+ * table.
+ * <p>
+ * ImmutableToDoubleMap instances cannot contain null keys.
+ *
+ * @author Nils Bandener
+ */
+public interface ImmutableToDoubleMap<K> {
+
+    /**
+     * Returns an empty ImmutableToDoubleMap instance.
+     */
+    static <K> ImmutableToDoubleMap<K> empty() {
+        return ImmutableToDoubleMapImpl.empty();
+    }
+
+    /**
+     * Creates an ImmutableToDoubleMap with the entries from the given map.
+     *
+     * @throws IllegalArgumentException if the given map contains a null key or a null value.
+     */
+    static <K> ImmutableToDoubleMap<K> copyOf(Map<? extends K, ? extends Double> map) {
+        return ImmutableToDoubleMapImpl.copyOf(map);
+    }
+
+    /**
+     * Returns a builder for an ImmutableToDoubleMap.
+     */
+    static <K> Builder<K> builder() {
+        return new Builder<>(0);
+    }
+
+    /**
+     * Returns a builder for an ImmutableToDoubleMap. The expected size is used to pre-size the hash table; the builder
+     * will grow beyond it if necessary.
+     */
+    static <K> Builder<K> builder(int expectedSize) {
+        return new Builder<>(expectedSize);
+    }
+
+    /**
+     * Returns the number of entries in this map.
+     */
+    int size();
+
+    /**
+     * Returns true if this map contains no entries.
+     */
+    boolean isEmpty();
+
+    /**
+     * Returns true if this map contains the given key.
+     */
+    boolean containsKey(Object key);
+
+    /**
+     * Returns the value associated with the given key. If this map does not contain the key, defaultValue is
+     * returned.
+     */
+    double getDouble(Object key, double defaultValue);
+
+    /**
+     * Returns the keys of this map. The returned set shares the key table with this map.
+     */
+    ImmutableSet<K> keySet();
+
+    /**
+     * Calls the given action for each entry of this map. The values are not boxed.
+     */
+    void forEach(ObjDoubleConsumer<? super K> action);
+
+    /**
+     * A builder for ImmutableToDoubleMap instances. Putting a key which is already contained replaces the value. A
+     * builder instance can only be used to build one map.
+     */
+    final class Builder<K> {
+        private final ImmutableToDoubleMapImpl.Builder<K> internalBuilder;
+
+        Builder(int expectedSize) {
+            this.internalBuilder = new ImmutableToDoubleMapImpl.Builder<>(expectedSize);
+        }
+
+        /**
+         * Adds the given entry to the map to be built.
+         *
+         * @throws IllegalArgumentException if the key is null.
+         * @throws IllegalStateException if build() was already called.
+         */
+        public Builder<K> put(K key, double value) {
+            this.internalBuilder.put(key, value);
+            return this;
+        }
+
+        /**
+         * Returns the value which was put for the given key so far. If no value was put for the key, defaultValue is
+         * returned.
+         *
+         * @throws IllegalStateException if build() was already called.
+         */
+        public double getDouble(Object key, double defaultValue) {
+            return this.internalBuilder.getDouble(key, defaultValue);
+        }
+
+        /**
+         * Returns the number of entries added so far.
+         */
+        public int size() {
+            this.internalBuilder.checkState();
+            return this.internalBuilder.size;
+        }
+
+        /**
+         * Builds the map. Afterwards, this builder cannot be used any more.
+         *
+         * @throws IllegalStateException if build() was already called.
+         */
+        public ImmutableToDoubleMap<K> build() {
+            return this.internalBuilder.build();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.Map;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * Hash table based implementation of ImmutableToDoubleMap. See ToPrimitiveMapImpl for the layout of the key table.
+ */
+final class ImmutableToDoubleMapImpl<K> extends ToPrimitiveMapImpl<K> implements ImmutableToDoubleMap<K> {
+    private static final ImmutableToDoubleMapImpl<Object> EMPTY = new ImmutableToDoubleMapImpl<>(
+            0, 0, (short) 0, GenericArrays.create(0), new double[0], Hashing.DEFAULT_HASH_SEED, 0);
+
+    @SuppressWarnings("unchecked")
+    static <K> ImmutableToDoubleMapImpl<K> empty() {
+        return (ImmutableToDoubleMapImpl<K>) EMPTY;
+    }
+
+    static <K> ImmutableToDoubleMapImpl<K> copyOf(Map<? extends K, ? extends Double> map) {
+        if (map.isEmpty()) {
+            return empty();
+        }
+
+        Builder<K> builder = new Builder<>(map.size());
+
+        for (Map.Entry<? extends K, ? extends Double> entry : map.entrySet()) {
+            Double value = entry.getValue();
+
+            if (value == null) {
+                throw new IllegalArgumentException("Null values are not supported");
+            }
+
+            builder.put(entry.getKey(), value);
+        }
+
+        return builder.build();
+    }
+
+    private final double[] valueTable;
+
+    ImmutableToDoubleMapImpl(
+            int tableSize,
+            int size,
+            short maxProbingDistance,
+            K[] keyTable,
+            double[] valueTable,
+            int hashSeed,
+            int overflowSize) {
+        super(tableSize, size, maxProbingDistance, keyTable, hashSeed, overflowSize);
+        this.valueTable = valueTable;
+    }
+
+    @Override
+    public double getDouble(Object key, double defaultValue) {
+        int position = position(key);
+        return position != -1 ? valueTable[position] : defaultValue;
+    }
+
+    @Override
+    public void forEach(ObjDoubleConsumer<? super K> action) {
+        for (int i = 0; i < keyTable.length; i++) {
+            K key = keyTable[i];
+
+            if (key != null) {
+                action.accept(key, valueTable[i]);
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof ImmutableToDoubleMap)) {
+            return false;
+        }
+
+        ImmutableToDoubleMap<?> other = (ImmutableToDoubleMap<?>) o;
+
+        if (other.size() != this.size) {
+            return false;
+        }
+
+        for (int i = 0; i < keyTable.length; i++) {
+            if (keyTable[i] != null
+                    && (!other.containsKey(keyTable[i])
+                            || Double.doubleToLongBits(valueTable[i])
+                                    != Double.doubleToLongBits(other.getDouble(keyTable[i], 0)))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the same hash code as a java.util.Map with the same keys and boxed values.
+     */
+    @Override
+    public int hashCode() {
+        int result = 0;
+
+        for (int i = 0; i < keyTable.length; i++) {
+            if (keyTable[i] != null) {
+                result += keyTable[i].hashCode() ^ Double.hashCode(valueTable[i]);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("{");
+
+        for (int i = 0; i < keyTable.length; i++) {
+            if (keyTable[i] != null) {
+                if (result.length() > 1) {
+                    result.append(", ");
+                }
+
+                result.append(keyTable[i]).append('=').append(valueTable[i]);
+            }
+        }
+
+        return result.append('}').toString();
+    }
+
+    static final class Builder<K> extends ToPrimitiveMapImpl.Builder<K> {
+
+        Builder(int expectedSize) {
+            super(expectedSize);
+        }
+
+        void put(K key, double value) {
+            int position = positionForPut(key);
+            ((double[]) valueTable)[position] = value;
+        }
+
+        double getDouble(Object key, double defaultValue) {
+            int position = position(key);
+            return position != -1 ? ((double[]) valueTable)[position] : defaultValue;
+        }
+
+        ImmutableToDoubleMapImpl<K> build() {
+            checkState();
+
+            if (size == 0) {
+                invalidate();
+                return empty();
+            }
+
+            trimOverflowArea();
+            ImmutableToDoubleMapImpl<K> result = new ImmutableToDoubleMapImpl<>(
+                    tableSize, size, maxDisplacement(), keyTable, (double[]) valueTable, hashSeed, overflowSize());
+            invalidate();
+            return result;
+        }
+
+        @Override
+        Object createValueTable(int length) {
+            return new double[length];
+        }
+
+        @Override
+        void copyValue(Object source, int from, int to) {
+            ((double[]) valueTable)[to] = ((double[]) source)[from];
+        }
+    }
+}
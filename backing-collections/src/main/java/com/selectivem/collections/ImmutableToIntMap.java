@@ -0,0 +1,142 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * An immutable map with primitive int values, which are stored without boxing. The keys are stored in an open
+ * addressing hash table, just like in ImmutableMap; the values are stored in an int[] array parallel to the key table.
+ * <p>
+ * ImmutableToIntMap instances cannot contain null keys.
+ *
+ * @author Nils Bandener
+ */
+public interface ImmutableToIntMap<K> {
+
+    /**
+     * Returns an empty ImmutableToIntMap instance.
+     */
+    static <K> ImmutableToIntMap<K> empty() {
+        return ImmutableToIntMapImpl.empty();
+    }
+
+    /**
+     * Creates an ImmutableToIntMap with the entries from the given map.
+     *
+     * @throws IllegalArgumentException if the given map contains a null key or a null value.
+     */
+    static <K> ImmutableToIntMap<K> copyOf(Map<? extends K, ? extends Integer> map) {
+        return ImmutableToIntMapImpl.copyOf(map);
+    }
+
+    /**
+     * Returns a builder for an ImmutableToIntMap.
+     */
+    static <K> Builder<K> builder() {
+        return new Builder<>(0);
+    }
+
+    /**
+     * Returns a builder for an ImmutableToIntMap. The expected size is used to pre-size the hash table; the builder
+     * will grow beyond it if necessary.
+     */
+    static <K> Builder<K> builder(int expectedSize) {
+        return new Builder<>(expectedSize);
+    }
+
+    /**
+     * Returns the number of entries in this map.
+     */
+    int size();
+
+    /**
+     * Returns true if this map contains no entries.
+     */
+    boolean isEmpty();
+
+    /**
+     * Returns true if this map contains the given key.
+     */
+    boolean containsKey(Object key);
+
+    /**
+     * Returns the value associated with the given key. If this map does not contain the key, defaultValue is
+     * returned.
+     */
+    int getInt(Object key, int defaultValue);
+
+    /**
+     * Returns the keys of this map. The returned set shares the key table with this map.
+     */
+    ImmutableSet<K> keySet();
+
+    /**
+     * Calls the given action for each entry of this map. The values are not boxed.
+     */
+    void forEach(ObjIntConsumer<? super K> action);
+
+    /**
+     * A builder for ImmutableToIntMap instances. Putting a key which is already contained replaces the value. A
+     * builder instance can only be used to build one map.
+     */
+    final class Builder<K> {
+        private final ImmutableToIntMapImpl.Builder<K> internalBuilder;
+
+        Builder(int expectedSize) {
+            this.internalBuilder = new ImmutableToIntMapImpl.Builder<>(expectedSize);
+        }
+
+        /**
+         * Adds the given entry to the map to be built.
+         *
+         * @throws IllegalArgumentException if the key is null.
+         * @throws IllegalStateException if build() was already called.
+         */
+        public Builder<K> put(K key, int value) {
+            this.internalBuilder.put(key, value);
+            return this;
+        }
+
+        /**
+         * Returns the value which was put for the given key so far. If no value was put for the key, defaultValue is
+         * returned.
+         *
+         * @throws IllegalStateException if build() was already called.
+         */
+        public int getInt(Object key, int defaultValue) {
+            return this.internalBuilder.getInt(key, defaultValue);
+        }
+
+        /**
+         * Returns the number of entries added so far.
+         */
+        public int size() {
+            this.internalBuilder.checkState();
+            return this.internalBuilder.size;
+        }
+
+        /**
+         * Builds the map. Afterwards, this builder cannot be used any more.
+         *
+         * @throws IllegalStateException if build() was already called.
+         */
+        public ImmutableToIntMap<K> build() {
+            return this.internalBuilder.build();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Hash table based implementation of ImmutableToIntMap. See ToPrimitiveMapImpl for the layout of the key table.
+ */
+final class ImmutableToIntMapImpl<K> extends ToPrimitiveMapImpl<K> implements ImmutableToIntMap<K> {
+    private static final ImmutableToIntMapImpl<Object> EMPTY = new ImmutableToIntMapImpl<>(
+            0, 0, (short) 0, GenericArrays.create(0), new int[0], Hashing.DEFAULT_HASH_SEED, 0);
+
+    @SuppressWarnings("unchecked")
+    static <K> ImmutableToIntMapImpl<K> empty() {
+        return (ImmutableToIntMapImpl<K>) EMPTY;
+    }
+
+    static <K> ImmutableToIntMapImpl<K> copyOf(Map<? extends K, ? extends Integer> map) {
+        if (map.isEmpty()) {
+            return empty();
+        }
+
+        Builder<K> builder = new Builder<>(map.size());
+
+        for (Map.Entry<? extends K, ? extends Integer> entry : map.entrySet()) {
+            Integer value = entry.getValue();
+
+            if (value == null) {
+                throw new IllegalArgumentException("Null values are not supported");
+            }
+
+            builder.put(entry.getKey(), value);
+        }
+
+        return builder.build();
+    }
+
+    private final int[] valueTable;
+
+    ImmutableToIntMapImpl(
+            int tableSize,
+            int size,
+            short maxProbingDistance,
+            K[] keyTable,
+            int[] valueTable,
+            int hashSeed,
+            int overflowSize) {
+        super(tableSize, size, maxProbingDistance, keyTable, hashSeed, overflowSize);
+        this.valueTable = valueTable;
+    }
+
+    @Override
+    public int getInt(Object key, int defaultValue) {
+        int position = position(key);
+        return position != -1 ? valueTable[position] : defaultValue;
+    }
+
+    @Override
+    public void forEach(ObjIntConsumer<? super K> action) {
+        for (int i = 0; i < keyTable.length; i++) {
+            K key = keyTable[i];
+
+            if (key != null) {
+                action.accept(key, valueTable[i]);
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof ImmutableToIntMap)) {
+            return false;
+        }
+
+        ImmutableToIntMap<?> other = (ImmutableToIntMap<?>) o;
+
+        if (other.size() != this.size) {
+            return false;
+        }
+
+        for (int i = 0; i < keyTable.length; i++) {
+            if (keyTable[i] != null
+                    && (!other.containsKey(keyTable[i]) || valueTable[i] != other.getInt(keyTable[i], 0))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the same hash code as a java.util.Map with the same keys and boxed values.
+     */
+    @Override
+    public int hashCode() {
+        int result = 0;
+
+        for (int i = 0; i < keyTable.length; i++) {
+            if (keyTable[i] != null) {
+                result += keyTable[i].hashCode() ^ Integer.hashCode(valueTable[i]);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("{");
+
+        for (int i = 0; i < keyTable.length; i++) {
+            if (keyTable[i] != null) {
+                if (result.length() > 1) {
+                    result.append(", ");
+                }
+
+                result.append(keyTable[i]).append('=').append(valueTable[i]);
+            }
+        }
+
+        return result.append('}').toString();
+    }
+
+    static final class Builder<K> extends ToPrimitiveMapImpl.Builder<K> {
+
+        Builder(int expectedSize) {
+            super(expectedSize);
+        }
+
+        void put(K key, int value) {
+            int position = positionForPut(key);
+            ((int[]) valueTable)[position] = value;
+        }
+
+        int getInt(Object key, int defaultValue) {
+            int position = position(key);
+            return position != -1 ? ((int[]) valueTable)[position] : defaultValue;
+        }
+
+        ImmutableToIntMapImpl<K> build() {
+            checkState();
+
+            if (size == 0) {
+                invalidate();
+                return empty();
+            }
+
+            trimOverflowArea();
+            ImmutableToIntMapImpl<K> result = new ImmutableToIntMapImpl<>(
+                    tableSize, size, maxDisplacement(), keyTable, (int[]) valueTable, hashSeed, overflowSize());
+            invalidate();
+            return result;
+        }
+
+        @Override
+        Object createValueTable(int length) {
+            return new int[length];
+        }
+
+        @Override
+        void copyValue(Object source, int from, int to) {
+            ((int[]) valueTable)[to] = ((int[]) source)[from];
+        }
+    }
+}
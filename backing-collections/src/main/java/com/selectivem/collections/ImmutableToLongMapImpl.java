@@ -0,0 +1,182 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Hash table based implementation of ImmutableToLongMap. See ToPrimitiveMapImpl for the layout of the key table.
+ */
+final class ImmutableToLongMapImpl<K> extends ToPrimitiveMapImpl<K> implements ImmutableToLongMap<K> {
+    private static final ImmutableToLongMapImpl<Object> EMPTY = new ImmutableToLongMapImpl<>(
+            0, 0, (short) 0, GenericArrays.create(0), new long[0], Hashing.DEFAULT_HASH_SEED, 0);
+
+    @SuppressWarnings("unchecked")
+    static <K> ImmutableToLongMapImpl<K> empty() {
+        return (ImmutableToLongMapImpl<K>) EMPTY;
+    }
+
+    static <K> ImmutableToLongMapImpl<K> copyOf(Map<? extends K, ? extends Long> map) {
+        if (map.isEmpty()) {
+            return empty();
+        }
+
+        Builder<K> builder = new Builder<>(map.size());
+
+        for (Map.Entry<? extends K, ? extends Long> entry : map.entrySet()) {
+            Long value = entry.getValue();
+
+            if (value == null) {
+                throw new IllegalArgumentException("Null values are not supported");
+            }
+
+            builder.put(entry.getKey(), value);
+        }
+
+        return builder.build();
+    }
+
+    private final long[] valueTable;
+
+    ImmutableToLongMapImpl(
+            int tableSize,
+            int size,
+            short maxProbingDistance,
+            K[] keyTable,
+            long[] valueTable,
+            int hashSeed,
+            int overflowSize) {
+        super(tableSize, size, maxProbingDistance, keyTable, hashSeed, overflowSize);
+        this.valueTable = valueTable;
+    }
+
+    @Override
+    public long getLong(Object key, long defaultValue) {
+        int position = position(key);
+        return position != -1 ? valueTable[position] : defaultValue;
+    }
+
+    @Override
+    public void forEach(ObjLongConsumer<? super K> action) {
+        for (int i = 0; i < keyTable.length; i++) {
+            K key = keyTable[i];
+
+            if (key != null) {
+                action.accept(key, valueTable[i]);
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof ImmutableToLongMap)) {
+            return false;
+        }
+
+        ImmutableToLongMap<?> other = (ImmutableToLongMap<?>) o;
+
+        if (other.size() != this.size) {
+            return false;
+        }
+
+        for (int i = 0; i < keyTable.length; i++) {
+            if (keyTable[i] != null
+                    && (!other.containsKey(keyTable[i]) || valueTable[i] != other.getLong(keyTable[i], 0))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the same hash code as a java.util.Map with the same keys and boxed values.
+     */
+    @Override
+    public int hashCode() {
+        int result = 0;
+
+        for (int i = 0; i < keyTable.length; i++) {
+            if (keyTable[i] != null) {
+                result += keyTable[i].hashCode() ^ Long.hashCode(valueTable[i]);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("{");
+
+        for (int i = 0; i < keyTable.length; i++) {
+            if (keyTable[i] != null) {
+                if (result.length() > 1) {
+                    result.append(", ");
+                }
+
+                result.append(keyTable[i]).append('=').append(valueTable[i]);
+            }
+        }
+
+        return result.append('}').toString();
+    }
+
+    static final class Builder<K> extends ToPrimitiveMapImpl.Builder<K> {
+
+        Builder(int expectedSize) {
+            super(expectedSize);
+        }
+
+        void put(K key, long value) {
+            int position = positionForPut(key);
+            ((long[]) valueTable)[position] = value;
+        }
+
+        long getLong(Object key, long defaultValue) {
+            int position = position(key);
+            return position != -1 ? ((long[]) valueTable)[position] : defaultValue;
+        }
+
+        ImmutableToLongMapImpl<K> build() {
+            checkState();
+
+            if (size == 0) {
+                invalidate();
+                return empty();
+            }
+
+            trimOverflowArea();
+            ImmutableToLongMapImpl<K> result = new ImmutableToLongMapImpl<>(
+                    tableSize, size, maxDisplacement(), keyTable, (long[]) valueTable, hashSeed, overflowSize());
+            invalidate();
+            return result;
+        }
+
+        @Override
+        Object createValueTable(int length) {
+            return new long[length];
+        }
+
+        @Override
+        void copyValue(Object source, int from, int to) {
+            ((long[]) valueTable)[to] = ((long[]) source)[from];
+        }
+    }
+}
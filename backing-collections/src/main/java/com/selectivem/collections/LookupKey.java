@@ -0,0 +1,93 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+/**
+ * A key together with its precomputed hash. Use this to look up the same key in many ImmutableMap or
+ * IndexedImmutableSet instances: The hashCode() of the key and the scrambling of the hash are computed only once,
+ * when the LookupKey is created. Each lookup then only needs to fold the precomputed hash to the table size of the
+ * respective collection.
+ * <p>
+ * Collections which use a HashingStrategy or an alternative hash function only make use of the precomputed
+ * hashCode(). Collections which do not use hash tables just use the key.
+ * <p>
+ * LookupKey instances are immutable and can be shared between threads.
+ *
+ * @author Nils Bandener
+ */
+public final class LookupKey<K> {
+
+    /**
+     * Creates a LookupKey for the given key.
+     *
+     * @throws IllegalArgumentException if the key is null.
+     */
+    public static <K> LookupKey<K> of(K key) {
+        return new LookupKey<>(key, Hashing.hash(key));
+    }
+
+    private final K key;
+    private final int hash;
+
+    /**
+     * The hash as scrambled for small tables; see Hashing.isSmallTableSize()
+     */
+    private final int scrambledHashSmall;
+
+    /**
+     * The hash as scrambled for all other tables
+     */
+    private final int scrambledHash;
+
+    private LookupKey(K key, int hash) {
+        this.key = key;
+        this.hash = hash;
+        this.scrambledHashSmall = Hashing.scramble(hash);
+        this.scrambledHash = Hashing.scramble2(this.scrambledHashSmall);
+    }
+
+    /**
+     * Returns the key.
+     */
+    public K key() {
+        return key;
+    }
+
+    /**
+     * Returns the hashCode() of the key.
+     */
+    int hash() {
+        return hash;
+    }
+
+    /**
+     * Returns the same value as Hashing.hashPositionForHash(tableSize, hash(), hashSeed).
+     */
+    int hashPosition(int tableSize, int hashSeed) {
+        if (hashSeed != Hashing.DEFAULT_HASH_SEED) {
+            return Hashing.hashPositionForHash(tableSize, this.hash, hashSeed);
+        } else if (Hashing.isSmallTableSize(tableSize)) {
+            return Hashing.hashPositionForScrambledHash(tableSize, this.scrambledHashSmall);
+        } else {
+            return Hashing.hashPositionForScrambledHash(tableSize, this.scrambledHash);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LookupKey[" + key + "]";
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.Map;
+
+/**
+ * An immutable map which supports creating modified copies cheaply. The methods with() and without() return new map
+ * instances, which share most of their structure with the original map. Both operations need O(log n) time and only
+ * copy the O(log n) nodes on the path to the modified entry.
+ * <p>
+ * This is useful if many maps are derived from a common base map and differ only by few entries. For maps which
+ * are built once and never modified, ImmutableMap is faster and more compact.
+ * <p>
+ * PersistentMap instances cannot contain null keys. Null values are supported.
+ *
+ * @author Nils Bandener
+ */
+public interface PersistentMap<K, V> extends UnmodifiableMap<K, V> {
+
+    /**
+     * Returns an empty PersistentMap instance.
+     */
+    static <K, V> PersistentMap<K, V> empty() {
+        return PersistentMapImpl.empty();
+    }
+
+    /**
+     * Creates a PersistentMap with the entries from the given map. If the given map is already a PersistentMap
+     * created by this library, it will be returned as is.
+     *
+     * @throws IllegalArgumentException if the given map contains a null key.
+     */
+    static <K, V> PersistentMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        return PersistentMapImpl.copyOf(map);
+    }
+
+    /**
+     * Returns a map which contains the entries of this map and the given entry. If this map already contains the
+     * key, the value is replaced. If this map already maps the key to the very same value instance, this map is
+     * returned.
+     *
+     * @throws IllegalArgumentException if the key is null.
+     */
+    PersistentMap<K, V> with(K key, V value);
+
+    /**
+     * Returns a map which contains the entries of this map except the one with the given key. If this map does not
+     * contain the key, this map is returned.
+     */
+    PersistentMap<K, V> without(Object key);
+}
@@ -0,0 +1,568 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Implementation of PersistentMap as a hash array mapped trie (HAMT). Each level of the trie consumes 5 bits of
+ * the hash code of the keys; thus, each node has up to 32 children. Only the children which are actually present are
+ * stored; a bitmap indicates which ones these are.
+ * <p>
+ * Each node stores its children in an array of pairs. A pair is either a key and its value, or null and a sub-node.
+ * Keys with identical hash codes are stored in a CollisionNode.
+ */
+final class PersistentMapImpl<K, V> extends UnmodifiableMapImpl<K, V> implements PersistentMap<K, V> {
+    private static final PersistentMapImpl<?, ?> EMPTY = new PersistentMapImpl<>(null, 0);
+
+    /**
+     * Returned by Node.find() if the key is not contained. We cannot use null for this, as null values are supported.
+     */
+    private static final Object NOT_FOUND = new Object();
+
+    private static final int BITS_PER_LEVEL = 5;
+    private static final int LEVEL_MASK = (1 << BITS_PER_LEVEL) - 1;
+
+    /**
+     * 7 levels of BitmapNodes consume all 32 bits of a hash code; below these, there can be a CollisionNode.
+     */
+    private static final int MAX_DEPTH = 8;
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMapImpl<K, V> empty() {
+        return (PersistentMapImpl<K, V>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMapImpl<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentMapImpl) {
+            return (PersistentMapImpl<K, V>) map;
+        }
+
+        PersistentMapImpl<K, V> result = empty();
+
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            result = result.with(entry.getKey(), entry.getValue());
+        }
+
+        return result;
+    }
+
+    private final Node root;
+    private final int size;
+    private Set<Entry<K, V>> entrySet;
+
+    private PersistentMapImpl(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @Override
+    public PersistentMapImpl<K, V> with(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Null keys are not supported");
+        }
+
+        int hash = hash(key);
+
+        if (this.root == null) {
+            return new PersistentMapImpl<>(BitmapNode.EMPTY.with(0, hash, key, value), 1);
+        }
+
+        // Looking up the key first lets us determine the new size without allocating a result holder
+        Object existing = this.root.find(0, hash, key);
+
+        if (existing != NOT_FOUND && existing == value) {
+            return this;
+        }
+
+        return new PersistentMapImpl<>(this.root.with(0, hash, key, value), existing == NOT_FOUND ? size + 1 : size);
+    }
+
+    @Override
+    public PersistentMapImpl<K, V> without(Object key) {
+        if (key == null || this.root == null) {
+            return this;
+        }
+
+        int hash = hash(key);
+
+        if (this.root.find(0, hash, key) == NOT_FOUND) {
+            return this;
+        }
+
+        if (this.size == 1) {
+            return empty();
+        }
+
+        return new PersistentMapImpl<>(this.root.without(0, hash, key), size - 1);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != NOT_FOUND;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(Object key) {
+        Object result = find(key);
+        return result != NOT_FOUND ? (V) result : null;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        Set<Entry<K, V>> result = this.entrySet;
+
+        if (result == null) {
+            this.entrySet = result = new UnmodifiableSetImpl<Entry<K, V>>() {
+                @Override
+                public int size() {
+                    return PersistentMapImpl.this.size;
+                }
+
+                @Override
+                public boolean isEmpty() {
+                    return PersistentMapImpl.this.size == 0;
+                }
+
+                @Override
+                public boolean contains(Object o) {
+                    if (o instanceof Entry) {
+                        Entry<?, ?> entry = (Entry<?, ?>) o;
+                        Object value = find(entry.getKey());
+                        return value != NOT_FOUND && Objects.equals(value, entry.getValue());
+                    } else {
+                        return false;
+                    }
+                }
+
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new Iterator<Entry<K, V>>() {
+                        private final NodeCursor<K, V> cursor = new NodeCursor<>(root);
+                        private boolean advanced = cursor.advance();
+
+                        @Override
+                        public boolean hasNext() {
+                            return advanced;
+                        }
+
+                        @Override
+                        public Entry<K, V> next() {
+                            if (!advanced) {
+                                throw new NoSuchElementException();
+                            }
+
+                            Entry<K, V> result = new AbstractMap.SimpleImmutableEntry<>(cursor.key(), cursor.value());
+                            advanced = cursor.advance();
+                            return result;
+                        }
+                    };
+                }
+            };
+        }
+
+        return result;
+    }
+
+    @Override
+    public MapCursor<K, V> cursor() {
+        return new NodeCursor<>(root);
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        NodeCursor<K, V> cursor = new NodeCursor<>(root);
+
+        while (cursor.advance()) {
+            action.accept(cursor.key(), cursor.value());
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof Map)) {
+            return false;
+        }
+
+        Map<?, ?> other = (Map<?, ?>) o;
+
+        if (other.size() != this.size) {
+            return false;
+        }
+
+        NodeCursor<K, V> cursor = new NodeCursor<>(root);
+
+        while (cursor.advance()) {
+            V value = cursor.value();
+
+            if (value == null) {
+                if (other.get(cursor.key()) != null || !other.containsKey(cursor.key())) {
+                    return false;
+                }
+            } else if (!value.equals(other.get(cursor.key()))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 0;
+        NodeCursor<K, V> cursor = new NodeCursor<>(root);
+
+        while (cursor.advance()) {
+            result += cursor.key().hashCode() ^ Objects.hashCode(cursor.value());
+        }
+
+        return result;
+    }
+
+    private Object find(Object key) {
+        if (key == null || this.root == null) {
+            return NOT_FOUND;
+        }
+
+        return this.root.find(0, hash(key), key);
+    }
+
+    /**
+     * Spreads the higher bits of the hash code to the lower bits, as the upper levels of the trie only look at the
+     * lower bits.
+     */
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private abstract static class Node {
+        /**
+         * Pairs of keys and values. For BitmapNodes, a pair can also consist of null and a sub-node.
+         */
+        final Object[] array;
+
+        Node(Object[] array) {
+            this.array = array;
+        }
+
+        /**
+         * Returns the value for the given key or NOT_FOUND.
+         */
+        abstract Object find(int shift, int hash, Object key);
+
+        abstract Node with(int shift, int hash, Object key, Object value);
+
+        /**
+         * Returns a node without the given key. The key must be contained.
+         */
+        abstract Node without(int shift, int hash, Object key);
+    }
+
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+
+        BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = bit(shift, hash);
+
+            if ((this.bitmap & bit) == 0) {
+                return NOT_FOUND;
+            }
+
+            int i = index(bit);
+            Object presentKey = array[i];
+
+            if (presentKey == null) {
+                return ((Node) array[i + 1]).find(shift + BITS_PER_LEVEL, hash, key);
+            } else if (presentKey.equals(key)) {
+                return array[i + 1];
+            } else {
+                return NOT_FOUND;
+            }
+        }
+
+        @Override
+        Node with(int shift, int hash, Object key, Object value) {
+            int bit = bit(shift, hash);
+            int i = index(bit);
+
+            if ((this.bitmap & bit) == 0) {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, i);
+                newArray[i] = key;
+                newArray[i + 1] = value;
+                System.arraycopy(array, i, newArray, i + 2, array.length - i);
+                return new BitmapNode(this.bitmap | bit, newArray);
+            }
+
+            Object presentKey = array[i];
+
+            if (presentKey == null) {
+                Node child = (Node) array[i + 1];
+                Node newChild = child.with(shift + BITS_PER_LEVEL, hash, key, value);
+                return newChild == child ? this : withSlot(i, null, newChild);
+            } else if (presentKey.equals(key)) {
+                return array[i + 1] == value ? this : withSlot(i, presentKey, value);
+            } else {
+                Node newChild = createNode(
+                        shift + BITS_PER_LEVEL,
+                        presentKey,
+                        array[i + 1],
+                        PersistentMapImpl.hash(presentKey),
+                        key,
+                        value,
+                        hash);
+                return withSlot(i, null, newChild);
+            }
+        }
+
+        @Override
+        Node without(int shift, int hash, Object key) {
+            int bit = bit(shift, hash);
+            int i = index(bit);
+
+            if (array[i] == null) {
+                Node child = (Node) array[i + 1];
+                Node newChild = child.without(shift + BITS_PER_LEVEL, hash, key);
+
+                if (newChild instanceof BitmapNode && ((BitmapNode) newChild).isSingleEntry()) {
+                    // Inline the remaining entry; otherwise, repeatedly adding and removing keys would make the trie
+                    // deeper and deeper
+                    return withSlot(i, newChild.array[0], newChild.array[1]);
+                } else if (newChild != null) {
+                    return withSlot(i, null, newChild);
+                }
+            }
+
+            if (this.bitmap == bit) {
+                return null;
+            }
+
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+            return new BitmapNode(this.bitmap & ~bit, newArray);
+        }
+
+        /**
+         * Returns true if this node holds only a single key and no sub-nodes. The parent node then stores the key
+         * directly instead of this node.
+         */
+        boolean isSingleEntry() {
+            return array.length == 2 && array[0] != null;
+        }
+
+        private BitmapNode withSlot(int i, Object key, Object value) {
+            Object[] newArray = array.clone();
+            newArray[i] = key;
+            newArray[i + 1] = value;
+            return new BitmapNode(this.bitmap, newArray);
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(this.bitmap & (bit - 1)) * 2;
+        }
+
+        private static int bit(int shift, int hash) {
+            return 1 << ((hash >>> shift) & LEVEL_MASK);
+        }
+
+        private static Node createNode(
+                int shift, Object key1, Object value1, int hash1, Object key2, Object value2, int hash2) {
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+            } else {
+                return EMPTY.with(shift, hash1, key1, value1).with(shift, hash2, key2, value2);
+            }
+        }
+    }
+
+    /**
+     * Holds keys which have the same hash code.
+     */
+    private static final class CollisionNode extends Node {
+        private final int hash;
+
+        CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            if (hash != this.hash) {
+                return NOT_FOUND;
+            }
+
+            int i = indexOf(key);
+            return i != -1 ? array[i + 1] : NOT_FOUND;
+        }
+
+        @Override
+        Node with(int shift, int hash, Object key, Object value) {
+            if (hash != this.hash) {
+                // Push this node one level down and put it side by side with the new key
+                int bit = BitmapNode.bit(shift, this.hash);
+                return new BitmapNode(bit, new Object[] {null, this}).with(shift, hash, key, value);
+            }
+
+            int i = indexOf(key);
+
+            if (i == -1) {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, array.length);
+                newArray[array.length] = key;
+                newArray[array.length + 1] = value;
+                return new CollisionNode(hash, newArray);
+            } else if (array[i + 1] == value) {
+                return this;
+            } else {
+                Object[] newArray = array.clone();
+                newArray[i + 1] = value;
+                return new CollisionNode(hash, newArray);
+            }
+        }
+
+        @Override
+        Node without(int shift, int hash, Object key) {
+            int i = indexOf(key);
+
+            if (array.length == 4) {
+                // Only one key remains; it does not need a CollisionNode any more. The parent BitmapNode will inline
+                // the returned single entry node.
+                int remaining = i == 0 ? 2 : 0;
+                return BitmapNode.EMPTY.with(shift, hash, array[remaining], array[remaining + 1]);
+            }
+
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+            return new CollisionNode(hash, newArray);
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i].equals(key)) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+    }
+
+    /**
+     * Traverses the trie depth first. Apart from the stack allocated on construction, this does not allocate any
+     * objects.
+     */
+    private static final class NodeCursor<K, V> implements MapCursor<K, V> {
+        private final Object[][] arrays = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth;
+        private Object key;
+        private Object value;
+        private boolean valid;
+
+        NodeCursor(Node root) {
+            if (root != null) {
+                this.arrays[0] = root.array;
+                this.depth = 0;
+            } else {
+                this.depth = -1;
+            }
+        }
+
+        @Override
+        public boolean advance() {
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                int position = positions[depth];
+
+                if (position >= array.length) {
+                    arrays[depth] = null;
+                    depth--;
+                    continue;
+                }
+
+                positions[depth] = position + 2;
+
+                if (array[position] != null) {
+                    this.key = array[position];
+                    this.value = array[position + 1];
+                    this.valid = true;
+                    return true;
+                } else {
+                    depth++;
+                    arrays[depth] = ((Node) array[position + 1]).array;
+                    positions[depth] = 0;
+                }
+            }
+
+            this.key = null;
+            this.value = null;
+            this.valid = false;
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public K key() {
+            checkValid();
+            return (K) key;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public V value() {
+            checkValid();
+            return (V) value;
+        }
+
+        private void checkValid() {
+            if (!valid) {
+                throw new NoSuchElementException();
+            }
+        }
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Common base of the immutable maps with primitive values, such as ImmutableToIntMapImpl. The keys are stored in an
+ * open addressing hash table, just like in ImmutableMapImpl.HashArrayBackedMap. The values are stored in a primitive
+ * array parallel to the key table; this is managed by the sub-classes.
+ * <p>
+ * Growing the table does not help against keys with identical hash codes. Thus, the table only grows up to the limit
+ * given by Hashing.nextLargeSize(int, int). Keys which do not fit into the table at that size are stored in an overflow
+ * area at the end of the key table, which is searched linearly. This is similar to the collision buckets of chained
+ * hash tables.
+ */
+abstract class ToPrimitiveMapImpl<K> {
+    final int tableSize;
+    final int size;
+
+    /**
+     * The maximum distance between the hash position of a key and its actual position in the table.
+     */
+    final short maxProbingDistance;
+
+    final K[] keyTable;
+
+    /**
+     * Selects the hash function; see Hashing.hashPositionForHash(int, int, int).
+     */
+    final int hashSeed;
+
+    /**
+     * The number of keys in the overflow area, which consists of the last slots of keyTable.
+     */
+    final int overflowSize;
+
+    ToPrimitiveMapImpl(
+            int tableSize, int size, short maxProbingDistance, K[] keyTable, int hashSeed, int overflowSize) {
+        this.tableSize = tableSize;
+        this.size = size;
+        this.maxProbingDistance = maxProbingDistance;
+        this.keyTable = keyTable;
+        this.hashSeed = hashSeed;
+        this.overflowSize = overflowSize;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(Object key) {
+        return position(key) != -1;
+    }
+
+    public ImmutableSet<K> keySet() {
+        if (size == 0) {
+            return ImmutableSetImpl.empty();
+        } else if (overflowSize != 0) {
+            // The overflow area is not known to HashArrayBackedSet
+            List<K> keys = new ArrayList<>(size);
+
+            for (K key : keyTable) {
+                if (key != null) {
+                    keys.add(key);
+                }
+            }
+
+            return ImmutableSetImpl.copyOf(keys);
+        } else {
+            // Shares the key table with this map
+            return new ImmutableSetImpl.HashArrayBackedSet<>(
+                    tableSize, size, maxProbingDistance, keyTable, null, hashSeed);
+        }
+    }
+
+    /**
+     * Returns the position of the given key in the key table, or -1 if this map does not contain the key.
+     */
+    final int position(Object key) {
+        if (key == null || size == 0) {
+            return -1;
+        }
+
+        int check = Hashing.checkTable(
+                keyTable, key, Hashing.hashPositionForHash(tableSize, key.hashCode(), hashSeed), maxProbingDistance);
+
+        if (check < 0) {
+            return -1 - check;
+        } else {
+            return overflowPosition(keyTable, keyTable.length - overflowSize, overflowSize, key);
+        }
+    }
+
+    /**
+     * Returns the position of the given key in the overflow area, which starts at the given position of the key
+     * table, or -1 if the overflow area does not contain the key.
+     */
+    static int overflowPosition(Object[] keyTable, int overflowStart, int overflowSize, Object key) {
+        int end = overflowStart + overflowSize;
+
+        for (int i = overflowStart; i < end; i++) {
+            if (keyTable[i].equals(key)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Builds the key table of a map with primitive values. Sub-classes store the values in an array parallel to the
+     * key table; putting a value consists of calling positionForPut() and then writing the value to the returned
+     * position.
+     * <p>
+     * In contrast to ImmutableMapImpl.HashArrayBackedMap.Builder, this builder grows in place. Like the former, it
+     * first retries with the alternative hash function before doubling the table size. If the table size limit given
+     * by Hashing.nextLargeSize(int, int) is reached, the keys which do not fit are put into the overflow area.
+     */
+    abstract static class Builder<K> {
+        private static final short PROBING_OVERHEAD_FACTOR = 3;
+
+        K[] keyTable;
+
+        /**
+         * The primitive value array of the sub-class; parallel to keyTable.
+         */
+        Object valueTable;
+
+        /**
+         * For each occupied slot, the distance to the hash position of the key. Needed for the Robin Hood
+         * insertion; see Hashing.checkTableRobinHood().
+         */
+        private short[] displacements;
+
+        int tableSize;
+        int size;
+        int hashSeed = Hashing.DEFAULT_HASH_SEED;
+        private short maxProbingDistance;
+        private int probingOverhead;
+
+        /**
+         * The position of the first slot after the hash table; the overflow area starts here. The arrays might have
+         * more slots than overflowStart + overflowSize to leave room for further overflowing keys.
+         */
+        private int overflowStart;
+
+        private int overflowSize;
+
+        /**
+         * Set to true when the table has reached its size limit; from then on, the table does not grow any more.
+         */
+        private boolean growthLimitReached;
+
+        Builder(int expectedSize) {
+            int tableSize = Hashing.largeHashTableSize(expectedSize);
+
+            if (tableSize == -1) {
+                throw new IllegalArgumentException("Too many entries: " + expectedSize);
+            }
+
+            allocate(tableSize, Hashing.DEFAULT_HASH_SEED);
+        }
+
+        /**
+         * Creates a value array of the given length.
+         */
+        abstract Object createValueTable(int length);
+
+        /**
+         * Copies the value at the position from of the value array source to the position to of the current value
+         * array.
+         */
+        abstract void copyValue(Object source, int from, int to);
+
+        /**
+         * Returns the position at which the value for the given key must be written. If the key is not contained yet,
+         * it will be added.
+         *
+         * @throws IllegalArgumentException if the key is null.
+         * @throws IllegalStateException if the map was already built.
+         */
+        final int positionForPut(K key) {
+            if (key == null) {
+                throw new IllegalArgumentException("Null keys are not supported");
+            }
+
+            checkState();
+
+            int hash = key.hashCode();
+
+            for (; ; ) {
+                int pos = Hashing.hashPositionForHash(tableSize, hash, hashSeed);
+                int check =
+                        Hashing.checkTableRobinHood(keyTable, displacements, null, key, hash, pos, maxProbingDistance);
+
+                if (check < 0) {
+                    // already contained
+                    return -check - 1;
+                }
+
+                int overflowPosition = overflowPosition(keyTable, overflowStart, overflowSize, key);
+
+                if (overflowPosition != -1) {
+                    return overflowPosition;
+                } else if (check == Hashing.NO_SPACE) {
+                    if (this.growthLimitReached) {
+                        return insertOverflow(key);
+                    }
+
+                    grow();
+                } else {
+                    int free = insert(key, pos, check);
+
+                    // The shift moved each entry between check and free by one slot
+                    this.probingOverhead += free - pos;
+
+                    if (this.size >= 12
+                            && this.probingOverhead > this.size * PROBING_OVERHEAD_FACTOR
+                            && !this.growthLimitReached) {
+                        grow();
+                        return position(key);
+                    }
+
+                    return check;
+                }
+            }
+        }
+
+        final int position(Object key) {
+            checkState();
+
+            if (key == null) {
+                return -1;
+            }
+
+            int check = Hashing.checkTable(
+                    keyTable,
+                    key,
+                    Hashing.hashPositionForHash(tableSize, key.hashCode(), hashSeed),
+                    maxProbingDistance);
+
+            return check < 0 ? -1 - check : overflowPosition(keyTable, overflowStart, overflowSize, key);
+        }
+
+        final int overflowSize() {
+            return overflowSize;
+        }
+
+        /**
+         * Shrinks the arrays to the used length if there are unused slots after the overflow area. This is to be
+         * called by the build() methods of the sub-classes, as the maps locate the overflow area by the array length.
+         */
+        final void trimOverflowArea() {
+            int length = overflowStart + overflowSize;
+
+            if (keyTable.length != length) {
+                resizeArrays(length);
+            }
+        }
+
+        final short maxDisplacement() {
+            return Hashing.maxDisplacement(displacements);
+        }
+
+        /**
+         * Marks this builder as used up; to be called by the build() methods of the sub-classes.
+         */
+        final void invalidate() {
+            this.keyTable = null;
+            this.valueTable = null;
+            this.displacements = null;
+        }
+
+        final void checkState() {
+            if (this.keyTable == null) {
+                throw new IllegalStateException("The map was already built");
+            }
+        }
+
+        private int insert(K key, int hashPosition, int position) {
+            int free = Hashing.robinHoodShift(keyTable, displacements, position);
+
+            if (free != position) {
+                System.arraycopy(valueTable, position, valueTable, position + 1, free - position);
+            }
+
+            keyTable[position] = key;
+            displacements[position] = (short) (position - hashPosition);
+            size++;
+            return free;
+        }
+
+        private int insertOverflow(K key) {
+            if (overflowStart + overflowSize == keyTable.length) {
+                resizeArrays(keyTable.length + overflowSize / 2 + 8);
+            }
+
+            int position = overflowStart + overflowSize;
+            keyTable[position] = key;
+            overflowSize++;
+            size++;
+            return position;
+        }
+
+        private void resizeArrays(int length) {
+            K[] newKeyTable = GenericArrays.create(length);
+            System.arraycopy(keyTable, 0, newKeyTable, 0, Math.min(keyTable.length, length));
+            Object newValueTable = createValueTable(length);
+            System.arraycopy(valueTable, 0, newValueTable, 0, Math.min(keyTable.length, length));
+            short[] newDisplacements = new short[length];
+            System.arraycopy(displacements, 0, newDisplacements, 0, Math.min(keyTable.length, length));
+            this.keyTable = newKeyTable;
+            this.valueTable = newValueTable;
+            this.displacements = newDisplacements;
+        }
+
+        private void grow() {
+            K[] oldKeyTable = this.keyTable;
+            Object oldValueTable = this.valueTable;
+            int oldTableSize = this.tableSize;
+            int newTableSize = this.tableSize;
+            int newHashSeed = this.hashSeed;
+
+            do {
+                if (newHashSeed == Hashing.DEFAULT_HASH_SEED) {
+                    // High probing overhead is often caused by poorly distributed hashCode() values rather than by a
+                    // too small table; thus, we first try the alternative hash function
+                    newHashSeed = Hashing.ALTERNATIVE_HASH_SEED;
+                } else {
+                    newTableSize = Hashing.nextLargeSize(newTableSize, size);
+
+                    if (newTableSize == -1) {
+                        // Growing does not help any more; probably, there are many identical hash codes. Stay at the
+                        // current table size and put the keys which do not fit into the overflow area.
+                        this.growthLimitReached = true;
+                        rehash(oldKeyTable, oldValueTable, oldTableSize, newHashSeed);
+                        return;
+                    }
+                }
+            } while (!rehash(oldKeyTable, oldValueTable, newTableSize, newHashSeed));
+        }
+
+        /**
+         * Moves the given entries to new tables with the given size and hash function. Returns false if the entries
+         * do not fit; if growthLimitReached is true, such entries are put into the overflow area instead.
+         */
+        private boolean rehash(K[] oldKeyTable, Object oldValueTable, int newTableSize, int newHashSeed) {
+            allocate(newTableSize, newHashSeed);
+
+            for (int i = 0; i < oldKeyTable.length; i++) {
+                K key = oldKeyTable[i];
+
+                if (key == null) {
+                    continue;
+                }
+
+                int hash = key.hashCode();
+                int pos = Hashing.hashPositionForHash(tableSize, hash, hashSeed);
+                int check =
+                        Hashing.checkTableRobinHood(keyTable, displacements, null, key, hash, pos, maxProbingDistance);
+
+                if (check == Hashing.NO_SPACE) {
+                    if (this.growthLimitReached) {
+                        copyValue(oldValueTable, i, insertOverflow(key));
+                        continue;
+                    }
+
+                    return false;
+                }
+
+                this.probingOverhead += insert(key, pos, check) - pos;
+                copyValue(oldValueTable, i, check);
+            }
+
+            return true;
+        }
+
+        private void allocate(int tableSize, int hashSeed) {
+            this.tableSize = tableSize;
+            this.hashSeed = hashSeed;
+            this.maxProbingDistance = Hashing.maxProbingDistance(tableSize);
+            this.keyTable = GenericArrays.create(tableSize + maxProbingDistance);
+            this.valueTable = createValueTable(tableSize + maxProbingDistance);
+            this.displacements = new short[tableSize + maxProbingDistance];
+            this.size = 0;
+            this.probingOverhead = 0;
+            this.overflowStart = tableSize + maxProbingDistance;
+            this.overflowSize = 0;
+        }
+    }
+}
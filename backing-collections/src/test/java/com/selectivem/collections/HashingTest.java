@@ -279,4 +279,152 @@ public class HashingTest {
             }
         }
     }
+
+    public static class SeededHashTest {
+        @Test
+        public void defaultHashSeed() {
+            for (int tableSize = 0x10; tableSize != -1; tableSize = Hashing.nextSize(tableSize)) {
+                for (int hash = -1000; hash < 1000; hash++) {
+                    Assert.assertEquals(
+                            Hashing.hashPositionForHash(tableSize, hash),
+                            Hashing.hashPositionForHash(tableSize, hash, Hashing.DEFAULT_HASH_SEED));
+                }
+            }
+        }
+
+        @Test
+        public void alternativeHashSeed_distribution() {
+            int tableSize = 0x400;
+            boolean[] occupied = new boolean[tableSize];
+            int distinctPositions = 0;
+
+            // Sequential hash codes, like the ones of small Integer values
+            for (int hash = 0; hash < tableSize / 2; hash++) {
+                int position = Hashing.hashPositionForHash(tableSize, hash, Hashing.ALTERNATIVE_HASH_SEED);
+                Assert.assertTrue(position >= 0 && position < tableSize);
+
+                if (!occupied[position]) {
+                    occupied[position] = true;
+                    distinctPositions++;
+                }
+            }
+
+            // A uniform distribution of 512 values on 1024 slots yields about 400 distinct positions
+            Assert.assertTrue(String.valueOf(distinctPositions), distinctPositions > 350);
+        }
+
+        /**
+         * Returns strings which all have the same hash position for the given table size according to the default hash
+         * function.
+         */
+        static List<String> collidingStrings(int tableSize, int count) {
+            List<String> result = new ArrayList<>(count);
+
+            for (int i = 0; result.size() < count; i++) {
+                String s = "key" + i;
+
+                if (Hashing.hashPosition(tableSize, s) == 7) {
+                    result.add(s);
+                }
+            }
+
+            return result;
+        }
+    }
+
+    public static class RobinHoodTest {
+        @Test
+        public void checkTableRobinHood() {
+            int tableSize = 0x100;
+            short maxProbingDistance = Hashing.maxProbingDistance(tableSize);
+            String[] table = new String[tableSize + maxProbingDistance];
+            short[] displacements = new short[table.length];
+            List<String> inserted = new ArrayList<>();
+
+            for (int i = 0; ; i++) {
+                String value = "a" + i;
+                int pos = Hashing.hashPosition(tableSize, value);
+                int check = Hashing.checkTableRobinHood(
+                        table, displacements, null, value, value.hashCode(), pos, maxProbingDistance);
+
+                if (check == Hashing.NO_SPACE) {
+                    break;
+                }
+
+                Assert.assertTrue(check >= 0);
+                Hashing.robinHoodShift(table, displacements, check);
+                table[check] = value;
+                displacements[check] = (short) (check - pos);
+                inserted.add(value);
+            }
+
+            for (int i = 0; i < table.length; i++) {
+                if (table[i] != null) {
+                    Assert.assertEquals(i - Hashing.hashPosition(tableSize, table[i]), displacements[i]);
+                    Assert.assertTrue(displacements[i] <= maxProbingDistance);
+                }
+            }
+
+            for (String value : inserted) {
+                int pos = Hashing.hashPosition(tableSize, value);
+                int check = Hashing.checkTableRobinHood(
+                        table, displacements, null, value, value.hashCode(), pos, maxProbingDistance);
+                Assert.assertTrue(value, check < 0);
+                Assert.assertEquals(value, table[-check - 1]);
+                Assert.assertTrue(Hashing.checkTable(table, value, pos, Hashing.maxDisplacement(displacements)) < 0);
+            }
+        }
+
+        @Test
+        public void capacity() {
+            int tableSize = 0x400;
+            short maxProbingDistance = Hashing.maxProbingDistance(tableSize);
+            Random random = new Random(1);
+            int sumCountLinear = 0;
+            int sumCountRobinHood = 0;
+
+            for (int sample = 0; sample < 100; sample++) {
+                List<String> values = ByTableSizeAndTestData.TestDataFactory.ALL
+                        .get(sample % 3)
+                        .getTestData(tableSize + maxProbingDistance + 1, random);
+
+                String[] linearTable = new String[tableSize + maxProbingDistance];
+                String[] robinHoodTable = new String[tableSize + maxProbingDistance];
+                short[] displacements = new short[robinHoodTable.length];
+                boolean linearFull = false;
+                boolean robinHoodFull = false;
+
+                for (String value : values) {
+                    int pos = Hashing.hashPosition(tableSize, value);
+
+                    if (!linearFull) {
+                        int check = Hashing.checkTable(linearTable, value, pos, maxProbingDistance);
+
+                        if (check == Hashing.NO_SPACE) {
+                            linearFull = true;
+                        } else if (check >= 0) {
+                            linearTable[check] = value;
+                            sumCountLinear++;
+                        }
+                    }
+
+                    if (!robinHoodFull) {
+                        int check = Hashing.checkTableRobinHood(
+                                robinHoodTable, displacements, null, value, value.hashCode(), pos, maxProbingDistance);
+
+                        if (check == Hashing.NO_SPACE) {
+                            robinHoodFull = true;
+                        } else if (check >= 0) {
+                            Hashing.robinHoodShift(robinHoodTable, displacements, check);
+                            robinHoodTable[check] = value;
+                            displacements[check] = (short) (check - pos);
+                            sumCountRobinHood++;
+                        }
+                    }
+                }
+            }
+
+            Assert.assertTrue(sumCountRobinHood + " >= " + sumCountLinear, sumCountRobinHood >= sumCountLinear);
+        }
+    }
 }
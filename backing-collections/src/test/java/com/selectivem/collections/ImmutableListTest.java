@@ -0,0 +1,251 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+@RunWith(Enclosed.class)
+public class ImmutableListTest {
+
+    @RunWith(Parameterized.class)
+    public static class ParameterizedTest {
+        final int size;
+        final List<String> reference;
+        final ImmutableList<String> subject;
+
+        @Parameterized.Parameters(name = "{0}")
+        public static Collection<Object[]> params() {
+            ArrayList<Object[]> result = new ArrayList<>();
+
+            for (int size : new int[] {0, 1, 2, 3, 4, 10, 100}) {
+                result.add(new Object[] {size});
+            }
+
+            return result;
+        }
+
+        public ParameterizedTest(int size) {
+            this.size = size;
+            this.reference = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                // Contains duplicates and null elements
+                this.reference.add(i % 7 == 5 ? null : "e" + (i % 11));
+            }
+
+            ImmutableList.Builder<String> builder = ImmutableList.builder();
+
+            for (String e : this.reference) {
+                builder.add(e);
+            }
+
+            this.subject = builder.build();
+        }
+
+        @Test
+        public void basic() {
+            Assert.assertEquals(reference, subject);
+            Assert.assertEquals(subject, reference);
+            Assert.assertEquals(reference.hashCode(), subject.hashCode());
+            Assert.assertEquals(reference.toString(), subject.toString());
+            Assert.assertEquals(size, subject.size());
+            Assert.assertEquals(size == 0, subject.isEmpty());
+        }
+
+        @Test
+        public void copyOf() {
+            Assert.assertEquals(subject, ImmutableList.copyOf(reference));
+            Assert.assertSame(subject, ImmutableList.copyOf(subject));
+        }
+
+        @Test
+        public void get() {
+            for (int i = 0; i < size; i++) {
+                Assert.assertEquals(reference.get(i), subject.get(i));
+            }
+
+            assertIndexOutOfBounds(subject, -1);
+            assertIndexOutOfBounds(subject, size);
+        }
+
+        @Test
+        public void indexOf() {
+            for (String e : Arrays.asList("e0", "e1", "e5", "e10", "x", null)) {
+                Assert.assertEquals(reference.indexOf(e), subject.indexOf(e));
+                Assert.assertEquals(reference.lastIndexOf(e), subject.lastIndexOf(e));
+                Assert.assertEquals(reference.contains(e), subject.contains(e));
+            }
+        }
+
+        @Test
+        public void iterator() {
+            Iterator<String> iter = subject.iterator();
+
+            for (int i = 0; i < size; i++) {
+                Assert.assertTrue(iter.hasNext());
+                Assert.assertEquals(reference.get(i), iter.next());
+            }
+
+            Assert.assertFalse(iter.hasNext());
+
+            try {
+                iter.next();
+                Assert.fail();
+            } catch (NoSuchElementException e) {
+                // expected
+            }
+        }
+
+        @Test
+        public void forEach() {
+            List<String> result = new ArrayList<>();
+            subject.forEach(result::add);
+            Assert.assertEquals(reference, result);
+        }
+
+        @Test
+        public void stream() {
+            Assert.assertEquals(reference, subject.stream().collect(Collectors.toList()));
+            Assert.assertEquals(reference, subject.parallelStream().collect(Collectors.toList()));
+        }
+
+        @Test
+        public void toArray() {
+            Assert.assertArrayEquals(reference.toArray(), subject.toArray());
+            Assert.assertArrayEquals(reference.toArray(new String[0]), subject.toArray(new String[0]));
+
+            String[] target = new String[size + 2];
+            Arrays.fill(target, "x");
+            Assert.assertSame(target, subject.toArray(target));
+            Assert.assertNull(target[size]);
+            Assert.assertEquals(reference, Arrays.asList(target).subList(0, size));
+        }
+
+        @Test
+        public void subList() {
+            for (int from = 0; from <= size; from++) {
+                for (int to = from; to <= size; to++) {
+                    List<String> referenceSubList = reference.subList(from, to);
+                    ImmutableList<String> subList = subject.subList(from, to);
+                    Assert.assertEquals(referenceSubList, subList);
+                    Assert.assertEquals(referenceSubList.hashCode(), subList.hashCode());
+                    Assert.assertEquals(referenceSubList.indexOf("e1"), subList.indexOf("e1"));
+                    Assert.assertEquals(referenceSubList.lastIndexOf(null), subList.lastIndexOf(null));
+                    Assert.assertArrayEquals(referenceSubList.toArray(), subList.toArray());
+                    Assert.assertEquals(referenceSubList, subList.stream().collect(Collectors.toList()));
+                    assertIndexOutOfBounds(subList, to - from);
+
+                    if (to - from >= 2) {
+                        Assert.assertEquals(referenceSubList.subList(1, to - from), subList.subList(1, to - from));
+                    }
+                }
+            }
+        }
+
+        @Test(expected = IndexOutOfBoundsException.class)
+        public void subList_outOfBounds() {
+            subject.subList(0, size + 1);
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void subList_invalidRange() {
+            subject.subList(size, size - 1);
+        }
+
+        @SuppressWarnings("deprecation")
+        @Test
+        public void unsupportedOperations() {
+            List<Runnable> operations = Arrays.asList(
+                    () -> subject.add("a"),
+                    () -> subject.add(0, "a"),
+                    () -> subject.addAll(Arrays.asList("a")),
+                    () -> subject.addAll(0, Arrays.asList("a")),
+                    () -> subject.set(0, "a"),
+                    () -> subject.remove("e1"),
+                    () -> subject.remove(0),
+                    () -> subject.removeAll(Arrays.asList("e1")),
+                    () -> subject.retainAll(Arrays.asList("e1")),
+                    () -> subject.removeIf(e -> true),
+                    () -> subject.replaceAll(e -> e),
+                    () -> subject.sort(null),
+                    () -> subject.clear());
+
+            for (Runnable operation : operations) {
+                try {
+                    operation.run();
+                    Assert.fail("Operation did not fail");
+                } catch (UnsupportedOperationException e) {
+                    // expected
+                }
+            }
+        }
+
+        private static void assertIndexOutOfBounds(List<String> list, int index) {
+            try {
+                list.get(index);
+                Assert.fail("get(" + index + ") did not fail");
+            } catch (IndexOutOfBoundsException e) {
+                // expected
+            }
+        }
+    }
+
+    public static class BasicTest {
+        @Test
+        public void of() {
+            Assert.assertEquals(Arrays.asList("a"), ImmutableList.of("a"));
+            Assert.assertEquals(Arrays.asList("a", "b"), ImmutableList.of("a", "b"));
+            Assert.assertEquals(Arrays.asList("a", null), ImmutableList.of("a", null));
+            Assert.assertTrue(ImmutableList.empty().isEmpty());
+        }
+
+        @Test
+        public void builder_trimsCapacity() {
+            ImmutableList.Builder<String> builder = ImmutableList.builder(100);
+            builder.addAll(Arrays.asList("a", "b", "c", "d"));
+            ImmutableList<String> subject = builder.build();
+            Assert.assertTrue(subject instanceof ImmutableListImpl.ArrayBackedList);
+            Assert.assertEquals(Arrays.asList("a", "b", "c", "d"), subject);
+        }
+
+        @Test
+        public void builder_addAll_grow() {
+            ImmutableList.Builder<String> builder = ImmutableList.builder();
+            builder.add("x");
+            builder.addAll(TestUtils.stringSet(100));
+            Assert.assertEquals(101, builder.size());
+            Assert.assertEquals(101, builder.build().size());
+        }
+
+        @Test(expected = IllegalStateException.class)
+        public void builder_afterBuild() {
+            ImmutableList.Builder<String> builder = ImmutableList.builder();
+            builder.add("a").build();
+            builder.add("b");
+        }
+    }
+}
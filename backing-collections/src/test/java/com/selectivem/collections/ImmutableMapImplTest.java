@@ -26,6 +26,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Random;
@@ -293,6 +294,15 @@ public class ImmutableMapImplTest {
             Assert.assertFalse(builder.keySet().contains("b"));
         }
 
+        @Test
+        public void builder_containsKey_nullValue() {
+            ImmutableMapImpl.InternalBuilder<String, String> builder =
+                    ImmutableMapImpl.InternalBuilder.<String, String>create(10).with("a", null);
+            Assert.assertTrue(builder.containsKey("a"));
+            Assert.assertTrue(builder.keySet().contains("a"));
+            Assert.assertFalse(builder.containsKey("b"));
+        }
+
         @Test
         public void builder_keySet_size() {
             ImmutableMapImpl.InternalBuilder<String, String> builder = ImmutableMapImpl.InternalBuilder.create(10);
@@ -446,6 +456,170 @@ public class ImmutableMapImplTest {
             Assert.assertEquals(reference, builder.build());
         }
 
+        @Test
+        public void builder_grow_cacheHashCodes() {
+            ImmutableMapImpl.InternalBuilder<String, String> builder =
+                    ImmutableMapImpl.InternalBuilder.<String, String>create(10)
+                            .probingOverheadFactor((short) 1)
+                            .cacheHashCodes(true);
+            Map<String, String> reference = new HashMap<>(4100);
+
+            for (int i = 0; i < 4100; i++) {
+                String e = "a" + i;
+                builder = builder.with(e, e);
+                builder = builder.with(e, e + "x");
+                reference.put(e, e + "x");
+            }
+
+            ImmutableMapImpl<String, String> result = builder.build();
+            Assert.assertEquals(reference, result);
+            Assert.assertTrue(result.getEstimatedByteSize()
+                    > ImmutableMapImpl.of(reference).getEstimatedByteSize());
+        }
+
+        @Test
+        public void largeMap() {
+            Map<String, Integer> reference = new HashMap<>();
+
+            for (int i = 0; i < 500_000; i++) {
+                reference.put("key_" + i, i);
+            }
+
+            ImmutableMapImpl<String, Integer> subject = ImmutableMapImpl.of(reference);
+            Assert.assertTrue(subject instanceof ImmutableMapImpl.HashArrayBackedMap);
+            Assert.assertTrue(((ImmutableMapImpl.HashArrayBackedMap<String, Integer>) subject).tableSize > 0x40000);
+            Assert.assertEquals(reference, subject);
+            Assert.assertNull(subject.get("key_500000"));
+
+            ImmutableMapImpl.InternalBuilder<String, Integer> builder = ImmutableMapImpl.InternalBuilder.create(10);
+
+            for (Map.Entry<String, Integer> entry : reference.entrySet()) {
+                builder = builder.with(entry.getKey(), entry.getValue());
+            }
+
+            ImmutableMapImpl<String, Integer> grown = builder.build();
+            Assert.assertTrue(grown instanceof ImmutableMapImpl.HashArrayBackedMap);
+            Assert.assertEquals(reference, grown);
+        }
+
+        @Test
+        public void keySet_sharesKeyTable() {
+            Map<String, String> reference = stringMap(20);
+            ImmutableMapImpl<String, String> subject = ImmutableMapImpl.of(reference);
+
+            Set<String> keySet = subject.keySet();
+            Assert.assertTrue(keySet instanceof ImmutableSetImpl.HashArrayBackedSet);
+            Assert.assertEquals(reference.keySet(), keySet);
+            Assert.assertFalse(keySet.contains("not_contained"));
+
+            Set<String> keySetWithCachedHashCodes =
+                    ImmutableMapImpl.of(reference, true).keySet();
+            Assert.assertEquals(reference.keySet(), keySetWithCachedHashCodes);
+            Assert.assertTrue(keySetWithCachedHashCodes.containsAll(reference.keySet()));
+        }
+
+        @Test
+        public void hashCode_sameHashCodeDifferentKeys() {
+            // "Aa" and "BB" have the same hash code
+            Map<String, String> reference1 = stringMap(20);
+            reference1.put("Aa", "x");
+            Map<String, String> reference2 = stringMap(20);
+            reference2.put("BB", "x");
+
+            ImmutableMapImpl<String, String> subject1 = ImmutableMapImpl.of(reference1);
+            ImmutableMapImpl<String, String> subject2 = ImmutableMapImpl.of(reference2, true);
+
+            Assert.assertEquals(reference1.hashCode(), subject1.hashCode());
+            Assert.assertEquals(subject1.hashCode(), subject2.hashCode());
+            Assert.assertNotEquals(subject1, subject2);
+            Assert.assertNotEquals(subject2, subject1);
+            Assert.assertEquals(subject1, ImmutableMapImpl.of(reference1, true));
+        }
+
+        @Test
+        public void equals_differentHashCode() {
+            Map<String, String> reference = stringMap(20);
+            ImmutableMapImpl<String, String> subject = ImmutableMapImpl.of(reference);
+            Map<String, String> referenceWithDifferentValue = new HashMap<>(reference);
+            referenceWithDifferentValue.put(reference.keySet().iterator().next(), "different");
+
+            Assert.assertNotEquals(
+                    subject.hashCode(),
+                    ImmutableMapImpl.of(referenceWithDifferentValue).hashCode());
+            Assert.assertNotEquals(subject, ImmutableMapImpl.of(referenceWithDifferentValue));
+            Assert.assertEquals(subject.hashCode(), subject.hashCode());
+        }
+
+        @Test
+        public void builder_alternativeHashFunction() {
+            List<String> keys = HashingTest.SeededHashTest.collidingStrings(0x40, 40);
+            ImmutableMapImpl.InternalBuilder<String, String> builder =
+                    new ImmutableMapImpl.HashArrayBackedMap.Builder<>(0x40);
+            Map<String, String> reference = new HashMap<>();
+
+            for (String key : keys) {
+                builder = builder.with(key, key + "_value");
+                reference.put(key, key + "_value");
+            }
+
+            ImmutableMapImpl<String, String> result = builder.build();
+            Assert.assertEquals(reference, result);
+
+            ImmutableMapImpl.HashArrayBackedMap<String, String> hashArrayBackedMap =
+                    (ImmutableMapImpl.HashArrayBackedMap<String, String>) result;
+            Assert.assertEquals(Hashing.ALTERNATIVE_HASH_SEED, hashArrayBackedMap.hashSeed());
+            Assert.assertEquals(0x40, hashArrayBackedMap.tableSize);
+
+            for (String key : keys) {
+                Assert.assertEquals(key + "_value", result.get(LookupKey.of(key)));
+            }
+        }
+
+        @Test
+        public void builder_hashingStrategy_grow() {
+            // The colliding keys make the builder switch to the alternative hash function and grow the table
+            List<String> keys = HashingTest.SeededHashTest.collidingStrings(0x40, 60);
+            ImmutableMapImpl.InternalBuilder<String, String> builder = new ImmutableMapImpl.HashArrayBackedMap.Builder<
+                            String, String>(0x40)
+                    .hashingStrategy(CASE_INSENSITIVE);
+
+            for (String key : keys) {
+                builder = builder.with(key, key + "_value");
+                builder = builder.with(key.toUpperCase(Locale.ROOT), key + "_value2");
+            }
+
+            ImmutableMapImpl.HashArrayBackedMap<String, String> result =
+                    (ImmutableMapImpl.HashArrayBackedMap<String, String>) builder.build();
+            Assert.assertSame(CASE_INSENSITIVE, result.hashingStrategy());
+            Assert.assertEquals(keys.size(), result.size());
+
+            for (String key : keys) {
+                Assert.assertEquals(key + "_value2", result.get(key.toUpperCase(Locale.ROOT)));
+                Assert.assertTrue(result.keySet().contains(key));
+            }
+        }
+
+        @Test(expected = IllegalStateException.class)
+        public void builder_hashingStrategy_afterWith() {
+            ImmutableMapImpl.InternalBuilder.<String, String>create(10)
+                    .with("a", "1")
+                    .hashingStrategy(CASE_INSENSITIVE);
+        }
+
+        @Test(expected = IllegalStateException.class)
+        public void builder_hashSeed_afterWith() {
+            new ImmutableMapImpl.HashArrayBackedMap.Builder<String, String>(0x40)
+                    .with("a", "1")
+                    .hashSeed(Hashing.ALTERNATIVE_HASH_SEED);
+        }
+
+        @Test(expected = IllegalStateException.class)
+        public void builder_cacheHashCodes_afterWith() {
+            ImmutableMapImpl.InternalBuilder.<String, String>create(10)
+                    .with("a", "1")
+                    .cacheHashCodes(true);
+        }
+
         @Test
         public void getEstimatedByteSize() {
             int prevEstimatedByteSize = ImmutableMapImpl.empty().getEstimatedByteSize();
@@ -647,6 +821,39 @@ public class ImmutableMapImplTest {
             Assert.assertEquals(reference.keySet(), keySink);
         }
 
+        @Test
+        public void cursor() {
+            Map<String, String> sink = new HashMap<>();
+            MapCursor<String, String> cursor = subject.cursor();
+
+            while (cursor.advance()) {
+                Assert.assertNull(sink.put(cursor.key(), cursor.value()));
+            }
+
+            Assert.assertEquals(reference, sink);
+            Assert.assertFalse(cursor.advance());
+        }
+
+        @Test(expected = NoSuchElementException.class)
+        public void cursor_beforeAdvance() {
+            subject.cursor().key();
+        }
+
+        @Test(expected = NoSuchElementException.class)
+        public void cursor_exhausted() {
+            MapCursor<String, String> cursor = subject.cursor();
+
+            while (cursor.advance()) {}
+
+            cursor.value();
+        }
+
+        @Test
+        public void views_cached() {
+            Assert.assertSame(subject.keySet(), subject.keySet());
+            Assert.assertSame(subject.entrySet(), subject.entrySet());
+        }
+
         @Test(expected = UnsupportedOperationException.class)
         @SuppressWarnings("deprecation")
         public void put() {
@@ -734,6 +941,7 @@ public class ImmutableMapImplTest {
             result.add(new Object[] {map4000, ImmutableMapImpl.of(map4000)});
             Map<String, String> map5000 = stringMap(5000);
             result.add(new Object[] {map5000, ImmutableMapImpl.of(map5000)});
+            result.add(new Object[] {map5000, ImmutableMapImpl.of(map5000, true)});
             Map<String, String> map190000 = stringMap(190000);
             result.add(new Object[] {map190000, ImmutableMapImpl.of(map190000)});
             return result;
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ImmutableMapTest {
+
+    @Test
+    public void empty() {
+        ImmutableMap<String, String> subject = ImmutableMap.empty();
+        Assert.assertTrue(subject.isEmpty());
+        Assert.assertNull(subject.get("a"));
+    }
+
+    @Test
+    public void of1() {
+        ImmutableMap<String, String> subject = ImmutableMap.of("a", "1");
+        Assert.assertEquals(1, subject.size());
+        Assert.assertEquals("1", subject.get("a"));
+        Assert.assertTrue(subject instanceof ImmutableMapImpl.SingleElementMap);
+    }
+
+    @Test
+    public void of2() {
+        ImmutableMap<String, String> subject = ImmutableMap.of("a", "1", "b", null);
+        Assert.assertEquals(2, subject.size());
+        Assert.assertEquals("1", subject.get("a"));
+        Assert.assertTrue(subject.containsKey("b"));
+        Assert.assertNull(subject.get("b"));
+        Assert.assertTrue(subject instanceof ImmutableMapImpl.TwoElementMap);
+    }
+
+    @Test
+    public void entrySet_nullValue() {
+        Map<String, String> reference = new HashMap<>();
+        reference.put("a", "1");
+        reference.put("b", null);
+        reference.put("c", "3");
+        ImmutableMap<String, String> subject = ImmutableMap.copyOf(reference);
+
+        Assert.assertTrue(subject instanceof ImmutableMapImpl.HashArrayBackedMap);
+        Assert.assertTrue(subject.entrySet().contains(new AbstractMap.SimpleEntry<>("b", null)));
+        Assert.assertFalse(subject.entrySet().contains(new AbstractMap.SimpleEntry<>("x", null)));
+        Assert.assertFalse(subject.entrySet().contains(new AbstractMap.SimpleEntry<>("a", null)));
+        Assert.assertEquals(reference.entrySet(), subject.entrySet());
+        Assert.assertEquals(subject.entrySet(), reference.entrySet());
+        Assert.assertEquals(subject, reference);
+    }
+
+    @Test
+    public void copyOf_identicalHashCodes() {
+        // All of these keys have the hash code 0; growing the table does not help
+        Map<Long, String> reference = new HashMap<>();
+
+        for (long i = 0; i < 100; i++) {
+            reference.put(i << 32 | i, "v" + i);
+        }
+
+        ImmutableMap<Long, String> subject = ImmutableMap.copyOf(reference);
+        Assert.assertTrue(subject.getClass().getName(), subject instanceof ImmutableMapImpl.MapBackedMap);
+        Assert.assertEquals(reference, subject);
+        Assert.assertEquals("v3", subject.get(3l << 32 | 3l));
+        Assert.assertNull(subject.get(1l << 32));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void of2_duplicateKey() {
+        ImmutableMap.of("a", "1", "a", "2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void of1_nullKey() {
+        ImmutableMap.of(null, "1");
+    }
+
+    @Test
+    public void copyOf() {
+        for (int size : new int[] {0, 1, 2, 3, 10, 100, 1000}) {
+            Map<String, Integer> reference = new HashMap<>();
+
+            for (int i = 0; i < size; i++) {
+                reference.put("key_" + i, i);
+            }
+
+            ImmutableMap<String, Integer> subject = ImmutableMap.copyOf(reference);
+            Assert.assertEquals(reference, subject);
+            Assert.assertEquals(reference.hashCode(), subject.hashCode());
+
+            if (size > 2) {
+                Assert.assertTrue(subject instanceof ImmutableMapImpl.HashArrayBackedMap);
+            }
+        }
+    }
+
+    @Test
+    public void copyOf_immutableMap() {
+        ImmutableMap<String, String> map = ImmutableMap.of("a", "1", "b", "2");
+        Assert.assertSame(map, ImmutableMap.copyOf(map));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void copyOf_nullKey() {
+        Map<String, String> map = new HashMap<>();
+        map.put(null, "1");
+        ImmutableMap.copyOf(map);
+    }
+
+    @Test
+    public void builder() {
+        for (int size : new int[] {0, 1, 2, 3, 10, 100, 1000}) {
+            Map<String, Integer> reference = new LinkedHashMap<>();
+            ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+
+            for (int i = 0; i < size; i++) {
+                reference.put("key_" + i, i);
+                builder.put("key_" + i, i);
+            }
+
+            Assert.assertEquals(size, builder.size());
+
+            ImmutableMap<String, Integer> subject = builder.build();
+            Assert.assertEquals(reference, subject);
+
+            if (size == 1) {
+                Assert.assertTrue(subject instanceof ImmutableMapImpl.SingleElementMap);
+            } else if (size == 2) {
+                Assert.assertTrue(subject instanceof ImmutableMapImpl.TwoElementMap);
+            }
+        }
+    }
+
+    @Test
+    public void get_lookupKey() {
+        for (int size : new int[] {1, 2, 3, 10, 100, 1000, 100000}) {
+            ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+            ImmutableMap.Builder<String, Integer> builderWithStrategy =
+                    ImmutableMap.builder(TestUtils.CASE_INSENSITIVE);
+
+            for (int i = 0; i < size; i++) {
+                builder.put("key_" + i, i);
+                builderWithStrategy.put("KEY_" + i, i);
+            }
+
+            ImmutableMap<String, Integer> subject = builder.build();
+            ImmutableMap<String, Integer> subjectWithStrategy = builderWithStrategy.build();
+
+            for (int i = 0; i < size; i++) {
+                LookupKey<String> lookupKey = LookupKey.of("key_" + i);
+                Assert.assertEquals(Integer.valueOf(i), subject.get(lookupKey));
+                Assert.assertTrue(subject.containsKey(lookupKey));
+                Assert.assertEquals(Integer.valueOf(i), subjectWithStrategy.get(lookupKey));
+                Assert.assertTrue(subjectWithStrategy.containsKey(lookupKey));
+            }
+
+            LookupKey<String> missing = LookupKey.of("key_" + size);
+            Assert.assertNull(subject.get(missing));
+            Assert.assertFalse(subject.containsKey(missing));
+            Assert.assertFalse(subjectWithStrategy.containsKey(missing));
+        }
+    }
+
+    @Test
+    public void values() {
+        Assert.assertEquals(
+                Arrays.asList((String) null),
+                new ArrayList<>(ImmutableMap.of("a", null).values()));
+        Assert.assertEquals(
+                Arrays.asList("1", "1"),
+                new ArrayList<>(ImmutableMap.of("a", "1", "b", "1").values()));
+
+        ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+        for (int i = 0; i < 100; i++) {
+            builder.put("key_" + i, i % 3);
+        }
+
+        Collection<Integer> values = builder.build().values();
+        Assert.assertTrue(values instanceof ImmutableList);
+        Assert.assertEquals(100, values.size());
+        Assert.assertEquals(34, values.stream().filter(v -> v == 0).count());
+    }
+
+    @Test
+    public void builder_replaceValue() {
+        ImmutableMap<String, String> subject = ImmutableMap.<String, String>builder(10)
+                .put("a", "1")
+                .putAll(ImmutableMap.of("b", "2", "a", "3"))
+                .build();
+
+        Assert.assertEquals(ImmutableMap.of("a", "3", "b", "2"), subject);
+    }
+
+    @Test
+    public void builder_hashingStrategy() {
+        for (int size : new int[] {1, 2, 3, 10, 100, 1000}) {
+            Map<String, Integer> reference = new HashMap<>();
+            ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder(TestUtils.CASE_INSENSITIVE);
+
+            for (int i = 0; i < size; i++) {
+                reference.put("Key_" + i, i);
+                builder.put("Key_" + i, -1);
+                builder.put("KEY_" + i, i);
+            }
+
+            Assert.assertEquals(size, builder.size());
+
+            ImmutableMap<String, Integer> subject = builder.build();
+            Assert.assertTrue(subject instanceof ImmutableMapImpl.HashArrayBackedMap);
+            Assert.assertEquals(reference, subject);
+            Assert.assertEquals(subject, reference);
+            Assert.assertEquals(reference.hashCode(), subject.hashCode());
+
+            for (int i = 0; i < size; i++) {
+                Assert.assertEquals(Integer.valueOf(i), subject.get("key_" + i));
+                Assert.assertTrue(subject.containsKey("kEY_" + i));
+                Assert.assertTrue(subject.keySet().contains("KEY_" + i));
+            }
+
+            Assert.assertNull(subject.get("key_" + size));
+            Assert.assertFalse(subject.keySet().contains("KEY_" + size));
+        }
+    }
+
+    @Test
+    public void builder_hashingStrategy_colliding() {
+        Map<String, Integer> reference = new HashMap<>();
+        ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder(TestUtils.CASE_INSENSITIVE_COLLIDING);
+
+        for (int i = 0; i < 200; i++) {
+            reference.put("Key_" + (1000 + i), i);
+            builder.put("Key_" + (1000 + i), -1);
+            builder.put("KEY_" + (1000 + i), i);
+        }
+
+        ImmutableMap<String, Integer> subject = builder.build();
+        Assert.assertTrue(subject instanceof ImmutableMapImpl.MapBackedMap);
+        Assert.assertEquals(200, subject.size());
+        Assert.assertEquals(reference, subject);
+        Assert.assertEquals(subject, reference);
+        Assert.assertEquals(reference.hashCode(), subject.hashCode());
+
+        for (int i = 0; i < 200; i++) {
+            Assert.assertEquals(Integer.valueOf(i), subject.get("key_" + (1000 + i)));
+            Assert.assertTrue(subject.containsKey("kEY_" + (1000 + i)));
+            Assert.assertTrue(subject.keySet().contains("KEY_" + (1000 + i)));
+        }
+
+        Assert.assertNull(subject.get("key_2000"));
+        Assert.assertFalse(subject.containsKey("key_2000"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_hashingStrategy_null() {
+        ImmutableMap.builder((HashingStrategy<Object>) null);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void builder_afterBuild() {
+        ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+        builder.put("a", "1").build();
+        builder.put("b", "2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_nullKey() {
+        ImmutableMap.builder().put(null, "1");
+    }
+}
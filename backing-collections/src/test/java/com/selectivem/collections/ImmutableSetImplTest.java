@@ -16,12 +16,18 @@
 
 package com.selectivem.collections;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.experimental.runners.Enclosed;
 import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
 
 @RunWith(Enclosed.class)
 public class ImmutableSetImplTest {
@@ -37,6 +43,30 @@ public class ImmutableSetImplTest {
             Assert.assertEquals(0, set1.toArray(new String[0]).length);
         }
 
+        @Test
+        public void equals_cachedHashCode() {
+            List<String> elements = new ArrayList<>();
+
+            for (int i = 0; i < 10; i++) {
+                elements.add("e" + i);
+            }
+
+            ImmutableSetImpl<String> set1 = ImmutableSetImpl.copyOf(elements);
+            ImmutableSetImpl<String> set2 = ImmutableSetImpl.copyOf(new ArrayList<>(elements));
+            Assert.assertEquals(set1, set2);
+
+            // equals() must not compute hash codes, it only uses them when they are already cached
+            Assert.assertEquals(0, set1.cachedHashCode());
+            Assert.assertEquals(0, set2.cachedHashCode());
+
+            elements.set(9, "other");
+            ImmutableSetImpl<String> set3 = ImmutableSetImpl.copyOf(elements);
+            set1.hashCode();
+            set3.hashCode();
+            Assert.assertNotEquals(set1, set3);
+            Assert.assertEquals(set1, set2);
+        }
+
         @Test
         public void of1() {
             ImmutableSetImpl<String> set1 = ImmutableSetImpl.of("a");
@@ -109,4 +139,96 @@ public class ImmutableSetImplTest {
             iter.next();
         }
     }
+
+    @RunWith(Parameterized.class)
+    public static class HashArrayBackedSetTest {
+        final int size;
+        final Set<String> reference;
+        final ImmutableSetImpl<String> subject;
+
+        @Test
+        public void size() {
+            Assert.assertEquals(reference.size(), subject.size());
+            Assert.assertTrue(subject instanceof ImmutableSetImpl.HashArrayBackedSet);
+        }
+
+        @Test
+        public void contains() {
+            for (String e : reference) {
+                Assert.assertTrue(e, subject.contains(e));
+            }
+
+            Assert.assertFalse(subject.contains("not_contained"));
+            Assert.assertFalse(subject.contains(null));
+        }
+
+        @Test
+        public void equals() {
+            Assert.assertEquals(reference, subject);
+            Assert.assertEquals(subject, reference);
+            Assert.assertEquals(reference.hashCode(), subject.hashCode());
+        }
+
+        @Test
+        public void iterator() {
+            List<String> iterated = new ArrayList<>();
+
+            for (String e : subject) {
+                iterated.add(e);
+            }
+
+            Assert.assertEquals(reference.size(), iterated.size());
+            Assert.assertEquals(reference, new HashSet<>(iterated));
+        }
+
+        @Test
+        public void forEach() {
+            List<String> iterated = new ArrayList<>();
+            subject.forEach(iterated::add);
+
+            Assert.assertEquals(reference.size(), iterated.size());
+            Assert.assertEquals(reference, new HashSet<>(iterated));
+        }
+
+        @Test
+        public void builder_duplicates() {
+            ImmutableSetImpl.InternalBuilder<String> builder = ImmutableSetImpl.InternalBuilder.create(size);
+
+            for (String e : reference) {
+                builder = builder.with(e).with(e);
+            }
+
+            Assert.assertEquals(reference.size(), builder.size());
+            Assert.assertEquals(reference, builder.build());
+        }
+
+        @Test
+        public void builder_undersized() {
+            ImmutableSetImpl.InternalBuilder<String> builder = ImmutableSetImpl.InternalBuilder.create(3);
+
+            for (String e : reference) {
+                builder = builder.with(e);
+                Assert.assertTrue(e, builder.contains(e));
+            }
+
+            Assert.assertEquals(reference, builder.build());
+        }
+
+        @Parameterized.Parameters(name = "{0}")
+        public static Collection<Object[]> params() {
+            ArrayList<Object[]> result = new ArrayList<>();
+
+            for (int size : new int[] {3, 5, 10, 11, 44, 45, 46, 100, 1000, 10000, 200000}) {
+                result.add(new Object[] {size});
+            }
+
+            return result;
+        }
+
+        public HashArrayBackedSetTest(int size) {
+            this.size = size;
+            this.reference = TestUtils.stringSet(size);
+            this.subject = ImmutableSetImpl.copyOf(reference);
+        }
+    }
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ImmutableSetTest {
+
+    @Test
+    public void copyOf() {
+        for (int size : new int[] {0, 1, 2, 3, 10, 100, 1000}) {
+            Set<String> reference = TestUtils.stringSet(size);
+            ImmutableSet<String> subject = ImmutableSet.copyOf(reference);
+            Assert.assertEquals(reference, subject);
+            Assert.assertEquals(reference.hashCode(), subject.hashCode());
+
+            if (size > 2) {
+                Assert.assertTrue(subject instanceof ImmutableSetImpl.HashArrayBackedSet);
+            }
+        }
+    }
+
+    @Test
+    public void copyOf_duplicates() {
+        ImmutableSet<String> subject = ImmutableSet.copyOf(Arrays.asList("a", "b", "a", "c", "b"));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), subject);
+    }
+
+    @Test
+    public void copyOf_immutableSet() {
+        ImmutableSet<String> set = ImmutableSet.of("a", "b");
+        Assert.assertSame(set, ImmutableSet.copyOf(set));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void copyOf_null() {
+        ImmutableSet.copyOf(Arrays.asList("a", null, "b"));
+    }
+
+    @Test
+    public void builder() {
+        for (int size : new int[] {0, 1, 2, 3, 10, 100, 1000}) {
+            Set<String> reference = TestUtils.stringSet(size);
+            ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+
+            for (String e : reference) {
+                builder.add(e);
+            }
+
+            Assert.assertEquals(reference.size(), builder.size());
+            Assert.assertEquals(reference, builder.build());
+        }
+    }
+
+    @Test
+    public void copyOf_identicalHashCodes() {
+        // All of these have the hash code 0; growing the table does not help
+        Set<Long> reference = new HashSet<>();
+
+        for (long i = 0; i < 100; i++) {
+            reference.add(i << 32 | i);
+        }
+
+        ImmutableSet<Long> subject = ImmutableSet.copyOf(reference);
+        Assert.assertTrue(subject.getClass().getName(), subject instanceof ImmutableSetImpl.SetBackedSet);
+        Assert.assertEquals(reference, subject);
+        Assert.assertFalse(subject.contains(1l << 32));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void builder_afterBuild() {
+        ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+        builder.add("a").build();
+        builder.add("b");
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+@RunWith(Enclosed.class)
+public class ImmutableToPrimitiveMapTest {
+
+    @RunWith(Parameterized.class)
+    public static class ParameterizedTest {
+        final int size;
+        final Map<String, Integer> reference;
+
+        @Test
+        public void toIntMap() {
+            ImmutableToIntMap<String> subject = ImmutableToIntMap.copyOf(reference);
+            Assert.assertEquals(reference.size(), subject.size());
+            Assert.assertEquals(reference.isEmpty(), subject.isEmpty());
+            Assert.assertEquals(reference.keySet(), subject.keySet());
+            Assert.assertEquals(reference.hashCode(), subject.hashCode());
+
+            for (Map.Entry<String, Integer> entry : reference.entrySet()) {
+                Assert.assertTrue(subject.containsKey(entry.getKey()));
+                Assert.assertEquals((int) entry.getValue(), subject.getInt(entry.getKey(), -1));
+            }
+
+            Assert.assertFalse(subject.containsKey("not_contained"));
+            Assert.assertEquals(-1, subject.getInt("not_contained", -1));
+
+            Map<String, Integer> iterated = new HashMap<>();
+            subject.forEach((k, v) -> Assert.assertNull(iterated.put(k, v)));
+            Assert.assertEquals(reference, iterated);
+        }
+
+        @Test
+        public void toLongMap() {
+            ImmutableToLongMap.Builder<String> builder = ImmutableToLongMap.builder();
+            reference.forEach((k, v) -> builder.put(k, v * 10_000_000_000L));
+            ImmutableToLongMap<String> subject = builder.build();
+
+            Assert.assertEquals(reference.size(), subject.size());
+            Assert.assertEquals(reference.keySet(), subject.keySet());
+
+            for (Map.Entry<String, Integer> entry : reference.entrySet()) {
+                Assert.assertEquals(entry.getValue() * 10_000_000_000L, subject.getLong(entry.getKey(), -1));
+            }
+
+            Assert.assertEquals(-1, subject.getLong("not_contained", -1));
+
+            Map<String, Long> iterated = new HashMap<>();
+            subject.forEach((k, v) -> Assert.assertNull(iterated.put(k, v)));
+            Assert.assertEquals(reference.size(), iterated.size());
+            Assert.assertEquals(iterated.hashCode(), subject.hashCode());
+        }
+
+        @Test
+        public void toDoubleMap() {
+            ImmutableToDoubleMap.Builder<String> builder = ImmutableToDoubleMap.builder(size);
+            reference.forEach((k, v) -> builder.put(k, v / 4.0));
+            ImmutableToDoubleMap<String> subject = builder.build();
+
+            Assert.assertEquals(reference.size(), subject.size());
+
+            for (Map.Entry<String, Integer> entry : reference.entrySet()) {
+                Assert.assertEquals(entry.getValue() / 4.0, subject.getDouble(entry.getKey(), -1), 0.0);
+            }
+
+            Assert.assertEquals(-1, subject.getDouble("not_contained", -1), 0.0);
+
+            Map<String, Double> iterated = new HashMap<>();
+            subject.forEach((k, v) -> Assert.assertNull(iterated.put(k, v)));
+            Assert.assertEquals(reference.size(), iterated.size());
+            Assert.assertEquals(iterated.hashCode(), subject.hashCode());
+        }
+
+        @Test
+        public void equals() {
+            ImmutableToIntMap<String> subject1 = ImmutableToIntMap.copyOf(reference);
+            ImmutableToIntMap.Builder<String> builder = ImmutableToIntMap.builder();
+            reference.forEach(builder::put);
+            ImmutableToIntMap<String> subject2 = builder.build();
+
+            Assert.assertEquals(subject1, subject2);
+            Assert.assertEquals(subject1.hashCode(), subject2.hashCode());
+
+            if (!reference.isEmpty()) {
+                ImmutableToIntMap.Builder<String> differentBuilder = ImmutableToIntMap.builder();
+                reference.forEach((k, v) -> differentBuilder.put(k, v + 1));
+                Assert.assertNotEquals(subject1, differentBuilder.build());
+            }
+        }
+
+        @Parameterized.Parameters(name = "{0}")
+        public static Collection<Object[]> params() {
+            ArrayList<Object[]> result = new ArrayList<>();
+
+            for (int size : new int[] {0, 1, 2, 3, 10, 11, 45, 100, 1000, 10000, 200000}) {
+                result.add(new Object[] {size});
+            }
+
+            return result;
+        }
+
+        public ParameterizedTest(int size) {
+            this.size = size;
+            this.reference = new HashMap<>();
+
+            for (int i = 0; i < size; i++) {
+                reference.put("key_" + i, i);
+            }
+        }
+    }
+
+    public static class BasicTest {
+        @Test
+        public void builder_replaceValue() {
+            ImmutableToIntMap.Builder<String> builder = ImmutableToIntMap.builder();
+            builder.put("a", 1).put("b", 2).put("a", 3);
+
+            Assert.assertEquals(2, builder.size());
+            Assert.assertEquals(3, builder.getInt("a", -1));
+            Assert.assertEquals(-1, builder.getInt("c", -1));
+
+            ImmutableToIntMap<String> subject = builder.build();
+            Assert.assertEquals(3, subject.getInt("a", -1));
+            Assert.assertEquals(2, subject.getInt("b", -1));
+            Assert.assertEquals("{a=3, b=2}", sortedToString(subject));
+        }
+
+        @Test
+        public void builder_alternativeHashFunction() {
+            List<String> keys = HashingTest.SeededHashTest.collidingStrings(0x40, 40);
+            ImmutableToIntMap.Builder<String> builder = ImmutableToIntMap.builder(40);
+
+            for (int i = 0; i < keys.size(); i++) {
+                builder.put(keys.get(i), i);
+            }
+
+            ImmutableToIntMapImpl<String> subject = (ImmutableToIntMapImpl<String>) builder.build();
+            Assert.assertEquals(Hashing.ALTERNATIVE_HASH_SEED, subject.hashSeed);
+            Assert.assertEquals(0x40, subject.tableSize);
+
+            for (int i = 0; i < keys.size(); i++) {
+                Assert.assertEquals(i, subject.getInt(keys.get(i), -1));
+            }
+        }
+
+        @Test
+        public void copyOf_identicalHashCodes() {
+            Map<Long, Integer> reference = new HashMap<>();
+
+            for (long i = 0; i < 100; i++) {
+                // Long.hashCode() is 0 for all these keys
+                reference.put((i << 32) | i, (int) i);
+            }
+
+            ImmutableToIntMapImpl<Long> subject = (ImmutableToIntMapImpl<Long>) ImmutableToIntMap.copyOf(reference);
+            Assert.assertTrue(subject.overflowSize > 0);
+            Assert.assertEquals(reference.size(), subject.size());
+            Assert.assertEquals(reference.keySet(), subject.keySet());
+            Assert.assertEquals(reference.hashCode(), subject.hashCode());
+            Assert.assertEquals(subject, ImmutableToIntMap.copyOf(reference));
+
+            for (Map.Entry<Long, Integer> entry : reference.entrySet()) {
+                Assert.assertTrue(subject.containsKey(entry.getKey()));
+                Assert.assertEquals((int) entry.getValue(), subject.getInt(entry.getKey(), -1));
+            }
+
+            Assert.assertFalse(subject.containsKey(100L << 32 | 100L));
+
+            Map<Long, Integer> iterated = new HashMap<>();
+            subject.forEach((k, v) -> Assert.assertNull(iterated.put(k, v)));
+            Assert.assertEquals(reference, iterated);
+        }
+
+        @Test
+        public void builder_identicalHashCodes() {
+            ImmutableToLongMap.Builder<Long> longBuilder = ImmutableToLongMap.builder();
+            ImmutableToDoubleMap.Builder<Long> doubleBuilder = ImmutableToDoubleMap.builder();
+
+            for (long i = 0; i < 100; i++) {
+                longBuilder.put((i << 32) | i, i);
+                doubleBuilder.put((i << 32) | i, i / 4.0);
+            }
+
+            // Replaces values in the overflow area
+            longBuilder.put(99L << 32 | 99L, -99);
+            doubleBuilder.put(99L << 32 | 99L, -99.0);
+            Assert.assertEquals(100, longBuilder.size());
+            Assert.assertEquals(-99, longBuilder.getLong(99L << 32 | 99L, 0));
+
+            ImmutableToLongMap<Long> longSubject = longBuilder.build();
+            ImmutableToDoubleMap<Long> doubleSubject = doubleBuilder.build();
+            Assert.assertEquals(100, longSubject.size());
+            Assert.assertEquals(100, doubleSubject.size());
+
+            for (long i = 0; i < 99; i++) {
+                Assert.assertEquals(i, longSubject.getLong((i << 32) | i, -1));
+                Assert.assertEquals(i / 4.0, doubleSubject.getDouble((i << 32) | i, -1), 0.0);
+            }
+
+            Assert.assertEquals(-99, longSubject.getLong(99L << 32 | 99L, 0));
+            Assert.assertEquals(-99.0, doubleSubject.getDouble(99L << 32 | 99L, 0), 0.0);
+            Assert.assertTrue(longSubject.keySet().contains(50L << 32 | 50L));
+        }
+
+        @Test
+        public void empty() {
+            Assert.assertTrue(ImmutableToIntMap.empty().isEmpty());
+            Assert.assertEquals(0, ImmutableToLongMap.empty().size());
+            Assert.assertFalse(ImmutableToDoubleMap.empty().containsKey("a"));
+            Assert.assertEquals(
+                    ImmutableToIntMap.empty(), ImmutableToIntMap.builder().build());
+            Assert.assertTrue(ImmutableToIntMap.empty().keySet().isEmpty());
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void builder_nullKey() {
+            ImmutableToIntMap.builder().put(null, 1);
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void copyOf_nullValue() {
+            Map<String, Integer> map = new HashMap<>();
+            map.put("a", null);
+            ImmutableToIntMap.copyOf(map);
+        }
+
+        @Test(expected = IllegalStateException.class)
+        public void builder_afterBuild() {
+            ImmutableToLongMap.Builder<String> builder = ImmutableToLongMap.builder();
+            builder.put("a", 1).build();
+            builder.put("b", 2);
+        }
+
+        private static String sortedToString(ImmutableToIntMap<String> map) {
+            Map<String, Integer> sorted = new TreeMap<>();
+            map.forEach(sorted::put);
+            return sorted.toString();
+        }
+    }
+}
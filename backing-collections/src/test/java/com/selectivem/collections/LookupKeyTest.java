@@ -0,0 +1,52 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LookupKeyTest {
+    @Test
+    public void hashPosition() {
+        Random random = new Random(1);
+
+        for (int tableSize = 0x10; tableSize > 0 && tableSize <= Hashing.MAX_TABLE_SIZE; tableSize <<= 1) {
+            for (int i = 0; i < 1000; i++) {
+                String key = "k" + random.nextInt();
+                LookupKey<String> subject = LookupKey.of(key);
+
+                Assert.assertEquals(Hashing.hashPosition(tableSize, key), subject.hashPosition(tableSize, 0));
+                Assert.assertEquals(
+                        Hashing.hashPosition(tableSize, key, Hashing.ALTERNATIVE_HASH_SEED),
+                        subject.hashPosition(tableSize, Hashing.ALTERNATIVE_HASH_SEED));
+            }
+        }
+    }
+
+    @Test
+    public void key() {
+        LookupKey<String> subject = LookupKey.of("a");
+        Assert.assertEquals("a", subject.key());
+        Assert.assertEquals("a".hashCode(), subject.hash());
+        Assert.assertEquals("LookupKey[a]", subject.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void of_null() {
+        LookupKey.of(null);
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PersistentMapImplTest {
+
+    @Test
+    public void with() {
+        PersistentMap<String, String> empty = PersistentMap.empty();
+        PersistentMap<String, String> map1 = empty.with("a", "1");
+        PersistentMap<String, String> map2 = map1.with("b", "2");
+        PersistentMap<String, String> map3 = map2.with("a", "3");
+
+        Assert.assertTrue(empty.isEmpty());
+        Assert.assertEquals(TestUtils.mapOf("a", "1"), map1);
+        Assert.assertEquals(TestUtils.mapOf("a", "1", "b", "2"), map2);
+        Assert.assertEquals(TestUtils.mapOf("a", "3", "b", "2"), map3);
+        Assert.assertEquals(2, map3.size());
+    }
+
+    @Test
+    public void with_sameValue() {
+        PersistentMap<String, String> map =
+                PersistentMap.<String, String>empty().with("a", "1").with("b", "2");
+        Assert.assertSame(map, map.with("a", map.get("a")));
+    }
+
+    @Test
+    public void with_nullValue() {
+        PersistentMap<String, String> map =
+                PersistentMap.<String, String>empty().with("a", null);
+        Assert.assertEquals(1, map.size());
+        Assert.assertTrue(map.containsKey("a"));
+        Assert.assertNull(map.get("a"));
+        Assert.assertFalse(map.containsKey("b"));
+
+        Map<String, String> reference = new HashMap<>();
+        reference.put("a", null);
+        Assert.assertEquals(reference, map);
+        Assert.assertEquals(map, reference);
+        Assert.assertEquals(reference.hashCode(), map.hashCode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void with_nullKey() {
+        PersistentMap.empty().with(null, "1");
+    }
+
+    @Test
+    public void without() {
+        PersistentMap<String, String> map = PersistentMap.copyOf(TestUtils.mapOf("a", "1", "b", "2"));
+
+        Assert.assertSame(map, map.without("c"));
+        Assert.assertSame(map, map.without(null));
+        Assert.assertEquals(TestUtils.mapOf("b", "2"), map.without("a"));
+        Assert.assertTrue(map.without("a").without("b").isEmpty());
+        Assert.assertEquals(TestUtils.mapOf("a", "1", "b", "2"), map);
+    }
+
+    @Test
+    public void copyOf_persistentMap() {
+        PersistentMap<String, String> map = PersistentMap.copyOf(TestUtils.mapOf("a", "1", "b", "2"));
+        Assert.assertSame(map, PersistentMap.copyOf(map));
+    }
+
+    @Test
+    public void hashCollisions() {
+        List<CollidingKey> keys = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            // Groups of 4 keys share the same hash code
+            keys.add(new CollidingKey(i, i / 4));
+        }
+
+        PersistentMap<CollidingKey, Integer> map = PersistentMap.empty();
+        Map<CollidingKey, Integer> reference = new HashMap<>();
+
+        for (CollidingKey key : keys) {
+            map = map.with(key, key.id);
+            reference.put(key, key.id);
+        }
+
+        Assert.assertEquals(reference, map);
+        Assert.assertEquals(reference.hashCode(), map.hashCode());
+
+        for (CollidingKey key : keys) {
+            if (key.id % 3 == 0) {
+                map = map.without(key);
+                reference.remove(key);
+            }
+        }
+
+        Assert.assertEquals(reference, map);
+        Assert.assertFalse(map.containsKey(new CollidingKey(0, 0)));
+        Assert.assertTrue(map.containsKey(new CollidingKey(1, 0)));
+        Assert.assertFalse(map.containsKey(new CollidingKey(1000, 0)));
+    }
+
+    @Test
+    public void deepTrie() {
+        PersistentMap<CollidingKey, Integer> map = PersistentMap.empty();
+        Map<CollidingKey, Integer> reference = new HashMap<>();
+
+        // The hash codes only differ in the highest bits, which are consumed by the lowest trie levels
+        for (int i = 0; i < 64; i++) {
+            CollidingKey key = new CollidingKey(i, (i % 16) << 28);
+            map = map.with(key, i);
+            reference.put(key, i);
+        }
+
+        Assert.assertEquals(reference, map);
+
+        MapCursor<CollidingKey, Integer> cursor = map.cursor();
+        int count = 0;
+
+        while (cursor.advance()) {
+            Assert.assertEquals(cursor.key().id, (int) cursor.value());
+            count++;
+        }
+
+        Assert.assertEquals(64, count);
+
+        for (int i = 0; i < 64; i++) {
+            map = map.without(new CollidingKey(i, (i % 16) << 28));
+        }
+
+        Assert.assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void withWithout_collidingKey() {
+        PersistentMap<Long, String> initial =
+                PersistentMap.<Long, String>empty().with(0L, "a").with(5L, "b");
+        PersistentMap<Long, String> map = initial;
+
+        // Long.hashCode() of this key is 0, just like for 0L. Removing it must not leave a deeper trie behind.
+        for (int i = 0; i < 20; i++) {
+            map = map.with(1L << 32 | 1L, "c").without(1L << 32 | 1L);
+        }
+
+        Assert.assertEquals(initial, map);
+        Assert.assertEquals("a", map.get(0L));
+        Assert.assertEquals(initial.hashCode(), map.hashCode());
+        Assert.assertEquals(initial.toString(), map.toString());
+
+        MapCursor<Long, String> cursor = map.cursor();
+        int count = 0;
+
+        while (cursor.advance()) {
+            count++;
+        }
+
+        Assert.assertEquals(2, count);
+    }
+
+    @Test
+    public void withWithout_deepCollidingKey() {
+        PersistentMap<CollidingKey, Integer> map = PersistentMap.<CollidingKey, Integer>empty()
+                .with(new CollidingKey(0, 1 << 30), 0)
+                .with(new CollidingKey(1, 2 << 30), 1);
+
+        for (int i = 0; i < 20; i++) {
+            map = map.with(new CollidingKey(2, 1 << 30), 2).without(new CollidingKey(2, 1 << 30));
+            map = map.with(new CollidingKey(3, 2 << 30), 3).without(new CollidingKey(3, 2 << 30));
+        }
+
+        Map<CollidingKey, Integer> reference = new HashMap<>();
+        map.forEach(reference::put);
+        Assert.assertEquals(2, reference.size());
+        Assert.assertEquals(reference, map);
+    }
+
+    @Test
+    public void randomized() {
+        Random random = new Random(1);
+        PersistentMap<Integer, Integer> map = PersistentMap.empty();
+        Map<Integer, Integer> reference = new HashMap<>();
+        List<PersistentMap<Integer, Integer>> versions = new ArrayList<>();
+        List<Map<Integer, Integer>> referenceVersions = new ArrayList<>();
+
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(5000);
+
+            if (random.nextInt(3) == 0) {
+                map = map.without(key);
+                reference.remove(key);
+            } else {
+                map = map.with(key, i);
+                reference.put(key, i);
+            }
+
+            Assert.assertEquals(reference.size(), map.size());
+
+            if (i % 1000 == 0) {
+                versions.add(map);
+                referenceVersions.add(new HashMap<>(reference));
+            }
+        }
+
+        Assert.assertEquals(reference, map);
+
+        // Older versions must not be affected by later modifications
+        for (int i = 0; i < versions.size(); i++) {
+            Assert.assertEquals(referenceVersions.get(i), versions.get(i));
+        }
+    }
+
+    @Test
+    public void cursor() {
+        Map<String, String> reference = TestUtils.stringMap(500);
+        PersistentMap<String, String> map = PersistentMap.copyOf(reference);
+        Map<String, String> sink = new HashMap<>();
+        MapCursor<String, String> cursor = map.cursor();
+
+        while (cursor.advance()) {
+            Assert.assertNull(sink.put(cursor.key(), cursor.value()));
+        }
+
+        Assert.assertEquals(reference, sink);
+        Assert.assertFalse(cursor.advance());
+        Assert.assertFalse(PersistentMap.empty().cursor().advance());
+    }
+
+    @Test
+    public void entrySet() {
+        Map<String, String> reference = TestUtils.stringMap(100);
+        PersistentMap<String, String> map = PersistentMap.copyOf(reference);
+
+        Assert.assertEquals(reference.entrySet(), map.entrySet());
+        Assert.assertEquals(reference.keySet(), map.keySet());
+        Assert.assertSame(map.entrySet(), map.entrySet());
+
+        Map<String, String> sink = new HashMap<>();
+        map.forEach(sink::put);
+        Assert.assertEquals(reference, sink);
+    }
+
+    static class CollidingKey {
+        final int id;
+        final int hash;
+
+        CollidingKey(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CollidingKey && ((CollidingKey) o).id == this.id;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+/**
+ * Primitive long counterpart of CompactMapGroupBuilder: Allows the creation of space efficient maps where the keys are
+ * a sub-set of the IndexedLongSet specified in the constructor.
+ * <p>
+ * The keys are looked up without boxing them. The produced maps are regular immutable maps, which however box the keys
+ * when iterating over them.
+ * <p>
+ * Produced maps cannot have null values.
+ *
+ * @author Nils Bandener
+ */
+public class CompactLongMapGroupBuilder<V> {
+    private final IndexedLongSetImpl keySuperSet;
+    private final CompactMapGroupBuilder<Long, V> builder;
+
+    /**
+     * Creates a new CompactLongMapGroupBuilder for the given keys.
+     *
+     * @param keySuperSet The keys that may be used for the map builder instances created by this class instance.
+     * @param missingValueSupplier In case MapBuilder.get() is called for a non-existing entry,
+     *                             this supplier is used to create a default value. This value is then stored in the map.
+     */
+    public CompactLongMapGroupBuilder(IndexedLongSet keySuperSet, LongFunction<V> missingValueSupplier) {
+        this.keySuperSet = IndexedLongSetImpl.of(keySuperSet);
+        this.builder = new CompactMapGroupBuilder<>(
+                this.keySuperSet.boxedView(), missingValueSupplier != null ? missingValueSupplier::apply : null);
+    }
+
+    /**
+     * Creates a new CompactLongMapGroupBuilder for the given keys.
+     *
+     * @param keySuperSet The keys that may be used for the map builder instances created by this class instance.
+     */
+    public CompactLongMapGroupBuilder(IndexedLongSet keySuperSet) {
+        this(keySuperSet, null);
+    }
+
+    /**
+     * Returns a MapBuilder instance which can be used to build compact map instances.
+     */
+    public MapBuilder<V> createMapBuilder() {
+        return new MapBuilder<>(this.keySuperSet, this.builder.createMapBuilder());
+    }
+
+    /**
+     * Returns the estimated number of bytes which are used for representing the maps which
+     * are built by this instance.
+     */
+    public int getEstimatedByteSize() {
+        return this.builder.getEstimatedByteSize();
+    }
+
+    public static class MapBuilder<V> {
+        private final IndexedLongSetImpl keySuperSet;
+        private final CompactMapGroupBuilder.MapBuilder<Long, V> builder;
+
+        MapBuilder(IndexedLongSetImpl keySuperSet, CompactMapGroupBuilder.MapBuilder<Long, V> builder) {
+            this.keySuperSet = keySuperSet;
+            this.builder = builder;
+        }
+
+        /**
+         * Adds a new entry to the built map.
+         *
+         * @param key the key of the mapping. Must be contained in the set with which the CompactLongMapGroupBuilder
+         *            was created.
+         * @param value the value of the mapping. Must be not null.
+         *
+         * @throws IllegalArgumentException in case the key is not contained in the super set provided to
+         * CompactLongMapGroupBuilder. Or, in case the value is null.
+         */
+        public void put(long key, V value) {
+            this.builder.checkState();
+
+            int i = this.keySuperSet.elementToIndex(key);
+
+            if (i == -1) {
+                throw new IllegalArgumentException("Invalid key " + key + "; not present in keySuperSet");
+            }
+
+            if (value == null) {
+                throw new IllegalArgumentException("Does not support null values; key: " + key);
+            }
+
+            this.builder.put(i, null, value);
+        }
+
+        public V get(long key) {
+            this.builder.checkState();
+
+            int i = this.keySuperSet.elementToIndex(key);
+
+            if (i == -1) {
+                throw new IllegalArgumentException("Invalid key " + key + "; not present in keySuperSet");
+            }
+
+            return this.builder.get(i);
+        }
+
+        public int size() {
+            return this.builder.size();
+        }
+
+        /**
+         * Builds the actual map instance. This builder is invalidated afterward, i.e., it cannot be used anymore.
+         */
+        public Map<Long, V> build() {
+            return this.builder.build();
+        }
+
+        /**
+         * Builds the actual map instance. This builder is invalidated afterward, i.e., it cannot be used anymore.
+         * <p>
+         * The values of the final map instance are passed through the given valueMappingFunction.
+         */
+        public <V2> Map<Long, V2> build(Function<V, V2> valueMappingFunction) {
+            return this.builder.build(valueMappingFunction);
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.selectivem.collections;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
@@ -37,6 +38,11 @@ public class CompactMapGroupBuilder<K, V> {
     private int estimatedBackingArraySize = 0;
     private int estimatedObjectOverheadSize = 0;
 
+    /**
+     * The last key set for which rebind() has verified that it is an index prefix of keyToIndexMap.
+     */
+    private IndexedImmutableSetImpl<K> compatibleKeyToIndexMap;
+
     /**
      * Creates a new CompactMapGroupBuilder for the given keys.
      *
@@ -46,7 +52,23 @@ public class CompactMapGroupBuilder<K, V> {
      *                             this supplier is used to create a default value. This value is then stored in the map.
      */
     public CompactMapGroupBuilder(Set<K> keySuperSet, Function<K, V> missingValueSupplier) {
-        this.keyToIndexMap = IndexedImmutableSetImpl.of(keySuperSet);
+        this(keySuperSet, null, missingValueSupplier);
+    }
+
+    /**
+     * Creates a new CompactMapGroupBuilder for the given keys, which uses the given HashingStrategy instead of the
+     * hashCode() and equals() methods of the keys.
+     *
+     * @param keySuperSet The keys that may be used for the map builder instances created by this class instance.
+     *                    The set will be copied. Keys which are equal according to the strategy are only added once.
+     * @param hashingStrategy Used for all key lookups of this builder and the maps it produces. May be null; then,
+     *                        the keys' own hashCode() and equals() methods are used.
+     * @param missingValueSupplier In case MapBuilder.get() is called for a non-existing entry,
+     *                             this supplier is used to create a default value. This value is then stored in the map.
+     */
+    public CompactMapGroupBuilder(
+            Set<K> keySuperSet, HashingStrategy<? super K> hashingStrategy, Function<K, V> missingValueSupplier) {
+        this.keyToIndexMap = IndexedImmutableSetImpl.of(keySuperSet, hashingStrategy);
         this.missingValueSupplier = missingValueSupplier;
     }
 
@@ -65,10 +87,62 @@ public class CompactMapGroupBuilder<K, V> {
      */
     public Map<K, V> of(Map<K, V> original) {
         MapBuilder<K, V> builder = createMapBuilder();
-        original.forEach(builder::put);
+        int size = original.size();
+        K[] keys = GenericArrays.create(size);
+        V[] values = GenericArrays.create(size);
+        int i = 0;
+
+        for (Map.Entry<K, V> entry : original.entrySet()) {
+            keys[i] = entry.getKey();
+            values[i] = entry.getValue();
+            i++;
+        }
+
+        int[] indices = new int[size];
+        this.keyToIndexMap.elementToIndex(keys, indices);
+
+        for (i = 0; i < size; i++) {
+            builder.put(indices[i], keys[i], values[i]);
+        }
+
         return builder.build();
     }
 
+    /**
+     * Creates a CompactMapGroupBuilder for the union of the key super-set of this builder and the given keys. The keys
+     * of the current super-set keep their indices in the new super-set. Thus, the maps created by this builder can be
+     * transferred to the new builder with rebind(), which does not need to copy their values.
+     * <p>
+     * The new builder uses the same missingValueSupplier as this builder.
+     */
+    public CompactMapGroupBuilder<K, V> extend(Collection<? extends K> additionalKeys) {
+        IndexedImmutableSetImpl<K> extended = this.keyToIndexMap.extend(additionalKeys);
+        CompactMapGroupBuilder<K, V> result =
+                new CompactMapGroupBuilder<>(extended, extended.hashingStrategy(), this.missingValueSupplier);
+        result.compatibleKeyToIndexMap = this.keyToIndexMap;
+        return result;
+    }
+
+    /**
+     * Returns a map which is equal to the given map, but refers to the key super-set of this builder. This is
+     * useful for maps created by a builder this builder was derived from using extend(): Such maps are re-bound by
+     * sharing their values arrays.
+     * <p>
+     * Other maps, including the small maps which do not refer to the key super-set at all, are returned unchanged.
+     */
+    public <V2> Map<K, V2> rebind(Map<K, V2> map) {
+        if (map instanceof IndexRefMapImpl) {
+            IndexRefMapImpl<K, V2> indexRefMap = (IndexRefMapImpl<K, V2>) map;
+            IndexedImmutableSetImpl<K> previousKeyToIndexMap = indexRefMap.keyToIndexMap();
+
+            if (previousKeyToIndexMap != this.keyToIndexMap && isCompatible(previousKeyToIndexMap)) {
+                return indexRefMap.withKeyToIndexMap(this.keyToIndexMap);
+            }
+        }
+
+        return map;
+    }
+
     /**
      * Returns a MapBuilder instance which can be used to build compact map instances.
      */
@@ -84,6 +158,17 @@ public class CompactMapGroupBuilder<K, V> {
         return this.estimatedBackingArraySize + this.estimatedObjectOverheadSize;
     }
 
+    private boolean isCompatible(IndexedImmutableSetImpl<K> previousKeyToIndexMap) {
+        if (previousKeyToIndexMap == this.compatibleKeyToIndexMap) {
+            return true;
+        } else if (previousKeyToIndexMap.isIndexPrefixOf(this.keyToIndexMap)) {
+            this.compatibleKeyToIndexMap = previousKeyToIndexMap;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
     public static class MapBuilder<K, V> {
         private final CompactMapGroupBuilder<K, V> root;
         private V[] values;
@@ -112,9 +197,14 @@ public class CompactMapGroupBuilder<K, V> {
          */
         public void put(K key, V value) {
             checkState();
+            put(this.root.keyToIndexMap.elementToIndex(key), key, value);
+        }
 
-            int i = this.root.keyToIndexMap.elementToIndex(key);
-
+        /**
+         * Like put(K, V), but uses the given index of the key instead of looking it up. Does not check the state
+         * of the builder.
+         */
+        void put(int i, K key, V value) {
             if (i == -1) {
                 throw new IllegalArgumentException("Invalid key " + key + "; not present in keySuperSet");
             }
@@ -139,10 +229,18 @@ public class CompactMapGroupBuilder<K, V> {
                 throw new IllegalArgumentException("Invalid key " + key + "; not present in keySuperSet");
             }
 
+            return get(i);
+        }
+
+        /**
+         * Like get(K), but uses the given index of the key instead of looking it up. Does not check the state
+         * of the builder.
+         */
+        V get(int i) {
             V value = this.values[i];
 
             if (value == null && this.missingValueSupplier != null) {
-                value = this.missingValueSupplier.apply(key);
+                value = this.missingValueSupplier.apply(this.root.keyToIndexMap.indexToElement(i));
                 this.putNonExistent(i, value);
             }
 
@@ -173,6 +271,10 @@ public class CompactMapGroupBuilder<K, V> {
             try {
                 if (size == 0) {
                     return ImmutableMapImpl.empty();
+                } else if (size <= 2 && this.root.keyToIndexMap.hashingStrategy() != null) {
+                    // The dedicated small map classes always use equals(); thus, use a hash table in this case
+                    return buildBasicHashTable(
+                            GenericArrays.mapInPlace(this.values, valueMappingFunction), Integer.MAX_VALUE);
                 } else if (size == 1) {
                     int i = findNext(0);
                     V2 value = mapValue(this.values[i], valueMappingFunction);
@@ -261,14 +363,15 @@ public class CompactMapGroupBuilder<K, V> {
             return -1;
         }
 
-        private void checkState() {
+        void checkState() {
             if (this.values == null) {
                 throw new IllegalStateException("This builder instance was already built");
             }
         }
 
         private <V2> ImmutableMapImpl<K, V2> buildBasicHashTable(V2[] values, int maxByteSize) {
-            ImmutableMapImpl.InternalBuilder<K, V2> builder = ImmutableMapImpl.InternalBuilder.create(size);
+            ImmutableMapImpl.InternalBuilder<K, V2> builder = ImmutableMapImpl.InternalBuilder.<K, V2>create(size)
+                    .hashingStrategy(this.root.keyToIndexMap.hashingStrategy());
 
             for (int i = 0; i < values.length; i++) {
                 V2 value = values[i];
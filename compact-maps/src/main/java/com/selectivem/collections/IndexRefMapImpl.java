@@ -19,7 +19,10 @@ package com.selectivem.collections;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 /**
  * A Map implementation which is just composed of a values array and an IndexedImmutableSetImpl map instance
@@ -33,6 +36,13 @@ class IndexRefMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
     private final IndexedImmutableSetImpl<K> keyToIndexMap;
     private final int valuesArrayOffset;
     private String cachedToString;
+    private Set<K> keySet;
+    private Set<Entry<K, V>> entrySet;
+
+    /**
+     * Lazily computed result of hashCode(); 0 if not yet computed.
+     */
+    private int hashCode;
 
     IndexRefMapImpl(V[] values, int size, IndexedImmutableSetImpl<K> keyToIndexMap, int valuesArrayOffset) {
         this.values = values;
@@ -41,6 +51,21 @@ class IndexRefMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
         this.valuesArrayOffset = valuesArrayOffset;
     }
 
+    /**
+     * Returns the key set the values of this map refer to.
+     */
+    IndexedImmutableSetImpl<K> keyToIndexMap() {
+        return this.keyToIndexMap;
+    }
+
+    /**
+     * Returns a map with the same values array which refers to the given key set. This is only valid if the current
+     * key set is an index prefix of the given key set; see IndexedImmutableSetImpl.isIndexPrefixOf().
+     */
+    IndexRefMapImpl<K, V> withKeyToIndexMap(IndexedImmutableSetImpl<K> keyToIndexMap) {
+        return new IndexRefMapImpl<>(this.values, this.size, keyToIndexMap, this.valuesArrayOffset);
+    }
+
     @Override
     public int size() {
         return size;
@@ -88,6 +113,47 @@ class IndexRefMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
 
     @Override
     public Set<K> keySet() {
+        Set<K> result = this.keySet;
+
+        if (result == null) {
+            this.keySet = result = createKeySet();
+        }
+
+        return result;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        Set<Entry<K, V>> result = this.entrySet;
+
+        if (result == null) {
+            this.entrySet = result = createEntrySet();
+        }
+
+        return result;
+    }
+
+    @Override
+    public MapCursor<K, V> cursor() {
+        return new ArrayMapCursor<K, V>(values.length) {
+            @Override
+            boolean isOccupied(int slot) {
+                return values[slot] != null;
+            }
+
+            @Override
+            K keyAt(int slot) {
+                return IndexRefMapImpl.this.keyAt(slot);
+            }
+
+            @Override
+            V valueAt(int slot) {
+                return values[slot];
+            }
+        };
+    }
+
+    private Set<K> createKeySet() {
         return new UnmodifiableSetImpl<K>() {
             @Override
             public int size() {
@@ -128,11 +194,15 @@ class IndexRefMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
                     }
                 };
             }
+
+            @Override
+            public Spliterator<K> spliterator() {
+                return new ValuesArraySpliterator<>(IndexRefMapImpl.this::keyAt, 0, values.length, size);
+            }
         };
     }
 
-    @Override
-    public Set<Entry<K, V>> entrySet() {
+    private Set<Entry<K, V>> createEntrySet() {
         return new UnmodifiableSetImpl<Entry<K, V>>() {
             @Override
             public int size() {
@@ -175,30 +245,19 @@ class IndexRefMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
                             throw new NoSuchElementException();
                         }
 
-                        V value = IndexRefMapImpl.this.values[current];
-                        K key = IndexRefMapImpl.this.keyToIndexMap.indexToElement(current + valuesArrayOffset);
+                        Entry<K, V> entry = entryAt(current);
 
                         current = findNext(current + 1);
 
-                        return new Entry<K, V>() {
-                            @Override
-                            public K getKey() {
-                                return key;
-                            }
-
-                            @Override
-                            public V getValue() {
-                                return value;
-                            }
-
-                            @Override
-                            public V setValue(V value) {
-                                throw new UnsupportedOperationException();
-                            }
-                        };
+                        return entry;
                     }
                 };
             }
+
+            @Override
+            public Spliterator<Entry<K, V>> spliterator() {
+                return new ValuesArraySpliterator<>(IndexRefMapImpl.this::entryAt, 0, values.length, size);
+            }
         };
     }
 
@@ -216,6 +275,49 @@ class IndexRefMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
         }
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+
+        if (o instanceof IndexRefMapImpl) {
+            IndexRefMapImpl<?, ?> other = (IndexRefMapImpl<?, ?>) o;
+
+            if (other.size != this.size) {
+                return false;
+            }
+
+            // Only compare hash codes if both are already cached; computing them would cost more than comparing the
+            // elements
+            if (other.hashCode != 0 && this.hashCode != 0 && other.hashCode != this.hashCode) {
+                return false;
+            }
+        }
+
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = this.hashCode;
+
+        if (result == 0) {
+            for (int i = 0; i < this.values.length; i++) {
+                V value = this.values[i];
+                if (value == null) {
+                    continue;
+                }
+
+                result += keyAt(i).hashCode() ^ value.hashCode();
+            }
+
+            this.hashCode = result;
+        }
+
+        return result;
+    }
+
     @Override
     public String toString() {
         String result = this.cachedToString;
@@ -244,6 +346,32 @@ class IndexRefMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
         return result;
     }
 
+    private K keyAt(int i) {
+        return this.keyToIndexMap.indexToElement(i + valuesArrayOffset);
+    }
+
+    private Entry<K, V> entryAt(int i) {
+        V value = this.values[i];
+        K key = keyAt(i);
+
+        return new Entry<K, V>() {
+            @Override
+            public K getKey() {
+                return key;
+            }
+
+            @Override
+            public V getValue() {
+                return value;
+            }
+
+            @Override
+            public V setValue(V value) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
     private int findNext(int start) {
         for (int i = start; i < this.values.length; i++) {
             if (this.values[i] != null) {
@@ -253,4 +381,87 @@ class IndexRefMapImpl<K, V> extends UnmodifiableMapImpl<K, V> {
 
         return -1;
     }
+
+    /**
+     * A spliterator over the occupied slots of the values array, which splits the remaining index range in the middle.
+     * As the number of occupied slots in a range is not known, only unsplit instances report an exact size.
+     */
+    private final class ValuesArraySpliterator<T> implements Spliterator<T> {
+        private final IntFunction<T> elementAt;
+        private int index;
+        private final int fence;
+        private long estimatedSize;
+        private boolean split;
+
+        ValuesArraySpliterator(IntFunction<T> elementAt, int index, int fence, long estimatedSize) {
+            this.elementAt = elementAt;
+            this.index = index;
+            this.fence = fence;
+            this.estimatedSize = estimatedSize;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            for (int i = this.index; i < this.fence; i++) {
+                if (values[i] != null) {
+                    this.index = i + 1;
+
+                    if (this.estimatedSize > 0) {
+                        this.estimatedSize--;
+                    }
+
+                    action.accept(this.elementAt.apply(i));
+                    return true;
+                }
+            }
+
+            this.index = this.fence;
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            for (int i = this.index; i < this.fence; i++) {
+                if (values[i] != null) {
+                    action.accept(this.elementAt.apply(i));
+                }
+            }
+
+            this.index = this.fence;
+            this.estimatedSize = 0;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int lo = this.index;
+            int mid = (lo + this.fence) >>> 1;
+
+            if (lo >= mid) {
+                return null;
+            }
+
+            this.index = mid;
+            this.estimatedSize >>>= 1;
+            this.split = true;
+
+            ValuesArraySpliterator<T> prefix =
+                    new ValuesArraySpliterator<>(this.elementAt, lo, mid, this.estimatedSize);
+            prefix.split = true;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.estimatedSize;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.DISTINCT
+                    | Spliterator.ORDERED
+                    | Spliterator.NONNULL
+                    | Spliterator.IMMUTABLE
+                    | (this.split ? 0 : Spliterator.SIZED);
+        }
+    }
 }
@@ -24,6 +24,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
@@ -117,6 +118,136 @@ public class CompactMapGroupBuilderTest {
             builder.build();
             builder.put("b", "2");
         }
+
+        @Test
+        public void hashingStrategy() {
+            CompactMapGroupBuilder<String, String> subject =
+                    new CompactMapGroupBuilder<>(setOf("a", "b", "c", "d", "e", "f"), CASE_INSENSITIVE, null);
+
+            for (int size = 1; size <= 6; size++) {
+                CompactMapGroupBuilder.MapBuilder<String, String> builder = subject.createMapBuilder();
+                Map<String, String> reference = new HashMap<>();
+
+                for (int i = 0; i < size; i++) {
+                    String key = String.valueOf((char) ('a' + i));
+                    builder.put(key.toUpperCase(Locale.ROOT), "x");
+                    builder.put(key, key + key);
+                    reference.put(key, key + key);
+                }
+
+                Assert.assertEquals(size, builder.size());
+                Map<String, String> map = builder.build();
+                Assert.assertEquals(reference, map);
+
+                for (int i = 0; i < size; i++) {
+                    String key = String.valueOf((char) ('a' + i));
+                    Assert.assertEquals(key + key, map.get(key.toUpperCase(Locale.ROOT)));
+                    Assert.assertTrue(map.containsKey(key.toUpperCase(Locale.ROOT)));
+                }
+
+                Assert.assertFalse(map.containsKey("Z"));
+            }
+
+            CompactMapGroupBuilder<String, String> extended = subject.extend(Arrays.asList("A", "New"));
+            Map<String, String> map = extended.of(mapOf("a", "1", "new", "2", "c", "3"));
+            Assert.assertEquals("2", map.get("NEW"));
+            Assert.assertEquals("1", map.get("A"));
+        }
+    }
+
+    public static class ExtendTest {
+        @Test
+        public void rebind() {
+            Set<String> keys = new HashSet<>();
+
+            for (int i = 0; i < 100; i++) {
+                keys.add("k" + i);
+            }
+
+            CompactMapGroupBuilder<String, String> subject = new CompactMapGroupBuilder<>(keys);
+            Map<String, String> original = new HashMap<>();
+
+            for (int i = 0; i < 100; i += 2) {
+                original.put("k" + i, "v" + i);
+            }
+
+            Map<String, String> map = subject.of(original);
+            Assert.assertTrue(map instanceof IndexRefMapImpl);
+
+            CompactMapGroupBuilder<String, String> extended = subject.extend(Arrays.asList("new1", "new2"));
+            Map<String, String> rebound = extended.rebind(map);
+
+            Assert.assertNotSame(map, rebound);
+            Assert.assertEquals(original, rebound);
+            Assert.assertNull(rebound.get("new1"));
+
+            CompactMapGroupBuilder.MapBuilder<String, String> builder = extended.createMapBuilder();
+            builder.put("new1", "x");
+            builder.put("k1", "y");
+            Assert.assertEquals("x", builder.build().get("new1"));
+        }
+
+        @Test
+        public void rebind_small() {
+            CompactMapGroupBuilder<String, String> subject = new CompactMapGroupBuilder<>(setOf("a", "b", "c", "d"));
+            Map<String, String> map = subject.of(mapOf("a", "aa"));
+            Assert.assertSame(map, subject.extend(Arrays.asList("e")).rebind(map));
+        }
+    }
+
+    public static class PrimitiveTest {
+        @Test
+        public void intKeys() {
+            CompactIntMapGroupBuilder<String> subject = new CompactIntMapGroupBuilder<>(IndexedIntSet.of(1, 2, 3, 4));
+            CompactIntMapGroupBuilder.MapBuilder<String> builder = subject.createMapBuilder();
+            builder.put(1, "a");
+            builder.put(3, "c");
+            builder.put(3, "cc");
+            Assert.assertEquals(2, builder.size());
+            Assert.assertEquals("cc", builder.get(3));
+
+            Map<Integer, String> reference = new HashMap<>();
+            reference.put(1, "a");
+            reference.put(3, "cc");
+            Assert.assertEquals(reference, builder.build());
+        }
+
+        @Test
+        public void intKeys_missingValueSupplier() {
+            CompactIntMapGroupBuilder<List<String>> subject =
+                    new CompactIntMapGroupBuilder<>(IndexedIntSet.of(1, 2, 3, 4), k -> new ArrayList<>());
+            CompactIntMapGroupBuilder.MapBuilder<List<String>> builder = subject.createMapBuilder();
+            builder.get(2).add("x");
+            builder.get(2).add("y");
+            Assert.assertEquals(Arrays.asList("x", "y"), builder.build().get(2));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void intKeys_invalidKey() {
+            new CompactIntMapGroupBuilder<String>(IndexedIntSet.of(1, 2))
+                    .createMapBuilder()
+                    .put(3, "c");
+        }
+
+        @Test
+        public void longKeys() {
+            CompactLongMapGroupBuilder<String> subject =
+                    new CompactLongMapGroupBuilder<>(IndexedLongSet.of(10L, 20L, 30L));
+            CompactLongMapGroupBuilder.MapBuilder<String> builder = subject.createMapBuilder();
+            builder.put(20L, "b");
+
+            Map<Long, String> map = builder.build();
+            Assert.assertEquals(1, map.size());
+            Assert.assertEquals("b", map.get(20L));
+            Assert.assertNull(map.get(10L));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void longKeys_null() {
+            new CompactLongMapGroupBuilder<String>(IndexedLongSet.of(10L))
+                    .createMapBuilder()
+                    .put(10L, null);
+        }
     }
 
     @RunWith(Parameterized.class)
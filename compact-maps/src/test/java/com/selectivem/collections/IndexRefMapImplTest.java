@@ -15,9 +15,15 @@
  */
 package com.selectivem.collections;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -32,6 +38,62 @@ public class IndexRefMapImplTest {
         Assert.assertEquals("[a=1]", subject.toString());
     }
 
+    @Test
+    public void cursor() {
+        IndexRefMapImpl<String, String> subject = new IndexRefMapImpl<>(
+                new String[] {"2", null, "4"},
+                2,
+                IndexedImmutableSetImpl.of(new LinkedHashSet<>(Arrays.asList("a", "b", "c", "d"))),
+                1);
+        MapCursor<String, String> cursor = subject.cursor();
+
+        Assert.assertTrue(cursor.advance());
+        Assert.assertEquals("b", cursor.key());
+        Assert.assertEquals("2", cursor.value());
+        Assert.assertTrue(cursor.advance());
+        Assert.assertEquals("d", cursor.key());
+        Assert.assertEquals("4", cursor.value());
+        Assert.assertFalse(cursor.advance());
+    }
+
+    @Test
+    public void hashCodeEquals() {
+        IndexRefMapImpl<String, String> subject = new IndexRefMapImpl<>(
+                new String[] {"1", null, "3"},
+                2,
+                IndexedImmutableSetImpl.of(new LinkedHashSet<>(Arrays.asList("a", "b", "c"))),
+                0);
+        Map<String, String> reference = new HashMap<>();
+        reference.put("a", "1");
+        reference.put("c", "3");
+
+        Assert.assertEquals(reference.hashCode(), subject.hashCode());
+        Assert.assertEquals(reference, subject);
+        Assert.assertEquals(subject, reference);
+
+        IndexRefMapImpl<String, String> other = new IndexRefMapImpl<>(
+                new String[] {"1", "3"},
+                2,
+                IndexedImmutableSetImpl.of(new LinkedHashSet<>(Arrays.asList("a", "b", "c"))),
+                0);
+        Assert.assertNotEquals(subject, other);
+        Assert.assertEquals(
+                subject,
+                new IndexRefMapImpl<>(
+                        new String[] {"3", null, "1"},
+                        2,
+                        IndexedImmutableSetImpl.of(new LinkedHashSet<>(Arrays.asList("c", "b", "a"))),
+                        0));
+    }
+
+    @Test
+    public void views_cached() {
+        IndexRefMapImpl<String, String> subject =
+                new IndexRefMapImpl<>(new String[] {"1", "2"}, 2, IndexedImmutableSetImpl.of("a", "b"), 0);
+        Assert.assertSame(subject.keySet(), subject.keySet());
+        Assert.assertSame(subject.entrySet(), subject.entrySet());
+    }
+
     @Test
     public void containsValue() {
         IndexRefMapImpl<String, String> subject =
@@ -94,4 +156,47 @@ public class IndexRefMapImplTest {
 
         iter.next();
     }
+
+    @Test
+    public void keySet_parallelStream() {
+        String[] values = new String[1000];
+        Set<String> keys = new LinkedHashSet<>();
+        Map<String, String> reference = new HashMap<>();
+
+        for (int i = 0; i < values.length; i++) {
+            keys.add("k" + i);
+
+            if (i % 3 == 0) {
+                values[i] = "v" + i;
+                reference.put("k" + i, "v" + i);
+            }
+        }
+
+        IndexRefMapImpl<String, String> subject =
+                new IndexRefMapImpl<>(values, reference.size(), IndexedImmutableSetImpl.of(keys), 0);
+
+        Assert.assertEquals(
+                reference.keySet(), subject.keySet().parallelStream().collect(Collectors.toSet()));
+        Assert.assertEquals(
+                reference,
+                subject.entrySet().parallelStream().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+        Assert.assertEquals(reference.size(), subject.keySet().stream().count());
+    }
+
+    @Test
+    public void keySet_spliterator_size() {
+        IndexRefMapImpl<String, String> subject = new IndexRefMapImpl<>(
+                new String[] {"1", null, "3"},
+                2,
+                IndexedImmutableSetImpl.of(new LinkedHashSet<>(Arrays.asList("a", "b", "c"))),
+                0);
+        Spliterator<String> spliterator = subject.keySet().spliterator();
+
+        Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+        Assert.assertEquals(2, spliterator.getExactSizeIfKnown());
+        Assert.assertTrue(spliterator.tryAdvance(k -> Assert.assertEquals("a", k)));
+        Assert.assertEquals(1, spliterator.getExactSizeIfKnown());
+        Assert.assertTrue(spliterator.tryAdvance(k -> Assert.assertEquals("c", k)));
+        Assert.assertFalse(spliterator.tryAdvance(k -> Assert.fail()));
+    }
 }
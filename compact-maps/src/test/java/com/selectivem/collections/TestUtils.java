@@ -18,11 +18,27 @@ package com.selectivem.collections;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
 class TestUtils {
 
+    /**
+     * Compares strings ignoring their case.
+     */
+    static final HashingStrategy<String> CASE_INSENSITIVE = new HashingStrategy<String>() {
+        @Override
+        public int computeHashCode(String e) {
+            return e.toLowerCase(Locale.ROOT).hashCode();
+        }
+
+        @Override
+        public boolean equals(String e1, String e2) {
+            return e1.equalsIgnoreCase(e2);
+        }
+    };
+
     static Set<String> setOf(String... elements) {
         return new HashSet<>(Arrays.asList(elements));
     }
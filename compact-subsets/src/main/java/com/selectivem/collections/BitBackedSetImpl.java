@@ -15,13 +15,29 @@
  */
 package com.selectivem.collections;
 
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
  * A BitBackedSet is a view on a IndexedImmutableSetImpl, where bitfields determine whether a
  * member of the IndexedImmutableSetImpl is also a member of the BitBackedSet. Thus, a BitBackedSet
  * is always a strict sub-set of a IndexedImmutableSetImpl.
+ * <p>
+ * Depending on the density of the elements, the membership information is stored in one of these containers,
+ * similar to the containers of Roaring bitmaps:
+ * <ul>
+ *     <li>LongBacked and LongArrayBacked store plain bit-fields</li>
+ *     <li>IndexArrayBacked stores the sorted indices of sparse sets</li>
+ *     <li>RunBacked stores the ranges of sets consisting of long runs of consecutive indices</li>
+ * </ul>
+ * The container which needs the least memory is chosen by the of() methods. All containers provide the words of an
+ * equivalent bit-field; the sparse containers compute these on demand.
  */
 abstract class BitBackedSetImpl<E> extends UnmodifiableSetImpl<E> implements ImmutableCompactSubSet<E> {
 
@@ -41,79 +57,40 @@ abstract class BitBackedSetImpl<E> extends UnmodifiableSetImpl<E> implements Imm
         @Override
         public Iterator<E> iterator() {
             return new Iterator<E>() {
+                /**
+                 * The index of the word which is currently consumed.
+                 */
+                int wordIndex = 0;
 
-                int currentPosition = findNext(bitArrayOffset, 0);
+                /**
+                 * The bits of the current word which have not been consumed yet.
+                 */
+                long word = bits[0];
 
                 @Override
                 public boolean hasNext() {
-                    return currentPosition != -1;
-                }
-
-                @Override
-                public E next() {
-                    if (currentPosition == -1) {
-                        throw new NoSuchElementException();
-                    }
-
-                    E result = elementToIndexMap.indexToElement(currentPosition);
-                    this.currentPosition = findNext();
-                    return result;
-                }
-
-                int findNext(int arrayIndex, int bitIndex) {
-                    int actualArrayIndex = arrayIndex - bitArrayOffset;
-
-                    if (bitIndex >= 64) {
-                        bitIndex = 0;
-                        arrayIndex++;
-                        actualArrayIndex++;
-
-                        if (actualArrayIndex >= bits.length) {
-                            return -1;
+                    while (word == 0) {
+                        if (wordIndex + 1 >= bits.length) {
+                            return false;
                         }
 
-                        while (bits[actualArrayIndex] == 0) {
-                            arrayIndex++;
-                            actualArrayIndex++;
-                            if (actualArrayIndex >= bits.length) {
-                                return -1;
-                            }
-                        }
+                        wordIndex++;
+                        word = bits[wordIndex];
                     }
 
-                    for (; ; ) {
-                        long bit = 1l << bitIndex;
-
-                        if ((bits[actualArrayIndex] & bit) != 0) {
-                            return arrayIndex << 6 | bitIndex;
-                        }
-
-                        bitIndex++;
-                        if (bitIndex >= 64) {
-                            bitIndex = 0;
-                            arrayIndex++;
-                            actualArrayIndex++;
-
-                            if (actualArrayIndex >= bits.length) {
-                                return -1;
-                            }
-
-                            while (bits[actualArrayIndex] == 0) {
-                                arrayIndex++;
-                                actualArrayIndex++;
-                                if (actualArrayIndex >= bits.length) {
-                                    return -1;
-                                }
-                            }
-                        }
-                    }
+                    return true;
                 }
 
-                int findNext() {
-                    int bitIndex = this.currentPosition & 0x3f;
-                    int arrayIndex = this.currentPosition >> 6;
+                @Override
+                public E next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
 
-                    return findNext(arrayIndex, bitIndex + 1);
+                    long word = this.word;
+                    this.word = word & (word - 1);
+                    return elementToIndexMap.indexToElement(
+                            (wordIndex + bitArrayOffset) << 6 | Long.numberOfTrailingZeros(word));
                 }
             };
         }
@@ -146,6 +123,52 @@ abstract class BitBackedSetImpl<E> extends UnmodifiableSetImpl<E> implements Imm
             return (this.bits[arrayIndex] & bit) != 0;
         }
 
+        @Override
+        public Spliterator<E> spliterator() {
+            return new BitSpliterator<>(this.bits, 0, this.size, this.elementToIndexMap, this.bitArrayOffset);
+        }
+
+        @Override
+        IndexedImmutableSetImpl<E> elementToIndexMap() {
+            return this.elementToIndexMap;
+        }
+
+        @Override
+        BitBackedSetImpl<E> withElementToIndexMap(IndexedImmutableSetImpl<E> elementToIndexMap) {
+            return new LongArrayBacked<>(this.bits, this.size, elementToIndexMap, this.bitArrayOffset);
+        }
+
+        @Override
+        int firstWordIndex() {
+            return this.bitArrayOffset;
+        }
+
+        @Override
+        int wordCount() {
+            return this.bits.length;
+        }
+
+        @Override
+        long wordAt(int wordIndex) {
+            int arrayIndex = wordIndex - this.bitArrayOffset;
+
+            if (arrayIndex >= 0 && arrayIndex < this.bits.length) {
+                return this.bits[arrayIndex];
+            } else {
+                return 0;
+            }
+        }
+
+        @Override
+        boolean containsIndex(int index) {
+            return (wordAt(index >> 6) & 1l << (index & 0x3f)) != 0;
+        }
+
+        @Override
+        boolean isBitField() {
+            return true;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (o instanceof BitBackedSetImpl.LongArrayBacked) {
@@ -197,59 +220,26 @@ abstract class BitBackedSetImpl<E> extends UnmodifiableSetImpl<E> implements Imm
         @Override
         public Iterator<E> iterator() {
             return new Iterator<E>() {
-
-                int currentPosition = findNext(bitArrayOffset, 0);
+                /**
+                 * The bits which have not been consumed yet.
+                 */
+                long word = bits;
 
                 @Override
                 public boolean hasNext() {
-                    return currentPosition != -1;
+                    return word != 0;
                 }
 
                 @Override
                 public E next() {
-                    if (currentPosition == -1) {
-                        throw new NoSuchElementException();
-                    }
-
-                    E result = elementToIndexMap.indexToElement(currentPosition);
-                    this.currentPosition = findNext();
-                    return result;
-                }
-
-                int findNext(int arrayIndex, int bitIndex) {
-                    if (bitIndex >= 64) {
-                        bitIndex = 0;
-                        arrayIndex++;
-                    }
-
-                    if (arrayIndex - bitArrayOffset > 0) {
-                        return -1;
-                    }
-
-                    for (; ; ) {
-                        long bit = 1l << bitIndex;
-
-                        if ((bits & bit) != 0) {
-                            return arrayIndex << 6 | bitIndex;
-                        }
-
-                        bitIndex++;
-                        if (bitIndex >= 64) {
-                            bitIndex = 0;
-                            arrayIndex++;
-                        }
+                    long word = this.word;
 
-                        if (arrayIndex - bitArrayOffset > 0) {
-                            return -1;
-                        }
+                    if (word == 0) {
+                        throw new NoSuchElementException();
                     }
-                }
-
-                int findNext() {
-                    int bitIndex = this.currentPosition & 0x3f;
-                    int arrayIndex = this.currentPosition >> 6;
 
-                    return findNext(arrayIndex, bitIndex + 1);
+                    this.word = word & (word - 1);
+                    return elementToIndexMap.indexToElement(bitArrayOffset << 6 | Long.numberOfTrailingZeros(word));
                 }
             };
         }
@@ -282,6 +272,47 @@ abstract class BitBackedSetImpl<E> extends UnmodifiableSetImpl<E> implements Imm
             return (this.bits & bit) != 0;
         }
 
+        @Override
+        public Spliterator<E> spliterator() {
+            return new BitSpliterator<>(
+                    new long[] {this.bits}, 0, this.size, this.elementToIndexMap, this.bitArrayOffset);
+        }
+
+        @Override
+        IndexedImmutableSetImpl<E> elementToIndexMap() {
+            return this.elementToIndexMap;
+        }
+
+        @Override
+        BitBackedSetImpl<E> withElementToIndexMap(IndexedImmutableSetImpl<E> elementToIndexMap) {
+            return new LongBacked<>(this.bits, this.size, elementToIndexMap, this.bitArrayOffset);
+        }
+
+        @Override
+        int firstWordIndex() {
+            return this.bitArrayOffset;
+        }
+
+        @Override
+        int wordCount() {
+            return 1;
+        }
+
+        @Override
+        long wordAt(int wordIndex) {
+            return wordIndex == this.bitArrayOffset ? this.bits : 0;
+        }
+
+        @Override
+        boolean containsIndex(int index) {
+            return (index >> 6) == this.bitArrayOffset && (this.bits & 1l << (index & 0x3f)) != 0;
+        }
+
+        @Override
+        boolean isBitField() {
+            return true;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (o instanceof BitBackedSetImpl.LongBacked) {
@@ -311,6 +342,1223 @@ abstract class BitBackedSetImpl<E> extends UnmodifiableSetImpl<E> implements Imm
         }
     }
 
+    /**
+     * A sparse set which stores the sorted indices of its elements. This is used when the elements are spread so
+     * widely over the super-set that a bit-field would mostly consist of zero words.
+     */
+    static final class IndexArrayBacked<E> extends BitBackedSetImpl<E> {
+        /**
+         * The sorted and distinct indices of the elements; the length of the array is the size of the set.
+         */
+        private final int[] indices;
+
+        private final IndexedImmutableSetImpl<E> elementToIndexMap;
+
+        IndexArrayBacked(int[] indices, IndexedImmutableSetImpl<E> elementToIndexMap) {
+            this.indices = indices;
+            this.elementToIndexMap = elementToIndexMap;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new Iterator<E>() {
+                int i = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return i < indices.length;
+                }
+
+                @Override
+                public E next() {
+                    if (i >= indices.length) {
+                        throw new NoSuchElementException();
+                    }
+
+                    return elementToIndexMap.indexToElement(indices[i++]);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return this.indices.length;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return this.indices.length == 0;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            int index = this.elementToIndexMap.elementToIndex(o);
+
+            if (index == -1) {
+                return false;
+            }
+
+            return containsIndex(index);
+        }
+
+        @Override
+        public void forEach(Consumer<? super E> action) {
+            for (int index : this.indices) {
+                action.accept(this.elementToIndexMap.indexToElement(index));
+            }
+        }
+
+        @Override
+        public void forEachIndex(IntConsumer action) {
+            for (int index : this.indices) {
+                action.accept(index);
+            }
+        }
+
+        @Override
+        public Spliterator<E> spliterator() {
+            return new IndexArraySpliterator<>(this.indices, 0, this.indices.length, this.elementToIndexMap);
+        }
+
+        @Override
+        IndexedImmutableSetImpl<E> elementToIndexMap() {
+            return this.elementToIndexMap;
+        }
+
+        @Override
+        BitBackedSetImpl<E> withElementToIndexMap(IndexedImmutableSetImpl<E> elementToIndexMap) {
+            return new IndexArrayBacked<>(this.indices, elementToIndexMap);
+        }
+
+        @Override
+        int firstWordIndex() {
+            return this.indices[0] >> 6;
+        }
+
+        @Override
+        int wordCount() {
+            return (this.indices[this.indices.length - 1] >> 6) - firstWordIndex() + 1;
+        }
+
+        @Override
+        long wordAt(int wordIndex) {
+            int i = Arrays.binarySearch(this.indices, wordIndex << 6);
+
+            if (i < 0) {
+                i = -i - 1;
+            }
+
+            int end = (wordIndex + 1) << 6;
+            long word = 0;
+
+            for (; i < this.indices.length && this.indices[i] < end; i++) {
+                word |= 1l << (this.indices[i] & 0x3f);
+            }
+
+            return word;
+        }
+
+        @Override
+        boolean containsIndex(int index) {
+            return Arrays.binarySearch(this.indices, index) >= 0;
+        }
+
+        @Override
+        boolean isBitField() {
+            return false;
+        }
+
+        @Override
+        int[] toIndexArray() {
+            return this.indices;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof BitBackedSetImpl.IndexArrayBacked) {
+                BitBackedSetImpl.IndexArrayBacked<?> other = (BitBackedSetImpl.IndexArrayBacked<?>) o;
+
+                if (other.elementToIndexMap == this.elementToIndexMap) {
+                    return Arrays.equals(this.indices, other.indices);
+                } else {
+                    return super.equals(o);
+                }
+            } else {
+                return super.equals(o);
+            }
+        }
+    }
+
+    /**
+     * A set which stores runs of consecutive indices. This is used when the elements form few, but long, contiguous
+     * ranges of the super-set.
+     */
+    static final class RunBacked<E> extends BitBackedSetImpl<E> {
+        /**
+         * Pairs of the first and the last index of each run; the runs are sorted and neither overlap nor touch.
+         */
+        private final int[] runs;
+
+        private final int size;
+        private final IndexedImmutableSetImpl<E> elementToIndexMap;
+
+        RunBacked(int[] runs, int size, IndexedImmutableSetImpl<E> elementToIndexMap) {
+            this.runs = runs;
+            this.size = size;
+            this.elementToIndexMap = elementToIndexMap;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new Iterator<E>() {
+                /**
+                 * The position of the start of the current run in the runs array.
+                 */
+                int run = 0;
+
+                int next = runs[0];
+
+                @Override
+                public boolean hasNext() {
+                    return run < runs.length;
+                }
+
+                @Override
+                public E next() {
+                    if (run >= runs.length) {
+                        throw new NoSuchElementException();
+                    }
+
+                    int index = next;
+
+                    if (index == runs[run + 1]) {
+                        run += 2;
+
+                        if (run < runs.length) {
+                            next = runs[run];
+                        }
+                    } else {
+                        next = index + 1;
+                    }
+
+                    return elementToIndexMap.indexToElement(index);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return this.size == 0;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            int index = this.elementToIndexMap.elementToIndex(o);
+
+            if (index == -1) {
+                return false;
+            }
+
+            return containsIndex(index);
+        }
+
+        @Override
+        public void forEach(Consumer<? super E> action) {
+            for (int i = 0; i < this.runs.length; i += 2) {
+                for (int index = this.runs[i]; index <= this.runs[i + 1]; index++) {
+                    action.accept(this.elementToIndexMap.indexToElement(index));
+                }
+            }
+        }
+
+        @Override
+        public void forEachIndex(IntConsumer action) {
+            for (int i = 0; i < this.runs.length; i += 2) {
+                for (int index = this.runs[i]; index <= this.runs[i + 1]; index++) {
+                    action.accept(index);
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<E> spliterator() {
+            return new IndexArraySpliterator<>(toIndexArray(), 0, this.size, this.elementToIndexMap);
+        }
+
+        @Override
+        IndexedImmutableSetImpl<E> elementToIndexMap() {
+            return this.elementToIndexMap;
+        }
+
+        @Override
+        BitBackedSetImpl<E> withElementToIndexMap(IndexedImmutableSetImpl<E> elementToIndexMap) {
+            return new RunBacked<>(this.runs, this.size, elementToIndexMap);
+        }
+
+        @Override
+        int firstWordIndex() {
+            return this.runs[0] >> 6;
+        }
+
+        @Override
+        int wordCount() {
+            return (this.runs[this.runs.length - 1] >> 6) - firstWordIndex() + 1;
+        }
+
+        @Override
+        long wordAt(int wordIndex) {
+            int start = wordIndex << 6;
+            int end = start + 63;
+            long word = 0;
+
+            for (int i = runEndingAtOrAfter(start); i < this.runs.length && this.runs[i] <= end; i += 2) {
+                int first = Math.max(this.runs[i], start) - start;
+                int last = Math.min(this.runs[i + 1], end) - start;
+                word |= (-1l >>> (63 - (last - first))) << first;
+            }
+
+            return word;
+        }
+
+        @Override
+        boolean containsIndex(int index) {
+            int i = runEndingAtOrAfter(index);
+            return i < this.runs.length && this.runs[i] <= index;
+        }
+
+        @Override
+        boolean isBitField() {
+            return false;
+        }
+
+        @Override
+        int[] toIndexArray() {
+            int[] result = new int[this.size];
+            int k = 0;
+
+            for (int i = 0; i < this.runs.length; i += 2) {
+                for (int index = this.runs[i]; index <= this.runs[i + 1]; index++) {
+                    result[k++] = index;
+                }
+            }
+
+            return result;
+        }
+
+        /**
+         * Returns the position in the runs array of the first run which ends at or after the given index; if there is
+         * no such run, the length of the runs array is returned.
+         */
+        private int runEndingAtOrAfter(int index) {
+            int low = 0;
+            int high = this.runs.length >> 1;
+
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+
+                if (this.runs[2 * mid + 1] < index) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            return 2 * low;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof BitBackedSetImpl.RunBacked) {
+                BitBackedSetImpl.RunBacked<?> other = (BitBackedSetImpl.RunBacked<?>) o;
+
+                if (other.elementToIndexMap == this.elementToIndexMap) {
+                    return Arrays.equals(this.runs, other.runs);
+                } else {
+                    return super.equals(o);
+                }
+            } else {
+                return super.equals(o);
+            }
+        }
+    }
+
+    /**
+     * Lazily computed result of hashCode(); 0 if not yet computed.
+     */
+    private int hashCode;
+
+    /**
+     * Compares the elements of this set with the elements of the given object. The subclasses only call this if
+     * comparing the bits directly is not possible.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+
+        if (o instanceof BitBackedSetImpl) {
+            BitBackedSetImpl<?> other = (BitBackedSetImpl<?>) o;
+
+            if (other.size() != size()) {
+                return false;
+            }
+
+            // Only compare hash codes if both are already cached; computing them would cost more than comparing the
+            // elements
+            if (other.hashCode != 0 && this.hashCode != 0 && other.hashCode != this.hashCode) {
+                return false;
+            }
+        }
+
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = this.hashCode;
+
+        if (result == 0) {
+            for (E e : this) {
+                result += e.hashCode();
+            }
+
+            this.hashCode = result;
+        }
+
+        return result;
+    }
+
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        IndexedImmutableSetImpl<E> elementToIndexMap = elementToIndexMap();
+        int end = firstWordIndex() + wordCount();
+
+        for (int i = firstWordIndex(); i < end; i++) {
+            long word = wordAt(i);
+            int base = i << 6;
+
+            while (word != 0) {
+                action.accept(elementToIndexMap.indexToElement(base | Long.numberOfTrailingZeros(word)));
+                word &= word - 1;
+            }
+        }
+    }
+
+    @Override
+    public void forEachIndex(IntConsumer action) {
+        int end = firstWordIndex() + wordCount();
+
+        for (int i = firstWordIndex(); i < end; i++) {
+            long word = wordAt(i);
+            int base = i << 6;
+
+            while (word != 0) {
+                action.accept(base | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        return toArray(new Object[size()]);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T[] toArray(T[] a) {
+        int size = size();
+
+        if (a.length < size) {
+            a = (T[]) Array.newInstance(a.getClass().getComponentType(), size);
+        }
+
+        IndexedImmutableSetImpl<E> elementToIndexMap = elementToIndexMap();
+        int end = firstWordIndex() + wordCount();
+        int k = 0;
+
+        for (int i = firstWordIndex(); i < end; i++) {
+            long word = wordAt(i);
+            int base = i << 6;
+
+            while (word != 0) {
+                a[k++] = (T) elementToIndexMap.indexToElement(base | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+
+        if (a.length > size) {
+            a[size] = null;
+        }
+
+        return a;
+    }
+
+    /**
+     * Returns the super-set the bits of this set refer to.
+     */
+    abstract IndexedImmutableSetImpl<E> elementToIndexMap();
+
+    /**
+     * Returns a set with the same bits which refers to the given super-set. This is only valid if the current
+     * super-set is an index prefix of the given super-set; see IndexedImmutableSetImpl.isIndexPrefixOf().
+     */
+    abstract BitBackedSetImpl<E> withElementToIndexMap(IndexedImmutableSetImpl<E> elementToIndexMap);
+
+    /**
+     * Returns the index of the first word of the bit-field, counted in words of the super-set; this is the
+     * bitArrayOffset.
+     */
+    abstract int firstWordIndex();
+
+    /**
+     * Returns the number of words of the bit-field, starting at firstWordIndex().
+     */
+    abstract int wordCount();
+
+    /**
+     * Returns the word with the given index, counted in words of the super-set. Words outside of the bit-field are 0.
+     */
+    abstract long wordAt(int wordIndex);
+
+    /**
+     * Returns true if the element with the given index of the super-set is contained in this set.
+     */
+    abstract boolean containsIndex(int index);
+
+    /**
+     * Returns true if this set stores a bit-field. Only for such sets, wordAt() is a constant time operation.
+     */
+    abstract boolean isBitField();
+
+    /**
+     * Returns the sorted indices of the elements of this set. The returned array must not be modified.
+     */
+    int[] toIndexArray() {
+        int[] result = new int[size()];
+        int end = firstWordIndex() + wordCount();
+        int k = 0;
+
+        for (int i = firstWordIndex(); i < end; i++) {
+            long word = wordAt(i);
+            int base = i << 6;
+
+            while (word != 0) {
+                result[k++] = base | Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public ImmutableCompactSubSet<E> union(ImmutableCompactSubSet<E> other) {
+        return combine(other, UNION);
+    }
+
+    @Override
+    public ImmutableCompactSubSet<E> intersection(ImmutableCompactSubSet<E> other) {
+        return combine(other, INTERSECTION);
+    }
+
+    @Override
+    public ImmutableCompactSubSet<E> difference(ImmutableCompactSubSet<E> other) {
+        return combine(other, DIFFERENCE);
+    }
+
+    @Override
+    public ImmutableCompactSubSet<E> symmetricDifference(ImmutableCompactSubSet<E> other) {
+        return combine(other, SYMMETRIC_DIFFERENCE);
+    }
+
+    @Override
+    public boolean intersects(ImmutableCompactSubSet<E> other) {
+        if (other instanceof BitBackedSetImpl
+                && ((BitBackedSetImpl<E>) other).elementToIndexMap() == elementToIndexMap()) {
+            return intersectsSameSuperSet((BitBackedSetImpl<E>) other);
+        }
+
+        for (int index : elementToIndexMap().indicesOf(other)) {
+            if (index != -1 && containsIndex(index)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Uses the bit-fields if the given collection is a set with the same super-set, or the super-set itself.
+     * Otherwise, the elements are looked up one by one.
+     */
+    @Override
+    public boolean containsAny(Collection<E> elements) {
+        if (elements instanceof BitBackedSetImpl
+                && ((BitBackedSetImpl<E>) elements).elementToIndexMap() == elementToIndexMap()) {
+            return intersectsSameSuperSet((BitBackedSetImpl<E>) elements);
+        } else if (elements == elementToIndexMap()) {
+            return !isEmpty();
+        } else {
+            return super.containsAny(elements);
+        }
+    }
+
+    /**
+     * Uses the bit-fields if the given collection is a set with the same super-set, or the super-set itself.
+     * Otherwise, the elements are looked up one by one.
+     */
+    @Override
+    public boolean containsAll(Collection<?> elements) {
+        if (elements instanceof BitBackedSetImpl
+                && ((BitBackedSetImpl<?>) elements).elementToIndexMap() == elementToIndexMap()) {
+            BitBackedSetImpl<?> other = (BitBackedSetImpl<?>) elements;
+
+            if (other.size() > size()) {
+                return false;
+            }
+
+            if (!isBitField() || !other.isBitField()) {
+                for (int index : other.toIndexArray()) {
+                    if (!containsIndex(index)) {
+                        return false;
+                    }
+                }
+
+                return true;
+            }
+
+            int start = other.firstWordIndex();
+            int end = start + other.wordCount();
+
+            for (int i = start; i < end; i++) {
+                if ((other.wordAt(i) & ~wordAt(i)) != 0) {
+                    return false;
+                }
+            }
+
+            return true;
+        } else if (elements == elementToIndexMap()) {
+            // This set is a sub-set of the super-set; thus, it contains all of its elements only if it has the same
+            // size
+            return size() == elementToIndexMap().size();
+        } else {
+            return super.containsAll(elements);
+        }
+    }
+
+    private boolean intersectsSameSuperSet(BitBackedSetImpl<E> other) {
+        if (isBitField() && other.isBitField()) {
+            return intersectsBits(other);
+        }
+
+        // Check the indices of the smaller set against the other set
+        BitBackedSetImpl<E> smaller = other.size() < size() ? other : this;
+        BitBackedSetImpl<E> larger = smaller == this ? other : this;
+
+        for (int index : smaller.toIndexArray()) {
+            if (larger.containsIndex(index)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean intersectsBits(BitBackedSetImpl<E> other) {
+        int start = Math.max(firstWordIndex(), other.firstWordIndex());
+        int end = Math.min(firstWordIndex() + wordCount(), other.firstWordIndex() + other.wordCount());
+
+        for (int i = start; i < end; i++) {
+            if ((wordAt(i) & other.wordAt(i)) != 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static final int UNION = 0;
+    private static final int INTERSECTION = 1;
+    private static final int DIFFERENCE = 2;
+    private static final int SYMMETRIC_DIFFERENCE = 3;
+
+    private ImmutableCompactSubSet<E> combine(ImmutableCompactSubSet<E> other, int operation) {
+        if (other instanceof BitBackedSetImpl
+                && ((BitBackedSetImpl<E>) other).elementToIndexMap() == elementToIndexMap()) {
+            return combineSameSuperSet((BitBackedSetImpl<E>) other, operation);
+        }
+
+        // The other set refers to a different super-set. Map its elements to the indices of our super-set; the
+        // elements which are not contained in our super-set can be only part of unions and symmetric differences.
+        IndexedImmutableSetImpl<E> elementToIndexMap = elementToIndexMap();
+        int[] indices = elementToIndexMap.indicesOf(other);
+        int size = 0;
+
+        for (int index : indices) {
+            if (index == -1) {
+                if (operation == UNION) {
+                    return ImmutableCompactSubSetImpl.union(this, other);
+                } else if (operation == SYMMETRIC_DIFFERENCE) {
+                    return ImmutableCompactSubSetImpl.symmetricDifference(this, other);
+                }
+            } else {
+                indices[size++] = index;
+            }
+        }
+
+        // Different elements of the other set might be mapped to the same index by a hashing strategy
+        size = sortDistinct(indices, size);
+
+        if (size == 0) {
+            return operation == INTERSECTION ? ImmutableCompactSubSetImpl.empty() : this;
+        }
+
+        return combineSameSuperSet((BitBackedSetImpl<E>) ofSortedIndices(indices, size, elementToIndexMap), operation);
+    }
+
+    /**
+     * Combines this set with the given set, which must refer to the same super-set. Bit-fields are combined word by
+     * word. If one of the sets is a sparse container, the sorted indices are merged or filtered instead.
+     */
+    private ImmutableCompactSubSet<E> combineSameSuperSet(BitBackedSetImpl<E> other, int operation) {
+        if (isBitField() && other.isBitField()) {
+            return combineBits(other, operation);
+        }
+
+        if (operation == INTERSECTION) {
+            BitBackedSetImpl<E> smaller = other.size() < size() ? other : this;
+            BitBackedSetImpl<E> larger = smaller == this ? other : this;
+            int[] indices = smaller.toIndexArray();
+            int[] result = new int[indices.length];
+            int size = 0;
+
+            for (int index : indices) {
+                if (larger.containsIndex(index)) {
+                    result[size++] = index;
+                }
+            }
+
+            return ofCombinedIndices(result, size, other, operation);
+        } else if (operation == DIFFERENCE) {
+            if (isBitField()) {
+                // The result is bounded by our bit-field; the words of the other set are computed on demand
+                return combineBits(other, operation);
+            }
+
+            int[] indices = toIndexArray();
+            int[] result = new int[indices.length];
+            int size = 0;
+
+            for (int index : indices) {
+                if (!other.containsIndex(index)) {
+                    result[size++] = index;
+                }
+            }
+
+            return ofCombinedIndices(result, size, other, operation);
+        } else {
+            int[] a = toIndexArray();
+            int[] b = other.toIndexArray();
+            int[] result = new int[a.length + b.length];
+            int size = 0;
+            int i = 0;
+            int j = 0;
+
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    result[size++] = a[i++];
+                } else if (a[i] > b[j]) {
+                    result[size++] = b[j++];
+                } else {
+                    if (operation == UNION) {
+                        result[size++] = a[i];
+                    }
+
+                    i++;
+                    j++;
+                }
+            }
+
+            while (i < a.length) {
+                result[size++] = a[i++];
+            }
+
+            while (j < b.length) {
+                result[size++] = b[j++];
+            }
+
+            return ofCombinedIndices(result, size, other, operation);
+        }
+    }
+
+    /**
+     * Creates the result of combineSameSuperSet() from the given sorted indices. Like combineBits(), this returns one
+     * of the operands if the result is equal to it.
+     */
+    private ImmutableCompactSubSet<E> ofCombinedIndices(
+            int[] indices, int size, BitBackedSetImpl<E> other, int operation) {
+        if (operation != SYMMETRIC_DIFFERENCE && size == size()) {
+            return this;
+        } else if ((operation == UNION || operation == INTERSECTION) && size == other.size()) {
+            return other;
+        }
+
+        return ofSortedIndices(indices, size, elementToIndexMap());
+    }
+
+    /**
+     * Combines the bit-fields of this set and the given set, which must refer to the same super-set. If the result is
+     * equal to one of the operands, that operand is returned instead of a new set.
+     */
+    private ImmutableCompactSubSet<E> combineBits(BitBackedSetImpl<E> other, int operation) {
+        int thisStart = firstWordIndex();
+        int thisEnd = thisStart + wordCount();
+        int otherStart = other.firstWordIndex();
+        int otherEnd = otherStart + other.wordCount();
+        int start;
+        int end;
+
+        if (operation == INTERSECTION) {
+            start = Math.max(thisStart, otherStart);
+            end = Math.min(thisEnd, otherEnd);
+        } else if (operation == DIFFERENCE) {
+            start = thisStart;
+            end = thisEnd;
+        } else {
+            start = Math.min(thisStart, otherStart);
+            end = Math.max(thisEnd, otherEnd);
+        }
+
+        if (start >= end) {
+            return ImmutableCompactSubSetImpl.empty();
+        }
+
+        long[] bits = new long[end - start];
+        int size = 0;
+
+        for (int i = 0; i < bits.length; i++) {
+            long a = wordAt(start + i);
+            long b = other.wordAt(start + i);
+            long word;
+
+            switch (operation) {
+                case UNION:
+                    word = a | b;
+                    break;
+                case INTERSECTION:
+                    word = a & b;
+                    break;
+                case DIFFERENCE:
+                    word = a & ~b;
+                    break;
+                default:
+                    word = a ^ b;
+                    break;
+            }
+
+            bits[i] = word;
+            size += Long.bitCount(word);
+        }
+
+        // A union contains both operands, an intersection is contained in both operands, a difference is contained in
+        // this set. Thus, the same size means the same elements.
+        if (operation != SYMMETRIC_DIFFERENCE && size == size()) {
+            return this;
+        } else if ((operation == UNION || operation == INTERSECTION) && size == other.size()) {
+            return other;
+        }
+
+        return of(bits, size, elementToIndexMap(), start);
+    }
+
+    /**
+     * Creates a set from the given bits, which refer to the given super-set starting at the word bitArrayOffset. Zero
+     * words at the start and the end are trimmed. Depending on the density of the bits, the set stores them as
+     * bit-field, as sorted index array or as runs of indices.
+     */
+    static <E> ImmutableCompactSubSet<E> of(
+            long[] bits, int size, IndexedImmutableSetImpl<E> elementToIndexMap, int bitArrayOffset) {
+        if (size == 0) {
+            return ImmutableCompactSubSetImpl.empty();
+        }
+
+        int firstNonZero = firstNonZeroIndex(bits);
+        int lastNonZero = lastNonZeroIndex(bits);
+
+        if (firstNonZero == lastNonZero) {
+            return new LongBacked<>(bits[firstNonZero], size, elementToIndexMap, bitArrayOffset + firstNonZero);
+        }
+
+        int runCount = 0;
+
+        for (int i = firstNonZero; i <= lastNonZero; i++) {
+            runCount += Long.bitCount(runStarts(bits, i, firstNonZero));
+        }
+
+        switch (containerType(lastNonZero - firstNonZero + 1, size, runCount)) {
+            case INDEX_ARRAY_CONTAINER: {
+                int[] indices = new int[size];
+                int k = 0;
+
+                for (int i = firstNonZero; i <= lastNonZero; i++) {
+                    long word = bits[i];
+                    int base = (bitArrayOffset + i) << 6;
+
+                    while (word != 0) {
+                        indices[k++] = base | Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                    }
+                }
+
+                return new IndexArrayBacked<>(indices, elementToIndexMap);
+            }
+            case RUN_CONTAINER: {
+                int[] runs = new int[runCount * 2];
+                int startPos = 0;
+                int endPos = 1;
+
+                for (int i = firstNonZero; i <= lastNonZero; i++) {
+                    long word = bits[i];
+                    long next = i < lastNonZero ? bits[i + 1] : 0;
+                    long starts = runStarts(bits, i, firstNonZero);
+                    long ends = word & ~(word >>> 1 | next << 63);
+                    int base = (bitArrayOffset + i) << 6;
+
+                    for (; starts != 0; starts &= starts - 1, startPos += 2) {
+                        runs[startPos] = base | Long.numberOfTrailingZeros(starts);
+                    }
+
+                    for (; ends != 0; ends &= ends - 1, endPos += 2) {
+                        runs[endPos] = base | Long.numberOfTrailingZeros(ends);
+                    }
+                }
+
+                return new RunBacked<>(runs, size, elementToIndexMap);
+            }
+            default: {
+                if (firstNonZero != 0 || lastNonZero != bits.length - 1) {
+                    long[] oldBits = bits;
+                    bits = new long[lastNonZero - firstNonZero + 1];
+                    System.arraycopy(oldBits, firstNonZero, bits, 0, bits.length);
+                }
+
+                return new LongArrayBacked<>(bits, size, elementToIndexMap, bitArrayOffset + firstNonZero);
+            }
+        }
+    }
+
+    /**
+     * Creates a set from the first size entries of the given sorted and distinct indices of the given super-set. Like
+     * of(long[], ...), this chooses the container which needs the least memory. The indices array might be used as
+     * backing array of the created set; thus, it must not be modified afterwards.
+     */
+    static <E> ImmutableCompactSubSet<E> ofSortedIndices(
+            int[] indices, int size, IndexedImmutableSetImpl<E> elementToIndexMap) {
+        if (size == 0) {
+            return ImmutableCompactSubSetImpl.empty();
+        }
+
+        int firstWordIndex = indices[0] >> 6;
+        int lastWordIndex = indices[size - 1] >> 6;
+
+        if (firstWordIndex == lastWordIndex) {
+            long bits = 0;
+
+            for (int i = 0; i < size; i++) {
+                bits |= 1l << (indices[i] & 0x3f);
+            }
+
+            return new LongBacked<>(bits, size, elementToIndexMap, firstWordIndex);
+        }
+
+        int runCount = 1;
+
+        for (int i = 1; i < size; i++) {
+            if (indices[i] != indices[i - 1] + 1) {
+                runCount++;
+            }
+        }
+
+        switch (containerType(lastWordIndex - firstWordIndex + 1, size, runCount)) {
+            case INDEX_ARRAY_CONTAINER:
+                return new IndexArrayBacked<>(
+                        size == indices.length ? indices : Arrays.copyOf(indices, size), elementToIndexMap);
+            case RUN_CONTAINER: {
+                int[] runs = new int[runCount * 2];
+                int k = 0;
+                runs[0] = indices[0];
+
+                for (int i = 1; i < size; i++) {
+                    if (indices[i] != indices[i - 1] + 1) {
+                        runs[k + 1] = indices[i - 1];
+                        k += 2;
+                        runs[k] = indices[i];
+                    }
+                }
+
+                runs[k + 1] = indices[size - 1];
+
+                return new RunBacked<>(runs, size, elementToIndexMap);
+            }
+            default: {
+                long[] bits = new long[lastWordIndex - firstWordIndex + 1];
+
+                for (int i = 0; i < size; i++) {
+                    setBit(bits, indices[i], firstWordIndex);
+                }
+
+                return new LongArrayBacked<>(bits, size, elementToIndexMap, firstWordIndex);
+            }
+        }
+    }
+
+    static final int BIT_FIELD_CONTAINER = 0;
+    static final int INDEX_ARRAY_CONTAINER = 1;
+    static final int RUN_CONTAINER = 2;
+
+    /**
+     * Returns the container which needs the least memory for a set with the given number of bit-field words, elements
+     * and runs of consecutive elements. Bit-fields are preferred in case of ties, as they are the fastest to combine.
+     */
+    static int containerType(int wordCount, int size, int runCount) {
+        long bitFieldBytes = 8l * wordCount;
+        long indexArrayBytes = 4l * size;
+        long runBytes = 8l * runCount;
+
+        if (bitFieldBytes <= indexArrayBytes && bitFieldBytes <= runBytes) {
+            return BIT_FIELD_CONTAINER;
+        } else if (indexArrayBytes <= runBytes) {
+            return INDEX_ARRAY_CONTAINER;
+        } else {
+            return RUN_CONTAINER;
+        }
+    }
+
+    /**
+     * Returns the bits of the word with the given index which start a run of set bits, i.e., whose preceding bit is
+     * not set. Words before firstWordIndex are considered to be zero.
+     */
+    private static long runStarts(long[] bits, int wordIndex, int firstWordIndex) {
+        long word = bits[wordIndex];
+        long previous = wordIndex > firstWordIndex ? bits[wordIndex - 1] : 0;
+        return word & ~(word << 1 | previous >>> 63);
+    }
+
+    /**
+     * Sorts the first size entries of the given array and removes duplicates. Returns the number of distinct entries,
+     * which are then at the start of the array.
+     */
+    static int sortDistinct(int[] array, int size) {
+        Arrays.sort(array, 0, size);
+
+        int k = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (k == 0 || array[i] != array[k - 1]) {
+                array[k++] = array[i];
+            }
+        }
+
+        return k;
+    }
+
+    /**
+     * A spliterator over a sorted array of indices. As the indices are stored explicitly, all parts report their exact
+     * sizes.
+     */
+    static final class IndexArraySpliterator<E> implements Spliterator<E> {
+        private final int[] indices;
+        private final IndexedImmutableSetImpl<E> elementToIndexMap;
+        private int position;
+        private final int fence;
+
+        IndexArraySpliterator(int[] indices, int position, int fence, IndexedImmutableSetImpl<E> elementToIndexMap) {
+            this.indices = indices;
+            this.position = position;
+            this.fence = fence;
+            this.elementToIndexMap = elementToIndexMap;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (this.position >= this.fence) {
+                return false;
+            }
+
+            action.accept(this.elementToIndexMap.indexToElement(this.indices[this.position++]));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            for (int i = this.position; i < this.fence; i++) {
+                action.accept(this.elementToIndexMap.indexToElement(this.indices[i]));
+            }
+
+            this.position = this.fence;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int mid = (this.position + this.fence) >>> 1;
+
+            if (this.position >= mid) {
+                return null;
+            }
+
+            IndexArraySpliterator<E> prefix =
+                    new IndexArraySpliterator<>(this.indices, this.position, mid, this.elementToIndexMap);
+            this.position = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.fence - this.position;
+        }
+
+        @Override
+        public int characteristics() {
+            return IndexedImmutableSetImpl.SPLITERATOR_CHARACTERISTICS;
+        }
+    }
+
+    /**
+     * A spliterator over the set bits of a long array. Splits happen at word boundaries; the sizes of the parts are
+     * determined by counting their bits. Thus, all parts report their exact sizes.
+     */
+    static final class BitSpliterator<E> implements Spliterator<E> {
+        private final long[] bits;
+        private final IndexedImmutableSetImpl<E> elementToIndexMap;
+        private final int bitArrayOffset;
+
+        /**
+         * The index of the word which is currently consumed.
+         */
+        private int wordIndex;
+
+        /**
+         * The bits of the current word which have not been consumed yet.
+         */
+        private long word;
+
+        private int fence;
+        private int remaining;
+
+        BitSpliterator(
+                long[] bits,
+                int wordIndex,
+                int remaining,
+                IndexedImmutableSetImpl<E> elementToIndexMap,
+                int bitArrayOffset) {
+            this(bits, wordIndex, bits.length, remaining, elementToIndexMap, bitArrayOffset);
+        }
+
+        private BitSpliterator(
+                long[] bits,
+                int wordIndex,
+                int fence,
+                int remaining,
+                IndexedImmutableSetImpl<E> elementToIndexMap,
+                int bitArrayOffset) {
+            this.bits = bits;
+            this.wordIndex = wordIndex;
+            this.word = wordIndex < fence ? bits[wordIndex] : 0;
+            this.fence = fence;
+            this.remaining = remaining;
+            this.elementToIndexMap = elementToIndexMap;
+            this.bitArrayOffset = bitArrayOffset;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            while (this.word == 0) {
+                this.wordIndex++;
+
+                if (this.wordIndex >= this.fence) {
+                    return false;
+                }
+
+                this.word = this.bits[this.wordIndex];
+            }
+
+            long word = this.word;
+            int index = (this.wordIndex + this.bitArrayOffset) << 6 | Long.numberOfTrailingZeros(word);
+            this.word = word & (word - 1);
+            this.remaining--;
+            action.accept(this.elementToIndexMap.indexToElement(index));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            long word = this.word;
+
+            for (int i = this.wordIndex; i < this.fence; ) {
+                int base = (i + this.bitArrayOffset) << 6;
+
+                while (word != 0) {
+                    action.accept(this.elementToIndexMap.indexToElement(base | Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+
+                i++;
+
+                if (i < this.fence) {
+                    word = this.bits[i];
+                }
+            }
+
+            this.wordIndex = this.fence;
+            this.word = 0;
+            this.remaining = 0;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int lo = this.wordIndex + 1;
+            int mid = (lo + this.fence) >>> 1;
+
+            if (lo >= mid) {
+                return null;
+            }
+
+            // The prefix consists of the rest of the current word and the words up to mid
+            int prefixCount = Long.bitCount(this.word);
+
+            for (int i = lo; i < mid; i++) {
+                prefixCount += Long.bitCount(this.bits[i]);
+            }
+
+            BitSpliterator<E> prefix = new BitSpliterator<>(
+                    this.bits, this.wordIndex, mid, prefixCount, this.elementToIndexMap, this.bitArrayOffset);
+            prefix.word = this.word;
+
+            this.wordIndex = mid;
+            this.word = this.bits[mid];
+            this.remaining -= prefixCount;
+
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return IndexedImmutableSetImpl.SPLITERATOR_CHARACTERISTICS;
+        }
+    }
+
     static int bitArraySize(int size) {
         if (size <= 64) {
             return 1;
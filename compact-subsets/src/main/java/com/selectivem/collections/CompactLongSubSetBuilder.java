@@ -0,0 +1,47 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+/**
+ * Primitive long counterpart of CompactSubSetBuilder: Allows the creation of space efficient sub-sets of the
+ * IndexedLongSet specified in the constructor.
+ * <p>
+ * The elements are looked up without boxing them. The produced sub-sets are regular ImmutableCompactSubSet instances,
+ * which however box the elements when iterating over them.
+ *
+ * @author Nils Bandener
+ */
+public class CompactLongSubSetBuilder {
+    private final IndexedLongSetImpl superSet;
+    private final CompactSubSetBuilder<Long> builder;
+
+    public CompactLongSubSetBuilder(IndexedLongSet superSet) {
+        this.superSet = IndexedLongSetImpl.of(superSet);
+        this.builder = new CompactSubSetBuilder<>(this.superSet.boxedView());
+    }
+
+    /**
+     * Creates a compact set representing the intersection of the given elements and the super-set
+     * given when constructing the CompactLongSubSetBuilder instance.
+     * <p>
+     * Elements which are not contained in the super-set will be silently ignored.
+     */
+    public ImmutableCompactSubSet<Long> of(long... elements) {
+        int[] indices = new int[elements.length];
+        superSet.elementToIndex(elements, indices);
+        return builder.ofIndices(indices);
+    }
+}
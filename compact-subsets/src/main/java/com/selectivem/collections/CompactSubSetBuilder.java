@@ -15,6 +15,7 @@
  */
 package com.selectivem.collections;
 
+import java.util.Collection;
 import java.util.Set;
 
 /**
@@ -30,8 +31,22 @@ public class CompactSubSetBuilder<E> {
     private final IndexedImmutableSetImpl<E> elementToIndexMap;
     private final int bitArraySize;
 
+    /**
+     * The last super-set for which rebind() has verified that it is an index prefix of elementToIndexMap.
+     */
+    private IndexedImmutableSetImpl<E> compatibleElementToIndexMap;
+
     public CompactSubSetBuilder(Set<E> superSet) {
-        this.elementToIndexMap = IndexedImmutableSetImpl.of(superSet);
+        this(superSet, null);
+    }
+
+    /**
+     * Creates a CompactSubSetBuilder whose super-set uses the given HashingStrategy instead of the hashCode() and
+     * equals() methods of the elements. Elements of the super-set which are equal according to the strategy are only
+     * added once. All sub-sets created by this builder and by builders derived from it use the strategy for lookups.
+     */
+    public CompactSubSetBuilder(Set<E> superSet, HashingStrategy<? super E> hashingStrategy) {
+        this.elementToIndexMap = IndexedImmutableSetImpl.of(superSet, hashingStrategy);
         this.bitArraySize = BitBackedSetImpl.bitArraySize(elementToIndexMap.size());
     }
 
@@ -44,7 +59,8 @@ public class CompactSubSetBuilder<E> {
      * This also allows for optimizations of the containsAny() and containsAll() calls.
      */
     public DeduplicatingCompactSubSetBuilder<E> deduplicatingBuilder() {
-        return new DeduplicatingCompactSubSetBuilder<>(this.elementToIndexMap);
+        return new DeduplicatingCompactSubSetBuilder<>(
+                this.elementToIndexMap, this.elementToIndexMap.hashingStrategy());
     }
 
     /**
@@ -55,34 +71,82 @@ public class CompactSubSetBuilder<E> {
      * ignored.
      */
     public ImmutableCompactSubSet<E> of(Set<E> set) {
-        long[] bits = new long[bitArraySize];
-        int size = 0;
+        return ofIndices(elementToIndexMap.indicesOf(set));
+    }
 
-        for (E e : set) {
-            int index = elementToIndexMap.elementToIndex(e);
+    /**
+     * Creates a CompactSubSetBuilder for the union of the super-set of this builder and the given elements. The
+     * elements of the current super-set keep their indices in the new super-set. Thus, the sub-sets created by this
+     * builder can be transferred to the new builder with rebind(), which does not need to recalculate them.
+     */
+    public CompactSubSetBuilder<E> extend(Collection<? extends E> additionalElements) {
+        IndexedImmutableSetImpl<E> extended = this.elementToIndexMap.extend(additionalElements);
+        CompactSubSetBuilder<E> result = new CompactSubSetBuilder<>(extended, extended.hashingStrategy());
+        result.compatibleElementToIndexMap = this.elementToIndexMap;
+        return result;
+    }
 
-            if (BitBackedSetImpl.setBit(bits, index, 0)) {
-                size++;
+    /**
+     * Returns a sub-set which is equal to the given sub-set, but refers to the super-set of this builder. This is
+     * useful for sub-sets created by a builder this builder was derived from using extend(): Such sub-sets are
+     * re-bound by sharing their bitfields, without recalculating them. Re-bound sub-sets can be efficiently compared to
+     * the sub-sets created by this builder.
+     * <p>
+     * Other sub-sets are returned unchanged.
+     */
+    public ImmutableCompactSubSet<E> rebind(ImmutableCompactSubSet<E> subSet) {
+        if (subSet instanceof BitBackedSetImpl) {
+            BitBackedSetImpl<E> bitBackedSet = (BitBackedSetImpl<E>) subSet;
+            IndexedImmutableSetImpl<E> previousElementToIndexMap = bitBackedSet.elementToIndexMap();
+
+            if (previousElementToIndexMap != this.elementToIndexMap && isCompatible(previousElementToIndexMap)) {
+                return bitBackedSet.withElementToIndexMap(this.elementToIndexMap);
             }
         }
 
-        if (size == 0) {
-            return ImmutableCompactSubSetImpl.empty();
+        return subSet;
+    }
+
+    /**
+     * Creates a compact set containing the elements of the super-set with the given indices. Indices with the value
+     * -1 are ignored. The given array might be modified.
+     */
+    ImmutableCompactSubSet<E> ofIndices(int[] indices) {
+        if (indices.length < bitArraySize * 2) {
+            // An index array is smaller than a bit-field covering the whole super-set. Thus, avoid allocating such a
+            // bit-field for sparse sets.
+            int size = 0;
+
+            for (int i = 0; i < indices.length; i++) {
+                if (indices[i] != -1) {
+                    indices[size++] = indices[i];
+                }
+            }
+
+            size = BitBackedSetImpl.sortDistinct(indices, size);
+            return BitBackedSetImpl.ofSortedIndices(indices, size, elementToIndexMap);
         }
 
-        int firstNonZero = BitBackedSetImpl.firstNonZeroIndex(bits);
-        int lastNonZero = BitBackedSetImpl.lastNonZeroIndex(bits);
+        long[] bits = new long[bitArraySize];
+        int size = 0;
 
-        if (firstNonZero == lastNonZero) {
-            return new BitBackedSetImpl.LongBacked<>(bits[firstNonZero], size, elementToIndexMap, firstNonZero);
-        } else {
-            if (firstNonZero != 0 || lastNonZero != bits.length - 1) {
-                long[] oldBits = bits;
-                bits = new long[lastNonZero - firstNonZero + 1];
-                System.arraycopy(oldBits, firstNonZero, bits, 0, bits.length);
+        for (int i = 0; i < indices.length; i++) {
+            if (BitBackedSetImpl.setBit(bits, indices[i], 0)) {
+                size++;
             }
+        }
+
+        return BitBackedSetImpl.of(bits, size, elementToIndexMap, 0);
+    }
 
-            return new BitBackedSetImpl.LongArrayBacked<>(bits, size, elementToIndexMap, firstNonZero);
+    private boolean isCompatible(IndexedImmutableSetImpl<E> previousElementToIndexMap) {
+        if (previousElementToIndexMap == this.compatibleElementToIndexMap) {
+            return true;
+        } else if (previousElementToIndexMap.isIndexPrefixOf(this.elementToIndexMap)) {
+            this.compatibleElementToIndexMap = previousElementToIndexMap;
+            return true;
+        } else {
+            return false;
         }
     }
 }
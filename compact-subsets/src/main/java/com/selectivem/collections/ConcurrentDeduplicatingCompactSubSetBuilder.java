@@ -0,0 +1,212 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Allows the creation of compact sub-sets of a given super-set from several threads. Like
+ * DeduplicatingCompactSubSetBuilder, this deduplicates the created sub-sets: Sub-set builders which end up to have
+ * the same elements will produce the same ImmutableCompactSubSet instances.
+ * <p>
+ * In contrast to DeduplicatingCompactSubSetBuilder, there is no protocol for adding elements; these can be added in
+ * any order. The usage is:
+ * <ul>
+ * <li>Call createSubSetBuilder() for any sub-set you want to create. This can be called concurrently from several
+ *   threads.
+ * <li>Call ConcurrentDeduplicatingCompactSubSetBuilder.SubSetBuilder.add() on the sub-set builders. Different sub-set builders
+ *   can be filled concurrently; a single sub-set builder must not be used by several threads at the same time.
+ * <li>After all threads have finished adding elements, call build(). This will deduplicate the sub-sets in parallel
+ *   and return a Completed instance which allows you to call the build() methods on the SubSetBuilder instances.
+ * </ul>
+ * The sub-set builders collect the indices of their elements. Thus, in contrast to DeduplicatingCompactSubSetBuilder,
+ * no memory is shared between sub-sets during building; the memory needed is proportional to the total number of added
+ * elements.
+ *
+ * @author Nils Bandener
+ */
+public class ConcurrentDeduplicatingCompactSubSetBuilder<E> {
+    private static final int[] EMPTY_INDICES = new int[0];
+
+    private final IndexedImmutableSetImpl<E> candidateElements;
+    private final ConcurrentLinkedQueue<SubSetBuilder<E>> subSetBuilders = new ConcurrentLinkedQueue<>();
+    private volatile boolean completed = false;
+
+    /**
+     * Creates a new builder instance for the given superSet. The superSet will be copied.
+     */
+    public ConcurrentDeduplicatingCompactSubSetBuilder(Set<E> superSet) {
+        this(superSet, null);
+    }
+
+    /**
+     * Creates a new builder instance for the given superSet, which uses the given HashingStrategy instead of the
+     * hashCode() and equals() methods of the elements. The superSet will be copied.
+     */
+    public ConcurrentDeduplicatingCompactSubSetBuilder(Set<E> superSet, HashingStrategy<? super E> hashingStrategy) {
+        this.candidateElements = IndexedImmutableSetImpl.of(superSet, hashingStrategy);
+    }
+
+    /**
+     * Creates a new SubSetBuilder instance. Can be called at any time and from any thread before build() is called.
+     */
+    public SubSetBuilder<E> createSubSetBuilder() {
+        if (this.completed) {
+            throw new IllegalStateException("The builder was already built");
+        }
+
+        SubSetBuilder<E> result = new SubSetBuilder<>(this);
+        this.subSetBuilders.add(result);
+        return result;
+    }
+
+    /**
+     * Finalizes this build process. All threads adding elements to the sub-set builders must have finished before this
+     * is called. The deduplication of the sub-sets is performed in parallel using the common ForkJoinPool.
+     * <p>
+     * This method will return a Completed instance which can be used to finalize building individual sub-sets.
+     */
+    public Completed<E> build() {
+        if (this.completed) {
+            throw new IllegalStateException("The builder was already built");
+        }
+
+        this.completed = true;
+
+        ConcurrentHashMap<IndexKey, ImmutableCompactSubSet<E>> distinctSubSets = new ConcurrentHashMap<>();
+        new ArrayList<>(this.subSetBuilders)
+                .parallelStream().forEach(subSetBuilder -> subSetBuilder.finish(distinctSubSets));
+        return new Completed<>(this);
+    }
+
+    ImmutableCompactSubSet<E> createSubSet(int[] indices) {
+        if (indices.length == this.candidateElements.size()) {
+            return ImmutableCompactSubSetImpl.of(this.candidateElements);
+        } else {
+            return BitBackedSetImpl.ofSortedIndices(indices, indices.length, this.candidateElements);
+        }
+    }
+
+    public static class SubSetBuilder<E> {
+        private final ConcurrentDeduplicatingCompactSubSetBuilder<E> root;
+
+        /**
+         * The indices of the added elements; might contain duplicates and is unsorted until finish() is called.
+         */
+        private int[] indices = EMPTY_INDICES;
+
+        private int size = 0;
+        private ImmutableCompactSubSet<E> result;
+
+        SubSetBuilder(ConcurrentDeduplicatingCompactSubSetBuilder<E> root) {
+            this.root = root;
+        }
+
+        /**
+         * Adds an element to this builder instance. The elements can be added in any order.
+         * <p>
+         * Note: You can only call add() for elements that are member of the super-set given when the
+         * ConcurrentDeduplicatingCompactSubSetBuilder was created. Otherwise, a IllegalArgumentException will be
+         * thrown.
+         */
+        public void add(E element) {
+            if (this.root.completed) {
+                throw new IllegalStateException("The builder was already built");
+            }
+
+            int index = this.root.candidateElements.elementToIndex(element);
+
+            if (index == -1) {
+                throw new IllegalArgumentException(
+                        "Element " + element + " is not part of super set " + this.root.candidateElements);
+            }
+
+            if (this.size == this.indices.length) {
+                this.indices = Arrays.copyOf(this.indices, this.size == 0 ? 4 : this.size + (this.size >> 1));
+            }
+
+            this.indices[this.size++] = index;
+        }
+
+        public ImmutableCompactSubSet<E> build(ConcurrentDeduplicatingCompactSubSetBuilder.Completed<E> completed) {
+            if (completed.root != this.root) {
+                throw new IllegalArgumentException("Called for the wrong ConcurrentDeduplicatingCompactSubSetBuilder");
+            }
+
+            return this.result;
+        }
+
+        /**
+         * Determines the resulting sub-set. If another sub-set builder with the same elements has been finished before,
+         * its result is re-used. This is called concurrently for different sub-set builders.
+         */
+        void finish(ConcurrentHashMap<IndexKey, ImmutableCompactSubSet<E>> distinctSubSets) {
+            int size = BitBackedSetImpl.sortDistinct(this.indices, this.size);
+
+            if (size == 0) {
+                this.result = ImmutableCompactSubSetImpl.empty();
+            } else {
+                int[] indices = size == this.indices.length ? this.indices : Arrays.copyOf(this.indices, size);
+                this.result =
+                        distinctSubSets.computeIfAbsent(new IndexKey(indices), k -> this.root.createSubSet(k.indices));
+            }
+
+            this.indices = null;
+        }
+    }
+
+    public static class Completed<E> {
+        private final ConcurrentDeduplicatingCompactSubSetBuilder<E> root;
+
+        Completed(ConcurrentDeduplicatingCompactSubSetBuilder<E> root) {
+            this.root = root;
+        }
+    }
+
+    /**
+     * The sorted and distinct indices of a sub-set, used as key for deduplication.
+     */
+    static final class IndexKey {
+        private final int[] indices;
+        private final int hashCode;
+
+        IndexKey(int[] indices) {
+            this.indices = indices;
+            this.hashCode = Arrays.hashCode(indices);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            } else if (o instanceof IndexKey) {
+                IndexKey other = (IndexKey) o;
+                return other.hashCode == this.hashCode && Arrays.equals(other.indices, this.indices);
+            } else {
+                return false;
+            }
+        }
+    }
+}
@@ -52,8 +52,16 @@ public class DeduplicatingCompactSubSetBuilder<E> {
      * Creates a new builder instance for the given superSet. The superSet will be copied.
      */
     public DeduplicatingCompactSubSetBuilder(Set<E> superSet) {
-        this.candidateElements = IndexedImmutableSetImpl.of(superSet);
-        this.bitArraySize = BitBackedSetImpl.bitArraySize(superSet.size());
+        this(superSet, null);
+    }
+
+    /**
+     * Creates a new builder instance for the given superSet, which uses the given HashingStrategy instead of the
+     * hashCode() and equals() methods of the elements. The superSet will be copied.
+     */
+    public DeduplicatingCompactSubSetBuilder(Set<E> superSet, HashingStrategy<? super E> hashingStrategy) {
+        this.candidateElements = IndexedImmutableSetImpl.of(superSet, hashingStrategy);
+        this.bitArraySize = BitBackedSetImpl.bitArraySize(this.candidateElements.size());
     }
 
     /**
@@ -118,7 +126,7 @@ public class DeduplicatingCompactSubSetBuilder<E> {
 
     int validateCurrentElement(E candidateElement) {
         if (this.currentElement != null) {
-            if (!candidateElement.equals(this.currentElement)) {
+            if (!elementEquals(candidateElement, this.currentElement)) {
                 throw new IllegalStateException(
                         "Trying to add an element which is not the current element; candidateElement: "
                                 + candidateElement + "; currentElement: " + currentElement);
@@ -130,6 +138,11 @@ public class DeduplicatingCompactSubSetBuilder<E> {
         }
     }
 
+    boolean elementEquals(E e1, E e2) {
+        HashingStrategy<? super E> hashingStrategy = this.candidateElements.hashingStrategy();
+        return hashingStrategy == null ? e1.equals(e2) : hashingStrategy.equals(e1, e2);
+    }
+
     void finishCurrentElement() {
         if (this.currentElement == null) {
             return;
@@ -175,7 +188,7 @@ public class DeduplicatingCompactSubSetBuilder<E> {
                     this.backingCollection = root.backingCollectionWithCurrentElementOnly;
                 } else {
                     this.backingCollection = root.backingCollectionWithCurrentElementOnly =
-                            new BackingBitSetBuilder<>(element, elementIndex, root);
+                            new BackingBitSetBuilder<>(elementIndex, root);
                 }
 
                 this.size = 1;
@@ -203,7 +216,7 @@ public class DeduplicatingCompactSubSetBuilder<E> {
                 return;
             }
 
-            if (!element.equals(this.lastAddedElement)) {
+            if (!root.elementEquals(element, this.lastAddedElement)) {
                 // Nothing was added during the last round
                 if (backingCollection.offeredElement != null) {
                     // However, something was added to the backingCollection. Thus, we need to branch off
@@ -233,11 +246,9 @@ public class DeduplicatingCompactSubSetBuilder<E> {
         private BackingBitSetBuilder<E> copyWithNone;
         private final DeduplicatingCompactSubSetBuilder<E> root;
         private ImmutableCompactSubSet<E> finalBuildResult;
-        private E firstElement;
 
-        BackingBitSetBuilder(E element, int elementIndex, DeduplicatingCompactSubSetBuilder<E> root) {
+        BackingBitSetBuilder(int elementIndex, DeduplicatingCompactSubSetBuilder<E> root) {
             this.elementToIndexMap = root.candidateElements;
-            this.firstElement = element;
             this.size = 1;
             long bit = 1l << (elementIndex & 0x3f);
             int arrayIndex = elementIndex >> 6;
@@ -252,7 +263,6 @@ public class DeduplicatingCompactSubSetBuilder<E> {
 
         BackingBitSetBuilder(BackingBitSetBuilder<E> original) {
             this.elementToIndexMap = original.elementToIndexMap;
-            this.firstElement = original.firstElement;
             this.bits = new long[original.bits.length];
             this.size = original.size;
             this.bitArrayOffset = original.bitArrayOffset;
@@ -290,10 +300,6 @@ public class DeduplicatingCompactSubSetBuilder<E> {
             try {
                 if (BitBackedSetImpl.setBit(this.bits, this.offeredElementIndex, this.bitArrayOffset)) {
                     this.size++;
-
-                    if (this.firstElement == null) {
-                        this.firstElement = this.offeredElement;
-                    }
                 }
             } finally {
                 this.offeredElement = null;
@@ -312,25 +318,9 @@ public class DeduplicatingCompactSubSetBuilder<E> {
 
             if (this.size == this.elementToIndexMap.size()) {
                 this.finalBuildResult = ImmutableCompactSubSetImpl.of(this.elementToIndexMap);
-            } else if (this.size == 1) {
-                this.finalBuildResult = ImmutableCompactSubSetImpl.of(IndexedImmutableSetImpl.of(this.firstElement));
             } else {
-                long[] bits = this.bits;
-                int lastNonZeroIndex = BitBackedSetImpl.lastNonZeroIndex(bits);
-
-                if (lastNonZeroIndex <= 0) {
-                    this.finalBuildResult =
-                            new BitBackedSetImpl.LongBacked<>(bits[0], size, elementToIndexMap, bitArrayOffset);
-                } else {
-                    if (lastNonZeroIndex != bits.length - 1) {
-                        long[] shortenedBits = new long[lastNonZeroIndex + 1];
-                        System.arraycopy(bits, 0, shortenedBits, 0, shortenedBits.length);
-                        bits = shortenedBits;
-                    }
-
-                    this.finalBuildResult =
-                            new BitBackedSetImpl.LongArrayBacked<>(bits, size, elementToIndexMap, bitArrayOffset);
-                }
+                this.finalBuildResult =
+                        BitBackedSetImpl.of(this.bits, this.size, this.elementToIndexMap, this.bitArrayOffset);
             }
 
             return this.finalBuildResult;
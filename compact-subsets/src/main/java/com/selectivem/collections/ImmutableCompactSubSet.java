@@ -16,6 +16,7 @@
 package com.selectivem.collections;
 
 import java.util.Collection;
+import java.util.function.IntConsumer;
 
 /**
  * Instances of this interface are produced by the classes CompactSubSetBuilder and DeduplicatingCompactSubSetBuilder.
@@ -27,4 +28,48 @@ import java.util.Collection;
  */
 public interface ImmutableCompactSubSet<E> extends UnmodifiableSet<E> {
     boolean containsAny(Collection<E> elements);
+
+    /**
+     * Returns a set with the elements contained in this set or in the given set.
+     * <p>
+     * If both sets were created by the same builder, this is computed by combining their bit-fields word by word,
+     * without looking at the elements. Use CompactSubSetBuilder.rebind() to make sets created by a builder and an
+     * extended builder share the same super-set.
+     */
+    ImmutableCompactSubSet<E> union(ImmutableCompactSubSet<E> other);
+
+    /**
+     * Returns a set with the elements contained both in this set and in the given set. See union() for details on
+     * the performance.
+     */
+    ImmutableCompactSubSet<E> intersection(ImmutableCompactSubSet<E> other);
+
+    /**
+     * Returns a set with the elements contained in this set, but not in the given set. See union() for details on the
+     * performance.
+     */
+    ImmutableCompactSubSet<E> difference(ImmutableCompactSubSet<E> other);
+
+    /**
+     * Returns a set with the elements contained in exactly one of this set and the given set. See union() for details
+     * on the performance.
+     */
+    ImmutableCompactSubSet<E> symmetricDifference(ImmutableCompactSubSet<E> other);
+
+    /**
+     * Returns true if this set and the given set have at least one element in common. See union() for details on the
+     * performance.
+     */
+    boolean intersects(ImmutableCompactSubSet<E> other);
+
+    /**
+     * Calls the given action with the index of each element of this set in its super-set, in ascending order. For
+     * sets created by a CompactSubSetBuilder or a DeduplicatingCompactSubSetBuilder, the super-set is the set of
+     * candidate elements given to the builder. Sets which were computed from sets with different super-sets are their
+     * own super-set.
+     * <p>
+     * This is cheaper than forEach() if only the positions of the elements are needed, as the elements do not need to
+     * be looked up.
+     */
+    void forEachIndex(IntConsumer action);
 }
@@ -17,8 +17,11 @@ package com.selectivem.collections;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.Spliterator;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import java.util.stream.Stream;
 
 abstract class ImmutableCompactSubSetImpl {
@@ -38,6 +41,97 @@ abstract class ImmutableCompactSubSetImpl {
         }
     }
 
+    /**
+     * Computes the union of the given sets element by element. This is used if the sets do not share a super-set.
+     */
+    static <E> ImmutableCompactSubSet<E> union(Set<E> a, Set<E> b) {
+        LinkedHashSet<E> result = new LinkedHashSet<>(a);
+        result.addAll(b);
+        return copyOf(result);
+    }
+
+    /**
+     * Computes the intersection of the given sets element by element. This is used if the sets do not share a
+     * super-set.
+     */
+    static <E> ImmutableCompactSubSet<E> intersection(Set<E> a, Set<E> b) {
+        LinkedHashSet<E> result = new LinkedHashSet<>();
+
+        for (E e : a) {
+            if (b.contains(e)) {
+                result.add(e);
+            }
+        }
+
+        return copyOf(result);
+    }
+
+    /**
+     * Computes the difference of the given sets element by element. This is used if the sets do not share a
+     * super-set.
+     */
+    static <E> ImmutableCompactSubSet<E> difference(Set<E> a, Set<E> b) {
+        LinkedHashSet<E> result = new LinkedHashSet<>();
+
+        for (E e : a) {
+            if (!b.contains(e)) {
+                result.add(e);
+            }
+        }
+
+        return copyOf(result);
+    }
+
+    /**
+     * Computes the symmetric difference of the given sets element by element. This is used if the sets do not share a
+     * super-set.
+     */
+    static <E> ImmutableCompactSubSet<E> symmetricDifference(Set<E> a, Set<E> b) {
+        LinkedHashSet<E> result = new LinkedHashSet<>();
+
+        for (E e : a) {
+            if (!b.contains(e)) {
+                result.add(e);
+            }
+        }
+
+        for (E e : b) {
+            if (!a.contains(e)) {
+                result.add(e);
+            }
+        }
+
+        return copyOf(result);
+    }
+
+    /**
+     * Checks element by element whether the given sets have an element in common. This is used if the sets do not
+     * share a super-set.
+     */
+    static <E> boolean intersects(Set<E> a, Set<E> b) {
+        if (a.size() > b.size()) {
+            Set<E> swap = a;
+            a = b;
+            b = swap;
+        }
+
+        for (E e : a) {
+            if (b.contains(e)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static <E> ImmutableCompactSubSet<E> copyOf(Set<E> set) {
+        if (set.isEmpty()) {
+            return empty();
+        } else {
+            return new DelegatingImpl<>(IndexedImmutableSetImpl.of(set));
+        }
+    }
+
     static class DelegatingImpl<E> extends UnmodifiableSetImpl<E> implements ImmutableCompactSubSet<E> {
         private final UnmodifiableSet<E> delegate;
 
@@ -103,5 +197,76 @@ abstract class ImmutableCompactSubSetImpl {
         public String toString() {
             return delegate.toString();
         }
+
+        @Override
+        public ImmutableCompactSubSet<E> union(ImmutableCompactSubSet<E> other) {
+            if (other instanceof BitBackedSetImpl || isEmpty()) {
+                return other.isEmpty() ? this : other.union(this);
+            } else if (other.isEmpty()) {
+                return this;
+            } else {
+                return ImmutableCompactSubSetImpl.union(this, other);
+            }
+        }
+
+        @Override
+        public ImmutableCompactSubSet<E> intersection(ImmutableCompactSubSet<E> other) {
+            if (isEmpty()) {
+                return this;
+            } else if (other instanceof BitBackedSetImpl) {
+                return other.intersection(this);
+            } else {
+                return ImmutableCompactSubSetImpl.intersection(this, other);
+            }
+        }
+
+        @Override
+        public ImmutableCompactSubSet<E> difference(ImmutableCompactSubSet<E> other) {
+            if (isEmpty() || other.isEmpty()) {
+                return this;
+            } else {
+                return ImmutableCompactSubSetImpl.difference(this, other);
+            }
+        }
+
+        @Override
+        public ImmutableCompactSubSet<E> symmetricDifference(ImmutableCompactSubSet<E> other) {
+            if (other instanceof BitBackedSetImpl || isEmpty()) {
+                return other.isEmpty() ? this : other.symmetricDifference(this);
+            } else if (other.isEmpty()) {
+                return this;
+            } else {
+                return ImmutableCompactSubSetImpl.symmetricDifference(this, other);
+            }
+        }
+
+        /**
+         * The delegate is either the super-set itself or a set which is not based on any other super-set; thus, the
+         * indices are just the positions of the elements.
+         */
+        @Override
+        public void forEachIndex(IntConsumer action) {
+            if (!(delegate instanceof IndexedImmutableSetImpl) && !delegate.isEmpty()) {
+                throw new UnsupportedOperationException(
+                        "Not supported for " + delegate.getClass().getName());
+            }
+
+            int size = delegate.size();
+
+            for (int i = 0; i < size; i++) {
+                action.accept(i);
+            }
+        }
+
+        @Override
+        public boolean intersects(ImmutableCompactSubSet<E> other) {
+            if (isEmpty()) {
+                return false;
+            } else if (other instanceof BitBackedSetImpl) {
+                return other.intersects(this);
+            } else {
+                return ImmutableCompactSubSetImpl.intersects(this, other);
+            }
+        }
     }
 }
@@ -47,6 +47,44 @@ public class BitBackedSetImplTest {
         Assert.assertEquals(-1, BitBackedSetImpl.firstNonZeroIndex(new long[] {0, 0, 0, 0}));
     }
 
+    @Test
+    public void containerType() {
+        Assert.assertEquals(BitBackedSetImpl.BIT_FIELD_CONTAINER, BitBackedSetImpl.containerType(10, 20, 10));
+        Assert.assertEquals(BitBackedSetImpl.INDEX_ARRAY_CONTAINER, BitBackedSetImpl.containerType(10, 19, 10));
+        Assert.assertEquals(BitBackedSetImpl.RUN_CONTAINER, BitBackedSetImpl.containerType(10, 100, 2));
+    }
+
+    @Test
+    public void wordAt_runBacked() {
+        BitBackedSetImpl.RunBacked<String> subject = new BitBackedSetImpl.RunBacked<>(
+                new int[] {1, 2, 60, 130, 200, 200},
+                74,
+                IndexedImmutableSetImpl.of(SimpleTestData.orderedSetOfNumberedStrings("e", 300)));
+        Assert.assertEquals(0, subject.firstWordIndex());
+        Assert.assertEquals(4, subject.wordCount());
+        Assert.assertEquals(0xf000000000000006l, subject.wordAt(0));
+        Assert.assertEquals(-1l, subject.wordAt(1));
+        Assert.assertEquals(0x7l, subject.wordAt(2));
+        Assert.assertEquals(1l << (200 - 192), subject.wordAt(3));
+        Assert.assertEquals(0, subject.wordAt(4));
+        Assert.assertTrue(subject.containsIndex(130));
+        Assert.assertFalse(subject.containsIndex(131));
+        Assert.assertFalse(subject.containsIndex(0));
+    }
+
+    @Test
+    public void wordAt_indexArrayBacked() {
+        BitBackedSetImpl.IndexArrayBacked<String> subject = new BitBackedSetImpl.IndexArrayBacked<>(
+                new int[] {3, 64, 65, 250},
+                IndexedImmutableSetImpl.of(SimpleTestData.orderedSetOfNumberedStrings("e", 300)));
+        Assert.assertEquals(0, subject.firstWordIndex());
+        Assert.assertEquals(4, subject.wordCount());
+        Assert.assertEquals(0x8l, subject.wordAt(0));
+        Assert.assertEquals(0x3l, subject.wordAt(1));
+        Assert.assertEquals(0, subject.wordAt(2));
+        Assert.assertEquals(1l << (250 - 192), subject.wordAt(3));
+    }
+
     @Test
     public void empty_arrayBacked() {
         BitBackedSetImpl.LongArrayBacked<String> subject =
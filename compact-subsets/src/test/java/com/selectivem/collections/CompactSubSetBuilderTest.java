@@ -18,8 +18,17 @@ package com.selectivem.collections;
 import static com.selectivem.collections.SimpleTestData.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.experimental.runners.Enclosed;
@@ -28,6 +37,351 @@ import org.junit.runners.Parameterized;
 
 @RunWith(Enclosed.class)
 public class CompactSubSetBuilderTest {
+    public static class ExtendTest {
+        @Test
+        public void rebind() {
+            CompactSubSetBuilder<String> builder = new CompactSubSetBuilder<>(setOfAtoZStrings(200));
+            ImmutableCompactSubSet<String> subSet = builder.of(setOf("a", "b", "bz"));
+            ImmutableCompactSubSet<String> subSetLarge = builder.of(setOfAtoZStrings(150));
+
+            CompactSubSetBuilder<String> extendedBuilder = builder.extend(Arrays.asList("new1", "new2"));
+            ImmutableCompactSubSet<String> rebound = extendedBuilder.rebind(subSet);
+            ImmutableCompactSubSet<String> reboundLarge = extendedBuilder.rebind(subSetLarge);
+
+            Assert.assertNotSame(subSet, rebound);
+            Assert.assertEquals(subSet, rebound);
+            Assert.assertEquals(subSetLarge, reboundLarge);
+            Assert.assertEquals(extendedBuilder.of(setOf("a", "b", "bz")), rebound);
+            Assert.assertEquals(rebound, extendedBuilder.of(setOf("a", "b", "bz")));
+            Assert.assertEquals(reboundLarge, extendedBuilder.of(setOfAtoZStrings(150)));
+            Assert.assertFalse(rebound.contains("new1"));
+            Assert.assertTrue(extendedBuilder.of(setOf("a", "new2")).contains("new2"));
+        }
+
+        @Test
+        public void rebind_unrelated() {
+            CompactSubSetBuilder<String> builder = new CompactSubSetBuilder<>(setOfAtoZStrings(100));
+            CompactSubSetBuilder<String> otherBuilder = new CompactSubSetBuilder<>(setOf("a", "b", "c"));
+            ImmutableCompactSubSet<String> subSet = otherBuilder.of(setOf("a", "b"));
+            Assert.assertSame(subSet, builder.rebind(subSet));
+        }
+
+        @Test
+        public void extend_hashingStrategy() {
+            CompactSubSetBuilder<String> builder = new CompactSubSetBuilder<>(setOf("a", "b", "c"), CASE_INSENSITIVE);
+            ImmutableCompactSubSet<String> subSet = builder.of(setOf("A", "c", "x"));
+            Assert.assertEquals(setOf("a", "c"), subSet);
+            Assert.assertTrue(subSet.contains("C"));
+            Assert.assertFalse(subSet.contains("B"));
+
+            CompactSubSetBuilder<String> extendedBuilder = builder.extend(Arrays.asList("B", "New"));
+            ImmutableCompactSubSet<String> extendedSubSet = extendedBuilder.of(setOf("b", "new"));
+            Assert.assertEquals(setOf("b", "New"), extendedSubSet);
+            Assert.assertTrue(extendedSubSet.contains("NEW"));
+        }
+    }
+
+    public static class PrimitiveTest {
+        @Test
+        public void intSubSet() {
+            CompactIntSubSetBuilder subject = new CompactIntSubSetBuilder(IndexedIntSet.of(1, 2, 3, 4, 5));
+            ImmutableCompactSubSet<Integer> subSet = subject.of(2, 4, 6);
+            Assert.assertEquals(new HashSet<>(Arrays.asList(2, 4)), subSet);
+            Assert.assertTrue(subSet.contains(4));
+            Assert.assertFalse(subSet.contains(6));
+        }
+
+        @Test
+        public void longSubSet() {
+            CompactLongSubSetBuilder subject = new CompactLongSubSetBuilder(IndexedLongSet.of(1L, 2L, 3L, 4L, 5L));
+            ImmutableCompactSubSet<Long> subSet = subject.of(1L, 5L, 7L);
+            Assert.assertEquals(new HashSet<>(Arrays.asList(1L, 5L)), subSet);
+            Assert.assertEquals(2, subSet.size());
+        }
+    }
+
+    @RunWith(Parameterized.class)
+    public static class SetAlgebraTest {
+        final int size;
+        final CompactSubSetBuilder<String> subject;
+        final List<Set<String>> references = new ArrayList<>();
+        final List<ImmutableCompactSubSet<String>> subSets = new ArrayList<>();
+
+        @Parameterized.Parameters(name = "{0}")
+        public static Collection<Object[]> params() {
+            ArrayList<Object[]> result = new ArrayList<>();
+
+            for (int size : new int[] {10, 64, 65, 200, 1000, 5000}) {
+                result.add(new Object[] {size});
+            }
+
+            return result;
+        }
+
+        public SetAlgebraTest(int size) {
+            this.size = size;
+            Set<String> superSet = orderedSetOfNumberedStrings("e", size);
+            this.subject = new CompactSubSetBuilder<>(superSet);
+            Random random = new Random(size);
+
+            addSubSet(setOf());
+            addSubSet(setOf("e0"));
+            addSubSet(setOf("e" + (size - 1)));
+            addSubSet(filter(superSet, i -> i < size / 2));
+            addSubSet(filter(superSet, i -> i >= size / 2));
+            addSubSet(filter(superSet, i -> i % 3 == 0));
+            addSubSet(filter(superSet, i -> i > size - 10));
+            addSubSet(filter(superSet, i -> random.nextFloat() < 0.1));
+            addSubSet(filter(superSet, i -> random.nextFloat() < 0.5));
+            addSubSet(filter(superSet, i -> i % 97 == 0));
+            addSubSet(filter(superSet, i -> (i / 100) % 3 == 0));
+            addSubSet(superSet);
+        }
+
+        @Test
+        public void sameSuperSet() {
+            for (int i = 0; i < subSets.size(); i++) {
+                for (int k = 0; k < subSets.size(); k++) {
+                    ImmutableCompactSubSet<String> a = subSets.get(i);
+                    ImmutableCompactSubSet<String> b = subSets.get(k);
+                    assertOperations(references.get(i), references.get(k), a, b);
+
+                    ImmutableCompactSubSet<String> union = a.union(b);
+                    Assert.assertTrue(union.isEmpty() || union instanceof BitBackedSetImpl);
+                }
+            }
+        }
+
+        @Test
+        public void containsAllAny() {
+            for (int i = 0; i < subSets.size(); i++) {
+                for (int k = 0; k < subSets.size(); k++) {
+                    ImmutableCompactSubSet<String> a = subSets.get(i);
+                    ImmutableCompactSubSet<String> b = subSets.get(k);
+                    String message = references.get(i) + " / " + references.get(k);
+
+                    Assert.assertEquals(message, references.get(i).containsAll(references.get(k)), a.containsAll(b));
+                    Assert.assertEquals(
+                            message,
+                            !intersection(references.get(i), references.get(k)).isEmpty(),
+                            a.containsAny(b));
+                }
+            }
+
+            IndexedImmutableSetImpl<String> superSet =
+                    ((BitBackedSetImpl<String>) subSets.get(subSets.size() - 1)).elementToIndexMap();
+
+            for (int i = 0; i < subSets.size(); i++) {
+                ImmutableCompactSubSet<String> a = subSets.get(i);
+                Assert.assertEquals(references.get(i).size() == size, a.containsAll(superSet));
+                Assert.assertEquals(!references.get(i).isEmpty(), a.containsAny(superSet));
+            }
+        }
+
+        @Test
+        public void forEachIndex() {
+            for (int i = 0; i < subSets.size(); i++) {
+                List<Integer> indices = new ArrayList<>();
+                subSets.get(i).forEachIndex(indices::add);
+
+                List<Integer> expected = references.get(i).stream()
+                        .map(e -> Integer.parseInt(e.substring(1)))
+                        .sorted()
+                        .collect(Collectors.toList());
+                Assert.assertEquals(expected, indices);
+            }
+        }
+
+        @Test
+        public void contains() {
+            for (int i = 0; i < subSets.size(); i++) {
+                ImmutableCompactSubSet<String> subSet = subSets.get(i);
+
+                for (int k = 0; k < size; k++) {
+                    String e = "e" + k;
+                    Assert.assertEquals(e, references.get(i).contains(e), subSet.contains(e));
+                }
+
+                Assert.assertFalse(subSet.contains("x"));
+            }
+        }
+
+        @Test
+        public void spliterator() {
+            for (int i = 0; i < subSets.size(); i++) {
+                Spliterator<String> spliterator = subSets.get(i).spliterator();
+                Spliterator<String> prefix = spliterator.trySplit();
+                List<String> result = new ArrayList<>();
+
+                if (prefix != null) {
+                    long prefixSize = prefix.estimateSize();
+                    prefix.forEachRemaining(result::add);
+                    Assert.assertEquals(prefixSize, result.size());
+                }
+
+                while (spliterator.tryAdvance(result::add)) {}
+
+                Assert.assertEquals(references.get(i), new HashSet<>(result));
+                Assert.assertEquals(references.get(i).size(), result.size());
+            }
+        }
+
+        @Test
+        public void iteration() {
+            for (int i = 0; i < subSets.size(); i++) {
+                ImmutableCompactSubSet<String> subSet = subSets.get(i);
+                List<String> iterated = new ArrayList<>();
+                Iterator<String> iter = subSet.iterator();
+
+                while (iter.hasNext()) {
+                    Assert.assertTrue(iter.hasNext());
+                    iterated.add(iter.next());
+                }
+
+                try {
+                    iter.next();
+                    Assert.fail();
+                } catch (NoSuchElementException e) {
+                    // expected
+                }
+
+                List<String> forEach = new ArrayList<>();
+                subSet.forEach(forEach::add);
+
+                Assert.assertEquals(references.get(i), new HashSet<>(iterated));
+                Assert.assertEquals(iterated.size(), subSet.size());
+                Assert.assertEquals(iterated, forEach);
+                Assert.assertEquals(iterated, Arrays.asList(subSet.toArray()));
+                Assert.assertEquals(iterated, Arrays.asList(subSet.toArray(new String[0])));
+
+                String[] target = new String[subSet.size() + 1];
+                Assert.assertSame(target, subSet.toArray(target));
+                Assert.assertNull(target[subSet.size()]);
+            }
+        }
+
+        @Test
+        public void differentSuperSet() {
+            // Contains elements which are not part of the super-set of subject
+            CompactSubSetBuilder<String> otherBuilder =
+                    new CompactSubSetBuilder<>(orderedSetOfNumberedStrings("e", size + 50));
+            Set<String> outside = setOf("e" + (size + 1), "e3", "e" + (size + 20));
+            Set<String> inside = setOf("e1", "e3");
+
+            for (int i = 0; i < subSets.size(); i++) {
+                for (Set<String> reference : Arrays.asList(outside, inside)) {
+                    ImmutableCompactSubSet<String> a = subSets.get(i);
+                    ImmutableCompactSubSet<String> b = otherBuilder.of(reference);
+                    assertOperations(references.get(i), reference, a, b);
+                    assertOperations(reference, references.get(i), b, a);
+
+                    ImmutableCompactSubSet<String> c =
+                            new ImmutableCompactSubSetImpl.DelegatingImpl<>(IndexedImmutableSetImpl.of(reference));
+                    assertOperations(references.get(i), reference, a, c);
+                    assertOperations(reference, references.get(i), c, a);
+
+                    Assert.assertEquals(references.get(i).containsAll(reference), a.containsAll(b));
+                    Assert.assertEquals(
+                            !intersection(references.get(i), reference).isEmpty(), a.containsAny(b));
+                }
+            }
+        }
+
+        @Test
+        public void rebound() {
+            CompactSubSetBuilder<String> extendedBuilder = subject.extend(Arrays.asList("new1", "new2"));
+            ImmutableCompactSubSet<String> a = extendedBuilder.rebind(subSets.get(5));
+            ImmutableCompactSubSet<String> b = extendedBuilder.of(setOf("e1", "e2", "new1"));
+            assertOperations(references.get(5), setOf("e1", "e2", "new1"), a, b);
+            Assert.assertTrue(a.union(b) instanceof BitBackedSetImpl);
+        }
+
+        @Test
+        public void returnsOperand() {
+            ImmutableCompactSubSet<String> all = subSets.get(subSets.size() - 1);
+            ImmutableCompactSubSet<String> half = subSets.get(3);
+            Assert.assertSame(all, all.union(half));
+            Assert.assertSame(all, half.union(all));
+            Assert.assertSame(half, all.intersection(half));
+            Assert.assertSame(half, half.difference(subSets.get(4)));
+        }
+
+        @Test
+        public void containers() {
+            if (size < 5000) {
+                return;
+            }
+
+            Set<String> superSet = orderedSetOfNumberedStrings("e", size);
+            Assert.assertTrue(subject.of(setOf("e0", "e" + (size - 1))) instanceof BitBackedSetImpl.IndexArrayBacked);
+            Assert.assertTrue(
+                    subject.of(filter(superSet, i -> i % 97 == 0)) instanceof BitBackedSetImpl.IndexArrayBacked);
+            Assert.assertTrue(
+                    subject.of(filter(superSet, i -> i >= 10 && i < 3000)) instanceof BitBackedSetImpl.RunBacked);
+            Assert.assertTrue(
+                    subject.of(filter(superSet, i -> i % 3 == 0)) instanceof BitBackedSetImpl.LongArrayBacked);
+            Assert.assertTrue(subject.of(setOf("e100", "e101")) instanceof BitBackedSetImpl.LongBacked);
+
+            // Combining sparse and dense sets chooses the container of the result anew
+            ImmutableCompactSubSet<String> sparse = subject.of(setOf("e0", "e" + (size - 1)));
+            ImmutableCompactSubSet<String> run = subject.of(filter(superSet, i -> i < 3000));
+            Assert.assertTrue(sparse.union(run) instanceof BitBackedSetImpl.RunBacked);
+            Assert.assertTrue(run.difference(sparse) instanceof BitBackedSetImpl.RunBacked);
+            Assert.assertTrue(sparse.difference(run) instanceof BitBackedSetImpl.LongBacked);
+            Assert.assertEquals(setOf("e0"), sparse.intersection(run));
+        }
+
+        private void addSubSet(Set<String> reference) {
+            this.references.add(reference);
+            this.subSets.add(subject.of(reference));
+        }
+
+        private static void assertOperations(
+                Set<String> referenceA,
+                Set<String> referenceB,
+                ImmutableCompactSubSet<String> a,
+                ImmutableCompactSubSet<String> b) {
+            String message = referenceA + " / " + referenceB;
+
+            Set<String> union = new HashSet<>(referenceA);
+            union.addAll(referenceB);
+            assertSetEquals(message, union, a.union(b));
+
+            assertSetEquals(message, intersection(referenceA, referenceB), a.intersection(b));
+
+            Set<String> difference = new HashSet<>(referenceA);
+            difference.removeAll(referenceB);
+            assertSetEquals(message, difference, a.difference(b));
+
+            Set<String> symmetricDifference = new HashSet<>(union);
+            symmetricDifference.removeAll(intersection(referenceA, referenceB));
+            assertSetEquals(message, symmetricDifference, a.symmetricDifference(b));
+
+            Assert.assertEquals(message, !intersection(referenceA, referenceB).isEmpty(), a.intersects(b));
+        }
+
+        private static void assertSetEquals(String message, Set<String> expected, Set<String> actual) {
+            Assert.assertEquals(message, expected, actual);
+            Assert.assertEquals(message, expected.size(), actual.size());
+            Assert.assertEquals(message, expected, new HashSet<>(actual));
+        }
+
+        private static Set<String> filter(Set<String> superSet, IntPredicate predicate) {
+            Set<String> result = new HashSet<>();
+            int i = 0;
+
+            for (String e : superSet) {
+                if (predicate.test(i)) {
+                    result.add(e);
+                }
+
+                i++;
+            }
+
+            return result;
+        }
+    }
+
     @RunWith(Parameterized.class)
     public static class ParameterizedTest {
         final Set<String> superSet;
@@ -82,6 +436,40 @@ public class CompactSubSetBuilderTest {
             }
         }
 
+        @Test
+        public void spliterator() {
+            ImmutableCompactSubSet<String> subSet = subject.of(subSetCandidates);
+            Spliterator<String> spliterator = subSet.spliterator();
+
+            Assert.assertEquals(subSetReference.size(), spliterator.getExactSizeIfKnown());
+            Assert.assertEquals(subSetReference, subSet.parallelStream().collect(Collectors.toSet()));
+            Assert.assertEquals(new ArrayList<>(subSet), subSet.stream().collect(Collectors.toList()));
+
+            List<String> visited = new ArrayList<>();
+            subSet.forEach(visited::add);
+            Assert.assertEquals(new ArrayList<>(subSet), visited);
+        }
+
+        @Test
+        public void spliterator_split() {
+            ImmutableCompactSubSet<String> subSet = subject.of(subSetCandidates);
+            Spliterator<String> suffix = subSet.spliterator();
+            Spliterator<String> prefix = suffix.trySplit();
+            List<String> visited = new ArrayList<>();
+
+            if (prefix != null) {
+                long prefixSize = prefix.getExactSizeIfKnown();
+                prefix.forEachRemaining(visited::add);
+                Assert.assertEquals(prefixSize, visited.size());
+            }
+
+            long suffixSize = suffix.getExactSizeIfKnown();
+            int prefixVisited = visited.size();
+            suffix.forEachRemaining(visited::add);
+            Assert.assertEquals(suffixSize, visited.size() - prefixVisited);
+            Assert.assertEquals(new ArrayList<>(subSet), visited);
+        }
+
         public ParameterizedTest(Set<String> superSet, Set<String> subSetCandidates) {
             this.superSet = superSet;
             this.subSetCandidates = subSetCandidates;
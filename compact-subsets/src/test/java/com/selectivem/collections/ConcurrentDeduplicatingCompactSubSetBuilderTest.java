@@ -0,0 +1,186 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import static com.selectivem.collections.SimpleTestData.orderedSetOfNumberedStrings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrentDeduplicatingCompactSubSetBuilderTest {
+    @Test
+    public void basic() {
+        Set<String> superSet = orderedSetOfNumberedStrings("e", 200);
+        ConcurrentDeduplicatingCompactSubSetBuilder<String> subject =
+                new ConcurrentDeduplicatingCompactSubSetBuilder<>(superSet);
+
+        ConcurrentDeduplicatingCompactSubSetBuilder.SubSetBuilder<String> a = subject.createSubSetBuilder();
+        ConcurrentDeduplicatingCompactSubSetBuilder.SubSetBuilder<String> b = subject.createSubSetBuilder();
+        ConcurrentDeduplicatingCompactSubSetBuilder.SubSetBuilder<String> c = subject.createSubSetBuilder();
+        ConcurrentDeduplicatingCompactSubSetBuilder.SubSetBuilder<String> empty = subject.createSubSetBuilder();
+        ConcurrentDeduplicatingCompactSubSetBuilder.SubSetBuilder<String> all = subject.createSubSetBuilder();
+
+        // Elements can be added in any order and more than once
+        a.add("e150");
+        a.add("e3");
+        a.add("e70");
+        b.add("e3");
+        b.add("e70");
+        b.add("e150");
+        b.add("e3");
+        c.add("e3");
+
+        for (String e : superSet) {
+            all.add(e);
+        }
+
+        ConcurrentDeduplicatingCompactSubSetBuilder.Completed<String> completed = subject.build();
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList("e3", "e70", "e150")), a.build(completed));
+        Assert.assertSame(a.build(completed), b.build(completed));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("e3")), c.build(completed));
+        Assert.assertTrue(empty.build(completed).isEmpty());
+        Assert.assertEquals(superSet, all.build(completed));
+    }
+
+    @Test
+    public void hashingStrategy() {
+        ConcurrentDeduplicatingCompactSubSetBuilder<String> subject = new ConcurrentDeduplicatingCompactSubSetBuilder<>(
+                new HashSet<>(Arrays.asList("a", "b", "c")), SimpleTestData.CASE_INSENSITIVE);
+
+        ConcurrentDeduplicatingCompactSubSetBuilder.SubSetBuilder<String> a = subject.createSubSetBuilder();
+        ConcurrentDeduplicatingCompactSubSetBuilder.SubSetBuilder<String> b = subject.createSubSetBuilder();
+        a.add("B");
+        a.add("b");
+        b.add("b");
+
+        ConcurrentDeduplicatingCompactSubSetBuilder.Completed<String> completed = subject.build();
+        Assert.assertEquals(1, a.build(completed).size());
+        Assert.assertSame(a.build(completed), b.build(completed));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_notInSuperSet() {
+        ConcurrentDeduplicatingCompactSubSetBuilder<String> subject =
+                new ConcurrentDeduplicatingCompactSubSetBuilder<>(orderedSetOfNumberedStrings("e", 10));
+        subject.createSubSetBuilder().add("x");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void add_afterBuild() {
+        ConcurrentDeduplicatingCompactSubSetBuilder<String> subject =
+                new ConcurrentDeduplicatingCompactSubSetBuilder<>(orderedSetOfNumberedStrings("e", 10));
+        ConcurrentDeduplicatingCompactSubSetBuilder.SubSetBuilder<String> subSetBuilder = subject.createSubSetBuilder();
+        subject.build();
+        subSetBuilder.add("e1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void build_wrongCompleted() {
+        ConcurrentDeduplicatingCompactSubSetBuilder<String> subject =
+                new ConcurrentDeduplicatingCompactSubSetBuilder<>(orderedSetOfNumberedStrings("e", 10));
+        ConcurrentDeduplicatingCompactSubSetBuilder.SubSetBuilder<String> subSetBuilder = subject.createSubSetBuilder();
+        subject.build();
+        subSetBuilder.build(
+                new ConcurrentDeduplicatingCompactSubSetBuilder<>(orderedSetOfNumberedStrings("e", 10)).build());
+    }
+
+    @Test
+    public void multiThreaded() throws Exception {
+        Set<String> superSet = orderedSetOfNumberedStrings("e", 2000);
+        List<String> superSetList = new ArrayList<>(superSet);
+        ConcurrentDeduplicatingCompactSubSetBuilder<String> subject =
+                new ConcurrentDeduplicatingCompactSubSetBuilder<>(superSet);
+        int threads = 4;
+        int subSetsPerThread = 250;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        List<Future<List<SubSet>>> futures = new ArrayList<>();
+
+        try {
+            for (int t = 0; t < threads; t++) {
+                Random random = new Random(t);
+
+                futures.add(executorService.submit(() -> {
+                    List<SubSet> result = new ArrayList<>();
+
+                    for (int i = 0; i < subSetsPerThread; i++) {
+                        // Few distinct sub-sets, so that many builders need to be deduplicated across threads
+                        Random subSetRandom = new Random(random.nextInt(20));
+                        float density = subSetRandom.nextFloat() * subSetRandom.nextFloat();
+                        SubSet subSet = new SubSet(subject.createSubSetBuilder());
+
+                        for (int k = superSetList.size() - 1; k >= 0; k--) {
+                            if (subSetRandom.nextFloat() < density) {
+                                subSet.builder.add(superSetList.get(k));
+                                subSet.reference.add(superSetList.get(k));
+                            }
+                        }
+
+                        result.add(subSet);
+                    }
+
+                    return result;
+                }));
+            }
+
+            List<SubSet> subSets = new ArrayList<>();
+
+            for (Future<List<SubSet>> future : futures) {
+                subSets.addAll(future.get());
+            }
+
+            ConcurrentDeduplicatingCompactSubSetBuilder.Completed<String> completed = subject.build();
+
+            for (SubSet subSet : subSets) {
+                subSet.result = subSet.builder.build(completed);
+                Assert.assertEquals(subSet.reference, subSet.result);
+            }
+
+            Map<Set<String>, ImmutableCompactSubSet<String>> distinctResults = new HashMap<>();
+
+            for (SubSet subSet : subSets) {
+                ImmutableCompactSubSet<String> first = distinctResults.putIfAbsent(subSet.reference, subSet.result);
+
+                if (first != null) {
+                    Assert.assertSame(subSet.reference.toString(), first, subSet.result);
+                }
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    static class SubSet {
+        final ConcurrentDeduplicatingCompactSubSetBuilder.SubSetBuilder<String> builder;
+        final Set<String> reference = new HashSet<>();
+        ImmutableCompactSubSet<String> result;
+
+        SubSet(ConcurrentDeduplicatingCompactSubSetBuilder.SubSetBuilder<String> builder) {
+            this.builder = builder;
+        }
+    }
+}
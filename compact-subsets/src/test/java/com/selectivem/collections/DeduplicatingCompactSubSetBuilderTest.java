@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
@@ -300,6 +301,43 @@ public class DeduplicatingCompactSubSetBuilderTest {
             }
         }
 
+        @Test
+        public void hashingStrategy() {
+            Set<String> superSet = new LinkedHashSet<>(Arrays.asList("a", "b", "c", "d"));
+            DeduplicatingCompactSubSetBuilder<String> subject =
+                    new DeduplicatingCompactSubSetBuilder<>(superSet, SimpleTestData.CASE_INSENSITIVE);
+            DeduplicatingCompactSubSetBuilder.SubSetBuilder<String> builder1 = subject.createSubSetBuilder();
+            DeduplicatingCompactSubSetBuilder.SubSetBuilder<String> builder2 = subject.createSubSetBuilder();
+            DeduplicatingCompactSubSetBuilder.SubSetBuilder<String> builder3 = subject.createSubSetBuilder();
+
+            subject.next("A");
+            builder1.add("A");
+            builder2.add("a");
+            subject.next("B");
+            subject.next("C");
+            builder1.add("c");
+            builder2.add("C");
+            builder3.add("C");
+            subject.next("d");
+
+            DeduplicatingCompactSubSetBuilder.Completed<String> completed = subject.build();
+            ImmutableCompactSubSet<String> subSet1 = builder1.build(completed);
+            ImmutableCompactSubSet<String> subSet2 = builder2.build(completed);
+            ImmutableCompactSubSet<String> subSet3 = builder3.build(completed);
+
+            Assert.assertSame(subSet1, subSet2);
+            Assert.assertEquals(new HashSet<>(Arrays.asList("a", "c")), subSet1);
+            Assert.assertTrue(subSet1.contains("A"));
+            Assert.assertFalse(subSet1.contains("B"));
+            Assert.assertEquals(1, subSet3.size());
+            Assert.assertTrue(subSet3.contains("C"));
+            Assert.assertTrue(subSet3.contains("c"));
+
+            List<Integer> indices = new ArrayList<>();
+            subSet3.forEachIndex(indices::add);
+            Assert.assertEquals(Arrays.asList(2), indices);
+        }
+
         @Test(expected = IllegalArgumentException.class)
         public void addUnknownElement() {
             Set<String> superSet = new HashSet<>(Arrays.asList("a", "b", "c", "d"));
@@ -15,6 +15,9 @@
  */
 package com.selectivem.collections;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
@@ -62,6 +65,72 @@ public interface IndexedImmutableSet<E> extends UnmodifiableSet<E> {
         return IndexedImmutableSetImpl.of(set);
     }
 
+    /**
+     * Creates an IndexedImmutableSet instance containing the elements from the given set. The elements will be indexed
+     * according to the iteration order from the given set.
+     * <p>
+     * In contrast to of(), the created instance will store the hashCode() of each element alongside the element.
+     * Lookups then only need to call equals() for elements with a matching hash code. This needs 4 additional bytes
+     * per hash table slot, but can considerably speed up lookups for elements with expensive equals() methods, such as
+     * long strings sharing common prefixes.
+     */
+    static <E> IndexedImmutableSet<E> ofWithCachedHashCodes(Set<E> set) {
+        return IndexedImmutableSetImpl.of(set, true);
+    }
+
+    /**
+     * Creates an IndexedImmutableSet instance containing the elements from the given set. The elements will be indexed
+     * according to the iteration order from the given set.
+     * <p>
+     * In contrast to of(), the created instance uses the given HashingStrategy instead of the hashCode() and equals()
+     * methods of the elements. Elements which are equal according to the strategy are only added once; the first one
+     * in iteration order is kept. The hash codes computed by the strategy are stored alongside the elements. See
+     * HashingStrategy for the effects on equals() and hashCode() of the set.
+     */
+    static <E> IndexedImmutableSet<E> of(Set<E> set, HashingStrategy<? super E> hashingStrategy) {
+        if (hashingStrategy == null) {
+            throw new IllegalArgumentException("hashingStrategy must not be null");
+        }
+
+        return IndexedImmutableSetImpl.of(set, hashingStrategy);
+    }
+
+    /**
+     * Creates an IndexedImmutableSet instance containing the elements from the given set. The created instance uses a
+     * minimal perfect hash function: There is exactly one table slot per element; the slot of an element is also its
+     * index. A lookup thus needs only one hash calculation, one table read and one equals() call. There are no
+     * empty table slots and no separate index array.
+     * <p>
+     * Building the instance is more expensive than using of(). Thus, this is meant for sets which are built once and
+     * queried very often.
+     * <p>
+     * In contrast to of(), the indices are determined by the hash function and do not follow the iteration order of the
+     * given set. The created set iterates in the order of the indices.
+     * <p>
+     * If no minimal perfect hash function can be found within a time limit linear to the size of the set, this
+     * falls back to the behavior of of(). Distinct elements with identical hash codes are supported, but stored in an
+     * area which is searched linearly.
+     * <p>
+     * The created set always uses hashCode() and equals() of the elements; there is no support for HashingStrategy.
+     * If the given set uses a HashingStrategy, the created set will contain the same elements, but compare them
+     * using equals(). The created set does not cache the hash codes of the elements, as a lookup only calls equals()
+     * once anyway.
+     */
+    static <E> IndexedImmutableSet<E> ofMinimalPerfectHash(Set<E> set) {
+        return IndexedImmutableSetImpl.ofMinimalPerfectHash(set);
+    }
+
+    /**
+     * Creates an IndexedImmutableSet instance containing the elements from the given set. The elements will be indexed
+     * according to the iteration order from the given set.
+     * <p>
+     * In contrast to of(), big sets are built in parallel using the common ForkJoinPool. Small sets are built
+     * sequentially, as the coordination overhead would exceed the gains.
+     */
+    static <E> IndexedImmutableSet<E> ofParallel(Set<E> set) {
+        return IndexedImmutableSetImpl.ofParallel(set);
+    }
+
     /**
      * Returns the index of the given element. The index will be in the range 0..size-1.
      * If this set does not contain the element, -1 will be returned.
@@ -70,6 +139,97 @@ public interface IndexedImmutableSet<E> extends UnmodifiableSet<E> {
      */
     int elementToIndex(E element);
 
+    /**
+     * Looks up the indices of all the given elements at once. The index of elements[i] will be written to indices[i].
+     * If this set does not contain an element, -1 will be written to the respective position.
+     * <p>
+     * For hash table based sets, this first calculates the hash codes of all elements and then probes the table.
+     * For bigger batches, this is faster than calling elementToIndex() for each element individually.
+     *
+     * @param elements the elements to look up. Must not contain null values.
+     * @param indices the array receiving the indices. Must be at least as long as the elements array.
+     * @throws IllegalArgumentException if the indices array is shorter than the elements array.
+     */
+    @SuppressWarnings("unchecked")
+    default void elementToIndex(Object[] elements, int[] indices) {
+        IndexedImmutableSetImpl.checkBatchArguments(elements, indices);
+
+        for (int i = 0; i < elements.length; i++) {
+            indices[i] = elementToIndex((E) elements[i]);
+        }
+    }
+
+    /**
+     * Returns an array with the indices of the given elements. The order of the indices corresponds to the iteration
+     * order of the given collection. Elements which are not contained in this set will have the index -1.
+     * <p>
+     * See elementToIndex(Object[], int[]) for details.
+     */
+    default int[] indicesOf(Collection<?> elements) {
+        Object[] array = elements.toArray();
+        int[] result = new int[array.length];
+        elementToIndex(array, result);
+        return result;
+    }
+
+    /**
+     * Returns the index of the key of the given LookupKey, or -1 if it is not contained. This is equivalent to
+     * elementToIndex(lookupKey.key()), but re-uses the hash precomputed by the LookupKey.
+     */
+    @SuppressWarnings("unchecked")
+    default int elementToIndex(LookupKey<?> lookupKey) {
+        return elementToIndex((E) lookupKey.key());
+    }
+
+    /**
+     * Returns true if the key of the given LookupKey is contained in this set. This is equivalent to
+     * contains(lookupKey.key()), but re-uses the hash precomputed by the LookupKey.
+     */
+    default boolean contains(LookupKey<?> lookupKey) {
+        return contains(lookupKey.key());
+    }
+
+    /**
+     * Returns an IndexedImmutableSet containing the elements of this set and the given elements. The elements of this
+     * set keep their indices. The given elements which are not yet contained in this set get the indices size()
+     * and following, in the iteration order of the given collection.
+     * <p>
+     * Thus, data structures which refer to the indices of this set, such as the sub-sets created by
+     * CompactSubSetBuilder, stay valid for the returned set.
+     * <p>
+     * If this set already contains all given elements, this set is returned.
+     */
+    default IndexedImmutableSet<E> extend(Collection<? extends E> elements) {
+        int size = size();
+        LinkedHashSet<E> extended = new LinkedHashSet<>(size + elements.size());
+
+        for (int i = 0; i < size; i++) {
+            extended.add(indexToElement(i));
+        }
+
+        for (E e : elements) {
+            if (e == null) {
+                throw new IllegalArgumentException("null values are not supported");
+            }
+
+            extended.add(e);
+        }
+
+        if (extended.size() == size) {
+            return this;
+        }
+
+        return IndexedImmutableSetImpl.of(extended);
+    }
+
+    /**
+     * Returns an IndexedImmutableSet containing the elements of this set and the given element. If the element is
+     * not contained in this set yet, it will get the index size(). See extend() for details.
+     */
+    default IndexedImmutableSet<E> with(E element) {
+        return extend(Collections.singleton(element));
+    }
+
     /**
      * Returns the element associated with the given index. Will return null if the index is out
      * of range.
@@ -15,15 +15,28 @@
  */
 package com.selectivem.collections;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> implements IndexedImmutableSet<E> {
+    /**
+     * The minimum number of elements for which ofParallel() actually builds the set in parallel. Smaller sets are
+     * built sequentially.
+     */
+    static final int PARALLEL_THRESHOLD = HashArrayBackedSet.MAX_CAPACITY;
+
     static <E> IndexedImmutableSetImpl<E> of(E e1) {
         return new OneElementSet<>(e1);
     }
@@ -37,7 +50,18 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
     }
 
     static <E> IndexedImmutableSetImpl<E> of(Set<E> set) {
-        if (set instanceof IndexedImmutableSetImpl) {
+        return of(set, false);
+    }
+
+    /**
+     * Creates an IndexedImmutableSetImpl for the given set. If cacheHashCodes is true, hash table based
+     * implementations will store the hashCode() of each element alongside the element. See
+     * InternalBuilder.cacheHashCodes().
+     */
+    static <E> IndexedImmutableSetImpl<E> of(Set<E> set, boolean cacheHashCodes) {
+        if (set instanceof IndexedImmutableSetImpl
+                && !cacheHashCodes
+                && ((IndexedImmutableSetImpl<E>) set).hashingStrategy() == null) {
             return (IndexedImmutableSetImpl<E>) set;
         }
 
@@ -54,17 +78,86 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
             return new ArrayBackedSet<>(set);
         } else {
             int hashTableSize = Hashing.hashTableSize(size);
-            if (hashTableSize != -1 && set.size() < HashArrayBackedSet.MAX_CAPACITY) {
-                InternalBuilder<E> internalBuilder = new HashArrayBackedSet.Builder<>(hashTableSize, size);
+            InternalBuilder<E> internalBuilder;
 
-                for (E e : set) {
-                    internalBuilder = internalBuilder.with(e);
+            if (hashTableSize != -1 && size < HashArrayBackedSet.MAX_CAPACITY) {
+                internalBuilder = new HashArrayBackedSet.Builder<>(hashTableSize, size);
+            } else {
+                hashTableSize = Hashing.largeHashTableSize(size);
+
+                if (hashTableSize != -1) {
+                    internalBuilder = new LargeHashArrayBackedSet.Builder<>(hashTableSize, size);
+                } else {
+                    return new SetBackedSet.Builder<>(set).build();
                 }
+            }
 
-                return internalBuilder.build();
-            } else {
-                return new SetBackedSet.Builder<>(set).build();
+            internalBuilder = internalBuilder.cacheHashCodes(cacheHashCodes);
+
+            for (E e : set) {
+                internalBuilder = internalBuilder.with(e);
             }
+
+            return internalBuilder.build();
+        }
+    }
+
+    /**
+     * Creates an IndexedImmutableSetImpl which uses the given HashingStrategy instead of hashCode() and equals() of the
+     * elements. Elements which are equal according to the strategy are only added once. If the strategy is null, this
+     * is equivalent to of(set).
+     */
+    static <E> IndexedImmutableSetImpl<E> of(Set<E> set, HashingStrategy<? super E> hashingStrategy) {
+        if (hashingStrategy == null) {
+            return of(set);
+        } else if (set instanceof IndexedImmutableSetImpl
+                && ((IndexedImmutableSetImpl<E>) set).hashingStrategy() == hashingStrategy) {
+            return (IndexedImmutableSetImpl<E>) set;
+        }
+
+        InternalBuilder<E> internalBuilder =
+                IndexedImmutableSetImpl.<E>builder(set.size()).hashingStrategy(hashingStrategy);
+
+        for (E e : set) {
+            internalBuilder = internalBuilder.with(e);
+        }
+
+        return internalBuilder.build();
+    }
+
+    /**
+     * Creates an IndexedImmutableSetImpl based on a minimal perfect hash function for the given set. Falls back to
+     * of() if the set is too small or if no such function could be found.
+     */
+    static <E> IndexedImmutableSetImpl<E> ofMinimalPerfectHash(Set<E> set) {
+        if (set.size() < 5 || set instanceof MinimalPerfectHashSet) {
+            return of(set);
+        }
+
+        MinimalPerfectHashSet<E> result = MinimalPerfectHashSet.build(set);
+
+        if (result != null) {
+            return result;
+        } else {
+            return of(set);
+        }
+    }
+
+    /**
+     * Creates an IndexedImmutableSetImpl for the given set using the common ForkJoinPool. Falls back to the
+     * sequential of() for sets below PARALLEL_THRESHOLD elements.
+     */
+    static <E> IndexedImmutableSetImpl<E> ofParallel(Set<E> set) {
+        if (set.size() < PARALLEL_THRESHOLD || set instanceof IndexedImmutableSetImpl) {
+            return of(set);
+        }
+
+        LargeHashArrayBackedSet<E> result = new LargeHashArrayBackedSet.ParallelBuilder<>(set).build();
+
+        if (result != null) {
+            return result;
+        } else {
+            return of(set);
         }
     }
 
@@ -73,19 +166,47 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
 
         if (hashTableSize != -1 && size < HashArrayBackedSet.MAX_CAPACITY) {
             return new HashArrayBackedSet.Builder<>(hashTableSize, size);
+        }
+
+        hashTableSize = Hashing.largeHashTableSize(size);
+
+        if (hashTableSize != -1) {
+            return new LargeHashArrayBackedSet.Builder<>(hashTableSize, size);
         } else {
             return new SetBackedSet.Builder<>(size);
         }
     }
 
+    static void checkBatchArguments(Object[] elements, int[] indices) {
+        if (indices.length < elements.length) {
+            throw new IllegalArgumentException("The indices array is shorter than the elements array: " + indices.length
+                    + " < " + elements.length);
+        }
+    }
+
     static <E> IndexedImmutableSetImpl<E> empty() {
         @SuppressWarnings("unchecked")
         IndexedImmutableSetImpl<E> result = (IndexedImmutableSetImpl<E>) EMPTY;
         return result;
     }
 
+    /**
+     * The characteristics reported by the spliterators of this class. The encounter order is the index order.
+     */
+    static final int SPLITERATOR_CHARACTERISTICS = Spliterator.DISTINCT
+            | Spliterator.ORDERED
+            | Spliterator.NONNULL
+            | Spliterator.IMMUTABLE
+            | Spliterator.SIZED
+            | Spliterator.SUBSIZED;
+
     private final int size;
 
+    /**
+     * Lazily computed result of hashCode(); 0 if not yet computed.
+     */
+    private int hashCode;
+
     IndexedImmutableSetImpl(int size) {
         this.size = size;
     }
@@ -100,10 +221,186 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
         return this.size == 0;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+
+        if (o instanceof IndexedImmutableSetImpl) {
+            IndexedImmutableSetImpl<?> other = (IndexedImmutableSetImpl<?>) o;
+
+            if (other.size != this.size) {
+                return false;
+            }
+
+            // Only compare hash codes if both are already cached; computing them would cost more than comparing the
+            // elements
+            if (other.hashCode != 0 && this.hashCode != 0 && other.hashCode != this.hashCode) {
+                return false;
+            }
+        }
+
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = this.hashCode;
+
+        if (result == 0) {
+            int size = this.size;
+
+            for (int i = 0; i < size; i++) {
+                result += indexToElement(i).hashCode();
+            }
+
+            this.hashCode = result;
+        }
+
+        return result;
+    }
+
     public abstract int elementToIndex(Object element);
 
+    @Override
+    public void elementToIndex(Object[] elements, int[] indices) {
+        checkBatchArguments(elements, indices);
+
+        for (int i = 0; i < elements.length; i++) {
+            indices[i] = elementToIndex(elements[i]);
+        }
+    }
+
+    @Override
+    public int[] indicesOf(Collection<?> elements) {
+        Object[] array = elements.toArray();
+        int[] result = new int[array.length];
+        elementToIndex(array, result);
+        return result;
+    }
+
     public abstract E indexToElement(int i);
 
+    /**
+     * Returns a spliterator which splits the index range of this set. Implementations backed by an array in index order
+     * override this with an array spliterator.
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new IndexRangeSpliterator<>(this, 0, size());
+    }
+
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        int size = size();
+
+        for (int i = 0; i < size; i++) {
+            action.accept(indexToElement(i));
+        }
+    }
+
+    /**
+     * Builds a new set by adding the elements of this set in index order and then the new elements. The indices
+     * of the new set thus start with the indices of this set. The result is always a regular hash table based set,
+     * even if this set uses a minimal perfect hash function.
+     */
+    @Override
+    public IndexedImmutableSetImpl<E> extend(Collection<? extends E> elements) {
+        int newElementCount = 0;
+
+        for (E e : elements) {
+            if (e == null) {
+                throw new IllegalArgumentException("null values are not supported");
+            }
+
+            if (!contains(e)) {
+                newElementCount++;
+            }
+        }
+
+        if (newElementCount == 0) {
+            return this;
+        }
+
+        int size = size();
+        int newSize = size + newElementCount;
+        HashingStrategy<? super E> hashingStrategy = hashingStrategy();
+
+        if (newSize < 5 && hashingStrategy == null) {
+            LinkedHashSet<E> set = new LinkedHashSet<>(newSize);
+
+            for (int i = 0; i < size; i++) {
+                set.add(indexToElement(i));
+            }
+
+            set.addAll(elements);
+
+            return of(set);
+        }
+
+        InternalBuilder<E> builder = IndexedImmutableSetImpl.<E>builder(newSize)
+                .cacheHashCodes(cachesHashCodes())
+                .hashingStrategy(hashingStrategy);
+
+        for (int i = 0; i < size; i++) {
+            builder = builder.with(indexToElement(i));
+        }
+
+        for (E e : elements) {
+            builder = builder.with(e);
+        }
+
+        return builder.build();
+    }
+
+    @Override
+    public IndexedImmutableSetImpl<E> with(E element) {
+        return extend(Collections.singleton(element));
+    }
+
+    /**
+     * Returns true if each element of this set has the same index in the given set. This is the case for sets created
+     * by extend().
+     */
+    boolean isIndexPrefixOf(IndexedImmutableSetImpl<?> other) {
+        if (other == this) {
+            return true;
+        }
+
+        int size = size();
+
+        if (other.size() < size) {
+            return false;
+        }
+
+        for (int i = 0; i < size; i++) {
+            E e = indexToElement(i);
+            Object otherE = other.indexToElement(i);
+
+            if (e != otherE && !e.equals(otherE)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns true if this set stores the hashCode() of its elements. See InternalBuilder.cacheHashCodes().
+     */
+    boolean cachesHashCodes() {
+        return false;
+    }
+
+    /**
+     * Returns the HashingStrategy which replaces hashCode() and equals() of the elements; null if the elements'
+     * own methods are used.
+     */
+    HashingStrategy<? super E> hashingStrategy() {
+        return null;
+    }
+
     static final Set<Object> EMPTY = new IndexedImmutableSetImpl<Object>(0) {
 
         @Override
@@ -163,6 +460,38 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
         IndexedImmutableSetImpl.InternalBuilder<E> probingOverheadFactor(short probingOverheadFactor) {
             return this;
         }
+
+        /**
+         * If set to true, the built hash tables will additionally store the hashCode() of each element. Lookups will
+         * then only call equals() for elements with matching hash codes. This is useful for elements with expensive
+         * equals() implementations. Must be called before elements are added.
+         */
+        IndexedImmutableSetImpl.InternalBuilder<E> cacheHashCodes(boolean cacheHashCodes) {
+            return this;
+        }
+
+        /**
+         * Selects the hash function of the built hash tables; see Hashing.hashPositionForHash(int, int, int). Builders
+         * switch to Hashing.ALTERNATIVE_HASH_SEED by themselves if the default hash function causes too much probing
+         * overhead. Must be called before elements are added.
+         */
+        IndexedImmutableSetImpl.InternalBuilder<E> hashSeed(int hashSeed) {
+            return this;
+        }
+
+        /**
+         * Makes the built sets use the given HashingStrategy instead of hashCode() and equals() of the elements. The
+         * hash codes computed by the strategy are always cached; see cacheHashCodes(). Must be called before elements
+         * are added.
+         */
+        IndexedImmutableSetImpl.InternalBuilder<E> hashingStrategy(HashingStrategy<? super E> hashingStrategy) {
+            if (hashingStrategy != null) {
+                throw new UnsupportedOperationException(
+                        "HashingStrategy is not supported by " + getClass().getName());
+            }
+
+            return this;
+        }
     }
 
     static class OneElementSet<E> extends IndexedImmutableSetImpl<E> {
@@ -405,6 +734,18 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
             return GenericArrays.copyAsTypedArray(this.elements, a);
         }
 
+        @Override
+        public Spliterator<E> spliterator() {
+            return Spliterators.spliterator(this.elements, 0, this.elements.length, SPLITERATOR_CHARACTERISTICS);
+        }
+
+        @Override
+        public void forEach(Consumer<? super E> action) {
+            for (int i = 0; i < this.elements.length; i++) {
+                action.accept(this.elements[i]);
+            }
+        }
+
         @Override
         public int elementToIndex(Object element) {
             int l = elements.length;
@@ -428,28 +769,68 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
         }
     }
 
-    static final class HashArrayBackedSet<E> extends IndexedImmutableSetImpl<E> {
-
-        static final int MAX_CAPACITY = Short.MAX_VALUE;
+    /**
+     * Common base of HashArrayBackedSet and LargeHashArrayBackedSet. The element table is probed in the same way by
+     * both; they only differ in the type of the array which maps the table positions to the element indices.
+     */
+    abstract static class AbstractHashArrayBackedSet<E> extends IndexedImmutableSetImpl<E> {
 
         final int tableSize;
-        private final int size;
-        private final short maxProbingDistance;
-
-        private final E[] table;
-        private final E[] flat;
-        private final short[] indices;
-
-        HashArrayBackedSet(int tableSize, int size, short maxProbingDistance, E[] table, short[] indices, E[] flat) {
+        final int size;
+
+        /**
+         * The maximum distance between the hash position of an element and its actual position in the table. The
+         * sequential builders use Robin Hood insertion; the LargeHashArrayBackedSet.ParallelBuilder uses linear
+         * probing, as its regions are filled independently of each other. Both record the actual maximum distance,
+         * which is usually much lower than Hashing.maxProbingDistance().
+         */
+        final short maxProbingDistance;
+
+        final E[] table;
+        final E[] flat;
+
+        /**
+         * Optional: The hashCode() values of the elements in table. If this is non-null, equals() will be only
+         * called for elements with matching hash codes.
+         */
+        final int[] hashes;
+
+        /**
+         * Selects the hash function; see Hashing.hashPositionForHash(int, int, int).
+         */
+        final int hashSeed;
+
+        /**
+         * Optional: Replaces hashCode() and equals() of the elements. If this is non-null, hashes is also non-null and
+         * holds the hash codes computed by the strategy.
+         */
+        final HashingStrategy<? super E> hashingStrategy;
+
+        AbstractHashArrayBackedSet(
+                int tableSize,
+                int size,
+                short maxProbingDistance,
+                E[] table,
+                E[] flat,
+                int[] hashes,
+                int hashSeed,
+                HashingStrategy<? super E> hashingStrategy) {
             super(size);
             this.tableSize = tableSize;
             this.size = size;
             this.maxProbingDistance = maxProbingDistance;
             this.table = table;
-            this.indices = indices;
             this.flat = flat;
+            this.hashes = hashes;
+            this.hashSeed = hashSeed;
+            this.hashingStrategy = hashingStrategy;
         }
 
+        /**
+         * Returns the index of the element at the given position of the table.
+         */
+        abstract int indexAt(int position);
+
         @Override
         public int size() {
             return size;
@@ -467,12 +848,52 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
 
         @Override
         public int elementToIndex(Object o) {
-            int hashPosition = hashPosition(o);
+            int hash = Hashing.hash(o, hashingStrategy);
+            return elementToIndex(o, hash, Hashing.hashPositionForHash(tableSize, hash, hashSeed));
+        }
+
+        @Override
+        public void elementToIndex(Object[] elements, int[] indices) {
+            checkBatchArguments(elements, indices);
+
+            // First pass: Only calculate the hash codes. The result array is used as scratch space.
+            for (int i = 0; i < elements.length; i++) {
+                indices[i] = Hashing.hash(elements[i], hashingStrategy);
+            }
+
+            // Second pass: Probe the table
+            for (int i = 0; i < elements.length; i++) {
+                int hash = indices[i];
+                indices[i] = elementToIndex(elements[i], hash, Hashing.hashPositionForHash(tableSize, hash, hashSeed));
+            }
+        }
+
+        @Override
+        public boolean contains(LookupKey<?> lookupKey) {
+            return elementToIndex(lookupKey) != -1;
+        }
+
+        @Override
+        public int elementToIndex(LookupKey<?> lookupKey) {
+            if (hashingStrategy != null) {
+                // The precomputed hash is based on hashCode(), which is replaced by the strategy
+                return elementToIndex(lookupKey.key());
+            }
+
+            return elementToIndex(lookupKey.key(), lookupKey.hash(), lookupKey.hashPosition(tableSize, hashSeed));
+        }
+
+        private int elementToIndex(Object o, int hash, int hashPosition) {
+            if (hashes != null) {
+                int check =
+                        Hashing.checkTable(table, hashes, hashingStrategy, o, hash, hashPosition, maxProbingDistance);
+                return check < 0 ? indexAt(-check - 1) : -1;
+            }
 
             if (table[hashPosition] == null) {
                 return -1;
             } else if (table[hashPosition].equals(o)) {
-                return indices[hashPosition];
+                return indexAt(hashPosition);
             }
 
             int max = hashPosition + maxProbingDistance;
@@ -481,7 +902,7 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
                 if (table[i] == null) {
                     return -1;
                 } else if (table[i].equals(o)) {
-                    return indices[i];
+                    return indexAt(i);
                 }
             }
 
@@ -504,16 +925,16 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
 
                 @Override
                 public boolean hasNext() {
-                    return i < HashArrayBackedSet.this.size;
+                    return i < AbstractHashArrayBackedSet.this.size;
                 }
 
                 @Override
                 public E next() {
-                    if (i >= HashArrayBackedSet.this.size) {
+                    if (i >= AbstractHashArrayBackedSet.this.size) {
                         throw new NoSuchElementException();
                     }
 
-                    E element = HashArrayBackedSet.this.flat[i];
+                    E element = AbstractHashArrayBackedSet.this.flat[i];
 
                     i++;
 
@@ -532,30 +953,85 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
             return GenericArrays.copyAsTypedArray(flat, a, size);
         }
 
+        @Override
+        public Spliterator<E> spliterator() {
+            return Spliterators.spliterator(flat, 0, size, SPLITERATOR_CHARACTERISTICS);
+        }
+
+        @Override
+        public void forEach(Consumer<? super E> action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(flat[i]);
+            }
+        }
+
+        @Override
+        boolean cachesHashCodes() {
+            return this.hashes != null;
+        }
+
+        @Override
+        HashingStrategy<? super E> hashingStrategy() {
+            return this.hashingStrategy;
+        }
+
+        /**
+         * Returns the seed of the hash function picked by the builder. Hashing.DEFAULT_HASH_SEED indicates the default
+         * hash function.
+         */
+        int hashSeed() {
+            return this.hashSeed;
+        }
+
         int hashPosition(Object e) {
-            return Hashing.hashPosition(tableSize, e);
+            return Hashing.hashPositionForHash(tableSize, Hashing.hash(e, hashingStrategy), hashSeed);
         }
 
         int checkTable(Object e, int hashPosition) {
-            return Hashing.checkTable(table, e, hashPosition, maxProbingDistance);
+            if (hashes != null) {
+                return Hashing.checkTable(
+                        table,
+                        hashes,
+                        hashingStrategy,
+                        e,
+                        Hashing.hash(e, hashingStrategy),
+                        hashPosition,
+                        maxProbingDistance);
+            } else {
+                return Hashing.checkTable(table, e, hashPosition, maxProbingDistance);
+            }
         }
 
-        static class Builder<E> extends IndexedImmutableSetImpl.InternalBuilder<E> {
-            private E[] table;
-            private E[] flat;
-            private short[] indices;
-            private short size = 0;
-            private int probingOverhead;
-            private short probingOverheadFactor = 3;
-            private final int tableSize;
+        /**
+         * Common base of the sequential builders of HashArrayBackedSet and LargeHashArrayBackedSet. Sub-classes
+         * provide the index array and decide which builder takes over when the table needs to grow.
+         */
+        abstract static class Builder<E> extends IndexedImmutableSetImpl.InternalBuilder<E> {
+            E[] table;
+            E[] flat;
+
+            /**
+             * For each occupied slot, the distance to the hash position of the element. Needed for the Robin Hood
+             * insertion; see Hashing.checkTableRobinHood().
+             */
+            private short[] displacements;
+
+            int size = 0;
+            private long probingOverhead;
+            short probingOverheadFactor = 3;
+            private int[] hashes;
+            boolean cacheHashCodes;
+            int hashSeed = Hashing.DEFAULT_HASH_SEED;
+            HashingStrategy<? super E> hashingStrategy;
+            final int tableSize;
             private final short maxProbingDistance;
 
-            public Builder(int tableSize) {
+            Builder(int tableSize) {
                 this.tableSize = tableSize;
                 this.maxProbingDistance = Hashing.maxProbingDistance(tableSize);
             }
 
-            public Builder(int tableSize, int flatSize) {
+            Builder(int tableSize, int flatSize) {
                 this.tableSize = tableSize;
                 this.maxProbingDistance = Hashing.maxProbingDistance(tableSize);
                 if (flatSize > 0) {
@@ -563,84 +1039,117 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
                 }
             }
 
+            /**
+             * Allocates the index array with the given length.
+             */
+            abstract void createIndices(int length);
+
+            /**
+             * Records the index of the element at the given position of the table.
+             */
+            abstract void setIndex(int position, int index);
+
+            /**
+             * Moves the indices between the given positions (inclusive) by one slot, following Hashing.robinHoodShift().
+             */
+            abstract void shiftIndices(int from, int to);
+
+            /**
+             * Creates a builder with the same configuration, but with the given table size and without elements.
+             */
+            abstract Builder<E> createBuilder(int tableSize);
+
+            /**
+             * Creates the set from the state of this builder.
+             */
+            abstract IndexedImmutableSetImpl<E> createSet(E[] flat, short maxProbingDistance, int[] hashes);
+
             public IndexedImmutableSetImpl.InternalBuilder<E> with(E e) {
                 if (e == null) {
                     throw new IllegalArgumentException("Null elements are not supported");
                 }
 
+                int hash = hashingStrategy == null ? e.hashCode() : hashingStrategy.computeHashCode(e);
+
                 if (table == null) {
-                    int hashPosition = hashPosition(e);
+                    int hashPosition = Hashing.hashPositionForHash(tableSize, hash, hashSeed);
                     table = GenericArrays.create(tableSize + this.maxProbingDistance);
-                    indices = new short[tableSize + this.maxProbingDistance];
+                    createIndices(tableSize + this.maxProbingDistance);
+                    displacements = new short[tableSize + this.maxProbingDistance];
 
                     if (flat == null) {
                         flat = GenericArrays.create(tableSize <= 64 ? tableSize : tableSize / 2);
                     }
 
+                    if (cacheHashCodes || hashingStrategy != null) {
+                        hashes = new int[tableSize + this.maxProbingDistance];
+                        hashes[hashPosition] = hash;
+                    }
+
                     table[hashPosition] = e;
-                    indices[hashPosition] = 0;
+                    setIndex(hashPosition, 0);
                     flat[0] = e;
                     size++;
                     return this;
                 } else {
-                    if (size == MAX_CAPACITY) {
-                        // This collection reached it capacity
-                        return new SetBackedSet.Builder<E>(this.size)
-                                .with(flat, size)
-                                .with(e);
-                    }
-
-                    int position = hashPosition(e);
+                    int position = Hashing.hashPositionForHash(tableSize, hash, hashSeed);
 
                     if (table[position] == null) {
                         table[position] = e;
-                        indices[position] = size;
+                        setIndex(position, size);
+                        setHash(position, hash);
                         extendFlat();
                         flat[size] = e;
                         size++;
                         return this;
-                    } else if (table[position].equals(e)) {
+                    } else if (hashMatches(position, hash) && elementEquals(table[position], e)) {
                         // done
                         return this;
                     } else {
                         // collision
-                        int check = checkTable(e, position);
+                        int check = checkTable(e, hash, position);
 
                         if (check < 0) {
                             // done
                             return this;
                         } else if (check == Hashing.NO_SPACE) {
-                            int newTableSize = Hashing.nextSize(tableSize);
-                            if (newTableSize != -1) {
-                                return new Builder<E>(newTableSize)
-                                        .probingOverheadFactor(this.probingOverheadFactor)
-                                        .with(flat, size)
-                                        .with(e);
-                            } else {
-                                return new SetBackedSet.Builder<E>(this.size)
-                                        .with(flat, size)
-                                        .with(e);
+                            if (this.hashSeed == Hashing.DEFAULT_HASH_SEED) {
+                                // Before growing the table, try whether an alternative hash function avoids the cluster
+                                return withAlternativeHashFunction().with(e);
                             }
+
+                            return grow().with(e);
                         } else {
                             // check != position
+                            int free = Hashing.robinHoodShift(table, displacements, check);
+
+                            if (free != check) {
+                                shiftIndices(check, free);
+
+                                if (hashes != null) {
+                                    System.arraycopy(hashes, check, hashes, check + 1, free - check);
+                                }
+                            }
+
                             table[check] = e;
-                            indices[check] = size;
+                            displacements[check] = (short) (check - position);
+                            setIndex(check, size);
+                            setHash(check, hash);
                             extendFlat();
                             flat[size] = e;
                             size++;
 
-                            this.probingOverhead += check - position;
+                            // The shift moved each element between check and free by one slot
+                            this.probingOverhead += free - position;
 
-                            if (this.size >= 12 && this.probingOverhead > this.size * this.probingOverheadFactor) {
+                            if (this.size >= 12
+                                    && this.probingOverhead > (long) this.size * this.probingOverheadFactor) {
                                 // probing overhead exceeds threshold
-                                int newTableSize = Hashing.nextSize(tableSize);
-                                if (newTableSize != -1) {
-                                    return new HashArrayBackedSet.Builder<E>(newTableSize)
-                                            .probingOverheadFactor(this.probingOverheadFactor)
-                                            .with(flat, size);
-                                } else {
-                                    return new SetBackedSet.Builder<E>(this.size).with(flat, size);
+                                if (this.hashSeed == Hashing.DEFAULT_HASH_SEED) {
+                                    return withAlternativeHashFunction();
                                 }
+
+                                return grow();
                             }
                         }
 
@@ -667,9 +1176,9 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
             public IndexedImmutableSetImpl<E> build() {
                 if (size == 0) {
                     return IndexedImmutableSetImpl.empty();
-                } else if (size == 1) {
+                } else if (size == 1 && hashingStrategy == null) {
                     return new OneElementSet<>(this.flat[0]);
-                } else if (size == 2) {
+                } else if (size == 2 && hashingStrategy == null) {
                     return new TwoElementSet<>(this.flat[0], this.flat[1]);
                 } else {
                     E[] flat = this.flat;
@@ -677,7 +1186,7 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
                         flat = GenericArrays.create(size);
                         System.arraycopy(this.flat, 0, flat, 0, size);
                     }
-                    return new HashArrayBackedSet<>(tableSize, size, maxProbingDistance, table, indices, flat);
+                    return createSet(flat, Hashing.maxDisplacement(displacements), hashes);
                 }
             }
 
@@ -697,11 +1206,7 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
 
                     @Override
                     public boolean hasNext() {
-                        if (pos < size) {
-                            return true;
-                        } else {
-                            return false;
-                        }
+                        return pos < size;
                     }
 
                     @Override
@@ -722,29 +1227,102 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
                 return this;
             }
 
-            private int hashPosition(Object e) {
-                return Hashing.hashPosition(tableSize, e);
+            @Override
+            IndexedImmutableSetImpl.InternalBuilder<E> cacheHashCodes(boolean cacheHashCodes) {
+                if (table != null && cacheHashCodes != this.cacheHashCodes) {
+                    throw new IllegalStateException("cacheHashCodes() must be called before adding elements");
+                }
+
+                this.cacheHashCodes = cacheHashCodes;
+                return this;
             }
 
-            private void extendFlat() {
-                if (size >= flat.length) {
-                    this.flat =
-                            GenericArrays.extend(flat, Math.min(flat.length + flat.length / 2 + 8, this.table.length));
+            @Override
+            IndexedImmutableSetImpl.InternalBuilder<E> hashSeed(int hashSeed) {
+                if (table != null && hashSeed != this.hashSeed) {
+                    throw new IllegalStateException("hashSeed() must be called before adding elements");
                 }
+
+                this.hashSeed = hashSeed;
+                return this;
             }
 
-            int checkTable(Object e, int hashPosition) {
-                int max = hashPosition + this.maxProbingDistance;
+            @Override
+            IndexedImmutableSetImpl.InternalBuilder<E> hashingStrategy(HashingStrategy<? super E> hashingStrategy) {
+                if (table != null && hashingStrategy != this.hashingStrategy) {
+                    throw new IllegalStateException("hashingStrategy() must be called before adding elements");
+                }
+
+                this.hashingStrategy = hashingStrategy;
+                return this;
+            }
 
-                for (int i = hashPosition + 1; i <= max; i++) {
-                    if (table[i] == null) {
-                        return i;
-                    } else if (table[i].equals(e)) {
-                        return -1 - i;
-                    }
+            /**
+             * Applies the configuration of this builder to the given new builder. The hash seed is passed separately,
+             * as withAlternativeHashFunction() changes it.
+             */
+            <B extends AbstractHashArrayBackedSet.Builder<E>> B configure(B builder, int hashSeed) {
+                builder.probingOverheadFactor = this.probingOverheadFactor;
+                builder.cacheHashCodes = this.cacheHashCodes;
+                builder.hashSeed = hashSeed;
+                builder.hashingStrategy = this.hashingStrategy;
+                return builder;
+            }
+
+            /**
+             * Returns a builder with a bigger table which holds the elements added so far. Falls back to
+             * LargeHashArrayBackedSet and finally to SetBackedSet if no bigger table is available.
+             */
+            IndexedImmutableSetImpl.InternalBuilder<E> grow() {
+                int newTableSize = Hashing.nextLargeSize(tableSize, size);
+                if (newTableSize != -1) {
+                    return configure(new LargeHashArrayBackedSet.Builder<E>(newTableSize), this.hashSeed)
+                            .with(flat, size);
+                } else {
+                    return new SetBackedSet.Builder<E>(this.size)
+                            .hashingStrategy(this.hashingStrategy)
+                            .with(flat, size);
+                }
+            }
+
+            /**
+             * Returns a new builder with the same table size and elements, but with the alternative hash function.
+             * High probing overhead is often caused by poorly distributed hashCode() values rather than by a too small
+             * table; in this case, the alternative hash function avoids growing the table.
+             */
+            private IndexedImmutableSetImpl.InternalBuilder<E> withAlternativeHashFunction() {
+                return configure(createBuilder(tableSize), Hashing.ALTERNATIVE_HASH_SEED)
+                        .with(flat, size);
+            }
+
+            private void setHash(int position, int hash) {
+                if (hashes != null) {
+                    hashes[position] = hash;
+                }
+            }
+
+            private boolean hashMatches(int position, int hash) {
+                return hashes == null || hashes[position] == hash;
+            }
+
+            private boolean elementEquals(E e1, E e2) {
+                return hashingStrategy == null ? e1.equals(e2) : hashingStrategy.equals(e1, e2);
+            }
+
+            private int hashPosition(Object e) {
+                return Hashing.hashPositionForHash(tableSize, Hashing.hash(e, hashingStrategy), hashSeed);
+            }
+
+            private void extendFlat() {
+                if (size >= flat.length) {
+                    this.flat = GenericArrays.extend(
+                            flat, (int) Math.min(flat.length + flat.length / 2 + 8L, this.table.length));
                 }
+            }
 
-                return Hashing.NO_SPACE;
+            int checkTable(E e, int hash, int hashPosition) {
+                return Hashing.checkTableRobinHood(
+                        table, displacements, hashes, hashingStrategy, e, hash, hashPosition, this.maxProbingDistance);
             }
 
             @Override
@@ -758,7 +1336,9 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
                     for (int i = hashPosition; i <= max; i++) {
                         if (table[i] == null) {
                             return false;
-                        } else if (table[i].equals(o)) {
+                        } else if (hashingStrategy == null
+                                ? table[i].equals(o)
+                                : Hashing.isEqual(hashingStrategy, table[i], o)) {
                             return true;
                         }
                     }
@@ -769,15 +1349,756 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
         }
     }
 
-    static final class SetBackedSet<E> extends IndexedImmutableSetImpl<E> {
+    /**
+     * Hash table based set with short indices. Holds up to Short.MAX_VALUE elements; bigger sets continue as
+     * LargeHashArrayBackedSet.
+     */
+    static final class HashArrayBackedSet<E> extends AbstractHashArrayBackedSet<E> {
 
-        private final Map<E, Integer> elements;
+        static final int MAX_CAPACITY = Short.MAX_VALUE;
+
+        private final short[] indices;
+
+        HashArrayBackedSet(
+                int tableSize,
+                int size,
+                short maxProbingDistance,
+                E[] table,
+                short[] indices,
+                E[] flat,
+                int[] hashes,
+                int hashSeed,
+                HashingStrategy<? super E> hashingStrategy) {
+            super(tableSize, size, maxProbingDistance, table, flat, hashes, hashSeed, hashingStrategy);
+            this.indices = indices;
+        }
+
+        @Override
+        int indexAt(int position) {
+            return indices[position];
+        }
+
+        static class Builder<E> extends AbstractHashArrayBackedSet.Builder<E> {
+            private short[] indices;
+
+            public Builder(int tableSize) {
+                super(tableSize);
+            }
+
+            public Builder(int tableSize, int flatSize) {
+                super(tableSize, flatSize);
+            }
+
+            @Override
+            public IndexedImmutableSetImpl.InternalBuilder<E> with(E e) {
+                if (size == MAX_CAPACITY) {
+                    // This collection reached it capacity; continue with int indices
+                    return configure(
+                                    new LargeHashArrayBackedSet.Builder<E>(
+                                            Hashing.largeHashTableSize(size + 1), size + 1),
+                                    this.hashSeed)
+                            .with(flat, size)
+                            .with(e);
+                }
+
+                return super.with(e);
+            }
+
+            @Override
+            void createIndices(int length) {
+                this.indices = new short[length];
+            }
+
+            @Override
+            void setIndex(int position, int index) {
+                this.indices[position] = (short) index;
+            }
+
+            @Override
+            void shiftIndices(int from, int to) {
+                System.arraycopy(indices, from, indices, from + 1, to - from);
+            }
+
+            @Override
+            AbstractHashArrayBackedSet.Builder<E> createBuilder(int tableSize) {
+                return new HashArrayBackedSet.Builder<E>(tableSize);
+            }
+
+            @Override
+            IndexedImmutableSetImpl.InternalBuilder<E> grow() {
+                int newTableSize = Hashing.nextSize(tableSize);
+                if (newTableSize != -1) {
+                    return configure(new HashArrayBackedSet.Builder<E>(newTableSize), this.hashSeed)
+                            .with(flat, size);
+                }
+
+                return super.grow();
+            }
+
+            @Override
+            IndexedImmutableSetImpl<E> createSet(E[] flat, short maxProbingDistance, int[] hashes) {
+                return new HashArrayBackedSet<>(
+                        tableSize, size, maxProbingDistance, table, indices, flat, hashes, hashSeed, hashingStrategy);
+            }
+        }
+    }
+
+    /**
+     * Variant of HashArrayBackedSet which uses int indices. This allows it to hold more than Short.MAX_VALUE elements
+     * and to use table sizes beyond 0x40000.
+     */
+    static final class LargeHashArrayBackedSet<E> extends AbstractHashArrayBackedSet<E> {
+
+        private final int[] indices;
+
+        LargeHashArrayBackedSet(
+                int tableSize,
+                int size,
+                short maxProbingDistance,
+                E[] table,
+                int[] indices,
+                E[] flat,
+                int[] hashes,
+                int hashSeed,
+                HashingStrategy<? super E> hashingStrategy) {
+            super(tableSize, size, maxProbingDistance, table, flat, hashes, hashSeed, hashingStrategy);
+            this.indices = indices;
+        }
+
+        @Override
+        int indexAt(int position) {
+            return indices[position];
+        }
+
+        /**
+         * Builds LargeHashArrayBackedSet instances using the common ForkJoinPool. First, the hash positions of all
+         * elements are calculated in parallel. Then, the table is split into regions which are filled in parallel;
+         * each region receives the elements whose hash position lies inside the region. Elements which do not fit
+         * into their region are inserted sequentially in a final pass.
+         * <p>
+         * The indices are assigned according to the iteration order of the source set, just like with the sequential
+         * builder. If the probing overhead exceeds the threshold, the build is restarted with the next bigger table
+         * size.
+         */
+        static final class ParallelBuilder<E> {
+            static final int MIN_REGION_SIZE = 0x1000;
+
+            private static final int REGION_OK = 0;
+            private static final int REGION_NO_SPACE = 1;
+            private static final int REGION_DUPLICATE = 2;
+
+            private final E[] flat;
+            private final int size;
+            private final int[] hashes;
+            private final short probingOverheadFactor = 3;
+            private boolean duplicatesFound;
+
+            @SuppressWarnings("unchecked")
+            ParallelBuilder(Set<E> set) {
+                this.flat = (E[]) set.toArray();
+                this.size = flat.length;
+                this.hashes = new int[size];
+                Arrays.parallelSetAll(this.hashes, i -> Hashing.hash(flat[i]));
+            }
+
+            /**
+             * Returns null if the elements cannot be represented by a LargeHashArrayBackedSet. This is the case if the
+             * maximum table size is exceeded or if the source set contains elements which are equal to each other.
+             */
+            LargeHashArrayBackedSet<E> build() {
+                for (int tableSize = Hashing.largeHashTableSize(size);
+                        tableSize != -1;
+                        tableSize = Hashing.nextLargeSize(tableSize, size)) {
+                    LargeHashArrayBackedSet<E> result = build(tableSize);
+
+                    if (result != null) {
+                        return result;
+                    } else if (duplicatesFound) {
+                        return null;
+                    }
+                }
+
+                return null;
+            }
+
+            private LargeHashArrayBackedSet<E> build(int tableSize) {
+                short maxProbingDistance = Hashing.maxProbingDistance(tableSize);
+                int[] positions = new int[size];
+                Arrays.parallelSetAll(positions, i -> Hashing.hashPositionForHash(tableSize, hashes[i]));
+
+                int regionSize = Math.max(
+                        MIN_REGION_SIZE,
+                        Integer.highestOneBit(tableSize / (ForkJoinPool.getCommonPoolParallelism() * 4)));
+                regionSize = Math.min(regionSize, tableSize);
+                int regionShift = Integer.numberOfTrailingZeros(regionSize);
+                int regionCount = tableSize / regionSize;
+
+                // Group the elements by region; the iteration order is kept inside the regions
+                int[] regionStart = new int[regionCount + 1];
+
+                for (int i = 0; i < size; i++) {
+                    regionStart[(positions[i] >> regionShift) + 1]++;
+                }
+
+                for (int r = 0; r < regionCount; r++) {
+                    regionStart[r + 1] += regionStart[r];
+                }
+
+                int[] members = new int[size];
+                int[] regionFill = new int[regionCount];
+
+                for (int i = 0; i < size; i++) {
+                    int r = positions[i] >> regionShift;
+                    members[regionStart[r] + regionFill[r]] = i;
+                    regionFill[r]++;
+                }
+
+                E[] table = GenericArrays.create(tableSize + maxProbingDistance);
+                int[] indices = new int[tableSize + maxProbingDistance];
+                int[] regionStatus = new int[regionCount];
+                int[] regionOverflow = new int[regionCount];
+                long[] regionProbingOverhead = new long[regionCount];
+                int[] regionMaxDisplacement = new int[regionCount];
+                int finalRegionSize = regionSize;
+
+                IntStream.range(0, regionCount).parallel().forEach(r -> {
+                    int regionEnd = r == regionCount - 1 ? table.length : (r + 1) * finalRegionSize;
+                    fillRegion(
+                            r,
+                            regionEnd,
+                            table,
+                            indices,
+                            positions,
+                            members,
+                            regionStart,
+                            maxProbingDistance,
+                            regionStatus,
+                            regionOverflow,
+                            regionProbingOverhead,
+                            regionMaxDisplacement);
+                });
+
+                long probingOverhead = 0;
+                int maxDisplacement = 0;
+
+                for (int r = 0; r < regionCount; r++) {
+                    if (regionStatus[r] == REGION_DUPLICATE) {
+                        this.duplicatesFound = true;
+                        return null;
+                    } else if (regionStatus[r] == REGION_NO_SPACE) {
+                        return null;
+                    }
+
+                    probingOverhead += regionProbingOverhead[r];
+                    maxDisplacement = Math.max(maxDisplacement, regionMaxDisplacement[r]);
+                }
+
+                // Sequential pass for the elements which did not fit into their regions
+                for (int r = 0; r < regionCount; r++) {
+                    for (int k = regionStart[r]; k < regionStart[r] + regionOverflow[r]; k++) {
+                        int i = members[k];
+                        int check = Hashing.checkTable(table, flat[i], positions[i], maxProbingDistance);
+
+                        if (check == Hashing.NO_SPACE) {
+                            return null;
+                        } else if (check < 0) {
+                            this.duplicatesFound = true;
+                            return null;
+                        }
+
+                        table[check] = flat[i];
+                        indices[check] = i;
+                        probingOverhead += check - positions[i];
+                        maxDisplacement = Math.max(maxDisplacement, check - positions[i]);
+                    }
+                }
+
+                if (size >= 12 && probingOverhead > (long) size * probingOverheadFactor) {
+                    return null;
+                }
+
+                return new LargeHashArrayBackedSet<>(
+                        tableSize,
+                        size,
+                        (short) maxDisplacement,
+                        table,
+                        indices,
+                        flat,
+                        null,
+                        Hashing.DEFAULT_HASH_SEED,
+                        null);
+            }
+
+            /**
+             * Inserts the elements of the given region into the table. Elements which would need to be placed after
+             * regionEnd are moved to the start of the region's segment in the members array; their count is
+             * recorded in regionOverflow.
+             */
+            private void fillRegion(
+                    int r,
+                    int regionEnd,
+                    E[] table,
+                    int[] indices,
+                    int[] positions,
+                    int[] members,
+                    int[] regionStart,
+                    short maxProbingDistance,
+                    int[] regionStatus,
+                    int[] regionOverflow,
+                    long[] regionProbingOverhead,
+                    int[] regionMaxDisplacement) {
+                int start = regionStart[r];
+                int end = regionStart[r + 1];
+                int overflow = 0;
+                long probingOverhead = 0;
+                int maxDisplacement = 0;
+
+                elements:
+                for (int k = start; k < end; k++) {
+                    int i = members[k];
+                    int position = positions[i];
+                    int max = position + maxProbingDistance;
+                    E e = flat[i];
+
+                    for (int j = position; j <= max; j++) {
+                        if (j >= regionEnd) {
+                            members[start + overflow] = i;
+                            overflow++;
+                            continue elements;
+                        }
+
+                        E candidate = table[j];
+
+                        if (candidate == null) {
+                            table[j] = e;
+                            indices[j] = i;
+                            probingOverhead += j - position;
+                            maxDisplacement = Math.max(maxDisplacement, j - position);
+                            continue elements;
+                        } else if (candidate.equals(e)) {
+                            regionStatus[r] = REGION_DUPLICATE;
+                            return;
+                        }
+                    }
+
+                    regionStatus[r] = REGION_NO_SPACE;
+                    return;
+                }
+
+                regionOverflow[r] = overflow;
+                regionProbingOverhead[r] = probingOverhead;
+                regionMaxDisplacement[r] = maxDisplacement;
+            }
+        }
+
+        static class Builder<E> extends AbstractHashArrayBackedSet.Builder<E> {
+            private int[] indices;
+
+            public Builder(int tableSize) {
+                super(tableSize);
+            }
+
+            public Builder(int tableSize, int flatSize) {
+                super(tableSize, flatSize);
+            }
+
+            @Override
+            void createIndices(int length) {
+                this.indices = new int[length];
+            }
+
+            @Override
+            void setIndex(int position, int index) {
+                this.indices[position] = index;
+            }
+
+            @Override
+            void shiftIndices(int from, int to) {
+                System.arraycopy(indices, from, indices, from + 1, to - from);
+            }
+
+            @Override
+            AbstractHashArrayBackedSet.Builder<E> createBuilder(int tableSize) {
+                return new LargeHashArrayBackedSet.Builder<E>(tableSize);
+            }
+
+            @Override
+            IndexedImmutableSetImpl<E> createSet(E[] flat, short maxProbingDistance, int[] hashes) {
+                return new LargeHashArrayBackedSet<>(
+                        tableSize, size, maxProbingDistance, table, indices, flat, hashes, hashSeed, hashingStrategy);
+            }
+        }
+    }
+
+    /**
+     * An IndexedImmutableSetImpl based on a minimal perfect hash function. The function is constructed using the
+     * "hash, displace and compress" (CHD) approach: The elements are distributed into buckets of about BUCKET_SIZE
+     * elements. For each bucket, a displacement value is searched which maps all elements of the bucket to free
+     * slots of the table. The buckets are processed from the biggest to the smallest one.
+     * <p>
+     * The table has exactly one slot per element; the slot of an element is also its index. Thus, there are no
+     * empty slots and no separate index array. A lookup needs one hash calculation, one displacement read, one slot
+     * read and one equals() call.
+     * <p>
+     * Distinct elements with identical hash codes cannot be separated by a hash function. Thus, all but one of
+     * these elements are stored at the end of the table, outside the range covered by the hash function. Their hash
+     * codes are kept in the overflowHashes array. For big sets of strings, a few such collisions are to be expected.
+     * <p>
+     * Building instances of this class is more expensive than building a HashArrayBackedSet.
+     */
+    static final class MinimalPerfectHashSet<E> extends IndexedImmutableSetImpl<E> {
+        static final int BUCKET_SIZE = 4;
+
+        /**
+         * The maximum number of displacement values tried for a bucket is MAX_TRIES_FACTOR times the number of
+         * elements.
+         */
+        static final int MAX_TRIES_FACTOR = 32;
+
+        /**
+         * Limits the total work of build() to MAX_WORK_FACTOR times the number of elements, so that unlucky or
+         * adversarial inputs cannot make the build take quadratic time. The work is counted as the number of slots
+         * probed for all buckets. With a table load factor of 1.0, the last buckets need most of the work; for
+         * typical inputs, the work is about 130 times the number of elements.
+         */
+        static final int MAX_WORK_FACTOR = 512;
+
+        /**
+         * Buckets are expected to have about BUCKET_SIZE elements. Much bigger buckets indicate hash codes which were
+         * chosen to collide after mixing; these would make the displacement search slow. Thus, build() gives up on
+         * such inputs.
+         */
+        static final int MAX_BUCKET_SIZE = 32;
+
+        private final E[] table;
+        private final int[] displacements;
+
+        /**
+         * The number of table slots covered by the hash function.
+         */
+        private final int hashedSize;
+
+        /**
+         * The hash codes of the elements stored in the table after hashedSize. Null if there are no such elements.
+         */
+        private final int[] overflowHashes;
+
+        MinimalPerfectHashSet(E[] table, int[] displacements, int hashedSize, int[] overflowHashes) {
+            super(table.length);
+            this.table = table;
+            this.displacements = displacements;
+            this.hashedSize = hashedSize;
+            this.overflowHashes = overflowHashes;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return elementToIndex(o) != -1;
+        }
+
+        @Override
+        public int elementToIndex(Object o) {
+            int hash = Hashing.hash(o);
+            int slot = slot(hash, displacements[bucket(hash, displacements.length)], hashedSize);
+
+            if (table[slot].equals(o)) {
+                return slot;
+            } else if (overflowHashes != null) {
+                return overflowElementToIndex(o, hash);
+            } else {
+                return -1;
+            }
+        }
+
+        private int overflowElementToIndex(Object o, int hash) {
+            for (int i = 0; i < overflowHashes.length; i++) {
+                if (overflowHashes[i] == hash && table[hashedSize + i].equals(o)) {
+                    return hashedSize + i;
+                }
+            }
+
+            return -1;
+        }
+
+        @Override
+        public E indexToElement(int i) {
+            if (i >= 0 && i < table.length) {
+                return table[i];
+            } else {
+                return null;
+            }
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new Iterator<E>() {
+                private int i = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return i < table.length;
+                }
+
+                @Override
+                public E next() {
+                    if (i >= table.length) {
+                        throw new NoSuchElementException();
+                    }
+
+                    E element = table[i];
+                    i++;
+                    return element;
+                }
+            };
+        }
+
+        @Override
+        public Object[] toArray() {
+            return GenericArrays.copyAsObjectArray(table);
+        }
+
+        @Override
+        public <T> T[] toArray(T[] a) {
+            return GenericArrays.copyAsTypedArray(table, a);
+        }
+
+        @Override
+        public Spliterator<E> spliterator() {
+            return Spliterators.spliterator(table, 0, table.length, SPLITERATOR_CHARACTERISTICS);
+        }
+
+        @Override
+        public void forEach(Consumer<? super E> action) {
+            for (int i = 0; i < table.length; i++) {
+                action.accept(table[i]);
+            }
+        }
+
+        /**
+         * Tries to find a minimal perfect hash function for the given set. Returns null if no such function could be
+         * found.
+         */
+        static <E> MinimalPerfectHashSet<E> build(Set<E> set) {
+            int size = set.size();
+
+            E[] elements = GenericArrays.create(size);
+            int[] hashes = new int[size];
+            int i = 0;
+
+            for (E e : set) {
+                elements[i] = e;
+                hashes[i] = Hashing.hash(e);
+                i++;
+            }
+
+            // Find elements with identical hash codes; all but the first one go to the overflow area
+            long[] sortedHashes = new long[size];
+
+            for (i = 0; i < size; i++) {
+                sortedHashes[i] = (long) hashes[i] << 32 | i;
+            }
+
+            Arrays.sort(sortedHashes);
+
+            boolean[] overflow = new boolean[size];
+            int overflowCount = 0;
+
+            for (i = 1; i < size; i++) {
+                if ((int) (sortedHashes[i] >>> 32) == (int) (sortedHashes[i - 1] >>> 32)) {
+                    overflow[(int) sortedHashes[i]] = true;
+                    overflowCount++;
+                }
+            }
+
+            int hashedSize = size - overflowCount;
+            int bucketCount = (hashedSize + BUCKET_SIZE - 1) / BUCKET_SIZE;
+
+            // Group the elements by bucket
+            int[] bucketStart = new int[bucketCount + 1];
+
+            for (i = 0; i < size; i++) {
+                if (!overflow[i]) {
+                    bucketStart[bucket(hashes[i], bucketCount) + 1]++;
+                }
+            }
+
+            int maxBucketSize = 0;
+
+            for (int b = 0; b < bucketCount; b++) {
+                maxBucketSize = Math.max(maxBucketSize, bucketStart[b + 1]);
+                bucketStart[b + 1] += bucketStart[b];
+            }
+
+            if (maxBucketSize > MAX_BUCKET_SIZE) {
+                return null;
+            }
+
+            int[] bucketMembers = new int[hashedSize];
+            int[] bucketFill = new int[bucketCount];
+
+            for (i = 0; i < size; i++) {
+                if (!overflow[i]) {
+                    int b = bucket(hashes[i], bucketCount);
+                    bucketMembers[bucketStart[b] + bucketFill[b]] = i;
+                    bucketFill[b]++;
+                }
+            }
+
+            // Order the buckets by size, biggest first
+            int[] sizeStart = new int[maxBucketSize + 2];
+
+            for (int b = 0; b < bucketCount; b++) {
+                sizeStart[maxBucketSize - bucketFill[b] + 1]++;
+            }
+
+            for (int s = 0; s <= maxBucketSize; s++) {
+                sizeStart[s + 1] += sizeStart[s];
+            }
+
+            int[] bucketOrder = new int[bucketCount];
+
+            for (int b = 0; b < bucketCount; b++) {
+                bucketOrder[sizeStart[maxBucketSize - bucketFill[b]]++] = b;
+            }
+
+            E[] table = GenericArrays.create(size);
+            int[] displacements = new int[bucketCount];
+            int[] slots = new int[maxBucketSize];
+            int maxTries = (int) Math.min((long) size * MAX_TRIES_FACTOR, Integer.MAX_VALUE);
+            long remainingWork = (long) size * MAX_WORK_FACTOR;
+
+            for (int b : bucketOrder) {
+                int start = bucketStart[b];
+                int end = bucketStart[b + 1];
+
+                if (start == end) {
+                    // Only empty buckets follow
+                    break;
+                }
+
+                int bucketSize = end - start;
+                int bucketMaxTries = (int) Math.min(maxTries, remainingWork / bucketSize);
+                int displacement =
+                        findDisplacement(table, hashedSize, hashes, bucketMembers, start, end, slots, bucketMaxTries);
+
+                if (displacement == -1) {
+                    return null;
+                }
+
+                remainingWork -= (long) (displacement + 1) * bucketSize;
+
+                displacements[b] = displacement;
+
+                for (int k = start; k < end; k++) {
+                    table[slots[k - start]] = elements[bucketMembers[k]];
+                }
+            }
+
+            int[] overflowHashes = null;
+
+            if (overflowCount != 0) {
+                overflowHashes = new int[overflowCount];
+                int k = 0;
+
+                for (i = 0; i < size; i++) {
+                    if (overflow[i]) {
+                        table[hashedSize + k] = elements[i];
+                        overflowHashes[k] = hashes[i];
+                        k++;
+                    }
+                }
+            }
+
+            return new MinimalPerfectHashSet<>(table, displacements, hashedSize, overflowHashes);
+        }
+
+        /**
+         * Searches a displacement value which maps all given bucket members to distinct free slots of the table. The
+         * slots will be written to the slots array. Returns -1 if no displacement value could be found.
+         */
+        private static int findDisplacement(
+                Object[] table,
+                int hashedSize,
+                int[] hashes,
+                int[] bucketMembers,
+                int start,
+                int end,
+                int[] slots,
+                int maxTries) {
+            outer:
+            for (int displacement = 0; displacement < maxTries; displacement++) {
+                for (int k = start; k < end; k++) {
+                    int slot = slot(hashes[bucketMembers[k]], displacement, hashedSize);
+
+                    if (table[slot] != null) {
+                        continue outer;
+                    }
+
+                    for (int l = 0; l < k - start; l++) {
+                        if (slots[l] == slot) {
+                            continue outer;
+                        }
+                    }
+
+                    slots[k - start] = slot;
+                }
+
+                return displacement;
+            }
+
+            return -1;
+        }
+
+        static int bucket(int hash, int bucketCount) {
+            return reduce(mix(hash), bucketCount);
+        }
+
+        static int slot(int hash, int displacement, int tableSize) {
+            return reduce(mix(hash ^ Hashing.scramble(displacement + 1)), tableSize);
+        }
+
+        /**
+         * The murmur3 finalizer. In contrast to Hashing.scramble2(), this uses unsigned shifts, as reduce() depends on
+         * the high bits.
+         */
+        static int mix(int h) {
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            return h;
+        }
+
+        /**
+         * Maps the given hash value uniformly to the range 0..n-1, without requiring n to be a power of two.
+         */
+        static int reduce(int hash, int n) {
+            return (int) (((hash & 0xffffffffL) * n) >>> 32);
+        }
+    }
+
+    /**
+     * Fallback for sets which are too big for the hash array based implementations, or which have many elements with
+     * identical hash codes; see Hashing.nextLargeSize(int, int). For sets built with a HashingStrategy, the elements
+     * map is a HashingStrategyMap.
+     */
+    static final class SetBackedSet<E> extends IndexedImmutableSetImpl<E> {
+
+        private final Map<E, Integer> elements;
         private final E[] flat;
+        private final HashingStrategy<? super E> hashingStrategy;
 
-        SetBackedSet(Map<E, Integer> elements, E[] flat) {
+        SetBackedSet(Map<E, Integer> elements, E[] flat, HashingStrategy<? super E> hashingStrategy) {
             super(elements.size());
             this.elements = elements;
             this.flat = flat;
+            this.hashingStrategy = hashingStrategy;
         }
 
         @Override
@@ -797,17 +2118,49 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
 
         @Override
         public Iterator<E> iterator() {
-            return elements.keySet().iterator();
+            return new Iterator<E>() {
+                private int i = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return i < SetBackedSet.this.size();
+                }
+
+                @Override
+                public E next() {
+                    if (i >= SetBackedSet.this.size()) {
+                        throw new NoSuchElementException();
+                    }
+
+                    E element = SetBackedSet.this.flat[i];
+
+                    i++;
+
+                    return element;
+                }
+            };
         }
 
         @Override
         public <T> T[] toArray(T[] a) {
-            return elements.keySet().toArray(a);
+            return GenericArrays.copyAsTypedArray(flat, a, size());
+        }
+
+        @Override
+        public Spliterator<E> spliterator() {
+            return Spliterators.spliterator(flat, 0, size(), SPLITERATOR_CHARACTERISTICS);
+        }
+
+        @Override
+        public void forEach(Consumer<? super E> action) {
+            for (int i = 0; i < size(); i++) {
+                action.accept(flat[i]);
+            }
         }
 
         @Override
         public Object[] toArray() {
-            return elements.keySet().toArray();
+            return GenericArrays.copyAsObjectArray(flat, size());
         }
 
         @Override
@@ -835,10 +2188,16 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
             }
         }
 
+        @Override
+        HashingStrategy<? super E> hashingStrategy() {
+            return this.hashingStrategy;
+        }
+
         static class Builder<E> extends IndexedImmutableSetImpl.InternalBuilder<E> {
-            private final HashMap<E, Integer> delegate;
+            private Map<E, Integer> delegate;
             private E[] flat;
             private final int expectedCapacity;
+            private HashingStrategy<? super E> hashingStrategy;
 
             Builder(int expectedCapacity) {
                 this.delegate = new HashMap<>(expectedCapacity);
@@ -860,8 +2219,28 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
                 }
             }
 
+            /**
+             * Makes the built set use a HashingStrategyMap, which compares the elements using the given strategy.
+             */
+            @Override
+            IndexedImmutableSetImpl.InternalBuilder<E> hashingStrategy(HashingStrategy<? super E> hashingStrategy) {
+                if (!this.delegate.isEmpty()) {
+                    throw new IllegalStateException("hashingStrategy() must be called before adding elements");
+                }
+
+                this.hashingStrategy = hashingStrategy;
+                this.delegate = hashingStrategy != null
+                        ? new HashingStrategyMap<>(expectedCapacity, hashingStrategy)
+                        : new HashMap<>(expectedCapacity);
+                return this;
+            }
+
             @Override
             public SetBackedSet.Builder<E> with(E e) {
+                if (this.delegate.containsKey(e)) {
+                    return this;
+                }
+
                 int pos = this.delegate.size();
                 this.delegate.put(e, pos);
                 extendFlat();
@@ -891,7 +2270,7 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
                 if (delegate.isEmpty()) {
                     return IndexedImmutableSetImpl.empty();
                 } else {
-                    return new SetBackedSet<>(this.delegate, this.flat);
+                    return new SetBackedSet<>(this.delegate, this.flat, this.hashingStrategy);
                 }
             }
 
@@ -924,4 +2303,65 @@ abstract class IndexedImmutableSetImpl<E> extends UnmodifiableSetImpl<E> impleme
             }
         }
     }
+
+    /**
+     * A spliterator for the index range from index (inclusive) to fence (exclusive) of an IndexedImmutableSetImpl.
+     * Splits at the middle of the range, so the sizes of all parts are known exactly.
+     */
+    static final class IndexRangeSpliterator<E> implements Spliterator<E> {
+        private final IndexedImmutableSetImpl<E> set;
+        private int index;
+        private final int fence;
+
+        IndexRangeSpliterator(IndexedImmutableSetImpl<E> set, int index, int fence) {
+            this.set = set;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (index < fence) {
+                action.accept(set.indexToElement(index));
+                index++;
+                return true;
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            int fence = this.fence;
+
+            for (int i = this.index; i < fence; i++) {
+                action.accept(set.indexToElement(i));
+            }
+
+            this.index = fence;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int lo = this.index;
+            int mid = (lo + fence) >>> 1;
+
+            if (lo >= mid) {
+                return null;
+            }
+
+            this.index = mid;
+            return new IndexRangeSpliterator<>(set, lo, mid);
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return SPLITERATOR_CHARACTERISTICS;
+        }
+    }
 }
@@ -0,0 +1,401 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * Hash table based implementation of IndexedIntSet. Uses the same hashing scheme as HashArrayBackedSet.
+ * <p>
+ * As there is no null value for primitives, the table stores index + 1 for each occupied slot; 0 marks an empty
+ * slot. The elements themselves are stored in the flat array, ordered by their indices.
+ * <p>
+ * Like ToPrimitiveMapImpl.Builder, of() first retries with the alternative hash function and then grows the table up to
+ * the limit given by Hashing.nextLargeSize(int, int). Elements which still do not fit are stored in an overflow area at
+ * the end of the table, which is searched linearly.
+ */
+final class IndexedIntSetImpl implements IndexedIntSet {
+    static final IndexedIntSetImpl EMPTY =
+            new IndexedIntSetImpl(new int[0], 0, new int[0], (short) 0, Hashing.DEFAULT_HASH_SEED, 0);
+
+    static IndexedIntSetImpl of(int[] elements) {
+        if (elements.length == 0) {
+            return EMPTY;
+        }
+
+        int tableSize = Hashing.largeHashTableSize(elements.length);
+
+        if (tableSize == -1) {
+            throw new IllegalArgumentException("Too many elements: " + elements.length);
+        }
+
+        int hashSeed = Hashing.DEFAULT_HASH_SEED;
+
+        while (true) {
+            IndexedIntSetImpl result = build(elements, tableSize, hashSeed, false);
+
+            if (result != null) {
+                return result;
+            }
+
+            if (hashSeed == Hashing.DEFAULT_HASH_SEED) {
+                // High probing overhead is often caused by poorly distributed hash values rather than by a too small
+                // table; thus, we first try the alternative hash function
+                hashSeed = Hashing.ALTERNATIVE_HASH_SEED;
+            } else {
+                int nextTableSize = Hashing.nextLargeSize(tableSize, elements.length);
+
+                if (nextTableSize == -1) {
+                    // Growing does not help any more; put the elements which do not fit into the overflow area
+                    return build(elements, tableSize, hashSeed, true);
+                }
+
+                tableSize = nextTableSize;
+            }
+        }
+    }
+
+    static IndexedIntSetImpl of(Collection<Integer> elements) {
+        int[] array = new int[elements.size()];
+        int i = 0;
+
+        for (Integer e : elements) {
+            if (e == null) {
+                throw new IllegalArgumentException("null values are not supported");
+            }
+
+            array[i] = e;
+            i++;
+        }
+
+        return of(array);
+    }
+
+    static IndexedIntSetImpl of(IndexedIntSet set) {
+        if (set instanceof IndexedIntSetImpl) {
+            return (IndexedIntSetImpl) set;
+        } else {
+            return of(set.toArray());
+        }
+    }
+
+    /**
+     * Returns null if the elements do not fit into a table of the given size. If allowOverflow is true, the elements
+     * which do not fit are put into the overflow area instead.
+     */
+    static IndexedIntSetImpl build(int[] elements, int tableSize, int hashSeed, boolean allowOverflow) {
+        short maxProbingDistance = Hashing.maxProbingDistance(tableSize);
+        int tableEnd = tableSize + maxProbingDistance;
+        int[] table = new int[tableEnd];
+        int[] flat = new int[elements.length];
+        int size = 0;
+        int overflowSize = 0;
+        long probingOverhead = 0;
+
+        elements:
+        for (int e : elements) {
+            int hashPosition = Hashing.hashPositionForHash(tableSize, Integer.hashCode(e), hashSeed);
+            int max = hashPosition + maxProbingDistance;
+
+            for (int i = hashPosition; i <= max; i++) {
+                int entry = table[i];
+
+                if (entry == 0) {
+                    flat[size] = e;
+                    size++;
+                    table[i] = size;
+                    probingOverhead += i - hashPosition;
+                    continue elements;
+                } else if (flat[entry - 1] == e) {
+                    // already contained
+                    continue elements;
+                }
+            }
+
+            if (!allowOverflow) {
+                return null;
+            }
+
+            // An element only gets into the overflow area if all slots in its probing range are occupied. Thus, we
+            // only need to search the overflow area in this case.
+            for (int i = tableEnd; i < tableEnd + overflowSize; i++) {
+                if (flat[table[i] - 1] == e) {
+                    continue elements;
+                }
+            }
+
+            if (tableEnd + overflowSize == table.length) {
+                table = Arrays.copyOf(table, table.length + overflowSize / 2 + 8);
+            }
+
+            flat[size] = e;
+            size++;
+            table[tableEnd + overflowSize] = size;
+            overflowSize++;
+        }
+
+        if (!allowOverflow && size >= 12 && probingOverhead > (long) size * 3) {
+            return null;
+        }
+
+        if (table.length != tableEnd + overflowSize) {
+            table = Arrays.copyOf(table, tableEnd + overflowSize);
+        }
+
+        if (size < flat.length) {
+            flat = Arrays.copyOf(flat, size);
+        }
+
+        return new IndexedIntSetImpl(table, tableSize, flat, maxProbingDistance, hashSeed, overflowSize);
+    }
+
+    private final int[] table;
+    private final int tableSize;
+    private final int[] flat;
+    private final short maxProbingDistance;
+    private final int hashSeed;
+
+    /**
+     * The number of elements in the overflow area, which consists of the last slots of the table.
+     */
+    final int overflowSize;
+
+    private BoxedView<Integer> boxedView;
+
+    private IndexedIntSetImpl(
+            int[] table, int tableSize, int[] flat, short maxProbingDistance, int hashSeed, int overflowSize) {
+        this.table = table;
+        this.tableSize = tableSize;
+        this.flat = flat;
+        this.maxProbingDistance = maxProbingDistance;
+        this.hashSeed = hashSeed;
+        this.overflowSize = overflowSize;
+    }
+
+    @Override
+    public int size() {
+        return flat.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return flat.length == 0;
+    }
+
+    @Override
+    public boolean contains(int element) {
+        return elementToIndex(element) != -1;
+    }
+
+    @Override
+    public int elementToIndex(int element) {
+        if (flat.length == 0) {
+            return -1;
+        }
+
+        int hashPosition = Hashing.hashPositionForHash(tableSize, Integer.hashCode(element), hashSeed);
+        int max = hashPosition + maxProbingDistance;
+
+        for (int i = hashPosition; i <= max; i++) {
+            int entry = table[i];
+
+            if (entry == 0) {
+                return -1;
+            } else if (flat[entry - 1] == element) {
+                return entry - 1;
+            }
+        }
+
+        return overflowSize != 0 ? overflowElementToIndex(element) : -1;
+    }
+
+    private int overflowElementToIndex(int element) {
+        for (int i = table.length - overflowSize; i < table.length; i++) {
+            int entry = table[i];
+
+            if (flat[entry - 1] == element) {
+                return entry - 1;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public void elementToIndex(int[] elements, int[] indices) {
+        if (indices.length < elements.length) {
+            throw new IllegalArgumentException("The indices array is shorter than the elements array: " + indices.length
+                    + " < " + elements.length);
+        }
+
+        for (int i = 0; i < elements.length; i++) {
+            indices[i] = elementToIndex(elements[i]);
+        }
+    }
+
+    @Override
+    public int indexToElement(int index) {
+        if (index < 0 || index >= flat.length) {
+            throw new IndexOutOfBoundsException("Invalid index " + index + "; size: " + flat.length);
+        }
+
+        return flat[index];
+    }
+
+    @Override
+    public int[] toArray() {
+        return flat.clone();
+    }
+
+    @Override
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < flat.length; i++) {
+            action.accept(flat[i]);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof IndexedIntSet)) {
+            return false;
+        }
+
+        IndexedIntSet other = (IndexedIntSet) o;
+
+        if (other.size() != this.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < flat.length; i++) {
+            if (!other.contains(flat[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 0;
+
+        for (int i = 0; i < flat.length; i++) {
+            result += Integer.hashCode(flat[i]);
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+
+        for (int i = 0; i < flat.length; i++) {
+            if (i != 0) {
+                result.append(", ");
+            }
+
+            result.append(flat[i]);
+        }
+
+        return result.append("]").toString();
+    }
+
+    /**
+     * Returns a view on this set as IndexedImmutableSetImpl with boxed elements and identical indices. This allows
+     * using the set as super-set for the classes which work on IndexedImmutableSetImpl.
+     */
+    IndexedImmutableSetImpl<Integer> boxedView() {
+        BoxedView<Integer> result = this.boxedView;
+
+        if (result == null) {
+            result = new BoxedView<>(this);
+            this.boxedView = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * The type parameter E is always Integer. It is necessary, as IndexedImmutableSetImpl cannot be extended by
+     * non-generic classes: The erasure of IndexedImmutableSet.elementToIndex(E) would clash with
+     * IndexedImmutableSetImpl.elementToIndex(Object).
+     */
+    static final class BoxedView<E> extends IndexedImmutableSetImpl<E> {
+        private final IndexedIntSetImpl delegate;
+
+        BoxedView(IndexedIntSetImpl delegate) {
+            super(delegate.size());
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Integer && delegate.contains((Integer) o);
+        }
+
+        @Override
+        public int elementToIndex(Object element) {
+            if (element instanceof Integer) {
+                return delegate.elementToIndex((Integer) element);
+            } else if (element == null) {
+                throw new IllegalArgumentException("null values are not supported");
+            } else {
+                return -1;
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E indexToElement(int i) {
+            if (i >= 0 && i < delegate.flat.length) {
+                return (E) Integer.valueOf(delegate.flat[i]);
+            } else {
+                return null;
+            }
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new Iterator<E>() {
+                private int i = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return i < delegate.flat.length;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public E next() {
+                    if (i >= delegate.flat.length) {
+                        throw new NoSuchElementException();
+                    }
+
+                    E element = (E) Integer.valueOf(delegate.flat[i]);
+                    i++;
+                    return element;
+                }
+            };
+        }
+    }
+}
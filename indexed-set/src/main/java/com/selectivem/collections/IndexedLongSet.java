@@ -0,0 +1,108 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.Collection;
+import java.util.function.LongConsumer;
+
+/**
+ * An IndexedLongSet is the primitive long counterpart of IndexedImmutableSet. It assigns ordinal numbers to its member
+ * elements and exposes the methods elementToIndex() and indexToElement() which provide fast O(1) means to convert
+ * an element to its index and vice-versa. Neither of these methods box the elements.
+ * <p>
+ * The indices are dense, i.e., in the range from 0 to size-1.
+ * <p>
+ * Instances of this interface are immutable.
+ *
+ * @author Nils Bandener
+ */
+public interface IndexedLongSet {
+
+    /**
+     * Creates an IndexedLongSet instance containing the given elements. The elements will be indexed according to
+     * their order in the given array. Duplicate elements are only indexed once.
+     */
+    static IndexedLongSet of(long... elements) {
+        return IndexedLongSetImpl.of(elements);
+    }
+
+    /**
+     * Creates an IndexedLongSet instance containing the given elements. The elements will be indexed according to
+     * the iteration order of the given collection. Duplicate elements are only indexed once.
+     *
+     * @throws IllegalArgumentException if the collection contains null elements.
+     */
+    static IndexedLongSet of(Collection<Long> elements) {
+        return IndexedLongSetImpl.of(elements);
+    }
+
+    /**
+     * Returns an empty IndexedLongSet instance.
+     */
+    static IndexedLongSet empty() {
+        return IndexedLongSetImpl.EMPTY;
+    }
+
+    /**
+     * Returns the number of elements in this set.
+     */
+    int size();
+
+    /**
+     * Returns true if this set contains no elements.
+     */
+    boolean isEmpty();
+
+    /**
+     * Returns true if this set contains the given element.
+     */
+    boolean contains(long element);
+
+    /**
+     * Returns the index of the given element. The index will be in the range 0..size-1.
+     * If this set does not contain the element, -1 will be returned.
+     * <p>
+     * This is a fast operation with O(1) complexity.
+     */
+    int elementToIndex(long element);
+
+    /**
+     * Looks up the indices of all the given elements at once. The index of elements[i] will be written to indices[i].
+     * If this set does not contain an element, -1 will be written to the respective position.
+     *
+     * @throws IllegalArgumentException if the indices array is shorter than the elements array.
+     */
+    void elementToIndex(long[] elements, int[] indices);
+
+    /**
+     * Returns the element associated with the given index.
+     * <p>
+     * This is a fast operation with O(1) complexity.
+     *
+     * @throws IndexOutOfBoundsException if the index is not in the range 0..size-1.
+     */
+    long indexToElement(int index);
+
+    /**
+     * Returns a new array containing all elements of this set, ordered by their indices.
+     */
+    long[] toArray();
+
+    /**
+     * Calls the given action for each element of this set, in the order of their indices.
+     */
+    void forEach(LongConsumer action);
+}
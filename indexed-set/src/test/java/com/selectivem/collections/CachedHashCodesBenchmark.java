@@ -0,0 +1,87 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares lookups in hash tables with and without cached hash codes. The elements share a long common prefix,
+ * which makes equals() calls on colliding elements expensive.
+ */
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+public class CachedHashCodesBenchmark {
+    private static final String PREFIX = "/very/long/common/prefix/which/makes/string/comparisons/expensive/";
+
+    private static final Set<String> SET_5000 = testSet(5000);
+    private static final List<String> QUERIES_5000 = queries(5000);
+    private static final IndexedImmutableSet<String> INDEXED_SET_5000 = IndexedImmutableSet.of(SET_5000);
+    private static final IndexedImmutableSet<String> INDEXED_SET_5000_CACHED =
+            IndexedImmutableSet.ofWithCachedHashCodes(SET_5000);
+
+    @Benchmark
+    public int elementToIndex_5000() {
+        return elementToIndex(INDEXED_SET_5000, QUERIES_5000);
+    }
+
+    @Benchmark
+    public int elementToIndex_5000_cachedHashCodes() {
+        return elementToIndex(INDEXED_SET_5000_CACHED, QUERIES_5000);
+    }
+
+    private static int elementToIndex(IndexedImmutableSet<String> set, List<String> queries) {
+        int result = 0;
+
+        for (String query : queries) {
+            result += set.elementToIndex(query);
+        }
+
+        return result;
+    }
+
+    private static Set<String> testSet(int size) {
+        HashSet<String> result = new HashSet<>(size);
+
+        for (int i = 0; i < size; i++) {
+            result.add(PREFIX + i);
+        }
+
+        return result;
+    }
+
+    /**
+     * Half of the queries are contained in the test set, the other half are not.
+     */
+    private static List<String> queries(int size) {
+        ArrayList<String> result = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            // Create new string instances to avoid equals() short-circuiting on identity
+            result.add(new String(PREFIX + (i * 2)));
+        }
+
+        return result;
+    }
+}
@@ -25,10 +25,12 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.stream.Collectors;
 import org.junit.Assert;
 import org.junit.Test;
@@ -294,6 +296,33 @@ public class IndexedImmutableSetTest {
     }
 
     public static class BasicTest {
+        @Test
+        public void hashCode_sameHashCodeDifferentElements() {
+            // "Aa" and "BB" have the same hash code
+            IndexedImmutableSetImpl<String> subject1 =
+                    IndexedImmutableSetImpl.of(new LinkedHashSet<>(Arrays.asList("a", "b", "c", "d", "e", "Aa")));
+            IndexedImmutableSetImpl<String> subject2 =
+                    IndexedImmutableSetImpl.of(new LinkedHashSet<>(Arrays.asList("a", "b", "c", "d", "e", "BB")));
+
+            Assert.assertEquals(subject1.hashCode(), subject2.hashCode());
+            Assert.assertNotEquals(subject1, subject2);
+            Assert.assertEquals(
+                    subject1, IndexedImmutableSetImpl.of(new HashSet<>(Arrays.asList("Aa", "e", "d", "c", "b", "a"))));
+        }
+
+        @Test
+        public void equals_differentHashCode() {
+            IndexedImmutableSetImpl<String> subject1 =
+                    IndexedImmutableSetImpl.of(new LinkedHashSet<>(Arrays.asList("a", "b", "c", "d", "e", "f")));
+            IndexedImmutableSetImpl<String> subject2 =
+                    IndexedImmutableSetImpl.of(new LinkedHashSet<>(Arrays.asList("a", "b", "c", "d", "e", "g")));
+
+            Assert.assertNotEquals(subject1.hashCode(), subject2.hashCode());
+            Assert.assertNotEquals(subject1, subject2);
+            Assert.assertEquals(
+                    new HashSet<>(Arrays.asList("a", "b", "c", "d", "e", "f")).hashCode(), subject1.hashCode());
+        }
+
         @Test
         public void builder_toString() {
             IndexedImmutableSetImpl.InternalBuilder<String> builder = IndexedImmutableSetImpl.builder(10);
@@ -356,6 +385,113 @@ public class IndexedImmutableSetTest {
             Assert.assertEquals(IndexedImmutableSet.of("a"), set1);
         }
 
+        @Test
+        public void of_hashingStrategy() {
+            for (int size : new int[] {1, 2, 3, 10, 1000, 40000}) {
+                LinkedHashSet<String> elements = new LinkedHashSet<>(size);
+
+                for (int i = 0; i < size; i++) {
+                    elements.add("Element_" + i);
+                }
+
+                // Equal to the first element according to the strategy
+                elements.add("ELEMENT_0");
+
+                IndexedImmutableSet<String> subject = IndexedImmutableSet.of(elements, CASE_INSENSITIVE);
+                Assert.assertEquals(size, subject.size());
+                Assert.assertSame(subject, IndexedImmutableSet.of(subject, CASE_INSENSITIVE));
+
+                String[] queries = new String[size + 1];
+                for (int i = 0; i < size; i++) {
+                    Assert.assertEquals("Element_" + i, subject.indexToElement(i));
+                    Assert.assertEquals(i, subject.elementToIndex("element_" + i));
+                    Assert.assertTrue(subject.contains("ELEMENT_" + i));
+                    queries[i] = "eLEMENT_" + i;
+                }
+                queries[size] = "element_" + size;
+
+                Assert.assertEquals(-1, subject.elementToIndex("element_" + size));
+
+                int[] indices = new int[queries.length];
+                subject.elementToIndex(queries, indices);
+                for (int i = 0; i < size; i++) {
+                    Assert.assertEquals(i, indices[i]);
+                }
+                Assert.assertEquals(-1, indices[size]);
+
+                IndexedImmutableSetImpl<String> extended =
+                        ((IndexedImmutableSetImpl<String>) subject).extend(Arrays.asList("ELEMENT_0", "new_element"));
+                Assert.assertEquals(size + 1, extended.size());
+                Assert.assertSame(CASE_INSENSITIVE, extended.hashingStrategy());
+                Assert.assertEquals(size, extended.elementToIndex("NEW_ELEMENT"));
+                Assert.assertEquals(0, extended.elementToIndex("element_0"));
+            }
+        }
+
+        @Test
+        public void of_hashingStrategy_colliding() {
+            LinkedHashSet<String> elements = new LinkedHashSet<>();
+
+            for (int i = 0; i < 200; i++) {
+                elements.add("Element_" + (1000 + i));
+            }
+
+            // Equal to the first element according to the strategy
+            elements.add("ELEMENT_1000");
+
+            IndexedImmutableSet<String> subject = IndexedImmutableSet.of(elements, CASE_INSENSITIVE_COLLIDING);
+            Assert.assertTrue(subject instanceof IndexedImmutableSetImpl.SetBackedSet);
+            Assert.assertEquals(200, subject.size());
+            Assert.assertSame(subject, IndexedImmutableSet.of(subject, CASE_INSENSITIVE_COLLIDING));
+
+            for (int i = 0; i < 200; i++) {
+                Assert.assertEquals("Element_" + (1000 + i), subject.indexToElement(i));
+                Assert.assertEquals(i, subject.elementToIndex("element_" + (1000 + i)));
+                Assert.assertTrue(subject.contains("ELEMENT_" + (1000 + i)));
+            }
+
+            Assert.assertEquals(-1, subject.elementToIndex("element_2000"));
+
+            IndexedImmutableSetImpl<String> extended =
+                    ((IndexedImmutableSetImpl<String>) subject).extend(Arrays.asList("ELEMENT_1000", "new_element_"));
+            Assert.assertEquals(201, extended.size());
+            Assert.assertSame(CASE_INSENSITIVE_COLLIDING, extended.hashingStrategy());
+            Assert.assertEquals(200, extended.elementToIndex("NEW_ELEMENT_"));
+            Assert.assertEquals(0, extended.elementToIndex("element_1000"));
+        }
+
+        @Test
+        public void elementToIndex_lookupKey() {
+            for (int size : new int[] {1, 2, 3, 10, 1000, 40000}) {
+                LinkedHashSet<String> elements = new LinkedHashSet<>(size);
+
+                for (int i = 0; i < size; i++) {
+                    elements.add("element_" + i);
+                }
+
+                IndexedImmutableSet<String> subject = IndexedImmutableSet.of(elements);
+                IndexedImmutableSet<String> subjectWithStrategy = IndexedImmutableSet.of(elements, CASE_INSENSITIVE);
+
+                for (int i = 0; i < size; i++) {
+                    LookupKey<String> lookupKey = LookupKey.of("element_" + i);
+                    Assert.assertEquals(i, subject.elementToIndex(lookupKey));
+                    Assert.assertTrue(subject.contains(lookupKey));
+                    Assert.assertEquals(i, subjectWithStrategy.elementToIndex(lookupKey));
+                    Assert.assertTrue(subjectWithStrategy.contains(lookupKey));
+                }
+
+                LookupKey<String> missing = LookupKey.of("element_" + size);
+                Assert.assertEquals(-1, subject.elementToIndex(missing));
+                Assert.assertFalse(subject.contains(missing));
+                Assert.assertFalse(subjectWithStrategy.contains(missing));
+            }
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void of_hashingStrategy_null() {
+            IndexedImmutableSet.of(Collections.singleton("a"), null);
+        }
+
         @Test(expected = IllegalArgumentException.class)
         public void builder_addNull() {
             IndexedImmutableSetImpl.InternalBuilder<String> builder =
@@ -394,6 +530,106 @@ public class IndexedImmutableSetTest {
             Assert.assertEquals(reference, builder.build());
         }
 
+        @Test
+        public void builder_grow_cacheHashCodes() {
+            IndexedImmutableSetImpl.InternalBuilder<String> builder =
+                    IndexedImmutableSetImpl.<String>builder(10).cacheHashCodes(true);
+            Set<String> reference = new HashSet<>(4100);
+
+            for (int i = 0; i < 4100; i++) {
+                String e = "a" + i;
+                builder = builder.with(e);
+                builder = builder.with(e);
+                reference.add(e);
+            }
+
+            IndexedImmutableSetImpl<String> result = builder.build();
+            Assert.assertEquals(reference, result);
+
+            for (int i = 0; i < 4100; i++) {
+                Assert.assertEquals(i, result.elementToIndex("a" + i));
+            }
+
+            Assert.assertEquals(-1, result.elementToIndex("b"));
+        }
+
+        @Test(expected = IllegalStateException.class)
+        public void builder_cacheHashCodes_afterWith() {
+            IndexedImmutableSetImpl.<String>builder(10).with("a").cacheHashCodes(true);
+        }
+
+        @Test
+        public void builder_grow_large() {
+            IndexedImmutableSetImpl.InternalBuilder<String> builder = IndexedImmutableSetImpl.builder(10);
+            Set<String> reference = new HashSet<>(200000);
+
+            for (int i = 0; i < 200000; i++) {
+                String e = "a" + i;
+                builder = builder.with(e);
+                reference.add(e);
+            }
+
+            IndexedImmutableSetImpl<String> result = builder.build();
+
+            Assert.assertTrue(
+                    result.getClass().getName(), result instanceof IndexedImmutableSetImpl.LargeHashArrayBackedSet);
+            Assert.assertEquals(reference, result);
+
+            for (int i = 0; i < 200000; i++) {
+                Assert.assertEquals(i, result.elementToIndex("a" + i));
+                Assert.assertEquals("a" + i, result.indexToElement(i));
+            }
+
+            Assert.assertEquals(-1, result.elementToIndex("b"));
+        }
+
+        @Test
+        public void builder_large_cacheHashCodes() {
+            IndexedImmutableSetImpl.InternalBuilder<String> builder =
+                    IndexedImmutableSetImpl.<String>builder(100000).cacheHashCodes(true);
+            List<String> reference = new ArrayList<>(TestUtils.stringSet(100000));
+
+            for (String e : reference) {
+                builder = builder.with(e);
+            }
+
+            IndexedImmutableSetImpl<String> result = builder.build();
+            Assert.assertTrue(
+                    result.getClass().getName(), result instanceof IndexedImmutableSetImpl.LargeHashArrayBackedSet);
+
+            // Robin Hood insertion keeps the probing distance well below the maximum permitted distance
+            IndexedImmutableSetImpl.LargeHashArrayBackedSet<String> large =
+                    (IndexedImmutableSetImpl.LargeHashArrayBackedSet<String>) result;
+            Assert.assertTrue(
+                    String.valueOf(large.maxProbingDistance),
+                    large.maxProbingDistance < Hashing.maxProbingDistance(large.tableSize));
+
+            for (int i = 0; i < reference.size(); i++) {
+                Assert.assertEquals(i, result.elementToIndex(reference.get(i)));
+                Assert.assertEquals(reference.get(i), result.indexToElement(i));
+            }
+
+            Assert.assertEquals(-1, result.elementToIndex("does_not_exist"));
+        }
+
+        @Test
+        public void of_large() {
+            Set<String> reference = TestUtils.stringSet(300000);
+            IndexedImmutableSet<String> subject = IndexedImmutableSet.of(reference);
+
+            Assert.assertTrue(
+                    subject.getClass().getName(), subject instanceof IndexedImmutableSetImpl.LargeHashArrayBackedSet);
+            Assert.assertEquals(reference, subject);
+
+            int i = 0;
+
+            for (String e : reference) {
+                Assert.assertEquals(i, subject.elementToIndex(e));
+                Assert.assertEquals(e, subject.indexToElement(i));
+                i++;
+            }
+        }
+
         @Test
         public void builder_toString_setBacked() {
             IndexedImmutableSetImpl.InternalBuilder<String> builder =
@@ -416,6 +652,270 @@ public class IndexedImmutableSetTest {
             Assert.assertEquals(IndexedImmutableSetImpl.empty(), builder.build());
         }
 
+        @Test(expected = IllegalArgumentException.class)
+        public void elementToIndex_batch_shortArray() {
+            IndexedImmutableSet.of(new HashSet<>(Arrays.asList("a", "b", "c")))
+                    .elementToIndex(new Object[] {"a", "b"}, new int[1]);
+        }
+
+        @Test
+        public void ofParallel() {
+            Set<String> reference = TestUtils.stringSet(200000);
+            IndexedImmutableSet<String> subject = IndexedImmutableSet.ofParallel(reference);
+
+            Assert.assertTrue(
+                    subject.getClass().getName(), subject instanceof IndexedImmutableSetImpl.LargeHashArrayBackedSet);
+            Assert.assertEquals(reference, subject);
+
+            int i = 0;
+            for (String e : reference) {
+                Assert.assertEquals(i, subject.elementToIndex(e));
+                Assert.assertEquals(e, subject.indexToElement(i));
+                i++;
+            }
+
+            Assert.assertEquals(-1, subject.elementToIndex("does_not_exist"));
+        }
+
+        @Test
+        public void of_identicalHashCodes() {
+            // All of these have the hash code 0; growing the table does not help
+            Set<Long> reference = identicalHashCodes(20);
+            IndexedImmutableSet<Long> subject = IndexedImmutableSet.of(reference);
+
+            Assert.assertTrue(subject.getClass().getName(), subject instanceof IndexedImmutableSetImpl.SetBackedSet);
+            assertIndices(reference, subject);
+        }
+
+        @Test
+        public void builder_large_identicalHashCodes() {
+            Set<Long> reference = identicalHashCodes(40000);
+            IndexedImmutableSetImpl.InternalBuilder<Long> builder = IndexedImmutableSetImpl.builder(reference.size());
+
+            for (Long e : reference) {
+                builder = builder.with(e);
+            }
+
+            IndexedImmutableSet<Long> subject = builder.build();
+            Assert.assertTrue(subject.getClass().getName(), subject instanceof IndexedImmutableSetImpl.SetBackedSet);
+            assertIndices(reference, subject);
+        }
+
+        @Test
+        public void ofParallel_identicalHashCodes() {
+            Set<Long> reference = identicalHashCodes(40000);
+            IndexedImmutableSet<Long> subject = IndexedImmutableSet.ofParallel(reference);
+
+            Assert.assertTrue(subject.getClass().getName(), subject instanceof IndexedImmutableSetImpl.SetBackedSet);
+            assertIndices(reference, subject);
+        }
+
+        private static Set<Long> identicalHashCodes(int size) {
+            Set<Long> result = new LinkedHashSet<>();
+
+            for (long i = 0; i < size; i++) {
+                result.add(i << 32 | i);
+            }
+
+            return result;
+        }
+
+        private static void assertIndices(Set<Long> reference, IndexedImmutableSet<Long> subject) {
+            Assert.assertEquals(reference, subject);
+
+            int i = 0;
+            for (Long e : reference) {
+                Assert.assertEquals(i, subject.elementToIndex(e));
+                Assert.assertEquals(e, subject.indexToElement(i));
+                i++;
+            }
+
+            Assert.assertEquals(-1, subject.elementToIndex(1l << 32));
+        }
+
+        @Test
+        public void ofParallel_small() {
+            Set<String> reference = TestUtils.stringSet(100);
+            IndexedImmutableSet<String> subject = IndexedImmutableSet.ofParallel(reference);
+
+            Assert.assertTrue(
+                    subject.getClass().getName(), subject instanceof IndexedImmutableSetImpl.HashArrayBackedSet);
+            Assert.assertEquals(reference, subject);
+        }
+
+        @Test
+        public void ofMinimalPerfectHash() {
+            Set<String> reference = TestUtils.stringSet(100000);
+            IndexedImmutableSet<String> subject = IndexedImmutableSet.ofMinimalPerfectHash(reference);
+
+            Assert.assertTrue(
+                    subject.getClass().getName(), subject instanceof IndexedImmutableSetImpl.MinimalPerfectHashSet);
+            Assert.assertEquals(reference, subject);
+
+            for (String e : reference) {
+                int index = subject.elementToIndex(e);
+                Assert.assertTrue(index + " < " + reference.size(), index >= 0 && index < reference.size());
+                Assert.assertEquals(e, subject.indexToElement(index));
+            }
+
+            Assert.assertEquals(-1, subject.elementToIndex("does_not_exist"));
+        }
+
+        @Test
+        public void ofMinimalPerfectHash_hashCollision() {
+            // "Aa" and "BB" have identical hash codes
+            Set<String> reference = new HashSet<>(Arrays.asList("Aa", "BB", "c", "d", "e", "f"));
+            IndexedImmutableSet<String> subject = IndexedImmutableSet.ofMinimalPerfectHash(reference);
+
+            Assert.assertTrue(
+                    subject.getClass().getName(), subject instanceof IndexedImmutableSetImpl.MinimalPerfectHashSet);
+            Assert.assertEquals(reference, subject);
+
+            for (String e : reference) {
+                Assert.assertEquals(e, subject.indexToElement(subject.elementToIndex(e)));
+            }
+
+            Assert.assertEquals(-1, subject.elementToIndex("C#"));
+        }
+
+        @Test(timeout = 10000)
+        public void ofMinimalPerfectHash_collidingBuckets() {
+            // All these elements fall into the first bucket; no displacement value can separate 1000 elements
+            Set<Integer> reference = new HashSet<>();
+            long limit = (1L << 32) / (1000 / IndexedImmutableSetImpl.MinimalPerfectHashSet.BUCKET_SIZE);
+
+            for (int i = 0; reference.size() < 1000; i++) {
+                if ((IndexedImmutableSetImpl.MinimalPerfectHashSet.mix(i) & 0xffffffffL) < limit) {
+                    reference.add(i);
+                }
+            }
+
+            IndexedImmutableSet<Integer> subject = IndexedImmutableSet.ofMinimalPerfectHash(reference);
+
+            Assert.assertFalse(
+                    subject.getClass().getName(), subject instanceof IndexedImmutableSetImpl.MinimalPerfectHashSet);
+            Assert.assertEquals(reference, subject);
+        }
+
+        @Test
+        public void builder_alternativeHashFunction() {
+            List<String> elements = new ArrayList<>();
+
+            for (int i = 0; elements.size() < 40; i++) {
+                String e = "key" + i;
+
+                if (Hashing.hashPosition(0x40, e) == 7) {
+                    elements.add(e);
+                }
+            }
+
+            IndexedImmutableSetImpl.InternalBuilder<String> builder = IndexedImmutableSetImpl.builder(40);
+
+            for (String e : elements) {
+                builder = builder.with(e);
+            }
+
+            IndexedImmutableSetImpl<String> subject = builder.build();
+            Assert.assertEquals(new HashSet<>(elements), subject);
+            Assert.assertEquals(elements, toListByIndex(subject));
+
+            IndexedImmutableSetImpl.HashArrayBackedSet<String> hashArrayBackedSet =
+                    (IndexedImmutableSetImpl.HashArrayBackedSet<String>) subject;
+            Assert.assertEquals(Hashing.ALTERNATIVE_HASH_SEED, hashArrayBackedSet.hashSeed());
+            Assert.assertEquals(0x40, hashArrayBackedSet.tableSize);
+        }
+
+        @Test
+        public void extend_noNewElements() {
+            IndexedImmutableSet<String> subject = IndexedImmutableSet.of(TestUtils.stringSet(100));
+            Assert.assertSame(subject, subject.extend(Arrays.asList(subject.indexToElement(3))));
+            Assert.assertSame(subject, subject.with(subject.indexToElement(5)));
+        }
+
+        @Test
+        public void defaultMethods_indicesOf() {
+            IndexedImmutableSet<String> subject = new ListBackedIndexedSet<>(Arrays.asList("a", "b", "c"));
+            Assert.assertArrayEquals(new int[] {2, -1, 0}, subject.indicesOf(Arrays.asList("c", "x", "a")));
+        }
+
+        @Test
+        public void defaultMethods_extend() {
+            IndexedImmutableSet<String> subject = new ListBackedIndexedSet<>(Arrays.asList("a", "b", "c"));
+            IndexedImmutableSet<String> extended = subject.with("b").extend(Arrays.asList("d", "a", "e"));
+            Assert.assertEquals(Arrays.asList("a", "b", "c", "d", "e"), new ArrayList<>(extended));
+            Assert.assertEquals(3, extended.elementToIndex("d"));
+            Assert.assertSame(subject, subject.extend(Arrays.asList("c", "b")));
+        }
+
+        @Test
+        public void extend_small() {
+            IndexedImmutableSet<String> subject = IndexedImmutableSet.of("a");
+            IndexedImmutableSet<String> extended = subject.with("b").with("a").extend(Arrays.asList("c", "d", "c"));
+            Assert.assertEquals(Arrays.asList("a", "b", "c", "d"), new ArrayList<>(extended));
+
+            extended = extended.with("e");
+            Assert.assertEquals(Arrays.asList("a", "b", "c", "d", "e"), new ArrayList<>(extended));
+            Assert.assertEquals(4, extended.elementToIndex("e"));
+        }
+
+        @Test
+        public void extend_large() {
+            Set<String> reference = TestUtils.stringSet(30000);
+            IndexedImmutableSet<String> subject = IndexedImmutableSet.of(reference);
+            List<String> additional = new ArrayList<>();
+
+            for (int i = 0; i < 10000; i++) {
+                additional.add("extension_" + i);
+            }
+
+            IndexedImmutableSet<String> extended = subject.extend(additional);
+            Assert.assertEquals(40000, extended.size());
+
+            for (int i = 0; i < subject.size(); i++) {
+                Assert.assertEquals(subject.indexToElement(i), extended.indexToElement(i));
+            }
+
+            for (int i = 0; i < additional.size(); i++) {
+                Assert.assertEquals(subject.size() + i, extended.elementToIndex(additional.get(i)));
+            }
+        }
+
+        @Test
+        public void extend_cacheHashCodes() {
+            IndexedImmutableSetImpl<String> subject = IndexedImmutableSetImpl.of(TestUtils.stringSet(1000), true)
+                    .extend(Arrays.asList("extension_1", "extension_2"));
+            Assert.assertTrue(subject.cachesHashCodes());
+            Assert.assertEquals(1001, subject.elementToIndex("extension_2"));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void extend_null() {
+            IndexedImmutableSet.of("a", "b").extend(Arrays.asList("c", null));
+        }
+
+        @Test
+        public void isIndexPrefixOf() {
+            IndexedImmutableSetImpl<String> subject = IndexedImmutableSetImpl.of(TestUtils.stringSet(100));
+            Assert.assertTrue(subject.isIndexPrefixOf(subject.with("extension_1")));
+            Assert.assertFalse(subject.with("extension_1").isIndexPrefixOf(subject));
+
+            List<String> reversed = new ArrayList<>(subject);
+            Collections.reverse(reversed);
+            Assert.assertFalse(subject.isIndexPrefixOf(IndexedImmutableSetImpl.of(new LinkedHashSet<>(reversed))));
+        }
+
+        @Test
+        public void setBacked_iterationOrder() {
+            List<String> elements = Arrays.asList("z", "y", "x", "a", "b", "c");
+            IndexedImmutableSetImpl<String> subject = new IndexedImmutableSetImpl.SetBackedSet.Builder<>(elements)
+                    .with("y")
+                    .with("d")
+                    .build();
+            Assert.assertEquals(Arrays.asList("z", "y", "x", "a", "b", "c", "d"), new ArrayList<>(subject));
+            Assert.assertEquals(7, subject.size());
+            Assert.assertArrayEquals(new Object[] {"z", "y", "x", "a", "b", "c", "d"}, subject.toArray());
+        }
+
         @Test(expected = IllegalArgumentException.class)
         public void of3_null() {
             IndexedImmutableSet.of(new HashSet<>(Arrays.asList("a", "b", null)));
@@ -517,6 +1017,32 @@ public class IndexedImmutableSetTest {
             Assert.assertEquals("b", element);
         }
 
+        @Test
+        public void elementToIndex_batch() {
+            ArrayList<Object> elements = new ArrayList<>(reference);
+            elements.add("does_not_exist");
+            int[] indices = new int[elements.size()];
+            subject.elementToIndex(elements.toArray(), indices);
+
+            for (int i = 0; i < elements.size(); i++) {
+                Assert.assertEquals(subject.elementToIndex((String) elements.get(i)), indices[i]);
+            }
+
+            Assert.assertEquals(-1, indices[indices.length - 1]);
+        }
+
+        @Test
+        public void indicesOf() {
+            int[] indices = subject.indicesOf(reference);
+            Assert.assertEquals(reference.size(), indices.length);
+
+            int i = 0;
+            for (String e : reference) {
+                Assert.assertEquals(e, subject.indexToElement(indices[i]));
+                i++;
+            }
+        }
+
         @Test
         public void builder() {
             IndexedImmutableSetImpl.InternalBuilder<String> builder = IndexedImmutableSetImpl.builder(10);
@@ -561,6 +1087,64 @@ public class IndexedImmutableSetTest {
             subject.retainAll(Arrays.asList("x"));
         }
 
+        @Test
+        public void spliterator() {
+            Spliterator<String> spliterator = subject.spliterator();
+
+            Assert.assertEquals(reference.size(), spliterator.getExactSizeIfKnown());
+            Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.SUBSIZED));
+            Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.IMMUTABLE));
+            Assert.assertEquals(reference, subject.parallelStream().collect(Collectors.toSet()));
+            Assert.assertEquals(toListByIndex(subject), subject.stream().collect(Collectors.toList()));
+        }
+
+        @Test
+        public void spliterator_split() {
+            Spliterator<String> suffix = subject.spliterator();
+            Spliterator<String> prefix = suffix.trySplit();
+            List<String> visited = new ArrayList<>();
+
+            if (prefix != null) {
+                Assert.assertEquals(reference.size(), prefix.getExactSizeIfKnown() + suffix.getExactSizeIfKnown());
+                prefix.forEachRemaining(visited::add);
+            }
+
+            while (suffix.tryAdvance(visited::add)) {}
+
+            Assert.assertEquals(toListByIndex(subject), visited);
+        }
+
+        @Test
+        public void forEach() {
+            List<String> visited = new ArrayList<>();
+            subject.forEach(visited::add);
+            Assert.assertEquals(toListByIndex(subject), visited);
+        }
+
+        @Test
+        public void extend() {
+            List<String> additional = Arrays.asList("extension_1", "extension_2", "extension_1");
+
+            if (!reference.isEmpty()) {
+                additional = new ArrayList<>(additional);
+                additional.add(reference.iterator().next());
+            }
+
+            IndexedImmutableSet<String> extended = subject.extend(additional);
+            Set<String> extendedReference = new HashSet<>(reference);
+            extendedReference.addAll(additional);
+
+            Assert.assertEquals(extendedReference, extended);
+
+            for (int i = 0; i < subject.size(); i++) {
+                Assert.assertEquals(subject.indexToElement(i), extended.indexToElement(i));
+            }
+
+            Assert.assertEquals(subject.size(), extended.elementToIndex("extension_1"));
+            Assert.assertEquals(subject.size() + 1, extended.elementToIndex("extension_2"));
+            Assert.assertEquals(new ArrayList<>(extended), toListByIndex(extended));
+        }
+
         @Test(expected = NoSuchElementException.class)
         public void iterator_exhausted() {
             Iterator<String> iter = subject.iterator();
@@ -606,15 +1190,30 @@ public class IndexedImmutableSetTest {
             result.add(new Object[] {set4000, IndexedImmutableSet.of(set4000)});
             Set<String> set5000 = TestUtils.stringSet(5000);
             result.add(new Object[] {set5000, IndexedImmutableSet.of(set5000)});
+            result.add(new Object[] {set5000, IndexedImmutableSet.ofWithCachedHashCodes(set5000)});
+            IndexedImmutableSet<String> minimalPerfectHash5000 = IndexedImmutableSet.ofMinimalPerfectHash(set5000);
+            result.add(new Object[] {new LinkedHashSet<>(minimalPerfectHash5000), minimalPerfectHash5000});
             Set<String> set16000 = TestUtils.stringSet(16000);
             result.add(new Object[] {set16000, IndexedImmutableSet.of(set16000)});
             Set<String> set33000 = TestUtils.stringSet(33000);
             result.add(new Object[] {set33000, IndexedImmutableSet.of(set33000)});
+            result.add(new Object[] {set33000, IndexedImmutableSet.ofParallel(set33000)});
+            result.add(new Object[] {set33000, IndexedImmutableSet.ofWithCachedHashCodes(set33000)});
 
             return result;
         }
     }
 
+    private static <E> List<E> toListByIndex(IndexedImmutableSet<E> set) {
+        List<E> result = new ArrayList<>(set.size());
+
+        for (int i = 0; i < set.size(); i++) {
+            result.add(set.indexToElement(i));
+        }
+
+        return result;
+    }
+
     private static <E> void assertEquals(HashSet<E> expected, IndexedImmutableSetImpl.InternalBuilder<E> actual) {
         for (E e : expected) {
             if (!actual.contains(e)) {
@@ -700,4 +1299,35 @@ public class IndexedImmutableSetTest {
                     + actual);
         }
     }
+
+    /**
+     * A minimal IndexedImmutableSet implementation which relies on the default methods of the interface.
+     */
+    static class ListBackedIndexedSet<E> extends UnmodifiableSetImpl<E> implements IndexedImmutableSet<E> {
+        private final List<E> elements;
+
+        ListBackedIndexedSet(List<E> elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        public int elementToIndex(E element) {
+            return elements.indexOf(element);
+        }
+
+        @Override
+        public E indexToElement(int index) {
+            return index >= 0 && index < elements.size() ? elements.get(index) : null;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return elements.iterator();
+        }
+
+        @Override
+        public int size() {
+            return elements.size();
+        }
+    }
 }
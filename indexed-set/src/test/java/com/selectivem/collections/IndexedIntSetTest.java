@@ -0,0 +1,199 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+@RunWith(Enclosed.class)
+public class IndexedIntSetTest {
+    public static class BasicTest {
+        @Test
+        public void empty() {
+            IndexedIntSet subject = IndexedIntSet.empty();
+            Assert.assertEquals(0, subject.size());
+            Assert.assertTrue(subject.isEmpty());
+            Assert.assertFalse(subject.contains(0));
+            Assert.assertEquals(-1, subject.elementToIndex(0));
+        }
+
+        @Test
+        public void duplicates() {
+            IndexedIntSet subject = IndexedIntSet.of(1, 2, 1, 3, 2);
+            Assert.assertEquals(3, subject.size());
+            Assert.assertArrayEquals(new int[] {1, 2, 3}, subject.toArray());
+        }
+
+        @Test
+        public void zeroAndNegative() {
+            IndexedIntSet subject = IndexedIntSet.of(0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            Assert.assertTrue(subject.contains(0));
+            Assert.assertTrue(subject.contains(-1));
+            Assert.assertTrue(subject.contains(Integer.MIN_VALUE));
+            Assert.assertTrue(subject.contains(Integer.MAX_VALUE));
+            Assert.assertFalse(subject.contains(1));
+        }
+
+        @Test
+        public void build_overflow() {
+            int[] elements = new int[300];
+
+            for (int i = 0; i < elements.length; i++) {
+                // Every element is contained twice
+                elements[i] = (i % 150) * 7919;
+            }
+
+            // 150 elements do not fit into a table of size 16; most of them go to the overflow area
+            IndexedIntSetImpl subject = IndexedIntSetImpl.build(elements, 0x10, Hashing.ALTERNATIVE_HASH_SEED, true);
+            Assert.assertTrue(subject.overflowSize > 0);
+            Assert.assertEquals(150, subject.size());
+
+            for (int i = 0; i < 150; i++) {
+                Assert.assertEquals(i, subject.elementToIndex(i * 7919));
+                Assert.assertEquals(i * 7919, subject.indexToElement(i));
+            }
+
+            Assert.assertFalse(subject.contains(1));
+            Assert.assertEquals(IndexedIntSet.of(subject.toArray()), subject);
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void of_collectionWithNull() {
+            IndexedIntSet.of(Arrays.asList(1, null));
+        }
+
+        @Test(expected = IndexOutOfBoundsException.class)
+        public void indexToElement_outOfBounds() {
+            IndexedIntSet.of(1, 2, 3).indexToElement(3);
+        }
+
+        @Test
+        public void equals() {
+            Assert.assertEquals(IndexedIntSet.of(1, 2, 3), IndexedIntSet.of(3, 2, 1));
+            Assert.assertEquals(
+                    IndexedIntSet.of(1, 2, 3).hashCode(),
+                    IndexedIntSet.of(3, 2, 1).hashCode());
+            Assert.assertNotEquals(IndexedIntSet.of(1, 2, 3), IndexedIntSet.of(1, 2, 4));
+        }
+
+        @Test
+        public void toString_basic() {
+            Assert.assertEquals("[1, 2, 3]", IndexedIntSet.of(1, 2, 3).toString());
+        }
+
+        @Test
+        public void boxedView() {
+            IndexedIntSetImpl subject = IndexedIntSetImpl.of(new int[] {10, 20, 30});
+            IndexedImmutableSetImpl<Integer> view = subject.boxedView();
+
+            Assert.assertEquals(new HashSet<>(Arrays.asList(10, 20, 30)), view);
+            Assert.assertEquals(1, view.elementToIndex(20));
+            Assert.assertEquals(Integer.valueOf(30), view.indexToElement(2));
+            Assert.assertEquals(-1, view.elementToIndex("20"));
+            Assert.assertFalse(view.contains(40));
+        }
+    }
+
+    @RunWith(Parameterized.class)
+    public static class ParameterizedTest {
+        final int[] elements;
+        final Set<Integer> reference;
+        final IndexedIntSet subject;
+
+        @Test
+        public void size() {
+            Assert.assertEquals(reference.size(), subject.size());
+        }
+
+        @Test
+        public void contains() {
+            for (int e : elements) {
+                Assert.assertTrue(subject.contains(e));
+                Assert.assertEquals(reference.contains(e + 1), subject.contains(e + 1));
+            }
+        }
+
+        @Test
+        public void elementToIndex() {
+            for (int i = 0; i < subject.size(); i++) {
+                Assert.assertEquals(i, subject.elementToIndex(subject.indexToElement(i)));
+            }
+        }
+
+        @Test
+        public void elementToIndex_batch() {
+            int[] queries = new int[elements.length * 2];
+
+            for (int i = 0; i < elements.length; i++) {
+                queries[i * 2] = elements[i];
+                queries[i * 2 + 1] = ~elements[i];
+            }
+
+            int[] indices = new int[queries.length];
+            subject.elementToIndex(queries, indices);
+
+            for (int i = 0; i < queries.length; i++) {
+                Assert.assertEquals(subject.elementToIndex(queries[i]), indices[i]);
+            }
+        }
+
+        @Test
+        public void forEach() {
+            Set<Integer> visited = new HashSet<>();
+            subject.forEach(visited::add);
+            Assert.assertEquals(reference, visited);
+        }
+
+        public ParameterizedTest(Integer size, Integer seed) {
+            Random random = new Random(seed);
+            this.elements = new int[size];
+
+            for (int i = 0; i < size; i++) {
+                this.elements[i] = random.nextInt();
+            }
+
+            this.reference = new HashSet<>();
+
+            for (int e : this.elements) {
+                this.reference.add(e);
+            }
+
+            this.subject = IndexedIntSet.of(this.elements);
+        }
+
+        @Parameterized.Parameters(name = "{0}/{1}")
+        public static Collection<Object[]> params() {
+            ArrayList<Object[]> result = new ArrayList<>();
+
+            for (int size : new int[] {1, 10, 100, 1000, 10000, 200000}) {
+                for (int seed = 1; seed <= 3; seed++) {
+                    result.add(new Object[] {size, seed});
+                }
+            }
+
+            return result;
+        }
+    }
+}
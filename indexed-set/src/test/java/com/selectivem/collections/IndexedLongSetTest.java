@@ -0,0 +1,100 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IndexedLongSetTest {
+    @Test
+    public void empty() {
+        IndexedLongSet subject = IndexedLongSet.empty();
+        Assert.assertEquals(0, subject.size());
+        Assert.assertTrue(subject.isEmpty());
+        Assert.assertFalse(subject.contains(0L));
+    }
+
+    @Test
+    public void duplicates() {
+        IndexedLongSet subject = IndexedLongSet.of(1L, 2L, 1L, 3L, 2L);
+        Assert.assertEquals(3, subject.size());
+        Assert.assertArrayEquals(new long[] {1L, 2L, 3L}, subject.toArray());
+    }
+
+    @Test
+    public void sameHashCode() {
+        // Long.hashCode() is identical for these values
+        IndexedLongSet subject = IndexedLongSet.of(0L, -1L, 0x1_0000_0001L);
+        Assert.assertEquals(3, subject.size());
+        Assert.assertTrue(subject.contains(-1L));
+        Assert.assertTrue(subject.contains(0x1_0000_0001L));
+        Assert.assertFalse(subject.contains(0x2_0000_0002L));
+    }
+
+    @Test
+    public void sameHashCode_many() {
+        long[] elements = new long[1000];
+
+        for (int i = 0; i < elements.length; i++) {
+            // Long.hashCode() is 0 for all these values
+            elements[i] = (long) i << 32 | i;
+        }
+
+        IndexedLongSetImpl subject = IndexedLongSetImpl.of(elements);
+        Assert.assertTrue(subject.overflowSize > 0);
+        Assert.assertEquals(1000, subject.size());
+
+        for (int i = 0; i < elements.length; i++) {
+            Assert.assertEquals(i, subject.elementToIndex(elements[i]));
+        }
+
+        Assert.assertFalse(subject.contains(1000L << 32 | 1000L));
+        Assert.assertEquals(subject, IndexedLongSet.of(subject.toArray()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void of_collectionWithNull() {
+        IndexedLongSet.of(Arrays.asList(1L, null));
+    }
+
+    @Test
+    public void randomized() {
+        Random random = new Random(1);
+
+        for (int size : new int[] {5, 100, 5000, 100000}) {
+            long[] elements = new long[size];
+            Set<Long> reference = new HashSet<>();
+
+            for (int i = 0; i < size; i++) {
+                elements[i] = random.nextLong();
+                reference.add(elements[i]);
+            }
+
+            IndexedLongSet subject = IndexedLongSet.of(elements);
+            Assert.assertEquals(reference.size(), subject.size());
+
+            for (int i = 0; i < size; i++) {
+                Assert.assertTrue(subject.contains(elements[i]));
+                Assert.assertEquals(reference.contains(~elements[i]), subject.contains(~elements[i]));
+                Assert.assertEquals(elements[i], subject.indexToElement(subject.elementToIndex(elements[i])));
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares lookups in IndexedImmutableSet instances created by of() and by ofMinimalPerfectHash().
+ */
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+public class MinimalPerfectHashBenchmark {
+    private static final Set<String> SET_50000 = TestUtils.stringSet(50000);
+    private static final List<String> QUERIES_50000 = new ArrayList<>(SET_50000);
+    private static final IndexedImmutableSet<String> INDEXED_SET_50000 = IndexedImmutableSet.of(SET_50000);
+    private static final IndexedImmutableSet<String> MINIMAL_PERFECT_HASH_SET_50000 =
+            IndexedImmutableSet.ofMinimalPerfectHash(SET_50000);
+
+    @Benchmark
+    public int elementToIndex_50000() {
+        return elementToIndex(INDEXED_SET_50000, QUERIES_50000);
+    }
+
+    @Benchmark
+    public int elementToIndex_50000_minimalPerfectHash() {
+        return elementToIndex(MINIMAL_PERFECT_HASH_SET_50000, QUERIES_50000);
+    }
+
+    @Benchmark
+    public Object build_50000() {
+        return IndexedImmutableSet.of(SET_50000);
+    }
+
+    @Benchmark
+    public Object build_50000_minimalPerfectHash() {
+        return IndexedImmutableSet.ofMinimalPerfectHash(SET_50000);
+    }
+
+    private static int elementToIndex(IndexedImmutableSet<String> set, List<String> queries) {
+        int result = 0;
+
+        for (String query : queries) {
+            result += set.elementToIndex(query);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+/**
+ * Replaces hashCode() and equals() of the elements of a hash table based collection. This allows using cheaper,
+ * domain-specific hash functions or equivalence relations, such as case-insensitive string comparison, without
+ * wrapping each element into an extra object.
+ * <p>
+ * A collection which was created with a HashingStrategy uses it for all lookups. Thus, methods like contains() may
+ * pass objects of a different type to the strategy; this will result in a ClassCastException. The equals() and
+ * hashCode() methods of the collection itself still follow the contracts of java.util.Set and java.util.Map, which
+ * are based on the equals() and hashCode() methods of the elements. Similar to a java.util.TreeSet with a custom
+ * comparator, such a collection might thus be not equal to a java.util.HashSet with the same elements.
+ * <p>
+ * Implementations must be consistent: Elements which are equal according to equals(E, E) must have the same
+ * computeHashCode() value.
+ *
+ * @author Nils Bandener
+ */
+public interface HashingStrategy<E> {
+    /**
+     * Returns the hash code of the given element. The element is never null.
+     */
+    int computeHashCode(E e);
+
+    /**
+     * Returns true if the given elements are to be considered equal. The elements are never null.
+     */
+    boolean equals(E e1, E e2);
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024 Nils Bandener
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.selectivem.collections;
+
+/**
+ * A cursor over the entries of a map. In contrast to an iterator over the entry set of a map, a cursor does not need
+ * to create an entry object for each visited entry. Thus, a full scan of a map can be done without producing any
+ * garbage.
+ * <p>
+ * Usage:
+ * <pre>
+ * MapCursor&lt;K, V&gt; cursor = map.cursor();
+ * while (cursor.advance()) {
+ *     process(cursor.key(), cursor.value());
+ * }
+ * </pre>
+ * Initially, a cursor is positioned before the first entry. Thus, advance() must be called before key() and value()
+ * can be used.
+ *
+ * @author Nils Bandener
+ */
+public interface MapCursor<K, V> {
+    /**
+     * Moves the cursor to the next entry. Returns true if there is such an entry, false if the cursor has moved
+     * beyond the last entry.
+     */
+    boolean advance();
+
+    /**
+     * Returns the key of the current entry.
+     *
+     * @throws java.util.NoSuchElementException if advance() was not called yet or returned false.
+     */
+    K key();
+
+    /**
+     * Returns the value of the current entry.
+     *
+     * @throws java.util.NoSuchElementException if advance() was not called yet or returned false.
+     */
+    V value();
+}
@@ -1,10 +1,50 @@
 package com.selectivem.collections;
 
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
 public interface UnmodifiableMap<K, V> extends Map<K, V> {
+
+    /**
+     * Returns a cursor over the entries of this map. In contrast to entrySet().iterator(), a cursor does not need to
+     * create an Entry object for each entry. The map implementations of this library override this method; their
+     * cursors do not allocate any objects besides the cursor itself.
+     */
+    default MapCursor<K, V> cursor() {
+        Iterator<Entry<K, V>> iterator = entrySet().iterator();
+
+        return new MapCursor<K, V>() {
+            private Entry<K, V> current;
+
+            @Override
+            public boolean advance() {
+                this.current = iterator.hasNext() ? iterator.next() : null;
+                return this.current != null;
+            }
+
+            @Override
+            public K key() {
+                return current().getKey();
+            }
+
+            @Override
+            public V value() {
+                return current().getValue();
+            }
+
+            private Entry<K, V> current() {
+                if (this.current == null) {
+                    throw new NoSuchElementException();
+                }
+
+                return this.current;
+            }
+        };
+    }
+
     @Override
     @Deprecated
     default V put(K key, V value) {